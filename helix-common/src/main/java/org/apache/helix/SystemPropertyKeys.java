@@ -33,6 +33,22 @@ public class SystemPropertyKeys {
 
   // Task Driver
   public static final String TASK_CONFIG_LIMITATION = "helixTask.configsLimitation";
+  // Job contexts with more tasks than the threshold are stored in buckets of partitions
+  public static final String TASK_JOB_CONTEXT_BUCKET_THRESHOLD =
+      "helixTask.jobContextBucketThreshold";
+  public static final String TASK_JOB_CONTEXT_BUCKET_SIZE = "helixTask.jobContextBucketSize";
+  // Max delay in ms before a change of the bookkeeping timestamps only of a task context, such as
+  // the last purge time, is written. 0 writes them right away.
+  public static final String TASK_CONTEXT_TIMESTAMP_WRITE_DELAY =
+      "helixTask.contextTimestampWriteDelay";
+  // Number of threads the controller uses to schedule the workflows of different quota types
+  public static final String TASK_SCHEDULING_PARALLELISM = "helixTask.schedulingParallelism";
+  // Max number of expired jobs the controller purges in one run of the task garbage collection
+  public static final String TASK_JOB_PURGE_LIMIT = "helixTask.jobPurgeLimit";
+  // Min delay in ms before the controller purges the expired jobs left by a run that hit the limit
+  public static final String TASK_JOB_PURGE_BACKLOG_DELAY = "helixTask.jobPurgeBacklogDelay";
+  // Min interval in ms between two writes of the progress reported by the tasks of a participant
+  public static final String TASK_PROGRESS_FLUSH_INTERVAL = "helixTask.progressFlushInterval";
 
   // ZKHelixManager
   public static final String CLUSTER_MANAGER_VERSION = "cluster-manager-version.properties";
@@ -69,6 +85,10 @@ public class SystemPropertyKeys {
   // Controller
   public static final String CONTROLLER_MESSAGE_PURGE_DELAY = "helix.controller.stages.MessageGenerationPhase.messagePurgeDelay";
 
+  // Stamp the completion time of the latest transition of each partition in the external view
+  public static final String CONTROLLER_EXTERNAL_VIEW_STATE_END_TIME_ENABLED =
+      "helix.controller.stages.ExternalViewComputeStage.stateEndTimeEnabled";
+
   // Message
   public static final String MESSAGE_EXPECTED_COMPLETION_PERIOD = "helix.controller.message.ExpectMessageCompletionPeriod";
 
@@ -76,6 +96,18 @@ public class SystemPropertyKeys {
   // MBean monitor for helix.
   public static final String HELIX_MONITOR_TIME_WINDOW_LENGTH_MS = "helix.monitor.slidingTimeWindow.ms";
 
+  // Max number of per resource and transition latency MBeans of a participant
+  public static final String PARTICIPANT_TRANSITION_LATENCY_MAX_SERIES =
+      "helix.monitor.participant.transitionLatency.maxSeries";
+
+  // Store the ExternalView routing tables of spectators in compact primitive arrays
+  public static final String SPECTATOR_COMPACT_ROUTING_TABLE_ENABLED =
+      "helix.spectator.routingTable.compact";
+
+  // Refresh the routing data of the different source data types of spectators in parallel
+  public static final String SPECTATOR_PARALLEL_ROUTING_DATA_REFRESH_ENABLED =
+      "helix.spectator.routingData.parallelRefresh";
+
   // Multi-ZK mode enable/disable flag
   public static final String MULTI_ZK_ENABLED = "helix.multiZkEnabled";
 
@@ -19,8 +19,12 @@ package org.apache.helix;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
 
 import org.apache.helix.messaging.AsyncCallback;
 import org.apache.helix.messaging.handling.MessageHandlerFactory;
@@ -107,6 +111,46 @@ public interface ClusterMessagingService {
   int sendAndWait(Criteria receipientCriteria, Message message, AsyncCallback callbackOnReply,
       int timeOut, int retryCount);
 
+  /**
+   * Send the message to all participants matching the criteria, for fan-outs to many partitions
+   * or instances. The messages are written in batches per round, and at most
+   * maxPendingMessagesPerInstance messages without a reply are outstanding on any instance; the
+   * rest are sent as replies come back.<br>
+   * This method returns once the first round of messages is written.
+   * @param recipientCriteria criteria to be met, defined as {@link Criteria}
+   * @param message the message template
+   * @param timeOut time in ms to wait for all replies, -1 to wait forever
+   * @param maxPendingMessagesPerInstance maximum number of messages without a reply per target
+   *          instance, -1 for no limit
+   * @return a future that completes with the reply messages when every sent message is replied,
+   *         or completes exceptionally on timeout or when some messages failed to be sent
+   */
+  default CompletableFuture<List<Message>> sendBulk(Criteria recipientCriteria, Message message,
+      int timeOut, int maxPendingMessagesPerInstance) {
+    // Fallback for the services without a bulk path: all the messages are sent at once through
+    // send(), so maxPendingMessagesPerInstance is not enforced
+    final CompletableFuture<List<Message>> future = new CompletableFuture<>();
+    AsyncCallback callback = new AsyncCallback(timeOut) {
+      @Override
+      public void onReplyMessage(Message reply) {
+        if (isDone()) {
+          future.complete(new ArrayList<>(getMessageReplied()));
+        }
+      }
+
+      @Override
+      public void onTimeOut() {
+        future.completeExceptionally(new TimeoutException(String.format(
+            "Bulk send timed out after %d ms, %d messages replied", _timeout,
+            getMessageReplied().size())));
+      }
+    };
+    if (send(recipientCriteria, message, callback, timeOut) == 0) {
+      future.complete(Collections.<Message>emptyList());
+    }
+    return future;
+  }
+
   /**
    * This will register a message handler factory to create handlers for
    * message. In case client code defines its own message type, it can define a
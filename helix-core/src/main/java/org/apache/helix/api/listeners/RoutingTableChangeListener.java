@@ -1,5 +1,6 @@
 package org.apache.helix.api.listeners;
 
+import org.apache.helix.spectator.RoutingTableDelta;
 import org.apache.helix.spectator.RoutingTableSnapshot;
 
 /**
@@ -14,4 +15,18 @@ public interface RoutingTableChangeListener {
    * @param context
    */
   void onRoutingTableChange(RoutingTableSnapshot routingTableSnapshot, Object context);
+
+  /**
+   * Invoked when RoutingTable on changes, with the difference from the previous RoutingTable.
+   * The delta is computed once and shared by all the listeners, so it must not be modified.
+   * Defaults to {@link #onRoutingTableChange(RoutingTableSnapshot, Object)}.
+   *
+   * @param routingTableSnapshot
+   * @param delta the replicas and instances that changed since the previous notification
+   * @param context
+   */
+  default void onRoutingTableChange(RoutingTableSnapshot routingTableSnapshot,
+      RoutingTableDelta delta, Object context) {
+    onRoutingTableChange(routingTableSnapshot, context);
+  }
 }
@@ -106,11 +106,37 @@ public class BasicClusterDataCache implements ControlContextProvider {
     LOG.info("START: BasicClusterDataCache.refresh() for cluster " + _clusterName);
     long startTime = System.currentTimeMillis();
 
+    refreshExternalViews(accessor);
+    refreshLiveInstancesAndInstanceConfigs(accessor);
+
+    long endTime = System.currentTimeMillis();
+    LOG.info(
+        "END: BasicClusterDataCache.refresh() for cluster " + _clusterName + ", took " + (endTime
+            - startTime) + " ms");
+
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("LiveInstances: {}", _liveInstancePropertyCache.getPropertyMap());
+      LOG.debug("ExternalViews: {}", _externalViewCache.getExternalViewMap().keySet());
+      LOG.debug("InstanceConfigs: {}", _instanceConfigPropertyCache.getPropertyMap());
+    }
+  }
+
+  /**
+   * Reload the ExternalViews if they have changed
+   * @param accessor
+   */
+  protected void refreshExternalViews(HelixDataAccessor accessor) {
     if (_propertyDataChangedMap.get(HelixConstants.ChangeType.EXTERNAL_VIEW)) {
       _propertyDataChangedMap.put(HelixConstants.ChangeType.EXTERNAL_VIEW, false);
       _externalViewCache.refresh(accessor);
     }
+  }
 
+  /**
+   * Reload the LiveInstances and the InstanceConfigs if they have changed
+   * @param accessor
+   */
+  protected void refreshLiveInstancesAndInstanceConfigs(HelixDataAccessor accessor) {
     if (_propertyDataChangedMap.get(HelixConstants.ChangeType.LIVE_INSTANCE)) {
       long start = System.currentTimeMillis();
       _propertyDataChangedMap.put(HelixConstants.ChangeType.LIVE_INSTANCE, false);
@@ -127,17 +153,6 @@ public class BasicClusterDataCache implements ControlContextProvider {
       LOG.info("Reload InstanceConfig: " + _instanceConfigPropertyCache.getPropertyMap().keySet()
           + ". Takes " + (System.currentTimeMillis() - start) + " ms");
     }
-
-    long endTime = System.currentTimeMillis();
-    LOG.info(
-        "END: BasicClusterDataCache.refresh() for cluster " + _clusterName + ", took " + (endTime
-            - startTime) + " ms");
-
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("LiveInstances: {}", _liveInstancePropertyCache.getPropertyMap());
-      LOG.debug("ExternalViews: {}", _externalViewCache.getExternalViewMap().keySet());
-      LOG.debug("InstanceConfigs: {}", _instanceConfigPropertyCache.getPropertyMap());
-    }
   }
 
   /**
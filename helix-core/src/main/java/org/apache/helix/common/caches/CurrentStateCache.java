@@ -41,6 +41,8 @@ public class CurrentStateCache extends ParticipantStateCache<CurrentState> {
   // If the snapshot is already refreshed with current state data.
   private boolean _initialized = false;
   private CurrentStateSnapshot _snapshot;
+  // Names of the resources to cache, null to cache all resources
+  private volatile Set<String> _resourceFilter;
 
   public CurrentStateCache(String clusterName) {
     this(createDefaultControlContextProvider(clusterName));
@@ -56,12 +58,16 @@ public class CurrentStateCache extends ParticipantStateCache<CurrentState> {
       Map<String, LiveInstance> liveInstanceMap) {
     Set<PropertyKey> participantStateKeys = new HashSet<>();
     PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+    Set<String> resourceFilter = _resourceFilter;
     for (String instanceName : liveInstanceMap.keySet()) {
       LiveInstance liveInstance = liveInstanceMap.get(instanceName);
       String sessionId = liveInstance.getEphemeralOwner();
       List<String> currentStateNames =
           accessor.getChildNames(keyBuilder.currentStates(instanceName, sessionId));
       for (String currentStateName : currentStateNames) {
+        if (resourceFilter != null && !resourceFilter.contains(currentStateName)) {
+          continue;
+        }
         participantStateKeys
             .add(keyBuilder.currentState(instanceName, sessionId, currentStateName));
       }
@@ -69,6 +75,14 @@ public class CurrentStateCache extends ParticipantStateCache<CurrentState> {
     return participantStateKeys;
   }
 
+  /**
+   * Only read and cache the CurrentStates of the given resources. Takes effect on the next refresh.
+   * @param resourceNames names of the resources, or null to cache all resources
+   */
+  public void setResourceFilter(Set<String> resourceNames) {
+    _resourceFilter = resourceNames == null ? null : new HashSet<>(resourceNames);
+  }
+
   protected void refreshSnapshot(Map<PropertyKey, CurrentState> newStateCache,
       Map<PropertyKey, CurrentState> participantStateCache, Set<PropertyKey> reloadedKeys) {
     if (_initialized) {
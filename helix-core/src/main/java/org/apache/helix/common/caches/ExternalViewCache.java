@@ -50,6 +50,8 @@ public class ExternalViewCache extends AbstractDataCache<ExternalView> {
   protected String _clusterName;
 
   private PropertyType _type;
+  // Names of the resources to cache, null to cache all resources
+  private volatile Set<String> _resourceFilter;
 
   public ExternalViewCache(String clusterName) {
     this(clusterName, PropertyType.EXTERNALVIEW);
@@ -77,9 +79,12 @@ public class ExternalViewCache extends AbstractDataCache<ExternalView> {
     PropertyKey.Builder keyBuilder = accessor.keyBuilder();
     Set<PropertyKey> currentPropertyKeys = new HashSet<>();
 
+    Set<String> resourceFilter = _resourceFilter;
     List<String> resources = accessor.getChildNames(externalViewsKey(keyBuilder));
     for (String resource : resources) {
-      currentPropertyKeys.add(externalViewKey(keyBuilder, resource));
+      if (resourceFilter == null || resourceFilter.contains(resource)) {
+        currentPropertyKeys.add(externalViewKey(keyBuilder, resource));
+      }
     }
 
     Set<PropertyKey> cachedKeys = new HashSet<>();
@@ -138,6 +143,14 @@ public class ExternalViewCache extends AbstractDataCache<ExternalView> {
     return evPropertyKey;
   }
 
+  /**
+   * Only read and cache the ExternalViews of the given resources. Takes effect on the next refresh.
+   * @param resourceNames names of the resources, or null to cache all resources
+   */
+  public void setResourceFilter(Set<String> resourceNames) {
+    _resourceFilter = resourceNames == null ? null : new HashSet<>(resourceNames);
+  }
+
   /**
    * Return ExternalView map for all resources.
    *
@@ -0,0 +1,121 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Completed jobs ordered by expiry time, so that the expired jobs are found without going through
+ * all the jobs of the cluster.
+ */
+class JobExpiryIndex {
+  // expiry time -> jobs
+  private final TreeMap<Long, Set<String>> _jobsByExpiryTime = new TreeMap<>();
+  // job -> expiry time
+  private final Map<String, Long> _expiryTimes = new HashMap<>();
+
+  /**
+   * @return true if the job is in the index
+   */
+  boolean contains(String job) {
+    return _expiryTimes.containsKey(job);
+  }
+
+  /**
+   * Add the job to the index, or move it to a new expiry time
+   */
+  void update(String job, long expiryTime) {
+    Long previous = _expiryTimes.put(job, expiryTime);
+    if (previous != null) {
+      if (previous == expiryTime) {
+        return;
+      }
+      removeFromBucket(job, previous);
+    }
+    _jobsByExpiryTime.computeIfAbsent(expiryTime, k -> new LinkedHashSet<>()).add(job);
+  }
+
+  void remove(String job) {
+    Long expiryTime = _expiryTimes.remove(job);
+    if (expiryTime != null) {
+      removeFromBucket(job, expiryTime);
+    }
+  }
+
+  /**
+   * Remove the jobs that are not in the given set
+   */
+  void retainAll(Set<String> jobs) {
+    List<String> removedJobs = new ArrayList<>();
+    for (String job : _expiryTimes.keySet()) {
+      if (!jobs.contains(job)) {
+        removedJobs.add(job);
+      }
+    }
+    for (String job : removedJobs) {
+      remove(job);
+    }
+  }
+
+  /**
+   * @param currentTime the current time
+   * @return the jobs expired at the current time, earliest expiry first. The iterator does not
+   *         support removal.
+   */
+  Iterator<String> getExpiredJobs(long currentTime) {
+    Iterator<Set<String>> buckets =
+        _jobsByExpiryTime.headMap(currentTime, true).values().iterator();
+    return new Iterator<String>() {
+      private Iterator<String> _jobs = null;
+
+      @Override
+      public boolean hasNext() {
+        while ((_jobs == null || !_jobs.hasNext()) && buckets.hasNext()) {
+          _jobs = buckets.next().iterator();
+        }
+        return _jobs != null && _jobs.hasNext();
+      }
+
+      @Override
+      public String next() {
+        hasNext();
+        return _jobs.next();
+      }
+    };
+  }
+
+  int size() {
+    return _expiryTimes.size();
+  }
+
+  private void removeFromBucket(String job, long expiryTime) {
+    Set<String> bucket = _jobsByExpiryTime.get(expiryTime);
+    if (bucket != null && bucket.remove(job) && bucket.isEmpty()) {
+      _jobsByExpiryTime.remove(expiryTime);
+    }
+  }
+}
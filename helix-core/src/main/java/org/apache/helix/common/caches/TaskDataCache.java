@@ -20,8 +20,12 @@ package org.apache.helix.common.caches;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +34,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.apache.helix.AccessOption;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.PropertyType;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.common.controllers.ControlContextProvider;
 import org.apache.helix.controller.LogUtil;
 import org.apache.helix.model.ResourceAssignment;
@@ -37,10 +42,13 @@ import org.apache.helix.model.ResourceConfig;
 import org.apache.helix.task.AssignableInstanceManager;
 import org.apache.helix.task.JobConfig;
 import org.apache.helix.task.JobContext;
+import org.apache.helix.task.JobContextBuckets;
 import org.apache.helix.task.RuntimeJobDag;
 import org.apache.helix.task.TaskConstants;
+import org.apache.helix.task.TaskState;
 import org.apache.helix.task.WorkflowConfig;
 import org.apache.helix.task.WorkflowContext;
+import org.apache.helix.util.HelixUtil;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +59,10 @@ import org.slf4j.LoggerFactory;
 public class TaskDataCache extends AbstractDataCache {
   private static final Logger LOG = LoggerFactory.getLogger(TaskDataCache.class.getName());
   private static final String NAME = "NAME";
+  private static final int DEFAULT_CONTEXT_BUCKET_SIZE = 1000;
+  private static final long DEFAULT_CONTEXT_TIMESTAMP_WRITE_DELAY = 60 * 1000L;
+  private static final Set<TaskState> FINISHED_JOB_STATES = new HashSet<>(Arrays
+      .asList(TaskState.COMPLETED, TaskState.FAILED, TaskState.TIMED_OUT, TaskState.ABORTED));
 
   private Map<String, JobConfig> _jobConfigMap = new HashMap<>();
   private Map<String, RuntimeJobDag> _runtimeJobDagMap = new HashMap<>();
@@ -58,21 +70,54 @@ public class TaskDataCache extends AbstractDataCache {
 
   // TODO: context and previous assignment should be wrapped into a class. Otherwise, int the future,
   // concurrency will be hard to handle.
+  // The accessors of contexts and previous assignments are synchronized because TaskSchedulingStage
+  // may schedule the workflows of different quota types in parallel.
   private Map<String, ZNRecord> _contextMap = new HashMap<>();
   private Map<String, ZNRecord> _prevAssignmentMap = new HashMap<>();
   private Set<String> _prevAssignmentToUpdate = new HashSet<>();
   private Set<String> _prevAssignmentToRemove = new HashSet<>();
   private Set<String> _contextToUpdate = new HashSet<>();
   private Set<String> _contextToRemove = new HashSet<>();
+  // Job contexts stored in buckets of partitions, job name -> bucket size
+  private Map<String, Integer> _contextBucketSizes = new HashMap<>();
+  // The last updated JobContexts, they keep tracking the partitions changed until persisted
+  private Map<String, JobContext> _jobContextMap = new HashMap<>();
+  // Partitions changed by the JobContexts that were replaced in _jobContextMap
+  private Map<String, Set<Integer>> _changedContextPartitions = new HashMap<>();
+  // Fingerprints of the contexts and previous assignments taken before they are first changed, or
+  // when they are written. A record whose fingerprint is unchanged is not written back. A null
+  // fingerprint means the previous content is unknown and the record is always written.
+  private Map<String, TaskDataFingerprint> _contextFingerprints = new HashMap<>();
+  private Map<String, TaskDataFingerprint> _prevAssignmentFingerprints = new HashMap<>();
+  // Contexts whose bookkeeping timestamps changed without any other change, context name -> time
+  // the first of these changes was skipped. They are written with the next other change of the
+  // context, or once the timestamp write delay has passed.
+  private Map<String, Long> _timestampOnlyChangeTimes = new HashMap<>();
+  // Stats of the last persistDataChanges
+  private long _persistedBytes;
+  private int _persistedRecords;
+  private int _skippedRecords;
+  private final int _contextBucketThreshold = HelixUtil.getSystemPropertyAsInt(
+      SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_THRESHOLD, Integer.MAX_VALUE);
+  private final int _contextBucketSize = HelixUtil.getSystemPropertyAsInt(
+      SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_SIZE, DEFAULT_CONTEXT_BUCKET_SIZE);
+  // 0 writes the timestamps right away, so it is not read with HelixUtil, which only takes
+  // positive values
+  private final long _contextTimestampWriteDelay = Math.max(0L,
+      Long.getLong(SystemPropertyKeys.TASK_CONTEXT_TIMESTAMP_WRITE_DELAY,
+          DEFAULT_CONTEXT_TIMESTAMP_WRITE_DELAY));
   // The following fields have been added for quota-based task scheduling
   private final AssignableInstanceManager _assignableInstanceManager =
       new AssignableInstanceManager();
+  // Completed jobs by expiry time, for the task garbage collection
+  private final JobExpiryIndex _jobExpiryIndex = new JobExpiryIndex();
   // Current usage for this scheduled jobs is used for differentiate the jobs has been processed in
   // JobDispatcher from RESOURCE_TO_BALANCE to reduce the redundant computation.
   private Set<String> _dispatchedJobs = new HashSet<>();
 
   private enum TaskDataType {
     CONTEXT,
+    CONTEXT_BUCKETS,
     PREV_ASSIGNMENT
   }
 
@@ -112,7 +157,8 @@ public class TaskDataCache extends AbstractDataCache {
           WorkflowConfig workflowConfig = _workflowConfigMap.get(entry.getKey());
           _runtimeJobDagMap.put(entry.getKey(), new RuntimeJobDag(workflowConfig.getJobDag(),
               workflowConfig.isJobQueue() || !workflowConfig.isTerminable(),
-              workflowConfig.getParallelJobs(), workflowConfig.getRecord().getVersion()));
+              workflowConfig.getParallelJobs(), workflowConfig.getRecord().getVersion(),
+              Collections.<String>emptySet(), getStartedJobs(entry.getKey())));
         }
       } else if (entry.getValue().getRecord().getSimpleFields()
           .containsKey(WorkflowConfig.WorkflowConfigProperty.WorkflowID.name())) {
@@ -163,23 +209,131 @@ public class TaskDataCache extends AbstractDataCache {
     for (String changedWorkflow : workflowsUpdated) {
       if (_workflowConfigMap.containsKey(changedWorkflow)) {
         WorkflowConfig workflowConfig = _workflowConfigMap.get(changedWorkflow);
+        // The jobs finished in the previous DAG are not walked through again
         _runtimeJobDagMap.put(changedWorkflow, new RuntimeJobDag(workflowConfig.getJobDag(),
             workflowConfig.isJobQueue() || !workflowConfig.isTerminable(),
-            workflowConfig.getParallelJobs(), workflowConfig.getRecord().getVersion()));
+            workflowConfig.getParallelJobs(), workflowConfig.getRecord().getVersion(),
+            getFinishedJobs(changedWorkflow, _runtimeJobDagMap.get(changedWorkflow)),
+            getStartedJobs(changedWorkflow)));
       }
     }
 
     _dispatchedJobs.clear();
     _runtimeJobDagMap.keySet().retainAll(_workflowConfigMap.keySet());
     _jobConfigMap = newJobConfigs;
+    refreshJobExpiryIndex();
     return true;
   }
 
+  /**
+   * @return the jobs finished in the runtime job DAG of the workflow that are also in a final
+   *         state in the workflow context
+   */
+  private Set<String> getFinishedJobs(String workflow, RuntimeJobDag runtimeJobDag) {
+    ZNRecord workflowContextRecord = _contextMap.get(workflow);
+    if (runtimeJobDag == null || workflowContextRecord == null) {
+      return Collections.emptySet();
+    }
+    WorkflowContext workflowContext = new WorkflowContext(workflowContextRecord);
+    Set<String> finishedJobs = new HashSet<>();
+    for (String job : runtimeJobDag.getFinishedJobs()) {
+      if (FINISHED_JOB_STATES.contains(workflowContext.getJobState(job))) {
+        finishedJobs.add(job);
+      }
+    }
+    return finishedJobs;
+  }
+
+  /**
+   * @return the jobs that are started but not in a final state in the workflow context
+   */
+  private Set<String> getStartedJobs(String workflow) {
+    ZNRecord workflowContextRecord = _contextMap.get(workflow);
+    if (workflowContextRecord == null) {
+      return Collections.emptySet();
+    }
+    Set<String> startedJobs = new HashSet<>();
+    for (Map.Entry<String, TaskState> jobState : new WorkflowContext(workflowContextRecord)
+        .getJobStates().entrySet()) {
+      if (jobState.getValue() != TaskState.NOT_STARTED
+          && !FINISHED_JOB_STATES.contains(jobState.getValue())) {
+        startedJobs.add(jobState.getKey());
+      }
+    }
+    return startedJobs;
+  }
+
+  /**
+   * Add the newly completed jobs to the expiry index and remove the deleted ones. A completed job
+   * does not finish again, so only the job contexts of the jobs not indexed yet are looked at.
+   */
+  private void refreshJobExpiryIndex() {
+    _jobExpiryIndex.retainAll(_jobConfigMap.keySet());
+    for (String workflow : _workflowConfigMap.keySet()) {
+      ZNRecord workflowContext = _contextMap.get(workflow);
+      if (workflowContext == null) {
+        continue;
+      }
+      for (Map.Entry<String, TaskState> jobState : new WorkflowContext(workflowContext)
+          .getJobStates().entrySet()) {
+        String job = jobState.getKey();
+        if (jobState.getValue() != TaskState.COMPLETED || _jobExpiryIndex.contains(job)) {
+          continue;
+        }
+        JobConfig jobConfig = _jobConfigMap.get(job);
+        ZNRecord jobContext = _contextMap.get(job);
+        if (jobConfig != null && jobContext != null) {
+          long finishTime = new JobContext(jobContext).getFinishTime();
+          if (finishTime != WorkflowContext.UNFINISHED) {
+            _jobExpiryIndex.update(job, finishTime + jobConfig.getExpiry());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Return the completed jobs that passed their expiry time, earliest expiry first.
+   *
+   * @param currentTime the current time
+   * @param workflows the workflows to purge the jobs of
+   * @param limit max number of jobs to return
+   *
+   * @return workflow -> expired jobs of the workflow
+   */
+  public synchronized Map<String, Set<String>> getExpiredJobs(long currentTime,
+      Set<String> workflows, int limit) {
+    Map<String, Set<String>> expiredJobs = new LinkedHashMap<>();
+    int numJobs = 0;
+    Iterator<String> jobs = _jobExpiryIndex.getExpiredJobs(currentTime);
+    while (numJobs < limit && jobs.hasNext()) {
+      String job = jobs.next();
+      JobConfig jobConfig = _jobConfigMap.get(job);
+      if (jobConfig != null && workflows.contains(jobConfig.getWorkflow())) {
+        expiredJobs.computeIfAbsent(jobConfig.getWorkflow(), k -> new HashSet<>()).add(job);
+        numJobs++;
+      }
+    }
+    return expiredJobs;
+  }
+
   private void refreshContextsAndPreviousAssignments(HelixDataAccessor accessor) {
     // TODO: Need an optimize for reading context only if the refresh is needed.
     long start = System.currentTimeMillis();
+    // The timestamps that are not written yet are kept over the reload
+    Map<String, Map<String, String>> unwrittenTimestamps = new HashMap<>();
+    for (String resourceName : _timestampOnlyChangeTimes.keySet()) {
+      if (_contextMap.get(resourceName) != null) {
+        unwrittenTimestamps.put(resourceName,
+            TaskDataFingerprint.getTimestampFields(_contextMap.get(resourceName)));
+      }
+    }
     _contextMap.clear();
+    _jobContextMap.clear();
+    _changedContextPartitions.clear();
+    _contextFingerprints.clear();
     _prevAssignmentMap.clear();
+    _prevAssignmentFingerprints.clear();
     if (_controlContextProvider.getClusterName() == null || _controlContextProvider.getClusterName()
         .equalsIgnoreCase(UNKNOWN_CLUSTER)) {
       return;
@@ -204,6 +358,8 @@ public class TaskDataCache extends AbstractDataCache {
     List<ZNRecord> prevAssignments =
         accessor.getBaseDataAccessor().get(prevAssignmentPaths, null, 0, true);
 
+    readContextBuckets(accessor, contextPaths, contexts, childNames);
+
     for (int i = 0; i < contexts.size(); i++) {
       ZNRecord context = contexts.get(i);
       if (context != null && context.getSimpleField(NAME) != null) {
@@ -221,6 +377,15 @@ public class TaskDataCache extends AbstractDataCache {
       }
     }
 
+    for (Map.Entry<String, Map<String, String>> entry : unwrittenTimestamps.entrySet()) {
+      ZNRecord context = _contextMap.get(entry.getKey());
+      if (context != null) {
+        takeFingerprint(_contextFingerprints, entry.getKey(), context);
+        context.getSimpleFields().putAll(entry.getValue());
+        _contextToUpdate.add(entry.getKey());
+      }
+    }
+
     if (LOG.isDebugEnabled()) {
       LogUtil.logDebug(LOG, genEventInfo(),
           "# of workflow/job context read from zk: " + _contextMap.size() + ". Take " + (
@@ -228,6 +393,34 @@ public class TaskDataCache extends AbstractDataCache {
     }
   }
 
+  /**
+   * Replace the bucketed job contexts by their full records
+   */
+  private void readContextBuckets(HelixDataAccessor accessor, List<String> contextPaths,
+      List<ZNRecord> contexts, List<String> resourceNames) {
+    _contextBucketSizes.clear();
+    List<Integer> bucketedContexts = new ArrayList<>();
+    List<String> bucketPaths = new ArrayList<>();
+    for (int i = 0; i < contexts.size(); i++) {
+      if (JobContextBuckets.isBucketed(contexts.get(i))) {
+        bucketedContexts.add(i);
+        bucketPaths.addAll(JobContextBuckets.getBucketPaths(contextPaths.get(i), contexts.get(i)));
+      }
+    }
+    if (bucketedContexts.isEmpty()) {
+      return;
+    }
+    List<ZNRecord> buckets = accessor.getBaseDataAccessor().get(bucketPaths, null, 0, true);
+    int offset = 0;
+    for (int i : bucketedContexts) {
+      ZNRecord root = contexts.get(i);
+      int numBuckets = JobContextBuckets.getBucketPaths(contextPaths.get(i), root).size();
+      contexts.set(i, JobContextBuckets.decode(root, buckets.subList(offset, offset + numBuckets)));
+      offset += numBuckets;
+      _contextBucketSizes.put(resourceNames.get(i), JobContextBuckets.getBucketSize(root));
+    }
+  }
+
   /**
    * Returns job config map
    *
@@ -275,8 +468,10 @@ public class TaskDataCache extends AbstractDataCache {
    *
    * @return
    */
-  public JobContext getJobContext(String resourceName) {
+  public synchronized JobContext getJobContext(String resourceName) {
     if (_contextMap.containsKey(resourceName) && _contextMap.get(resourceName) != null) {
+      // The map fields of the record are shared with, and changed through, the returned context
+      takeFingerprint(_contextFingerprints, resourceName, _contextMap.get(resourceName));
       return new JobContext(_contextMap.get(resourceName));
     }
     return null;
@@ -289,8 +484,10 @@ public class TaskDataCache extends AbstractDataCache {
    *
    * @return
    */
-  public WorkflowContext getWorkflowContext(String resourceName) {
+  public synchronized WorkflowContext getWorkflowContext(String resourceName) {
     if (_contextMap.containsKey(resourceName) && _contextMap.get(resourceName) != null) {
+      // The map fields of the record are shared with, and changed through, the returned context
+      takeFingerprint(_contextFingerprints, resourceName, _contextMap.get(resourceName));
       return new WorkflowContext(_contextMap.get(resourceName));
     }
     return null;
@@ -299,14 +496,20 @@ public class TaskDataCache extends AbstractDataCache {
   /**
    * Update context of the Job
    */
-  public void updateJobContext(String resourceName, JobContext jobContext) {
+  public synchronized void updateJobContext(String resourceName, JobContext jobContext) {
+    JobContext previousJobContext = _jobContextMap.put(resourceName, jobContext);
+    if (previousJobContext != null && previousJobContext != jobContext) {
+      // the changes of the previous object are replaced by the new record
+      _changedContextPartitions.computeIfAbsent(resourceName, k -> new HashSet<>())
+          .addAll(previousJobContext.getChangedPartitions());
+    }
     updateContext(resourceName, jobContext.getRecord());
   }
 
   /**
    * Update context of the Workflow
    */
-  public void updateWorkflowContext(String resourceName, WorkflowContext workflowContext) {
+  public synchronized void updateWorkflowContext(String resourceName, WorkflowContext workflowContext) {
     updateContext(resourceName, workflowContext.getRecord());
   }
 
@@ -314,66 +517,279 @@ public class TaskDataCache extends AbstractDataCache {
    * Update context of the Workflow or Job
    */
   private void updateContext(String resourceName, ZNRecord record) {
-    _contextMap.put(resourceName, record);
+    ZNRecord previous = _contextMap.put(resourceName, record);
+    takeFingerprint(_contextFingerprints, resourceName, previous == record ? null : previous);
     _contextToUpdate.add(resourceName);
   }
 
-  public void persistDataChanges(HelixDataAccessor accessor) {
+  /**
+   * Keep the fingerprint of a record before it is changed for the first time since the refresh
+   * @param record the current record, null if unknown
+   */
+  private static void takeFingerprint(Map<String, TaskDataFingerprint> fingerprints,
+      String resourceName, ZNRecord record) {
+    if (!fingerprints.containsKey(resourceName)) {
+      fingerprints.put(resourceName, record == null ? null : TaskDataFingerprint.of(record));
+    }
+  }
+
+  public synchronized void persistDataChanges(HelixDataAccessor accessor) {
+    _persistedBytes = 0L;
+    _persistedRecords = 0;
+    _skippedRecords = 0;
     // Do not update it if the is need to be remove
     _contextToUpdate.removeAll(_contextToRemove);
-    batchUpdateData(accessor, new ArrayList<>(_contextToUpdate), _contextMap, _contextToUpdate,
-        TaskDataType.CONTEXT);
-    batchDeleteData(accessor, new ArrayList<>(_contextToRemove), TaskDataType.CONTEXT);
-    _contextToRemove.clear();
-
     _prevAssignmentToUpdate.removeAll(_prevAssignmentToRemove);
-    batchUpdateData(accessor, new ArrayList<>(_prevAssignmentToUpdate), _prevAssignmentMap,
-        _prevAssignmentToUpdate, TaskDataType.PREV_ASSIGNMENT);
-    batchDeleteData(accessor, new ArrayList<>(_prevAssignmentToRemove),
-        TaskDataType.PREV_ASSIGNMENT);
+
+    // The changed contexts and previous assignments of all the workflows are written in one batch
+    List<String> dataUpdateNames = new ArrayList<>();
+    List<TaskDataType> dataUpdateTypes = new ArrayList<>();
+    List<TaskDataFingerprint> dataUpdateFingerprints = new ArrayList<>();
+    for (String resourceName : new ArrayList<>(_contextToUpdate)) {
+      TaskDataFingerprint fingerprint = getChangedFingerprint(resourceName, _contextMap,
+          _contextFingerprints, _contextToUpdate, _timestampOnlyChangeTimes);
+      if (fingerprint != null && !updateBucketedJobContext(accessor, resourceName, fingerprint)) {
+        dataUpdateNames.add(resourceName);
+        dataUpdateTypes.add(TaskDataType.CONTEXT);
+        dataUpdateFingerprints.add(fingerprint);
+      }
+    }
+    for (String resourceName : new ArrayList<>(_prevAssignmentToUpdate)) {
+      TaskDataFingerprint fingerprint = getChangedFingerprint(resourceName, _prevAssignmentMap,
+          _prevAssignmentFingerprints, _prevAssignmentToUpdate, null);
+      if (fingerprint != null) {
+        dataUpdateNames.add(resourceName);
+        dataUpdateTypes.add(TaskDataType.PREV_ASSIGNMENT);
+        dataUpdateFingerprints.add(fingerprint);
+      }
+    }
+    batchUpdateData(accessor, dataUpdateNames, dataUpdateTypes, dataUpdateFingerprints);
+
+    List<String> dataPathsToRemove = new ArrayList<>();
+    for (String resourceName : _contextToRemove) {
+      if (_contextBucketSizes.remove(resourceName) != null) {
+        // the buckets are removed recursively
+        dataPathsToRemove.add(getTaskDataPath(resourceName, TaskDataType.CONTEXT_BUCKETS));
+      }
+      dataPathsToRemove.add(getTaskDataPath(resourceName, TaskDataType.CONTEXT));
+    }
+    for (String resourceName : _prevAssignmentToRemove) {
+      dataPathsToRemove.add(getTaskDataPath(resourceName, TaskDataType.PREV_ASSIGNMENT));
+    }
+    batchDeleteData(accessor, dataPathsToRemove);
+    _contextToRemove.clear();
     _prevAssignmentToRemove.clear();
   }
 
-  private void batchUpdateData(HelixDataAccessor accessor, List<String> dataUpdateNames,
-      Map<String, ZNRecord> dataMap, Set<String> dataToUpdate, TaskDataType taskDataType) {
-    List<String> contextUpdatePaths = new ArrayList<>();
-    List<ZNRecord> updatedData = new ArrayList<>();
-    for (String resourceName : dataUpdateNames) {
-      if (dataMap.get(resourceName) != null) {
-        contextUpdatePaths.add(getTaskDataPath(resourceName, taskDataType));
-        updatedData.add(dataMap.get(resourceName));
+  /**
+   * @return the approximate number of bytes written by the last persistDataChanges
+   */
+  public synchronized long getPersistedBytes() {
+    return _persistedBytes;
+  }
+
+  /**
+   * @return the number of contexts and previous assignments written by the last persistDataChanges
+   */
+  public synchronized int getPersistedRecords() {
+    return _persistedRecords;
+  }
+
+  /**
+   * @return the number of contexts and previous assignments updated without any change, or with
+   *         changes of timestamps only, which were not written by the last persistDataChanges
+   */
+  public synchronized int getSkippedRecords() {
+    return _skippedRecords;
+  }
+
+  /**
+   * @param timestampOnlyChangeTimes the pending changes of timestamps only, null if the writes of
+   *          these changes must not be delayed
+   * @return the fingerprint of the record to write, or null if the record is unchanged since it was
+   *         read or last written. The record does not need to be updated anymore in that case,
+   *         unless only its timestamps changed and their write is delayed.
+   */
+  private TaskDataFingerprint getChangedFingerprint(String resourceName,
+      Map<String, ZNRecord> dataMap, Map<String, TaskDataFingerprint> fingerprints,
+      Set<String> dataToUpdate, Map<String, Long> timestampOnlyChangeTimes) {
+    ZNRecord record = dataMap.get(resourceName);
+    if (record == null) {
+      dataToUpdate.remove(resourceName);
+      if (timestampOnlyChangeTimes != null) {
+        timestampOnlyChangeTimes.remove(resourceName);
+      }
+      return null;
+    }
+    TaskDataFingerprint fingerprint = TaskDataFingerprint.of(record);
+    TaskDataFingerprint previous = fingerprints.get(resourceName);
+    if (fingerprint.equals(previous)) {
+      dataToUpdate.remove(resourceName);
+      if (timestampOnlyChangeTimes != null) {
+        timestampOnlyChangeTimes.remove(resourceName);
       }
+      _skippedRecords++;
+      return null;
+    }
+    if (timestampOnlyChangeTimes != null && previous != null && fingerprint
+        .isOnlyTimestampChanged(previous)) {
+      long currentTime = System.currentTimeMillis();
+      Long firstChangeTime = timestampOnlyChangeTimes.putIfAbsent(resourceName, currentTime);
+      if (firstChangeTime == null) {
+        firstChangeTime = currentTime;
+      }
+      if (currentTime - firstChangeTime < _contextTimestampWriteDelay) {
+        // The record stays to be updated
+        _skippedRecords++;
+        return null;
+      }
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Write a job context in buckets if it is already bucketed or if it has too many partitions.
+   * Only the buckets of the partitions changed since the last write are written.
+   * @return false if the context is not bucketed and must be written as a whole
+   */
+  private boolean updateBucketedJobContext(HelixDataAccessor accessor, String resourceName,
+      TaskDataFingerprint fingerprint) {
+    ZNRecord record = _contextMap.get(resourceName);
+    JobContext jobContext = _jobContextMap.get(resourceName);
+    boolean tracked = jobContext != null && jobContext.getRecord() == record;
+    TaskDataFingerprint previous = _contextFingerprints.get(resourceName);
+    Integer bucketSize = _contextBucketSizes.get(resourceName);
+    Set<Integer> buckets = null;
+    if (bucketSize != null) {
+      Set<Integer> changedPartitions = null;
+      if (previous != null) {
+        // the map fields of a job context are its partitions
+        changedPartitions = getPartitions(fingerprint.getChangedMapFields(previous));
+      } else if (tracked) {
+        changedPartitions = new HashSet<>(jobContext.getChangedPartitions());
+        changedPartitions.addAll(
+            _changedContextPartitions.getOrDefault(resourceName, Collections.emptySet()));
+      }
+      if (changedPartitions != null) {
+        buckets = JobContextBuckets.getBuckets(changedPartitions, bucketSize);
+      }
+      // otherwise the changes are unknown and all the buckets are written
+    } else if (tracked && record.getMapFields().size() > _contextBucketThreshold) {
+      // convert the context, all the buckets are written
+      bucketSize = _contextBucketSize;
+    } else {
+      return false;
+    }
+
+    if (JobContextBuckets.write(accessor.getBaseDataAccessor(),
+        getTaskDataPath(resourceName, TaskDataType.CONTEXT), record, bucketSize, buckets)) {
+      _contextBucketSizes.put(resourceName, bucketSize);
+      if (tracked) {
+        jobContext.clearChangedPartitions();
+      }
+      _changedContextPartitions.remove(resourceName);
+      _contextToUpdate.remove(resourceName);
+      _contextFingerprints.put(resourceName, fingerprint);
+      _timestampOnlyChangeTimes.remove(resourceName);
+      _persistedBytes += getBucketedSize(record, fingerprint, bucketSize, buckets);
+      _persistedRecords++;
+    } else {
+      LogUtil.logWarn(LOG, _controlContextProvider.getClusterEventId(),
+          String.format("Failed to update the bucketed CONTEXT for %s", resourceName));
+    }
+    return true;
+  }
+
+  /**
+   * @return the partition ids, or null if any of the names is not a partition id
+   */
+  private static Set<Integer> getPartitions(Set<String> partitionNames) {
+    Set<Integer> partitions = new HashSet<>();
+    for (String partitionName : partitionNames) {
+      Integer partition = getPartition(partitionName);
+      if (partition == null) {
+        return null;
+      }
+      partitions.add(partition);
+    }
+    return partitions;
+  }
+
+  private static Integer getPartition(String partitionName) {
+    try {
+      return Integer.parseInt(partitionName);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return the approximate size of the context node and of the given buckets of a job context
+   */
+  private static long getBucketedSize(ZNRecord record, TaskDataFingerprint fingerprint,
+      int bucketSize, Set<Integer> buckets) {
+    long size = fingerprint.getSize();
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      Integer partition = getPartition(entry.getKey());
+      if (buckets != null && (partition == null || !buckets
+          .contains(JobContextBuckets.getBucket(partition, bucketSize)))) {
+        size -= TaskDataFingerprint.sizeOf(entry.getKey(), entry.getValue());
+      }
+    }
+    return size;
+  }
+
+  private void batchUpdateData(HelixDataAccessor accessor, List<String> dataUpdateNames,
+      List<TaskDataType> dataUpdateTypes, List<TaskDataFingerprint> dataUpdateFingerprints) {
+    if (dataUpdateNames.isEmpty()) {
+      return;
+    }
+    List<String> dataUpdatePaths = new ArrayList<>(dataUpdateNames.size());
+    List<ZNRecord> updatedData = new ArrayList<>(dataUpdateNames.size());
+    for (int i = 0; i < dataUpdateNames.size(); i++) {
+      String resourceName = dataUpdateNames.get(i);
+      dataUpdatePaths.add(getTaskDataPath(resourceName, dataUpdateTypes.get(i)));
+      updatedData.add(dataUpdateTypes.get(i) == TaskDataType.CONTEXT ? _contextMap.get(resourceName)
+          : _prevAssignmentMap.get(resourceName));
     }
 
     boolean[] updateSuccess = accessor.getBaseDataAccessor()
-        .setChildren(contextUpdatePaths, updatedData, AccessOption.PERSISTENT);
+        .setChildren(dataUpdatePaths, updatedData, AccessOption.PERSISTENT);
 
     for (int i = 0; i < updateSuccess.length; i++) {
+      String resourceName = dataUpdateNames.get(i);
       if (updateSuccess[i]) {
-        dataToUpdate.remove(dataUpdateNames.get(i));
+        if (dataUpdateTypes.get(i) == TaskDataType.CONTEXT) {
+          _contextToUpdate.remove(resourceName);
+          _contextFingerprints.put(resourceName, dataUpdateFingerprints.get(i));
+          _timestampOnlyChangeTimes.remove(resourceName);
+        } else {
+          _prevAssignmentToUpdate.remove(resourceName);
+          _prevAssignmentFingerprints.put(resourceName, dataUpdateFingerprints.get(i));
+        }
+        _persistedBytes += dataUpdateFingerprints.get(i).getSize();
+        _persistedRecords++;
       } else {
         LogUtil.logWarn(LOG, _controlContextProvider.getClusterEventId(), String
-            .format("Failed to update the %s for %s", taskDataType.name(), dataUpdateNames.get(i)));
+            .format("Failed to update the %s for %s", dataUpdateTypes.get(i).name(),
+                resourceName));
       }
     }
   }
 
-  private void batchDeleteData(HelixDataAccessor accessor, List<String> contextNamesToRemove,
-      TaskDataType taskDataType) {
-
+  private void batchDeleteData(HelixDataAccessor accessor, List<String> dataPathsToRemove) {
+    if (dataPathsToRemove.isEmpty()) {
+      return;
+    }
     // Delete contexts
     // We can not leave the context here since some of the deletion happens for cleaning workflow
     // If we leave it in the memory, Helix will not allow user create it with same name.
     // TODO: Let's have periodical clean up thread that could remove deletion failed contexts.
-    List<String> contextPathsToRemove = new ArrayList<>();
-    for (String resourceName : contextNamesToRemove) {
-      contextPathsToRemove.add(getTaskDataPath(resourceName, taskDataType));
-    }
 
     // TODO: current behavior is when you delete non-existing data will return false.
     // Once the behavior fixed, we can add retry logic back. Otherwise, it will stay in memory and
     // not allow same workflow name recreation.
-    accessor.getBaseDataAccessor().remove(contextPathsToRemove, AccessOption.PERSISTENT);
+    accessor.getBaseDataAccessor().remove(dataPathsToRemove, AccessOption.PERSISTENT);
   }
 
   /**
@@ -399,9 +815,11 @@ public class TaskDataCache extends AbstractDataCache {
    *
    * @param resourceName
    */
-  public void removeContext(String resourceName) {
+  public synchronized void removeContext(String resourceName) {
     if (_contextMap.containsKey(resourceName)) {
       _contextMap.remove(resourceName);
+      _contextFingerprints.remove(resourceName);
+      _timestampOnlyChangeTimes.remove(resourceName);
       _contextToRemove.add(resourceName);
     }
   }
@@ -427,17 +845,19 @@ public class TaskDataCache extends AbstractDataCache {
     switch (taskDataType) {
     case CONTEXT:
       return String.format("%s/%s", prevFix, TaskConstants.CONTEXT_NODE);
+    case CONTEXT_BUCKETS:
+      return String.format("%s/%s", prevFix, TaskConstants.CONTEXT_BUCKETS_NODE);
     case PREV_ASSIGNMENT:
       return String.format("%s/%s", prevFix, TaskConstants.PREV_RA_NODE);
     }
     return null;
   }
 
-  public void dispatchJob(String jobName) {
+  public synchronized void dispatchJob(String jobName) {
     _dispatchedJobs.add(jobName);
   }
 
-  public void removeDispatchedJob(String jobName) {
+  public synchronized void removeDispatchedJob(String jobName) {
     _dispatchedJobs.remove(jobName);
   }
 
@@ -452,18 +872,25 @@ public class TaskDataCache extends AbstractDataCache {
     return null;
   }
 
-  public ResourceAssignment getPreviousAssignment(String resourceName) {
+  public synchronized ResourceAssignment getPreviousAssignment(String resourceName) {
+    if (_prevAssignmentMap.get(resourceName) != null) {
+      takeFingerprint(_prevAssignmentFingerprints, resourceName,
+          _prevAssignmentMap.get(resourceName));
+    }
     return _prevAssignmentMap.get(resourceName) != null ? new ResourceAssignment(
         _prevAssignmentMap.get(resourceName)) : null;
   }
 
-  public void setPreviousAssignment(String resourceName, ResourceAssignment prevAssignment) {
-    _prevAssignmentMap.put(resourceName, prevAssignment.getRecord());
+  public synchronized void setPreviousAssignment(String resourceName, ResourceAssignment prevAssignment) {
+    ZNRecord previous = _prevAssignmentMap.put(resourceName, prevAssignment.getRecord());
+    takeFingerprint(_prevAssignmentFingerprints, resourceName,
+        previous == prevAssignment.getRecord() ? null : previous);
     _prevAssignmentToUpdate.add(resourceName);
   }
 
-  public void removePrevAssignment(String resourceName) {
+  public synchronized void removePrevAssignment(String resourceName) {
     _prevAssignmentMap.remove(resourceName);
+    _prevAssignmentFingerprints.remove(resourceName);
     _prevAssignmentToRemove.add(resourceName);
   }
 }
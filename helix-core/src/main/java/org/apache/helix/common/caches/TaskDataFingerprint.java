@@ -0,0 +1,227 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+
+/**
+ * Fingerprint of the fields of a task data record, such as a context or a previous assignment.
+ * Comparing the fingerprints taken before and after a pipeline tells which fields changed, so that
+ * records updated without any change are not written again. Every map field has its own 64-bit
+ * hash; the simple fields and the list fields have one hash each. The bookkeeping timestamps of
+ * the workflow contexts are hashed apart from the other simple fields, so that a change of these
+ * timestamps only can be told apart. Hashes of entries are summed, so they do not depend on the
+ * iteration order of the maps.
+ */
+class TaskDataFingerprint {
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+  // Approximate bytes of JSON syntax around every entry: quotes, colon and comma
+  private static final int ENTRY_OVERHEAD = 6;
+  // Simple fields of the WorkflowContext that only hold bookkeeping timestamps. START_TIME,
+  // FINISH_TIME and EXECUTION_START_TIME are not among them: the job expiry, the purge and the
+  // timeouts read them, so they are hashed with the other simple fields and written right away.
+  private static final Set<String> TIMESTAMP_FIELDS =
+      Collections.unmodifiableSet(new HashSet<>(Arrays.asList("LAST_PURGE_TIME")));
+
+  private final long _simpleFieldsHash;
+  private final long _timestampFieldsHash;
+  private final long _listFieldsHash;
+  private final Map<String, Long> _mapFieldHashes;
+  private final long _size;
+
+  private TaskDataFingerprint(long simpleFieldsHash, long timestampFieldsHash,
+      long listFieldsHash, Map<String, Long> mapFieldHashes, long size) {
+    _simpleFieldsHash = simpleFieldsHash;
+    _timestampFieldsHash = timestampFieldsHash;
+    _listFieldsHash = listFieldsHash;
+    _mapFieldHashes = mapFieldHashes;
+    _size = size;
+  }
+
+  static TaskDataFingerprint of(ZNRecord record) {
+    long simpleFieldsHash = 0L;
+    long timestampFieldsHash = 0L;
+    long size = sizeOf(record.getId());
+    for (Map.Entry<String, String> entry : record.getSimpleFields().entrySet()) {
+      if (TIMESTAMP_FIELDS.contains(entry.getKey())) {
+        timestampFieldsHash += hashEntry(entry.getKey(), entry.getValue());
+      } else {
+        simpleFieldsHash += hashEntry(entry.getKey(), entry.getValue());
+      }
+      size += sizeOf(entry.getKey()) + sizeOf(entry.getValue());
+    }
+
+    long listFieldsHash = 0L;
+    for (Map.Entry<String, List<String>> entry : record.getListFields().entrySet()) {
+      // The order of a list matters
+      long hash = hash(entry.getKey(), FNV_OFFSET_BASIS);
+      size += sizeOf(entry.getKey());
+      for (String value : entry.getValue()) {
+        hash = hash(value, hash);
+        size += sizeOf(value);
+      }
+      listFieldsHash += mix(hash);
+    }
+
+    Map<String, Long> mapFieldHashes = new HashMap<>();
+    for (Map.Entry<String, Map<String, String>> entry : record.getMapFields().entrySet()) {
+      long hash = 0L;
+      for (Map.Entry<String, String> field : entry.getValue().entrySet()) {
+        hash += hashEntry(field.getKey(), field.getValue());
+      }
+      mapFieldHashes.put(entry.getKey(), hash);
+      size += sizeOf(entry.getKey(), entry.getValue());
+    }
+    return new TaskDataFingerprint(simpleFieldsHash, timestampFieldsHash, listFieldsHash,
+        mapFieldHashes, size);
+  }
+
+  /**
+   * @return the timestamp simple fields of the record
+   */
+  static Map<String, String> getTimestampFields(ZNRecord record) {
+    Map<String, String> timestampFields = new HashMap<>();
+    for (String field : TIMESTAMP_FIELDS) {
+      if (record.getSimpleFields().containsKey(field)) {
+        timestampFields.put(field, record.getSimpleField(field));
+      }
+    }
+    return timestampFields;
+  }
+
+  /**
+   * @return the approximate size of the record in bytes once serialized
+   */
+  long getSize() {
+    return _size;
+  }
+
+  /**
+   * @param previous the fingerprint of the same record taken earlier
+   * @return true if the simple fields or the list fields are different
+   */
+  boolean isRootChanged(TaskDataFingerprint previous) {
+    return _simpleFieldsHash != previous._simpleFieldsHash
+        || _timestampFieldsHash != previous._timestampFieldsHash
+        || _listFieldsHash != previous._listFieldsHash;
+  }
+
+  /**
+   * @param previous the fingerprint of the same record taken earlier
+   * @return true if the timestamps are different and all the other fields are the same
+   */
+  boolean isOnlyTimestampChanged(TaskDataFingerprint previous) {
+    return _timestampFieldsHash != previous._timestampFieldsHash
+        && _simpleFieldsHash == previous._simpleFieldsHash
+        && _listFieldsHash == previous._listFieldsHash
+        && _mapFieldHashes.equals(previous._mapFieldHashes);
+  }
+
+  /**
+   * @param previous the fingerprint of the same record taken earlier
+   * @return the map fields that are added, removed or different
+   */
+  Set<String> getChangedMapFields(TaskDataFingerprint previous) {
+    Set<String> changed = new HashSet<>();
+    for (Map.Entry<String, Long> entry : _mapFieldHashes.entrySet()) {
+      if (!entry.getValue().equals(previous._mapFieldHashes.get(entry.getKey()))) {
+        changed.add(entry.getKey());
+      }
+    }
+    for (String mapField : previous._mapFieldHashes.keySet()) {
+      if (!_mapFieldHashes.containsKey(mapField)) {
+        changed.add(mapField);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return the approximate size of a map field in bytes once serialized
+   */
+  static long sizeOf(String key, Map<String, String> mapField) {
+    long size = sizeOf(key);
+    for (Map.Entry<String, String> field : mapField.entrySet()) {
+      size += sizeOf(field.getKey()) + sizeOf(field.getValue());
+    }
+    return size;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof TaskDataFingerprint)) {
+      return false;
+    }
+    TaskDataFingerprint that = (TaskDataFingerprint) obj;
+    return !isRootChanged(that) && _mapFieldHashes.equals(that._mapFieldHashes);
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(_simpleFieldsHash + _timestampFieldsHash + _listFieldsHash) * 31
+        + _mapFieldHashes.hashCode();
+  }
+
+  private static long sizeOf(String value) {
+    return value == null ? ENTRY_OVERHEAD : value.length() + ENTRY_OVERHEAD;
+  }
+
+  private static long hashEntry(String key, String value) {
+    return mix(hash(value, hash(key, FNV_OFFSET_BASIS)));
+  }
+
+  // FNV-1a over the chars of the string and a terminator, so that ("ab", "c") and ("a", "bc") are
+  // hashed differently
+  private static long hash(String value, long hash) {
+    if (value == null) {
+      return hash('\1', hash);
+    }
+    for (int i = 0; i < value.length(); i++) {
+      hash = hash(value.charAt(i), hash);
+    }
+    return hash('\0', hash);
+  }
+
+  private static long hash(char c, long hash) {
+    return (hash ^ c) * FNV_PRIME;
+  }
+
+  // The finalizer of MurmurHash3, so that the sum of the entry hashes does not cancel out
+  private static long mix(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -19,10 +19,10 @@ package org.apache.helix.controller.dataproviders;
  * under the License.
  */
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixDataAccessor;
@@ -66,7 +66,7 @@ public class WorkflowControllerDataProvider extends BaseControllerDataProvider {
 
   public WorkflowControllerDataProvider(String clusterName) {
     super(clusterName, PIPELINE_NAME);
-    _participantActiveTaskCount = new HashMap<>();
+    _participantActiveTaskCount = new ConcurrentHashMap<>();
     _taskDataCache = new TaskDataCache(this);
   }
 
@@ -148,6 +148,19 @@ public class WorkflowControllerDataProvider extends BaseControllerDataProvider {
     return _taskDataCache.getWorkflowConfigMap();
   }
 
+  /**
+   * Returns the completed jobs of the given workflows that passed their expiry time, earliest
+   * expiry first.
+   * @param currentTime
+   * @param workflows
+   * @param limit max number of jobs to return
+   * @return workflow -> expired jobs of the workflow
+   */
+  public Map<String, Set<String>> getExpiredJobs(long currentTime, Set<String> workflows,
+      int limit) {
+    return _taskDataCache.getExpiredJobs(currentTime, workflows, limit);
+  }
+
   /**
    * Returns workflow config
    * @param resource
@@ -165,6 +178,37 @@ public class WorkflowControllerDataProvider extends BaseControllerDataProvider {
     _participantActiveTaskCount.put(instance, taskCount);
   }
 
+  /**
+   * Reserve task slots on a participant without exceeding its capacity. Jobs that may be scheduled
+   * in parallel reserve the slots before assigning tasks, and release the slots they did not use.
+   * @param instance
+   * @param capacity max number of active tasks on the participant
+   * @param taskCount number of slots wanted
+   * @return the number of slots reserved, not positive if the participant is full
+   */
+  public int reserveParticipantTaskSlots(String instance, int capacity, int taskCount) {
+    while (true) {
+      Integer activeTaskCount = _participantActiveTaskCount.get(instance);
+      int reserved = Math.min(taskCount, capacity - activeTaskCount);
+      if (reserved <= 0 || _participantActiveTaskCount
+          .replace(instance, activeTaskCount, activeTaskCount + reserved)) {
+        return reserved;
+      }
+    }
+  }
+
+  /**
+   * Release task slots reserved by {@link #reserveParticipantTaskSlots(String, int, int)} that
+   * were not used
+   * @param instance
+   * @param taskCount
+   */
+  public void releaseParticipantTaskSlots(String instance, int taskCount) {
+    if (taskCount > 0) {
+      _participantActiveTaskCount.computeIfPresent(instance, (key, count) -> count - taskCount);
+    }
+  }
+
   /**
    * Reset RUNNING/INIT tasks count in JobRebalancer
    */
@@ -236,6 +280,15 @@ public class WorkflowControllerDataProvider extends BaseControllerDataProvider {
     return _taskDataCache;
   }
 
+  /**
+   * Returns the approximate number of bytes of contexts and previous assignments written back by
+   * the last pipeline.
+   * @return
+   */
+  public long getTaskDataBytesWritten() {
+    return _taskDataCache.getPersistedBytes();
+  }
+
   /**
    * Return map of WorkflowContexts or JobContexts
    * @return
@@ -135,6 +135,20 @@ public class CurrentStateComputationStage extends AbstractBaseStage {
               .format("Ignore a pending message %s for a non-exist resource %s and partition %s",
                   message.getMsgId(), resourceName, message.getPartitionName()));
         }
+      } else if (message.isBulkTransitionMessage()) {
+        // every partition of a bulk transition message has its own from/to state, so expand it
+        // into in-memory per-partition messages sharing the id of the bulk message
+        for (Message subMessage : message.expandBatchMessage(true)) {
+          Partition partition = resource.getPartition(subMessage.getPartitionName());
+          if (partition != null) {
+            setMessageState(currentStateOutput, resourceName, partition, instanceName,
+                subMessage);
+          } else {
+            LogUtil.logInfo(LOG, _eventId, String.format(
+                "Ignore a pending message %s for a non-exist resource %s and partition %s",
+                message.getMsgId(), resourceName, subMessage.getPartitionName()));
+          }
+        }
       } else {
         List<String> partitionNames = message.getPartitionNames();
         if (!partitionNames.isEmpty()) {
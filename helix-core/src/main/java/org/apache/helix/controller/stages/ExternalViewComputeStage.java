@@ -20,6 +20,7 @@ package org.apache.helix.controller.stages;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -35,6 +36,7 @@ import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.controller.LogUtil;
 import org.apache.helix.controller.dataproviders.ResourceControllerDataProvider;
 import org.apache.helix.controller.pipeline.AbstractAsyncBaseStage;
@@ -59,6 +61,11 @@ import org.slf4j.LoggerFactory;
 public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
   private static Logger LOG = LoggerFactory.getLogger(ExternalViewComputeStage.class);
 
+  // Whether to carry the transition completion times of the current states into the external view
+  private final boolean _stateEndTimeEnabled = Boolean.parseBoolean(
+      System.getProperty(SystemPropertyKeys.CONTROLLER_EXTERNAL_VIEW_STATE_END_TIME_ENABLED,
+          "false"));
+
   @Override
   public AsyncWorkerType getAsyncWorkerType() {
     return AsyncWorkerType.ExternalViewComputeWorker;
@@ -161,19 +168,38 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
     }
 
     int totalPendingMessageCount = 0;
+    ExternalView curExtView = curExtViews.get(resourceName);
+    Map<String, Long> prevEndTimes = null;
+    Map<String, Long> endTimes = null;
+    if (_stateEndTimeEnabled) {
+      prevEndTimes = curExtView == null ? Collections.<String, Long> emptyMap()
+          : curExtView.getStateEndTimes();
+      endTimes = new HashMap<>();
+    }
 
     for (Partition partition : resource.getPartitions()) {
       Map<String, String> currentStateMap =
           currentStateOutput.getCurrentStateMap(resourceName, partition);
       if (currentStateMap != null && currentStateMap.size() > 0) {
+        long endTime = -1L;
         for (String instance : currentStateMap.keySet()) {
           view.setState(partition.getPartitionName(), instance, currentStateMap.get(instance));
+          endTime = Math.max(endTime,
+              currentStateOutput.getEndTime(resourceName, partition, instance));
+        }
+        if (_stateEndTimeEnabled) {
+          setStateEndTime(view, curExtView, prevEndTimes, endTimes, partition.getPartitionName(),
+              endTime);
         }
       }
       totalPendingMessageCount +=
           currentStateOutput.getPendingMessageMap(resource.getResourceName(), partition).size();
     }
 
+    if (_stateEndTimeEnabled) {
+      view.setStateEndTimes(endTimes);
+    }
+
     // Update cluster status monitor mbean
     IdealState idealState = cache.getIdealState(resourceName);
     ResourceConfig resourceConfig = cache.getResourceConfig(resourceName);
@@ -191,7 +217,6 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
       }
     }
 
-    ExternalView curExtView = curExtViews.get(resourceName);
     // copy simplefields from IS, in cases where IS is deleted copy it from existing ExternalView
     if (idealState != null) {
       view.getRecord().getSimpleFields().putAll(idealState.getRecord().getSimpleFields());
@@ -215,6 +240,29 @@ public class ExternalViewComputeStage extends AbstractAsyncBaseStage {
     }
   }
 
+  /**
+   * Stamp the completion time of the latest transition of a partition. The previous stamp is kept
+   * while the state map of the partition does not change, so that the external view is not
+   * rewritten only because of a timestamp, and it never moves backward, e.g. when a replica goes
+   * offline and only older transitions remain.
+   */
+  private void setStateEndTime(ExternalView view, ExternalView curExtView,
+      Map<String, Long> prevEndTimes, Map<String, Long> endTimes, String partitionName,
+      long endTime) {
+    Long prevEndTime = prevEndTimes.get(partitionName);
+    if (prevEndTime == null) {
+      prevEndTime = -1L;
+    }
+    if (curExtView != null
+        && view.getStateMap(partitionName).equals(curExtView.getStateMap(partitionName))) {
+      endTime = prevEndTime;
+    }
+    endTime = Math.max(endTime, prevEndTime);
+    if (endTime >= 0) {
+      endTimes.put(partitionName, endTime);
+    }
+  }
+
   private void updateScheduledTaskStatus(ExternalView ev, HelixManager manager,
       IdealState taskQueueIdealState) {
     HelixDataAccessor accessor = manager.getHelixDataAccessor();
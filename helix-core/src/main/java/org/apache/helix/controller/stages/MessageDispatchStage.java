@@ -46,6 +46,7 @@ import org.slf4j.LoggerFactory;
 
 public abstract class MessageDispatchStage extends AbstractBaseStage {
   private static Logger logger = LoggerFactory.getLogger(MessageDispatchStage.class);
+  private static final String BULK_TRANSITION_KEY = "BULK";
 
   protected void processEvent(ClusterEvent event, MessageOutput messageOutput) throws Exception {
     _eventId = event.getEventId();
@@ -119,10 +120,20 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
         continue;
       }
 
+      // bulk transition messages carry per-partition from/to states, so all transitions of the
+      // resource on the instance go into one message. Messages with relay messages attached are
+      // still batched by transition type, as the relay messages belong to a single transition.
+      // The participant must announce the support in its live instance, its version is not
+      // enough as snapshot builds of the same version may predate it.
+      boolean isBulk = resource.getBulkTransitionMessageMode() && !message.hasRelayMessages()
+          && Message.MessageType.STATE_TRANSITION.name().equals(message.getMsgType())
+          && liveInstance.isBulkTransitionMessageSupported();
+
       String key =
           keyBuilder.currentState(message.getTgtName(), message.getTgtSessionId(),
               message.getResourceName()).getPath()
-              + "/" + message.getFromState() + "/" + message.getToState();
+              + "/" + (isBulk ? BULK_TRANSITION_KEY
+              : message.getFromState() + "/" + message.getToState());
 
       if (!batchMessages.containsKey(key)) {
         Message batchMessage = new Message(message.getRecord());
@@ -130,7 +141,12 @@ public abstract class MessageDispatchStage extends AbstractBaseStage {
         outputMessages.add(batchMessage);
         batchMessages.put(key, batchMessage);
       }
-      batchMessages.get(key).addPartitionName(message.getPartitionName());
+      if (isBulk) {
+        batchMessages.get(key).addBulkTransition(message.getPartitionName(),
+            message.getFromState(), message.getToState());
+      } else {
+        batchMessages.get(key).addPartitionName(message.getPartitionName());
+      }
     }
 
     return outputMessages;
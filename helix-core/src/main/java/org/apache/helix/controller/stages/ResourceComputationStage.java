@@ -86,6 +86,8 @@ public class ResourceComputationStage extends AbstractBaseStage {
           ClusterConfig clusterConfig = cache.getClusterConfig();
           if (clusterConfig != null) {
             batchMessageMode |= clusterConfig.getBatchMessageMode();
+            resource.setBulkTransitionMessageMode(
+                batchMessageMode && clusterConfig.isBulkTransitionMessageEnabled());
           }
           resource.setBatchMessageMode(batchMessageMode);
           resource.setResourceGroupName(idealState.getResourceGroupName());
@@ -1,21 +1,45 @@
 package org.apache.helix.controller.stages;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.controller.dataproviders.WorkflowControllerDataProvider;
 import org.apache.helix.controller.pipeline.AbstractAsyncBaseStage;
 import org.apache.helix.controller.pipeline.AsyncWorkerType;
 import org.apache.helix.controller.rebalancer.util.RebalanceScheduler;
 import org.apache.helix.task.TaskUtil;
 import org.apache.helix.task.WorkflowConfig;
+import org.apache.helix.task.WorkflowContext;
+import org.apache.helix.util.HelixUtil;
+import org.apache.helix.util.RebalanceUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TaskGarbageCollectionStage extends AbstractAsyncBaseStage {
   private static Logger LOG = LoggerFactory.getLogger(TaskGarbageCollectionStage.class);
   private static RebalanceScheduler _rebalanceScheduler = new RebalanceScheduler();
+  private static final int DEFAULT_JOB_PURGE_LIMIT = 1000;
+  private static final long DEFAULT_JOB_PURGE_BACKLOG_DELAY = 5000L;
+
+  // Max number of jobs purged in one run, so that a large backlog of expired jobs is purged over
+  // several runs instead of stalling the purge worker
+  private final int _jobPurgeLimit = HelixUtil
+      .getSystemPropertyAsInt(SystemPropertyKeys.TASK_JOB_PURGE_LIMIT, DEFAULT_JOB_PURGE_LIMIT);
+  // Min delay in ms before the expired jobs left by a run that hit the limit are purged, so that a
+  // large backlog does not turn into back-to-back pipeline runs
+  private final long _jobPurgeBacklogDelay = HelixUtil
+      .getSystemPropertyAsLong(SystemPropertyKeys.TASK_JOB_PURGE_BACKLOG_DELAY,
+          DEFAULT_JOB_PURGE_BACKLOG_DELAY);
+  // Queues with expired jobs left by the last run that hit the limit, and the time from which they
+  // are purged again. Only accessed by the purge worker.
+  private final Set<String> _workflowsWithExpiredJobs = new HashSet<>();
+  private long _nextBacklogPurgeTime = 0L;
 
   @Override
   public AsyncWorkerType getAsyncWorkerType() {
@@ -35,22 +59,88 @@ public class TaskGarbageCollectionStage extends AbstractAsyncBaseStage {
       return;
     }
 
-    Set<WorkflowConfig> existingWorkflows =
-        new HashSet<>(dataProvider.getWorkflowConfigMap().values());
-    for (WorkflowConfig workflowConfig : existingWorkflows) {
+    // Purge the expired jobs of the queues whose purge is due, and of the queues that still have
+    // expired jobs after the last run once the backlog delay has passed
+    long currentTime = System.currentTimeMillis();
+    boolean backlogDue = currentTime >= _nextBacklogPurgeTime;
+    Map<String, WorkflowConfig> purgeWorkflows = new HashMap<>();
+    for (WorkflowConfig workflowConfig : dataProvider.getWorkflowConfigMap().values()) {
       // clean up the expired jobs if it is a queue.
-      if (workflowConfig != null && (!workflowConfig.isTerminable() || workflowConfig
+      if (workflowConfig == null || (workflowConfig.isTerminable() && !workflowConfig
           .isJobQueue())) {
-        try {
-          TaskUtil.purgeExpiredJobs(workflowConfig.getWorkflowId(), workflowConfig,
-              dataProvider.getWorkflowContext(workflowConfig.getWorkflowId()), manager,
-              _rebalanceScheduler);
-        } catch (Exception e) {
-          LOG.warn(String.format("Failed to purge job for workflow %s with reason %s",
-              workflowConfig.getWorkflowId(), e.toString()));
+        continue;
+      }
+      String workflow = workflowConfig.getWorkflowId();
+      WorkflowContext workflowContext = dataProvider.getWorkflowContext(workflow);
+      if (workflowContext == null) {
+        LOG.warn(String.format("Workflow %s context does not exist!", workflow));
+        continue;
+      }
+      long purgeInterval = workflowConfig.getJobPurgeInterval();
+      if (purgeInterval > 0 && (
+          workflowContext.getLastJobPurgeTime() + purgeInterval <= currentTime
+              || backlogDue && _workflowsWithExpiredJobs.contains(workflow))) {
+        purgeWorkflows.put(workflow, workflowConfig);
+      }
+      TaskUtil.setNextJobPurgeTime(workflow, currentTime, purgeInterval, _rebalanceScheduler,
+          manager);
+    }
+    // Forget the deleted queues
+    _workflowsWithExpiredJobs.retainAll(dataProvider.getWorkflowConfigMap().keySet());
+    if (purgeWorkflows.isEmpty()) {
+      return;
+    }
+
+    Map<String, Set<String>> expiredJobs =
+        dataProvider.getExpiredJobs(currentTime, purgeWorkflows.keySet(), _jobPurgeLimit);
+    int numExpiredJobs = 0;
+    for (Set<String> jobs : expiredJobs.values()) {
+      numExpiredJobs += jobs.size();
+    }
+    // The rest of the expired jobs are purged by a run after the backlog delay
+    _workflowsWithExpiredJobs.removeAll(purgeWorkflows.keySet());
+    boolean limitReached = numExpiredJobs >= _jobPurgeLimit;
+    if (limitReached) {
+      _workflowsWithExpiredJobs.addAll(purgeWorkflows.keySet());
+      _nextBacklogPurgeTime = currentTime + _jobPurgeBacklogDelay;
+    }
+
+    boolean purged = false;
+    for (WorkflowConfig workflowConfig : purgeWorkflows.values()) {
+      String workflow = workflowConfig.getWorkflowId();
+      try {
+        Set<String> jobs =
+            new HashSet<>(expiredJobs.getOrDefault(workflow, Collections.emptySet()));
+        // Try to purge again the jobs in the DAG whose config is gone
+        jobs.addAll(TaskUtil.getJobsWithoutConfig(manager.getHelixDataAccessor(), workflowConfig));
+        if (jobs.isEmpty()) {
+          LOG.info("No job to purge for the queue " + workflow);
+          continue;
         }
+        LOG.info("Purge jobs " + jobs + " from queue " + workflow);
+        if (!TaskUtil.purgeJobs(workflow, jobs, manager, _rebalanceScheduler).isEmpty()) {
+          purged = true;
+        }
+      } catch (Exception e) {
+        LOG.warn(String.format("Failed to purge job for workflow %s with reason %s", workflow,
+            e.toString()));
       }
     }
 
+    if (purged || limitReached) {
+      // Update workflow context will be in main pipeline not here. Otherwise, it will cause
+      // concurrent write issue. It is possible that jobs got purged but there is no event to
+      // trigger the pipeline to clean context.
+      // When the limit is reached, the pipeline run after the backlog delay cleans the contexts
+      // too and purges the next expired jobs.
+      HelixDataAccessor accessor = manager.getHelixDataAccessor();
+      if (accessor.getChildNames(accessor.keyBuilder().resourceConfigs()).size() > 0) {
+        RebalanceUtil.scheduleOnDemandPipeline(manager.getClusterName(),
+            limitReached ? _jobPurgeBacklogDelay : 0L);
+      } else {
+        LOG.warn("No resource config to trigger rebalance for clean up contexts of queues "
+            + purgeWorkflows.keySet());
+      }
+    }
   }
 }
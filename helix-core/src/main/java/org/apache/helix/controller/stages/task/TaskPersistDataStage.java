@@ -1,10 +1,12 @@
 package org.apache.helix.controller.stages.task;
 
 import org.apache.helix.HelixManager;
+import org.apache.helix.common.caches.TaskDataCache;
 import org.apache.helix.controller.dataproviders.WorkflowControllerDataProvider;
 import org.apache.helix.controller.pipeline.AbstractBaseStage;
 import org.apache.helix.controller.stages.AttributeName;
 import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.monitoring.mbeans.ClusterStatusMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -20,11 +22,20 @@ public class TaskPersistDataStage extends AbstractBaseStage {
     WorkflowControllerDataProvider cache =
         event.getAttribute(AttributeName.ControllerDataProvider.name());
     HelixManager manager = event.getAttribute(AttributeName.helixmanager.name());
-    cache.getTaskDataCache().persistDataChanges(manager.getHelixDataAccessor());
+    TaskDataCache taskDataCache = cache.getTaskDataCache();
+    taskDataCache.persistDataChanges(manager.getHelixDataAccessor());
+    ClusterStatusMonitor clusterStatusMonitor =
+        event.getAttribute(AttributeName.clusterStatusMonitor.name());
+    if (clusterStatusMonitor != null) {
+      clusterStatusMonitor.updateTaskDataPersistStats(cache.getTaskDataBytesWritten(),
+          taskDataCache.getSkippedRecords());
+    }
 
     long endTime = System.currentTimeMillis();
     LOG.info(
         "END TaskPersistDataStage.process() for cluster " + cache.getClusterName() + " took " + (
-            endTime - startTime) + " ms");
+            endTime - startTime) + " ms, wrote " + taskDataCache.getPersistedRecords()
+            + " records of about " + cache.getTaskDataBytesWritten() + " bytes, skipped "
+            + taskDataCache.getSkippedRecords() + " unchanged or timestamp only records");
   }
 }
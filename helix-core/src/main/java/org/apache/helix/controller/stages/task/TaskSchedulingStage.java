@@ -2,15 +2,22 @@ package org.apache.helix.controller.stages.task;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Maps;
 import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixManager;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.controller.LogUtil;
 import org.apache.helix.controller.dataproviders.WorkflowControllerDataProvider;
 import org.apache.helix.controller.pipeline.AbstractBaseStage;
@@ -40,8 +47,13 @@ import org.slf4j.LoggerFactory;
 
 public class TaskSchedulingStage extends AbstractBaseStage {
   private static final Logger logger = LoggerFactory.getLogger(TaskSchedulingStage.class.getName());
+  private static final long SCHEDULING_THREAD_KEEP_ALIVE_SEC = 60L;
   private Map<String, PriorityQueue<WorkflowObject>> _quotaBasedWorkflowPQs = Maps.newHashMap();
   private WorkflowDispatcher _workflowDispatcher;
+  // The workflows of different quota types are scheduled on up to this many threads
+  private final int _schedulingParallelism =
+      HelixUtil.getSystemPropertyAsInt(SystemPropertyKeys.TASK_SCHEDULING_PARALLELISM, 1);
+  private ExecutorService _schedulingExecutor;
 
   @Override
   public void process(ClusterEvent event) throws Exception {
@@ -69,8 +81,16 @@ public class TaskSchedulingStage extends AbstractBaseStage {
     event.addAttribute(AttributeName.BEST_POSSIBLE_STATE.name(), bestPossibleStateOutput);
   }
 
+  @Override
+  public void release() {
+    if (_schedulingExecutor != null) {
+      _schedulingExecutor.shutdownNow();
+      _schedulingExecutor = null;
+    }
+  }
+
   private BestPossibleStateOutput compute(ClusterEvent event, Map<String, Resource> resourceMap,
-      CurrentStateOutput currentStateOutput) {
+      CurrentStateOutput currentStateOutput) throws StageException {
     // After compute all workflows and jobs, there are still task resources need to be DROPPED
     Map<String, Resource> restOfResources = new HashMap<>(resourceMap);
     WorkflowControllerDataProvider cache = event.getAttribute(AttributeName.ControllerDataProvider.name());
@@ -205,10 +225,19 @@ public class TaskSchedulingStage extends AbstractBaseStage {
 
     @Override
     public int compareTo(WorkflowObject o) {
-      return (int) (_rankingValue - o._rankingValue);
+      return Long.compare(_rankingValue, o._rankingValue);
     }
   }
 
+  /**
+   * The output of scheduling the workflows of one quota type in parallel with the other types
+   */
+  private static class QuotaTypeScheduleOutput {
+    final BestPossibleStateOutput _bestPossibleOutput = new BestPossibleStateOutput();
+    final List<String> _scheduledWorkflows = new ArrayList<>();
+    final List<String> _failureResources = new ArrayList<>();
+  }
+
   private void buildQuotaBasedWorkflowPQsAndInitDispatchers(WorkflowControllerDataProvider cache, HelixManager manager,
       ClusterStatusMonitor monitor) {
     _quotaBasedWorkflowPQs.clear();
@@ -239,42 +268,117 @@ public class TaskSchedulingStage extends AbstractBaseStage {
     _workflowDispatcher.updateCache(cache);
   }
 
-  private void scheduleWorkflows(Map<String, Resource> resourceMap, WorkflowControllerDataProvider cache,
-      Map<String, Resource> restOfResources, List<String> failureResources,
-      CurrentStateOutput currentStateOutput, BestPossibleStateOutput bestPossibleOutput) {
-    AssignableInstanceManager assignableInstanceManager = cache.getAssignableInstanceManager();
+  private void scheduleWorkflows(Map<String, Resource> resourceMap,
+      WorkflowControllerDataProvider cache, Map<String, Resource> restOfResources,
+      List<String> failureResources, CurrentStateOutput currentStateOutput,
+      BestPossibleStateOutput bestPossibleOutput) throws StageException {
+    // Workflows of the same quota type compete for the same quota, so they are always scheduled
+    // one after another in the order of their queue. Only different quota types run in parallel.
+    List<List<String>> quotaTypeWorkflows = new ArrayList<>();
     for (PriorityQueue<WorkflowObject> quotaBasedWorkflowPQ : _quotaBasedWorkflowPQs.values()) {
-      Iterator<WorkflowObject> it = quotaBasedWorkflowPQ.iterator();
-      while (it.hasNext()) {
-        String workflowId = it.next()._workflowId;
-        Resource resource = resourceMap.get(workflowId);
-        // TODO : Resource is null could be workflow just created without any IdealState.
-        // Let's remove this check when Helix is independent from IdealState
-        if (resource != null) {
-          try {
-            WorkflowContext context = _workflowDispatcher
-                .getOrInitializeWorkflowContext(workflowId, cache.getTaskDataCache());
-            _workflowDispatcher
-                .updateWorkflowStatus(workflowId, cache.getWorkflowConfig(workflowId), context,
-                    currentStateOutput, bestPossibleOutput);
-            String quotaType = getQuotaType(cache.getWorkflowConfig(workflowId));
-            restOfResources.remove(workflowId);
-            if (assignableInstanceManager.hasGlobalCapacity(quotaType)) {
-              _workflowDispatcher.assignWorkflow(workflowId, cache.getWorkflowConfig(workflowId),
-                  context, currentStateOutput, bestPossibleOutput);
-            } else {
-              LogUtil.logInfo(logger, _eventId, String.format(
-                  "Fail to schedule new jobs assignment for Workflow %s due to quota %s is full",
-                  workflowId, quotaType));
-            }
-          } catch (Exception e) {
-            LogUtil.logError(logger, _eventId,
-                "Error computing assignment for Workflow " + workflowId + ". Skipping.", e);
-            failureResources.add(workflowId);
+      List<String> workflows = new ArrayList<>(quotaBasedWorkflowPQ.size());
+      while (!quotaBasedWorkflowPQ.isEmpty()) {
+        workflows.add(quotaBasedWorkflowPQ.poll()._workflowId);
+      }
+      if (!workflows.isEmpty()) {
+        quotaTypeWorkflows.add(workflows);
+      }
+    }
+
+    List<String> scheduledWorkflows = new ArrayList<>();
+    if (_schedulingParallelism <= 1 || quotaTypeWorkflows.size() <= 1) {
+      for (List<String> workflows : quotaTypeWorkflows) {
+        scheduleWorkflows(workflows, resourceMap, cache, scheduledWorkflows, failureResources,
+            currentStateOutput, bestPossibleOutput);
+      }
+    } else {
+      List<Callable<QuotaTypeScheduleOutput>> tasks = new ArrayList<>();
+      for (final List<String> workflows : quotaTypeWorkflows) {
+        tasks.add(() -> {
+          QuotaTypeScheduleOutput output = new QuotaTypeScheduleOutput();
+          scheduleWorkflows(workflows, resourceMap, cache, output._scheduledWorkflows,
+              output._failureResources, currentStateOutput, output._bestPossibleOutput);
+          return output;
+        });
+      }
+      try {
+        for (Future<QuotaTypeScheduleOutput> future : getSchedulingExecutor(cache.getClusterName())
+            .invokeAll(tasks)) {
+          QuotaTypeScheduleOutput output = future.get();
+          scheduledWorkflows.addAll(output._scheduledWorkflows);
+          failureResources.addAll(output._failureResources);
+          for (String resource : output._bestPossibleOutput.resourceSet()) {
+            bestPossibleOutput
+                .setState(resource, output._bestPossibleOutput.getPartitionStateMap(resource));
           }
         }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new StageException("Interrupted while scheduling workflows", e);
+      } catch (ExecutionException e) {
+        throw new StageException("Failed to schedule workflows",
+            e.getCause() instanceof Exception ? (Exception) e.getCause() : e);
       }
     }
+    for (String workflowId : scheduledWorkflows) {
+      restOfResources.remove(workflowId);
+    }
+  }
+
+  /**
+   * Schedule the given workflows of one quota type in order.
+   * @param workflows the workflows of one quota type, in the order of the quota type queue
+   * @param scheduledWorkflows the workflows scheduled by this pipeline are added to it
+   */
+  private void scheduleWorkflows(List<String> workflows, Map<String, Resource> resourceMap,
+      WorkflowControllerDataProvider cache, List<String> scheduledWorkflows,
+      List<String> failureResources, CurrentStateOutput currentStateOutput,
+      BestPossibleStateOutput bestPossibleOutput) {
+    AssignableInstanceManager assignableInstanceManager = cache.getAssignableInstanceManager();
+    for (String workflowId : workflows) {
+      Resource resource = resourceMap.get(workflowId);
+      // TODO : Resource is null could be workflow just created without any IdealState.
+      // Let's remove this check when Helix is independent from IdealState
+      if (resource != null) {
+        try {
+          WorkflowContext context = _workflowDispatcher
+              .getOrInitializeWorkflowContext(workflowId, cache.getTaskDataCache());
+          _workflowDispatcher
+              .updateWorkflowStatus(workflowId, cache.getWorkflowConfig(workflowId), context,
+                  currentStateOutput, bestPossibleOutput);
+          String quotaType = getQuotaType(cache.getWorkflowConfig(workflowId));
+          scheduledWorkflows.add(workflowId);
+          if (assignableInstanceManager.hasGlobalCapacity(quotaType)) {
+            _workflowDispatcher.assignWorkflow(workflowId, cache.getWorkflowConfig(workflowId),
+                context, currentStateOutput, bestPossibleOutput);
+          } else {
+            LogUtil.logInfo(logger, _eventId, String.format(
+                "Fail to schedule new jobs assignment for Workflow %s due to quota %s is full",
+                workflowId, quotaType));
+          }
+        } catch (Exception e) {
+          LogUtil.logError(logger, _eventId,
+              "Error computing assignment for Workflow " + workflowId + ". Skipping.", e);
+          failureResources.add(workflowId);
+        }
+      }
+    }
+  }
+
+  private ExecutorService getSchedulingExecutor(String clusterName) {
+    if (_schedulingExecutor == null) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(_schedulingParallelism,
+          _schedulingParallelism, SCHEDULING_THREAD_KEEP_ALIVE_SEC, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread thread = new Thread(r, "HelixController-task_scheduling-" + clusterName);
+            thread.setDaemon(true);
+            return thread;
+          });
+      // Do not keep threads alive for a controller that is shut down or no longer the leader
+      executor.allowCoreThreadTimeOut(true);
+      _schedulingExecutor = executor;
+    }
+    return _schedulingExecutor;
   }
 
   private void updateResourceMap(String jobName, Map<String, Resource> resourceMap,
@@ -21,19 +21,31 @@ package org.apache.helix.messaging;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
 
 import org.apache.helix.model.Message;
+import org.apache.helix.monitoring.mbeans.ThreadPoolExecutorMonitor;
+import org.apache.helix.util.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public abstract class AsyncCallback {
 
   private static Logger _logger = LoggerFactory.getLogger(AsyncCallback.class);
+  private static final int TIMEOUT_THREADPOOL_SIZE = 10;
+  // Runs the onTimeOut() of the callbacks, so that a slow callback does not delay the others
+  private static final ThreadPoolExecutor TIMEOUT_EXECUTOR = createTimeoutExecutor();
+  // Shared by all callbacks of the process, instead of a timer thread per callback
+  private static final HashedWheelTimer CALLBACK_TIMER =
+      new HashedWheelTimer("AsyncCallback", TIMEOUT_EXECUTOR);
   long _startTimeStamp = 0;
   protected long _timeout = -1;
-  Timer _timer = null;
+  HashedWheelTimer.Timeout _timer = null;
   List<Message> _messagesSent;
   protected final List<Message> _messageReplied = new ArrayList<Message>();
   boolean _timedOut = false;
@@ -109,16 +121,38 @@ public abstract class AsyncCallback {
       if (_startTimeStamp == 0) {
         _startTimeStamp = System.currentTimeMillis();
       }
-      _timer = new Timer(true);
-      _timer.schedule(new TimeoutTask(this), _timeout);
+      _timer = CALLBACK_TIMER.newTimeout(new TimeoutTask(this), _timeout, TimeUnit.MILLISECONDS);
     }
   }
 
   public abstract void onTimeOut();
 
+  private static ThreadPoolExecutor createTimeoutExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(TIMEOUT_THREADPOOL_SIZE,
+        TIMEOUT_THREADPOOL_SIZE, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          private final AtomicInteger _threadId = new AtomicInteger(0);
+
+          @Override
+          public Thread newThread(Runnable r) {
+            Thread thread =
+                new Thread(r, "AsyncCallback-timeout_thread-" + _threadId.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+          }
+        });
+    executor.allowCoreThreadTimeOut(true);
+    try {
+      new ThreadPoolExecutorMonitor("AsyncCallbackTimeout", executor);
+    } catch (JMException e) {
+      _logger.warn("Error in creating ThreadPoolExecutorMonitor for AsyncCallback timeouts.", e);
+    }
+    return executor;
+  }
+
   public abstract void onReplyMessage(Message message);
 
-  class TimeoutTask extends TimerTask {
+  class TimeoutTask implements Runnable {
     AsyncCallback _callback;
 
     public TimeoutTask(AsyncCallback asyncCallback) {
@@ -135,10 +169,6 @@ public abstract class AsyncCallback {
         }
       } catch (Exception e) {
         _logger.error(e.toString());
-      } finally {
-        if (_timer != null) {
-          _timer.cancel();
-        }
       }
     }
   }
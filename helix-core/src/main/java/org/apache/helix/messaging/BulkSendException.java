@@ -0,0 +1,60 @@
+package org.apache.helix.messaging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.model.Message;
+
+/**
+ * Completes the future of a bulk send when some of its messages failed to be sent. Keeps the
+ * replies of the messages that were sent, and the messages that were not.
+ */
+public class BulkSendException extends HelixException {
+  private static final long serialVersionUID = -3419536541427869373L;
+
+  private final List<Message> _repliedMessages;
+  private final List<Message> _failedMessages;
+
+  public BulkSendException(int totalCount, List<Message> repliedMessages,
+      List<Message> failedMessages) {
+    super(String.format("Failed to send %d of %d messages, %d messages replied",
+        failedMessages.size(), totalCount, repliedMessages.size()));
+    _repliedMessages = Collections.unmodifiableList(new ArrayList<>(repliedMessages));
+    _failedMessages = Collections.unmodifiableList(new ArrayList<>(failedMessages));
+  }
+
+  /**
+   * @return the replies of the messages that were sent
+   */
+  public List<Message> getRepliedMessages() {
+    return _repliedMessages;
+  }
+
+  /**
+   * @return the messages that failed to be sent
+   */
+  public List<Message> getFailedMessages() {
+    return _failedMessages;
+  }
+}
@@ -19,15 +19,18 @@ package org.apache.helix.messaging;
  * under the License.
  */
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.helix.Criteria;
 import org.apache.helix.Criteria.DataSource;
@@ -90,8 +93,6 @@ public class CriteriaEvaluator {
     default:
       return Lists.newArrayList();
     }
-    // flatten the data
-    List<ZNRecordRow> allRows = ZNRecordRow.flatten(HelixProperty.convertToList(properties));
 
     // save the matches
     // TODO: Apply strict check on the getChildValuesMap() call.
@@ -99,11 +100,22 @@ public class CriteriaEvaluator {
     // TODO: match result eventually.
     Set<String> liveParticipants =
         accessor.getChildValuesMap(keyBuilder.liveInstances(), false).keySet();
+
+    if (dataSource == DataSource.EXTERNALVIEW || dataSource == DataSource.IDEALSTATES) {
+      // only the map fields of the external views and ideal states can match a live participant
+      CriteriaIndex index = new CriteriaIndex(dataSource);
+      index.refresh(properties, liveParticipants);
+      return evaluateCriteria(recipientCriteria, index);
+    }
+
+    // flatten the data
+    List<ZNRecordRow> allRows = ZNRecordRow.flatten(HelixProperty.convertToList(properties));
+    CompiledCriteria compiledCriteria = new CompiledCriteria(recipientCriteria);
     List<ZNRecordRow> result = Lists.newArrayList();
     for (ZNRecordRow row : allRows) {
       // The participant instance name is stored in the return value of either getRecordId() or
       // getMapSubKey()
-      if (rowMatches(recipientCriteria, row) && (liveParticipants.contains(row.getRecordId())
+      if (compiledCriteria.rowMatches(row) && (liveParticipants.contains(row.getRecordId())
           || liveParticipants.contains(row.getMapSubKey()))) {
         result.add(row);
       }
@@ -113,72 +125,177 @@ public class CriteriaEvaluator {
 
     // deduplicate and convert the matches into the required format
     for (ZNRecordRow row : result) {
-      Map<String, String> resultRow = new HashMap<String, String>();
-      resultRow.put("instanceName", !recipientCriteria.getInstanceName().equals("")
-          ? (!Strings.isNullOrEmpty(row.getMapSubKey()) ? row.getMapSubKey() : row.getRecordId())
-          : "");
-      resultRow.put("resourceName",
-          !recipientCriteria.getResource().equals("") ? row.getRecordId() : "");
-      resultRow.put("partitionName",
-          !recipientCriteria.getPartition().equals("") ? row.getMapKey() : "");
-      resultRow.put("partitionState",
-          !recipientCriteria.getPartitionState().equals("") ? row.getMapValue() : "");
-      selected.add(resultRow);
+      selected.add(toResultRow(recipientCriteria,
+          !Strings.isNullOrEmpty(row.getMapSubKey()) ? row.getMapSubKey() : row.getRecordId(),
+          row.getRecordId(), row.getMapKey(), row.getMapValue()));
     }
     logger.info("Query returned " + selected.size() + " rows");
     return Lists.newArrayList(selected);
   }
 
   /**
-   * Check if a given row matches the specified criteria
-   * @param criteria the criteria
-   * @param row row of currently persisted data
-   * @return true if it matches, false otherwise
+   * Match wildcards in {@link Criteria} against an in-memory index. Names in the criteria without
+   * wildcards are looked up directly, so the cost is proportional to the size of the result
+   * rather than the size of the cluster.
+   * @param recipientCriteria Criteria specifying the message destinations, the data source must
+   *          be the one of the index
+   * @param index the index of external views or ideal states
+   * @return map of evaluated criteria
    */
-  private boolean rowMatches(Criteria criteria, ZNRecordRow row) {
-    String instanceName = normalizePattern(criteria.getInstanceName());
-    String resourceName = normalizePattern(criteria.getResource());
-    String partitionName = normalizePattern(criteria.getPartition());
-    String partitionState = normalizePattern(criteria.getPartitionState());
-    return (stringMatches(instanceName, Strings.nullToEmpty(row.getMapSubKey()))
-        || stringMatches(instanceName, Strings.nullToEmpty(row.getRecordId())))
-        && stringMatches(resourceName, Strings.nullToEmpty(row.getRecordId()))
-        && stringMatches(partitionName, Strings.nullToEmpty(row.getMapKey()))
-        && stringMatches(partitionState, Strings.nullToEmpty(row.getMapValue()));
+  public List<Map<String, String>> evaluateCriteria(Criteria recipientCriteria,
+      CriteriaIndex index) {
+    if (recipientCriteria.getDataSource() != index.getDataSource()) {
+      throw new HelixException(String.format("Criteria data source %s does not match index of %s",
+          recipientCriteria.getDataSource(), index.getDataSource()));
+    }
+    CriteriaIndex.IndexData data = index.getData();
+    CompiledCriteria compiledCriteria = new CompiledCriteria(recipientCriteria);
+
+    Set<Map<String, String>> selected = Sets.newHashSet();
+    for (Map.Entry<String, Map<String, Map<String, String>>> resourceEntry
+        : compiledCriteria._resource.select(data._resourceMap, () -> data._resourceNames)) {
+      String resource = resourceEntry.getKey();
+      // The participant instance name is matched against either the resource or the instance
+      boolean resourceMatchesInstance = compiledCriteria._instance.matches(resource);
+      boolean resourceIsLive = data._liveInstances.contains(resource);
+      for (Map.Entry<String, Map<String, String>> partitionEntry : compiledCriteria._partition
+          .select(resourceEntry.getValue(), () -> data.getPartitionNames(resource))) {
+        Collection<Map.Entry<String, String>> instanceEntries = resourceMatchesInstance
+            ? partitionEntry.getValue().entrySet()
+            : compiledCriteria._instance.select(partitionEntry.getValue(),
+                () -> data.getInstanceNames(resource));
+        for (Map.Entry<String, String> instanceEntry : instanceEntries) {
+          String state = Strings.nullToEmpty(instanceEntry.getValue());
+          if (compiledCriteria._partitionState.matches(state) && (resourceIsLive
+              || data._liveInstances.contains(instanceEntry.getKey()))) {
+            selected.add(toResultRow(recipientCriteria, instanceEntry.getKey(), resource,
+                partitionEntry.getKey(), state));
+          }
+        }
+      }
+    }
+    logger.info("Query returned " + selected.size() + " rows");
+    return Lists.newArrayList(selected);
+  }
+
+  private Map<String, String> toResultRow(Criteria recipientCriteria, String instance,
+      String resource, String partition, String state) {
+    Map<String, String> resultRow = new HashMap<String, String>();
+    resultRow.put("instanceName", !recipientCriteria.getInstanceName().equals("") ? instance : "");
+    resultRow.put("resourceName", !recipientCriteria.getResource().equals("") ? resource : "");
+    resultRow.put("partitionName", !recipientCriteria.getPartition().equals("") ? partition : "");
+    resultRow.put("partitionState",
+        !recipientCriteria.getPartitionState().equals("") ? state : "");
+    return resultRow;
   }
 
   /**
-   * Convert an SQL like expression into a Java matches expression
-   * @param pattern SQL like match pattern (i.e. contains '%'s and '_'s)
-   * @return Java matches expression (i.e. contains ".*?"s and '.'s)
+   * The patterns of a {@link Criteria}, compiled once per evaluation
    */
-  private String normalizePattern(String pattern) {
-    if (pattern == null || pattern.equals("") || pattern.equals("*")) {
-      pattern = "%";
+  private static class CompiledCriteria {
+    final NamePattern _instance;
+    final NamePattern _resource;
+    final NamePattern _partition;
+    final NamePattern _partitionState;
+
+    CompiledCriteria(Criteria criteria) {
+      _instance = new NamePattern(criteria.getInstanceName());
+      _resource = new NamePattern(criteria.getResource());
+      _partition = new NamePattern(criteria.getPartition());
+      _partitionState = new NamePattern(criteria.getPartitionState());
     }
-    StringBuilder builder = new StringBuilder();
-    for (int i = 0; i < pattern.length(); i++) {
-      char ch = pattern.charAt(i);
-      if ("[](){}.*+?$^|#\\".indexOf(ch) != -1) {
-        // escape any reserved characters
-        builder.append("\\");
-      }
-      // append the character
-      builder.append(ch);
+
+    /**
+     * Check if a given row matches the criteria
+     * @param row row of currently persisted data
+     * @return true if it matches, false otherwise
+     */
+    boolean rowMatches(ZNRecordRow row) {
+      return (_instance.matches(Strings.nullToEmpty(row.getMapSubKey()))
+          || _instance.matches(Strings.nullToEmpty(row.getRecordId())))
+          && _resource.matches(Strings.nullToEmpty(row.getRecordId()))
+          && _partition.matches(Strings.nullToEmpty(row.getMapKey()))
+          && _partitionState.matches(Strings.nullToEmpty(row.getMapValue()));
     }
-    pattern = builder.toString().toLowerCase().replace("_", ".").replace("%", ".*?");
-    return pattern;
   }
 
   /**
-   * Check if a string matches a pattern
-   * @param pattern pattern allowed by Java regex matching
-   * @param value the string to check
-   * @return true if they match, false otherwise
+   * A SQL like, case insensitive match pattern, i.e. '%' matches any number of characters and '_'
+   * matches a single character. An empty pattern or '*' matches everything.
    */
-  private boolean stringMatches(String pattern, String value) {
-    Pattern p = Pattern.compile(pattern, Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    return p.matcher(value).matches();
+  private static class NamePattern {
+    // the lower case name to look up if the pattern has no '%', null otherwise
+    private final String _literalName;
+    private final boolean _hasSingleCharWildcard;
+    private final Pattern _pattern;
+
+    NamePattern(String pattern) {
+      if (pattern == null || pattern.equals("") || pattern.equals("*")) {
+        pattern = "%";
+      }
+      _literalName = pattern.indexOf('%') < 0 ? pattern.toLowerCase() : null;
+      _hasSingleCharWildcard = pattern.indexOf('_') >= 0;
+      _pattern =
+          Pattern.compile(normalizePattern(pattern), Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    }
+
+    boolean matches(String value) {
+      if (_literalName != null && !_hasSingleCharWildcard) {
+        return _literalName.equalsIgnoreCase(value);
+      }
+      return _pattern.matcher(value).matches();
+    }
+
+    /**
+     * Select the entries of a map whose key matches the pattern. A pattern without '%' is looked
+     * up in the names of the keys, ignoring case. Since '_' is common in Helix names, a pattern
+     * with '_' that is the name of a key is taken literally, and '_' only acts as a wildcard if no
+     * such key exists.
+     * @param map the map to select from
+     * @param names supplies the names of the keys of the map, only used without '%'
+     */
+    <V> Collection<Map.Entry<String, V>> select(Map<String, V> map,
+        Supplier<CriteriaIndex.NameIndex> names) {
+      if (_literalName != null) {
+        List<String> keys = names.get().get(_literalName);
+        if (!keys.isEmpty() || !_hasSingleCharWildcard) {
+          List<Map.Entry<String, V>> selected = Lists.newArrayListWithCapacity(keys.size());
+          for (String key : keys) {
+            V value = map.get(key);
+            if (value != null) {
+              selected.add(Maps.immutableEntry(key, value));
+            }
+          }
+          return selected;
+        }
+      }
+      List<Map.Entry<String, V>> selected = Lists.newArrayList();
+      for (Map.Entry<String, V> entry : map.entrySet()) {
+        if (matches(entry.getKey())) {
+          selected.add(entry);
+        }
+      }
+      return selected;
+    }
+
+    /**
+     * Convert an SQL like expression into a Java matches expression
+     * @param pattern SQL like match pattern (i.e. contains '%'s and '_'s)
+     * @return Java matches expression (i.e. contains ".*?"s and '.'s)
+     */
+    private static String normalizePattern(String pattern) {
+      StringBuilder builder = new StringBuilder();
+      for (int i = 0; i < pattern.length(); i++) {
+        char ch = pattern.charAt(i);
+        if ("[](){}.*+?$^|#\\".indexOf(ch) != -1) {
+          // escape any reserved characters
+          builder.append("\\");
+        }
+        // append the character
+        builder.append(ch);
+      }
+      return builder.toString().toLowerCase().replace("_", ".").replace("%", ".*?");
+    }
   }
 
   private List<HelixProperty> getProperty(HelixDataAccessor accessor, String dataSpec,
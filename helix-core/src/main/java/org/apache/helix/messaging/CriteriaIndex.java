@@ -0,0 +1,171 @@
+package org.apache.helix.messaging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.helix.Criteria.DataSource;
+import org.apache.helix.HelixException;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyType;
+import org.apache.helix.api.listeners.RoutingTableChangeListener;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.spectator.RoutingTableSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory index of resource -> partition -> instance -> state, used by
+ * {@link CriteriaEvaluator} to match {@link org.apache.helix.Criteria} without reading and
+ * flattening the external views or ideal states of the whole cluster for every message.<br>
+ * The index can be kept up to date from a spectator by registering it as a
+ * {@link RoutingTableChangeListener} of a RoutingTableProvider based on external views.
+ */
+public class CriteriaIndex implements RoutingTableChangeListener {
+  private static final Logger LOG = LoggerFactory.getLogger(CriteriaIndex.class);
+
+  private final DataSource _dataSource;
+  private volatile IndexData _data = new IndexData(
+      Collections.<String, Map<String, Map<String, String>>> emptyMap(),
+      Collections.<String> emptySet());
+
+  /**
+   * Create an index of external views
+   */
+  public CriteriaIndex() {
+    this(DataSource.EXTERNALVIEW);
+  }
+
+  /**
+   * Create an index of the given data source
+   * @param dataSource either EXTERNALVIEW or IDEALSTATES
+   */
+  public CriteriaIndex(DataSource dataSource) {
+    if (dataSource != DataSource.EXTERNALVIEW && dataSource != DataSource.IDEALSTATES) {
+      throw new HelixException("Criteria index does not support data source " + dataSource);
+    }
+    _dataSource = dataSource;
+  }
+
+  public DataSource getDataSource() {
+    return _dataSource;
+  }
+
+  /**
+   * Replace the content of the index. The map fields of the given properties are referenced, not
+   * copied, so they must not be modified afterwards.
+   * @param properties external views or ideal states, depending on the data source
+   * @param liveInstances names of the live instances
+   */
+  public void refresh(Collection<? extends HelixProperty> properties,
+      Collection<String> liveInstances) {
+    Map<String, Map<String, Map<String, String>>> resourceMap =
+        new HashMap<>(properties.size() * 2);
+    for (HelixProperty property : properties) {
+      resourceMap.put(property.getId(), property.getRecord().getMapFields());
+    }
+    _data = new IndexData(resourceMap, new HashSet<>(liveInstances));
+  }
+
+  @Override
+  public void onRoutingTableChange(RoutingTableSnapshot routingTableSnapshot, Object context) {
+    if (_dataSource != DataSource.EXTERNALVIEW
+        || routingTableSnapshot.getPropertyType() != PropertyType.EXTERNALVIEW) {
+      LOG.warn("Ignore routing table of {}, criteria index of {} requires external views",
+          routingTableSnapshot.getPropertyType(), _dataSource);
+      return;
+    }
+    Set<String> liveInstances = new HashSet<>();
+    for (LiveInstance liveInstance : routingTableSnapshot.getLiveInstances()) {
+      liveInstances.add(liveInstance.getInstanceName());
+    }
+    refresh(routingTableSnapshot.getExternalViews(), liveInstances);
+  }
+
+  IndexData getData() {
+    return _data;
+  }
+
+  /**
+   * Immutable content of the index, swapped as a whole on refresh
+   */
+  static final class IndexData {
+    final Map<String, Map<String, Map<String, String>>> _resourceMap;
+    final Set<String> _liveInstances;
+    final NameIndex _resourceNames;
+    // resource -> names of its partitions or instances, built on the first lookup
+    private final ConcurrentMap<String, NameIndex> _partitionNames = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, NameIndex> _instanceNames = new ConcurrentHashMap<>();
+
+    IndexData(Map<String, Map<String, Map<String, String>>> resourceMap,
+        Set<String> liveInstances) {
+      _resourceMap = resourceMap;
+      _liveInstances = liveInstances;
+      _resourceNames = new NameIndex(resourceMap.keySet());
+    }
+
+    NameIndex getPartitionNames(String resource) {
+      return _partitionNames.computeIfAbsent(resource,
+          name -> new NameIndex(_resourceMap.get(name).keySet()));
+    }
+
+    NameIndex getInstanceNames(String resource) {
+      return _instanceNames.computeIfAbsent(resource, name -> {
+        Set<String> instances = new HashSet<>();
+        for (Map<String, String> instanceStateMap : _resourceMap.get(name).values()) {
+          instances.addAll(instanceStateMap.keySet());
+        }
+        return new NameIndex(instances);
+      });
+    }
+  }
+
+  /**
+   * Names by their lower case form, to look up a name without wildcards case insensitively
+   */
+  static final class NameIndex {
+    private final Map<String, List<String>> _names;
+
+    NameIndex(Collection<String> names) {
+      _names = new HashMap<>(names.size() * 2);
+      for (String name : names) {
+        _names.computeIfAbsent(name.toLowerCase(), key -> new ArrayList<>(1)).add(name);
+      }
+    }
+
+    /**
+     * @param lowerCaseName name in lower case
+     * @return the names equal to the given one ignoring case, empty if none
+     */
+    List<String> get(String lowerCaseName) {
+      List<String> names = _names.get(lowerCaseName);
+      return names == null ? Collections.<String> emptyList() : names;
+    }
+  }
+}
@@ -19,20 +19,31 @@ package org.apache.helix.messaging;
  * under the License.
  */
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.helix.ClusterMessagingService;
 import org.apache.helix.ConfigAccessor;
 import org.apache.helix.Criteria;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.InstanceType;
+import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyKey.Builder;
 import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.messaging.handling.AsyncCallbackService;
@@ -51,11 +62,14 @@ import org.slf4j.LoggerFactory;
 public class DefaultMessagingService implements ClusterMessagingService {
   private final HelixManager _manager;
   private final CriteriaEvaluator _evaluator;
+  private volatile CriteriaIndex _criteriaIndex;
   private final HelixTaskExecutor _taskExecutor;
   // TODO:rename to factory, this is not a service
   private final AsyncCallbackService _asyncCallbackService;
 
   private static Logger _logger = LoggerFactory.getLogger(DefaultMessagingService.class);
+  // Minimum number of messages to generate before the message copies are built in parallel
+  private static final int PARALLEL_MESSAGE_BUILD_THRESHOLD = 1000;
   ConcurrentHashMap<String, MessageHandlerFactory> _messageHandlerFactoriestobeAdded =
       new ConcurrentHashMap<>();
 
@@ -144,6 +158,172 @@ public class DefaultMessagingService implements ClusterMessagingService {
       return totalMessageCount;
   }
 
+  @Override
+  public CompletableFuture<List<Message>> sendBulk(final Criteria recipientCriteria,
+      final Message message, int timeOut, int maxPendingMessagesPerInstance) {
+    if (recipientCriteria.getRecipientInstanceType() != InstanceType.PARTICIPANT) {
+      throw new HelixException("Bulk send only supports participants as recipients, criteria: "
+          + recipientCriteria);
+    }
+    List<Message> messages =
+        generateMessage(recipientCriteria, message).get(InstanceType.PARTICIPANT);
+    _logger.info("Bulk send " + messages.size() + " messages with criteria " + recipientCriteria);
+
+    CompletableFuture<List<Message>> future = new CompletableFuture<>();
+    if (messages.isEmpty()) {
+      future.complete(Collections.<Message>emptyList());
+      return future;
+    }
+
+    String correlationId = UUID.randomUUID().toString();
+    for (Message tempMessage : messages) {
+      tempMessage.setExecutionTimeout(timeOut);
+      tempMessage.setSrcInstanceType(_manager.getInstanceType());
+      tempMessage.setCorrelationId(correlationId);
+      tempMessage.setSrcClusterName(_manager.getClusterName());
+    }
+
+    BulkSendCallback callback =
+        new BulkSendCallback(getRecipientDataAccessor(recipientCriteria), messages,
+            maxPendingMessagesPerInstance, future, _asyncCallbackService, correlationId);
+    callback.setTimeout(timeOut);
+    callback.setMessagesSent(messages);
+    _asyncCallbackService.registerAsyncCallback(correlationId, callback);
+    synchronized (callback) {
+      callback.sendFirstRound();
+      if (!callback.isDone()) {
+        callback.startTimer();
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Keeps the messages of a bulk send that are not written yet, per target instance, and writes
+   * the next ones of an instance whenever a reply from it frees a slot. Once every message is
+   * replied or failed to be written, the callback is unregistered and the future is completed,
+   * exceptionally with a {@link BulkSendException} if any message failed.
+   */
+  private static class BulkSendCallback extends AsyncCallback {
+    private final HelixDataAccessor _accessor;
+    private final int _maxPendingPerInstance;
+    private final CompletableFuture<List<Message>> _future;
+    private final AsyncCallbackService _callbackService;
+    private final String _correlationId;
+    // instance -> messages not written yet
+    private final Map<String, Queue<Message>> _queuedMessages = new LinkedHashMap<>();
+    // instance -> messages written but not replied
+    private final Map<String, Integer> _pendingCounts = new HashMap<>();
+    private final List<Message> _failedMessages = new ArrayList<>();
+
+    BulkSendCallback(HelixDataAccessor accessor, List<Message> messages,
+        int maxPendingPerInstance, CompletableFuture<List<Message>> future,
+        AsyncCallbackService callbackService, String correlationId) {
+      _accessor = accessor;
+      _maxPendingPerInstance = maxPendingPerInstance <= 0 ? Integer.MAX_VALUE : maxPendingPerInstance;
+      _future = future;
+      _callbackService = callbackService;
+      _correlationId = correlationId;
+      for (Message message : messages) {
+        Queue<Message> queue = _queuedMessages.get(message.getTgtName());
+        if (queue == null) {
+          queue = new ArrayDeque<>();
+          _queuedMessages.put(message.getTgtName(), queue);
+          _pendingCounts.put(message.getTgtName(), 0);
+        }
+        queue.add(message);
+      }
+    }
+
+    synchronized void sendFirstRound() {
+      sendMessages(new ArrayList<>(_queuedMessages.keySet()));
+    }
+
+    /**
+     * Write as many queued messages of the given instances as their limits allow, in one batch
+     */
+    private void sendMessages(Collection<String> instances) {
+      while (!instances.isEmpty()) {
+        List<PropertyKey> keys = new ArrayList<>();
+        List<Message> batch = new ArrayList<>();
+        Builder keyBuilder = _accessor.keyBuilder();
+        for (String instance : instances) {
+          Queue<Message> queue = _queuedMessages.get(instance);
+          int pending = _pendingCounts.get(instance);
+          while (pending < _maxPendingPerInstance && !queue.isEmpty()) {
+            Message message = queue.poll();
+            keys.add(keyBuilder.message(instance, message.getId()));
+            batch.add(message);
+            pending++;
+          }
+          _pendingCounts.put(instance, pending);
+        }
+        if (batch.isEmpty()) {
+          break;
+        }
+
+        // slots of failed writes are given to the next queued messages of the same instances
+        List<String> instancesWithFailure = new ArrayList<>();
+        boolean[] results = _accessor.createChildren(keys, batch);
+        for (int i = 0; i < results.length; i++) {
+          if (!results[i]) {
+            Message message = batch.get(i);
+            _logger.error("Failed to send message: " + keys.get(i));
+            _failedMessages.add(message);
+            _pendingCounts.put(message.getTgtName(), _pendingCounts.get(message.getTgtName()) - 1);
+            if (!instancesWithFailure.contains(message.getTgtName())) {
+              instancesWithFailure.add(message.getTgtName());
+            }
+          }
+        }
+        instances = instancesWithFailure;
+      }
+      completeIfDone();
+    }
+
+    @Override
+    public boolean isDone() {
+      return _messageReplied.size() + _failedMessages.size() >= _messagesSent.size();
+    }
+
+    @Override
+    public void onReplyMessage(Message message) {
+      String instance = message.getMsgSrc();
+      Integer pending = _pendingCounts.get(instance);
+      if (pending != null) {
+        _pendingCounts.put(instance, pending - 1);
+        sendMessages(Collections.singletonList(instance));
+      } else {
+        completeIfDone();
+      }
+    }
+
+    @Override
+    public void onTimeOut() {
+      _callbackService.unregisterAsyncCallback(_correlationId);
+      _future.completeExceptionally(new TimeoutException(String.format(
+          "Bulk send timed out after %d ms, %d of %d messages replied, %d failed to send",
+          _timeout, _messageReplied.size(), _messagesSent.size(), _failedMessages.size())));
+    }
+
+    private void completeIfDone() {
+      if (!isDone()) {
+        return;
+      }
+      // no more replies are expected for the failed messages
+      _callbackService.unregisterAsyncCallback(_correlationId);
+      if (_timer != null) {
+        _timer.cancel();
+      }
+      if (_failedMessages.isEmpty()) {
+        _future.complete(new ArrayList<>(_messageReplied));
+      } else {
+        _future.completeExceptionally(
+            new BulkSendException(_messagesSent.size(), _messageReplied, _failedMessages));
+      }
+    }
+  }
+
   private HelixDataAccessor getRecipientDataAccessor(final Criteria recipientCriteria) {
     HelixDataAccessor dataAccessor = _manager.getHelixDataAccessor();
     String clusterName = recipientCriteria.getClusterName();
@@ -179,8 +359,15 @@ public class DefaultMessagingService implements ClusterMessagingService {
   private List<Message> generateMessagesForParticipant(Criteria recipientCriteria, Message message,
       HelixDataAccessor targetDataAccessor) {
     List<Message> messages = new ArrayList<Message>();
-    List<Map<String, String>> matchedList =
-        _evaluator.evaluateCriteria(recipientCriteria, targetDataAccessor);
+    CriteriaIndex criteriaIndex = _criteriaIndex;
+    String clusterName = recipientCriteria.getClusterName();
+    List<Map<String, String>> matchedList;
+    if (criteriaIndex != null && criteriaIndex.getDataSource() == recipientCriteria.getDataSource()
+        && (clusterName == null || clusterName.equals(_manager.getClusterName()))) {
+      matchedList = _evaluator.evaluateCriteria(recipientCriteria, criteriaIndex);
+    } else {
+      matchedList = _evaluator.evaluateCriteria(recipientCriteria, targetDataAccessor);
+    }
 
     if (!matchedList.isEmpty()) {
       Map<String, String> sessionIdMap = new HashMap<String, String>();
@@ -195,28 +382,37 @@ public class DefaultMessagingService implements ClusterMessagingService {
           sessionIdMap.put(liveInstance.getInstanceName(), liveInstance.getEphemeralOwner());
         }
       }
-      for (Map<String, String> map : matchedList) {
-        String id = UUID.randomUUID().toString();
-        Message newMessage = new Message(message.getRecord(), id);
-        String srcInstanceName = _manager.getInstanceName();
-        String tgtInstanceName = map.get("instanceName");
-        // Don't send message to self
-        if (recipientCriteria.isSelfExcluded() && srcInstanceName.equalsIgnoreCase(tgtInstanceName)) {
-          continue;
-        }
-        newMessage.setSrcName(srcInstanceName);
-        newMessage.setTgtName(tgtInstanceName);
-        newMessage.setResourceName(map.get("resourceName"));
-        newMessage.setPartitionName(map.get("partitionName"));
-        if (recipientCriteria.isSessionSpecific()) {
-          newMessage.setTgtSessionId(sessionIdMap.get(tgtInstanceName));
-        }
-        messages.add(newMessage);
-      }
+      // building the messages copies the template record for every matched row, which adds up
+      // when broadcasting to every partition of a large resource
+      Stream<Map<String, String>> rows = matchedList.size() >= PARALLEL_MESSAGE_BUILD_THRESHOLD
+          ? matchedList.parallelStream() : matchedList.stream();
+      messages = rows
+          .map(row -> buildMessageForParticipant(recipientCriteria, message, row, sessionIdMap))
+          .filter(Objects::nonNull).collect(Collectors.toList());
     }
     return messages;
   }
 
+  private Message buildMessageForParticipant(Criteria recipientCriteria, Message message,
+      Map<String, String> map, Map<String, String> sessionIdMap) {
+    String srcInstanceName = _manager.getInstanceName();
+    String tgtInstanceName = map.get("instanceName");
+    // Don't send message to self
+    if (recipientCriteria.isSelfExcluded() && srcInstanceName.equalsIgnoreCase(tgtInstanceName)) {
+      return null;
+    }
+    String id = UUID.randomUUID().toString();
+    Message newMessage = new Message(message.getRecord(), id);
+    newMessage.setSrcName(srcInstanceName);
+    newMessage.setTgtName(tgtInstanceName);
+    newMessage.setResourceName(map.get("resourceName"));
+    newMessage.setPartitionName(map.get("partitionName"));
+    if (recipientCriteria.isSessionSpecific()) {
+      newMessage.setTgtSessionId(sessionIdMap.get(tgtInstanceName));
+    }
+    return newMessage;
+  }
+
   private List<Message> generateMessagesForController(Message message) {
     List<Message> messages = new ArrayList<Message>();
     String id = (message.getMsgId() == null) ? UUID.randomUUID().toString() : message.getMsgId();
@@ -331,10 +527,24 @@ public class DefaultMessagingService implements ClusterMessagingService {
     }
   }
 
+  /**
+   * Evaluate the criteria of messages to this cluster against an in-memory index, e.g. one kept
+   * up to date by a RoutingTableProvider, instead of reading the data source for every message
+   * @param criteriaIndex the index, or null to read the data source again
+   */
+  public void setCriteriaIndex(CriteriaIndex criteriaIndex) {
+    _criteriaIndex = criteriaIndex;
+  }
+
   public HelixTaskExecutor getExecutor() {
     return _taskExecutor;
   }
 
+  // For testing
+  AsyncCallbackService getAsyncCallbackService() {
+    return _asyncCallbackService;
+  }
+
   @Override
   // TODO if the manager is not Participant or Controller, no reply, so should fail immediately
   public int sendAndWait(Criteria recipientCriteria, Message message, AsyncCallback asyncCallback,
@@ -47,6 +47,16 @@ public class AsyncCallbackService implements MultiTypeMessageHandlerFactory {
     _callbackMap.put(correlationId, callback);
   }
 
+  /**
+   * Remove a callback that will not get any more replies, e.g. when its messages failed to be sent
+   * @param correlationId
+   */
+  public void unregisterAsyncCallback(String correlationId) {
+    if (_callbackMap.remove(correlationId) != null) {
+      _logger.info("unregistered correlation id " + correlationId);
+    }
+  }
+
   void verifyMessage(Message message) {
     if (!message.getMsgType().toString().equalsIgnoreCase(MessageType.TASK_REPLY.name())) {
       String errorMsg =
@@ -23,7 +23,6 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
@@ -37,7 +36,6 @@ import org.apache.helix.NotificationContext.MapKey;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.Message;
-import org.apache.helix.model.Message.Attributes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,18 +60,9 @@ public class BatchMessageHandler extends MessageHandler {
     _batchMsgWrapper = wrapper;
     _executor = executor;
 
-    // create sub-messages
-    _subMessages = new ArrayList<Message>();
-    List<String> partitionKeys = _message.getPartitionNames();
-    for (String partitionKey : partitionKeys) {
-      // assign a new message id, put batch-msg-id to parent-id field
-      Message subMsg = new Message(_message.getRecord(), UUID.randomUUID().toString());
-      subMsg.setPartitionName(partitionKey);
-      subMsg.setAttribute(Attributes.PARENT_MSG_ID, _message.getId());
-      subMsg.setBatchMessageMode(false);
-
-      _subMessages.add(subMsg);
-    }
+    // create sub-messages in memory, each with a new message id and batch-msg-id as parent-id.
+    // For a bulk transition message, every sub-message carries its own from/to state
+    _subMessages = _message.expandBatchMessage(false);
 
     // create sub-message handlers
     _subMessageHandlers = createMsgHandlers(_subMessages, context);
@@ -57,6 +57,8 @@ public class HelixTask implements MessageTask {
   volatile boolean _isTimeout = false;
   volatile boolean _isStarted = false;
   volatile boolean _isCancelled = false;
+  // when the handler, including its post handling such as the current state update, returned
+  private long _handlerEndTime = 0;
 
   public HelixTask(Message message, NotificationContext notificationContext,
       MessageHandler handler, HelixTaskExecutor executor) {
@@ -96,6 +98,7 @@ public class HelixTask implements MessageTask {
       handlerStart = System.currentTimeMillis();
       taskResult = _handler.handleMessage();
       handlerEnd = System.currentTimeMillis();
+      _handlerEndTime = handlerEnd;
 
       // cancel timeout task
       _executor.cancelTimeoutTask(this);
@@ -332,6 +335,15 @@ public class HelixTask implements MessageTask {
             new StateTransitionDataPoint(totalDelay, executionDelay, msgLatency,
                 taskResult.isSuccess());
         _executor.getParticipantMonitor().reportTransitionStat(cxt, data);
+
+        // The state transition handler sets the execution start time when it gets the state
+        // model, and the complete time before it updates the current state.
+        long completeTime = taskResult.getCompleteTime();
+        long handlerExecution = completeTime > 0 ? completeTime - msgExecutionStartTime : -1;
+        long currentStateWrite =
+            completeTime > 0 && _handlerEndTime > 0 ? _handlerEndTime - completeTime : -1;
+        _executor.getParticipantMonitor().reportTransitionLatency(message.getResourceName(),
+            transition, msgExecutionStartTime - msgReadTime, handlerExecution, currentStateWrite);
       }
     } else {
       logger.warn(
@@ -28,8 +28,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -68,6 +66,7 @@ import org.apache.helix.monitoring.mbeans.ParticipantStatusMonitor;
 import org.apache.helix.participant.HelixStateMachineEngine;
 import org.apache.helix.participant.statemachine.StateModel;
 import org.apache.helix.participant.statemachine.StateModelFactory;
+import org.apache.helix.util.HashedWheelTimer;
 import org.apache.helix.util.HelixUtil;
 import org.apache.helix.util.StatusUpdateUtil;
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
@@ -123,6 +122,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
   private Long _lastSessionSyncTime;
   private static final int SESSION_SYNC_INTERVAL = 2000; // 2 seconds
   private static final String SESSION_SYNC = "SESSION-SYNC";
+  private static final String MESSAGE_TIMEOUT_TIMER_NAME = "MessageTimeoutTimer";
   /**
    * Map of MsgType->MsgHandlerFactoryRegistryItem
    */
@@ -140,8 +140,8 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
   final Set<String> _resourcesThreadpoolChecked;
   final Set<String> _transitionTypeThreadpoolChecked;
 
-  // timer for schedule timeout tasks
-  final Timer _timer;
+  // timer wheel for schedule timeout tasks
+  final HashedWheelTimer _timer;
 
   private boolean _isShuttingDown;
 
@@ -175,7 +175,9 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
     _lock = new Object();
     _statusUpdateUtil = new StatusUpdateUtil();
 
-    _timer = new Timer(true); // created as a daemon timer thread to handle task timeout
+    // a daemon timer wheel to handle task timeout
+    _timer = new HashedWheelTimer(MESSAGE_TIMEOUT_TIMER_NAME);
+    _monitor.createTimerWheelMonitor(MESSAGE_TIMEOUT_TIMER_NAME, _timer);
 
     _isShuttingDown = false;
 
@@ -436,10 +438,10 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
               .putIfAbsent(getMessageTarget(message.getResourceName(), message.getPartitionName()),
                   taskId);
 
-          TimerTask timerTask = null;
+          HashedWheelTimer.Timeout timerTask = null;
           if (message.getExecutionTimeout() > 0) {
-            timerTask = new MessageTimeoutTask(this, task);
-            _timer.schedule(timerTask, message.getExecutionTimeout());
+            timerTask = _timer.newTimeout(new MessageTimeoutTask(this, task),
+                message.getExecutionTimeout(), TimeUnit.MILLISECONDS);
             LOG.info("Message starts with timeout " + message.getExecutionTimeout() + " MsgId: "
                 + task.getTaskId());
           } else {
@@ -1166,7 +1168,7 @@ public class HelixTaskExecutor implements MessageListener, TaskExecutor {
   public void shutdown() {
     LOG.info("Shutting down HelixTaskExecutor");
     _isShuttingDown = true;
-    _timer.cancel();
+    _timer.stop();
 
     reset();
     _monitor.shutDown();
@@ -19,15 +19,17 @@ package org.apache.helix.messaging.handling;
  * under the License.
  */
 
-import java.util.TimerTask;
 import java.util.concurrent.Future;
 
+import org.apache.helix.util.HashedWheelTimer;
+
 public class MessageTaskInfo {
   final MessageTask _task;
   final Future<HelixTaskResult> _future;
-  final TimerTask _timerTask;
+  final HashedWheelTimer.Timeout _timerTask;
 
-  public MessageTaskInfo(MessageTask task, Future<HelixTaskResult> future, TimerTask timerTask) {
+  public MessageTaskInfo(MessageTask task, Future<HelixTaskResult> future,
+      HashedWheelTimer.Timeout timerTask) {
     _task = task;
     _future = future;
     _timerTask = timerTask;
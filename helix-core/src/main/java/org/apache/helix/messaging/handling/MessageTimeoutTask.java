@@ -19,13 +19,11 @@ package org.apache.helix.messaging.handling;
  * under the License.
  */
 
-import java.util.TimerTask;
-
 import org.apache.helix.model.Message;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class MessageTimeoutTask extends TimerTask {
+public class MessageTimeoutTask implements Runnable {
   private static Logger LOG = LoggerFactory.getLogger(MessageTimeoutTask.class);
 
   final HelixTaskExecutor _executor;
@@ -59,6 +59,8 @@ public class ClusterConfig extends HelixProperty {
     // rebalancing.
     STATE_TRANSITION_THROTTLE_CONFIGS,
     STATE_TRANSITION_CANCELLATION_ENABLED,
+    // Whether batch messages may carry transitions of different types in one message
+    BULK_TRANSITION_MESSAGE_ENABLED,
     MISS_TOP_STATE_DURATION_THRESHOLD,
     RESOURCE_PRIORITY_FIELD,
     REBALANCE_TIMER_PERIOD,
@@ -488,6 +490,22 @@ public class ClusterConfig extends HelixProperty {
         .getBooleanField(ClusterConfigProperty.STATE_TRANSITION_CANCELLATION_ENABLED.name(), false);
   }
 
+  /**
+   * Enable/disable bulk state transition messages. When enabled, the controller packs all the
+   * state transitions of a batch-mode resource on one instance into a single message, instead of
+   * one message per (from state, to state) pair. Only the instances whose live instance announces
+   * the support get bulk messages.
+   * @param enable
+   */
+  public void setBulkTransitionMessageEnabled(boolean enable) {
+    _record.setBooleanField(ClusterConfigProperty.BULK_TRANSITION_MESSAGE_ENABLED.name(), enable);
+  }
+
+  public boolean isBulkTransitionMessageEnabled() {
+    return _record
+        .getBooleanField(ClusterConfigProperty.BULK_TRANSITION_MESSAGE_ENABLED.name(), false);
+  }
+
   @Override
   public boolean equals(Object obj) {
     if (obj instanceof ClusterConfig) {
@@ -19,6 +19,10 @@ package org.apache.helix.model;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -41,9 +45,12 @@ public class ExternalView extends HelixProperty {
     GROUP_ROUTING_ENABLED,
     MIN_ACTIVE_REPLICAS,
     STATE_MODEL_DEF_REF,
-    REPLICAS
+    REPLICAS,
+    STATE_END_TIMES
   }
 
+  private static final char STATE_END_TIME_SEPARATOR = '=';
+
   /**
    * Instantiate an external view with the resource it corresponds to
    * @param resource the name of the resource
@@ -100,6 +107,62 @@ public class ExternalView extends HelixProperty {
     return _record.getMapField(partitionName);
   }
 
+  /**
+   * Record when the latest state transition reflected in the state map of each partition completed
+   * on its participant. Spectators use it to measure how long the transitions took to reach them.
+   * The times are kept in the STATE_END_TIMES list field as "partition=endTime" entries, apart from
+   * the per partition fields.
+   * @param endTimes partition -> completion time of the transition in ms
+   */
+  public void setStateEndTimes(Map<String, Long> endTimes) {
+    if (endTimes.isEmpty()) {
+      _record.getListFields().remove(ExternalViewProperty.STATE_END_TIMES.name());
+      return;
+    }
+    List<String> entries = new ArrayList<>(endTimes.size());
+    for (Map.Entry<String, Long> entry : new TreeMap<>(endTimes).entrySet()) {
+      entries.add(entry.getKey() + STATE_END_TIME_SEPARATOR + entry.getValue());
+    }
+    _record.setListField(ExternalViewProperty.STATE_END_TIMES.name(), entries);
+  }
+
+  /**
+   * Get the completion time of the latest state transition of each partition
+   * @return partition -> completion time in ms, only for the partitions that have one recorded
+   */
+  public Map<String, Long> getStateEndTimes() {
+    List<String> entries = _record.getListField(ExternalViewProperty.STATE_END_TIMES.name());
+    if (entries == null || entries.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    Map<String, Long> endTimes = new HashMap<>(entries.size() * 2);
+    for (String entry : entries) {
+      // the partition name may contain the separator, the time does not
+      int separator = entry.lastIndexOf(STATE_END_TIME_SEPARATOR);
+      if (separator <= 0) {
+        continue;
+      }
+      try {
+        endTimes.put(entry.substring(0, separator),
+            Long.parseLong(entry.substring(separator + 1)));
+      } catch (NumberFormatException e) {
+        // ignore the malformed entry
+      }
+    }
+    return endTimes;
+  }
+
+  /**
+   * Get the completion time of the latest state transition of a partition. Use
+   * {@link #getStateEndTimes()} to look up many partitions.
+   * @param partitionName the partition
+   * @return the completion time in ms, or -1 if it is not recorded
+   */
+  public long getStateEndTime(String partitionName) {
+    Long endTime = getStateEndTimes().get(partitionName);
+    return endTime == null ? -1L : endTime;
+  }
+
   /**
    * Get the resource represented by this view
    * @return the name of the resource
@@ -38,7 +38,8 @@ public class LiveInstance extends HelixProperty {
     HELIX_VERSION,
     LIVE_INSTANCE,
     ZKPROPERTYTRANSFERURL,
-    RESOURCE_CAPACITY
+    RESOURCE_CAPACITY,
+    BULK_TRANSITION_MESSAGE_SUPPORTED
   }
 
   /**
@@ -166,6 +167,25 @@ public class LiveInstance extends HelixProperty {
     _record.setMapField(LiveInstanceProperty.RESOURCE_CAPACITY.name(), resourceQuotaMap);
   }
 
+  /**
+   * Check if this instance can handle bulk transition messages, which carry a from and to state
+   * per partition. Instances that do not set it only handle batch messages of one transition.
+   * @return true if bulk transition messages are supported, false otherwise
+   */
+  public boolean isBulkTransitionMessageSupported() {
+    return _record
+        .getBooleanField(LiveInstanceProperty.BULK_TRANSITION_MESSAGE_SUPPORTED.name(), false);
+  }
+
+  /**
+   * Set if this instance can handle bulk transition messages
+   * @param supported true if bulk transition messages are supported, false otherwise
+   */
+  public void setBulkTransitionMessageSupported(boolean supported) {
+    _record.setBooleanField(LiveInstanceProperty.BULK_TRANSITION_MESSAGE_SUPPORTED.name(),
+        supported);
+  }
+
   /**
    * Get the last modified time of this live instance
    * @return UNIX timestamp
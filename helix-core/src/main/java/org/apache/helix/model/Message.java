@@ -724,6 +724,87 @@ public class Message extends HelixProperty {
     return partitionNames;
   }
 
+  /**
+   * Add a partition transition to a bulk state transition message. Partition names, from states
+   * and to states are kept as parallel list fields, so a single message can carry transitions of
+   * different types for many partitions of the same resource.
+   * @param partitionName the partition name to add
+   * @param fromState the current state of the partition
+   * @param toState the state the partition should transit to
+   */
+  public void addBulkTransition(String partitionName, String fromState, String toState) {
+    getOrCreateListField(Attributes.PARTITION_NAME.name()).add(partitionName);
+    getOrCreateListField(Attributes.FROM_STATE.name()).add(fromState);
+    getOrCreateListField(Attributes.TO_STATE.name()).add(toState);
+  }
+
+  private List<String> getOrCreateListField(String key) {
+    List<String> list = _record.getListField(key);
+    if (list == null) {
+      list = new ArrayList<>();
+      _record.setListField(key, list);
+    }
+    return list;
+  }
+
+  /**
+   * Check if this is a bulk state transition message, i.e. a batch message whose partitions carry
+   * their own from and to states.
+   * @return true if the message carries per-partition transitions, false otherwise
+   */
+  public boolean isBulkTransitionMessage() {
+    return getBatchMessageMode() && _record.getListField(Attributes.TO_STATE.name()) != null;
+  }
+
+  /**
+   * Expand a batch message into one message per partition. The sub-messages only live in memory:
+   * they get a deep copy of the simple, map and list fields of this message, except the partition
+   * list, and for a bulk transition message each of them carries its own from and to state instead
+   * of the per-partition state lists.
+   * @param keepMsgId true to let every sub-message share the id of this message, false to assign
+   *                  new ids and record this message's id as {@link Attributes#PARENT_MSG_ID}
+   * @return list of per-partition messages, in the order of {@link #getPartitionNames()}
+   */
+  public List<Message> expandBatchMessage(boolean keepMsgId) {
+    List<String> partitionNames = getPartitionNames();
+    List<String> fromStates = _record.getListField(Attributes.FROM_STATE.name());
+    List<String> toStates = _record.getListField(Attributes.TO_STATE.name());
+    boolean isBulk = isBulkTransitionMessage() && fromStates != null
+        && fromStates.size() == partitionNames.size() && toStates.size() == partitionNames.size();
+
+    List<Message> subMessages = new ArrayList<>(partitionNames.size());
+    for (int i = 0; i < partitionNames.size(); i++) {
+      String subMsgId = keepMsgId ? getId() : UUID.randomUUID().toString();
+      ZNRecord subRecord = new ZNRecord(subMsgId);
+      subRecord.setSimpleFields(new HashMap<>(_record.getSimpleFields()));
+      for (Map.Entry<String, Map<String, String>> mapField : _record.getMapFields().entrySet()) {
+        subRecord.setMapField(mapField.getKey(), new HashMap<>(mapField.getValue()));
+      }
+      for (Map.Entry<String, List<String>> listField : _record.getListFields().entrySet()) {
+        String key = listField.getKey();
+        if (key.equals(Attributes.PARTITION_NAME.name()) || (isBulk && (
+            key.equals(Attributes.FROM_STATE.name()) || key.equals(Attributes.TO_STATE.name())))) {
+          continue;
+        }
+        subRecord.setListField(key, new ArrayList<>(listField.getValue()));
+      }
+
+      Message subMsg = new Message(subRecord);
+      subMsg.setMsgId(subMsgId);
+      subMsg.setPartitionName(partitionNames.get(i));
+      if (isBulk) {
+        subMsg.setFromState(fromStates.get(i));
+        subMsg.setToState(toStates.get(i));
+      }
+      if (!keepMsgId) {
+        subMsg.setAttribute(Attributes.PARENT_MSG_ID, getId());
+        subMsg.setBatchMessageMode(false);
+      }
+      subMessages.add(subMsg);
+    }
+    return subMessages;
+  }
+
   /**
    * Get the completion time of previous task associated with this message.
    * This applies only when this is a relay message,
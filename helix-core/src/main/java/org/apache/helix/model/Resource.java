@@ -37,6 +37,7 @@ public class Resource {
   private String _stateModelFactoryName;
   private int _bucketSize = 0;
   private boolean _batchMessageMode = false;
+  private boolean _bulkTransitionMessageMode = false;
   private String _resourceGroupName;
   private String _resourceTag;
 
@@ -161,6 +162,22 @@ public class Resource {
     return _batchMessageMode;
   }
 
+  /**
+   * Set whether or not batch messages for this resource may carry transitions of different types
+   * @param mode true to send bulk transition messages, false to batch by transition type
+   */
+  public void setBulkTransitionMessageMode(boolean mode) {
+    _bulkTransitionMessageMode = mode;
+  }
+
+  /**
+   * Get the bulk transition message mode
+   * @return true if enabled, false if disabled
+   */
+  public boolean getBulkTransitionMessageMode() {
+    return _bulkTransitionMessageMode;
+  }
+
   /**
    * Get the resource tag assigned to this resource
    *
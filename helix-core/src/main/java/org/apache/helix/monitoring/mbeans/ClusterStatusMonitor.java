@@ -86,6 +86,9 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
   private AtomicLong _totalPastDueMsgSize = new AtomicLong(0L);
   private boolean _rebalanceFailure = false;
   private AtomicLong _rebalanceFailureCount = new AtomicLong(0L);
+  private AtomicLong _taskDataBytesWritten = new AtomicLong(0L);
+  private AtomicLong _totalTaskDataBytesWritten = new AtomicLong(0L);
+  private AtomicLong _skippedTaskDataWriteCount = new AtomicLong(0L);
 
   private final ConcurrentHashMap<String, ResourceMonitor> _resourceMonitorMap =
       new ConcurrentHashMap<>();
@@ -621,6 +624,9 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
       _totalPastDueMsgSize.set(0L);
       _totalMsgQueueSize.set(0L);
       _rebalanceFailureCount.set(0L);
+      _taskDataBytesWritten.set(0L);
+      _totalTaskDataBytesWritten.set(0L);
+      _skippedTaskDataWriteCount.set(0L);
     } catch (Exception e) {
       LOG.error("Fail to reset ClusterStatusMonitor, cluster: " + _clusterName, e);
     }
@@ -899,6 +905,11 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
     }
   }
 
+  // For test only
+  protected WorkflowMonitor getWorkflowMonitor(String workflowType) {
+    return _perTypeWorkflowMonitorMap.get(workflowType);
+  }
+
   // For test only
   protected ResourceMonitor getResourceMonitor(String resourceName) {
     return _resourceMonitorMap.get(resourceName);
@@ -999,6 +1010,32 @@ public class ClusterStatusMonitor implements ClusterStatusMonitorMBean {
     return _rebalanceFailureCount.get();
   }
 
+  /**
+   * Report the task data written back by a pipeline
+   * @param bytesWritten approximate number of bytes of the contexts and assignments written
+   * @param skippedWrites number of contexts and assignments updated without any change
+   */
+  public void updateTaskDataPersistStats(long bytesWritten, long skippedWrites) {
+    _taskDataBytesWritten.set(bytesWritten);
+    _totalTaskDataBytesWritten.addAndGet(bytesWritten);
+    _skippedTaskDataWriteCount.addAndGet(skippedWrites);
+  }
+
+  @Override
+  public long getTaskDataBytesWrittenGauge() {
+    return _taskDataBytesWritten.get();
+  }
+
+  @Override
+  public long getTaskDataBytesWrittenCounter() {
+    return _totalTaskDataBytesWritten.get();
+  }
+
+  @Override
+  public long getSkippedTaskDataWriteCounter() {
+    return _skippedTaskDataWriteCount.get();
+  }
+
   @Override
   public long getTotalResourceGauge() {
     return _resourceMonitorMap.size();
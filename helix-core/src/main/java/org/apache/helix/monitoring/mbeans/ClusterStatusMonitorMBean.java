@@ -88,6 +88,23 @@ public interface ClusterStatusMonitorMBean extends SensorNameProvider {
    */
   long getRebalanceFailureCounter();
 
+  /**
+   * @return approximate number of bytes of task contexts and assignments written by the last
+   *         task pipeline
+   */
+  long getTaskDataBytesWrittenGauge();
+
+  /**
+   * @return approximate number of bytes of task contexts and assignments written in total
+   */
+  long getTaskDataBytesWrittenCounter();
+
+  /**
+   * @return number of task contexts and assignments updated without any change, which were not
+   *         written
+   */
+  long getSkippedTaskDataWriteCounter();
+
   /**
    * @return number of all resources in this cluster
    */
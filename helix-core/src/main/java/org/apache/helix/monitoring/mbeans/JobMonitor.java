@@ -48,7 +48,8 @@ public class JobMonitor extends DynamicMBeanProvider {
   private String _jobType;
   private long _lastResetTime;
 
-  // Counters
+  // Counters. The counters and gauges are updated under the monitor lock, because the workflows of
+  // different quota types may be scheduled in parallel and share the monitor of a job type.
   private SimpleDynamicMetric<Long> _successfulJobCount;
   private SimpleDynamicMetric<Long> _failedJobCount;
   private SimpleDynamicMetric<Long> _abortedJobCount;
@@ -115,7 +116,7 @@ public class JobMonitor extends DynamicMBeanProvider {
     updateJobMetricsWithLatency(to, 0);
   }
 
-  public void updateJobMetricsWithLatency(TaskState to, long latency) {
+  public synchronized void updateJobMetricsWithLatency(TaskState to, long latency) {
     // TODO maybe use separate TIMED_OUT counter later
     if (to.equals(TaskState.FAILED) || to.equals(TaskState.TIMED_OUT)) {
       incrementSimpleDynamicMetric(_failedJobCount);
@@ -135,7 +136,7 @@ public class JobMonitor extends DynamicMBeanProvider {
   /**
    * Reset job gauges
    */
-  public void resetJobGauge() {
+  public synchronized void resetJobGauge() {
     _queuedJobGauge.updateValue(0L);
     _existingJobGauge.updateValue(0L);
     _runningJobGauge.updateValue(0L);
@@ -149,7 +150,7 @@ public class JobMonitor extends DynamicMBeanProvider {
    * Refresh job gauges
    * @param to The current state of job
    */
-  public void updateJobGauge(TaskState to) {
+  public synchronized void updateJobGauge(TaskState to) {
     incrementSimpleDynamicMetric(_existingJobGauge);
     if (to == null || to.equals(TaskState.NOT_STARTED)) {
       incrementSimpleDynamicMetric(_queuedJobGauge);
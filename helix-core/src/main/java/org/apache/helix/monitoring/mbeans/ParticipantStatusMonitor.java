@@ -20,6 +20,9 @@ package org.apache.helix.monitoring.mbeans;
  */
 
 import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
@@ -29,9 +32,12 @@ import javax.management.MBeanServer;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectName;
 
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.model.Message;
 import org.apache.helix.monitoring.StateTransitionContext;
 import org.apache.helix.monitoring.StateTransitionDataPoint;
+import org.apache.helix.util.HashedWheelTimer;
+import org.apache.helix.util.HelixUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -39,13 +45,19 @@ public class ParticipantStatusMonitor {
   private final ConcurrentHashMap<StateTransitionContext, StateTransitionStatMonitor> _monitorMap =
       new ConcurrentHashMap<>();
   private static final Logger LOG = LoggerFactory.getLogger(ParticipantStatusMonitor.class);
+  private static final int DEFAULT_MAX_TRANSITION_LATENCY_MONITORS = 1000;
 
   private MBeanServer _beanServer;
   private ParticipantMessageMonitor _messageMonitor;
   private MessageLatencyMonitor _messageLatencyMonitor;
   private Map<String, ThreadPoolExecutorMonitor> _executorMonitors;
+  private Map<String, TimerWheelMonitor> _timerWheelMonitors;
+  // resource and transition -> monitor, in access order to evict the least recently used one
+  private Map<String, TransitionLatencyMonitor> _transitionLatencyMonitors;
+  private final String _instanceName;
 
   public ParticipantStatusMonitor(boolean isParticipant, String instanceName) {
+    _instanceName = instanceName;
     try {
       _beanServer = ManagementFactory.getPlatformMBeanServer();
       if (isParticipant) {
@@ -54,6 +66,11 @@ public class ParticipantStatusMonitor {
             new MessageLatencyMonitor(MonitorDomainNames.CLMParticipantReport.name(), instanceName);
         _messageLatencyMonitor.register();
         _executorMonitors = new ConcurrentHashMap<>();
+        _timerWheelMonitors = new ConcurrentHashMap<>();
+        _transitionLatencyMonitors = createTransitionLatencyMonitorMap(
+            HelixUtil.getSystemPropertyAsInt(
+                SystemPropertyKeys.PARTICIPANT_TRANSITION_LATENCY_MAX_SERIES,
+                DEFAULT_MAX_TRANSITION_LATENCY_MONITORS));
         register(_messageMonitor, getObjectName(_messageMonitor.getParticipantBeanName()));
       }
     } catch (Exception e) {
@@ -114,6 +131,52 @@ public class ParticipantStatusMonitor {
     }
   }
 
+  private static Map<String, TransitionLatencyMonitor> createTransitionLatencyMonitorMap(
+      final int maxMonitors) {
+    return new LinkedHashMap<String, TransitionLatencyMonitor>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, TransitionLatencyMonitor> eldest) {
+        if (size() > maxMonitors) {
+          eldest.getValue().unregister();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Report the latencies of a state transition of a resource. The number of monitored resource
+   * and transition pairs is bounded, the least recently reported one is dropped first.
+   * @param resourceName the resource of the transition
+   * @param transition the transition, e.g. OFFLINE--SLAVE
+   * @param queueWaitMs time between the message was read and the transition started
+   * @param handlerExecutionMs time spent in the state model transition method
+   * @param currentStateWriteMs time spent persisting the resulting current state
+   */
+  public void reportTransitionLatency(String resourceName, String transition, long queueWaitMs,
+      long handlerExecutionMs, long currentStateWriteMs) {
+    if (_transitionLatencyMonitors == null) {
+      return;
+    }
+    String key = resourceName + "." + transition;
+    TransitionLatencyMonitor monitor;
+    synchronized (_transitionLatencyMonitors) {
+      monitor = _transitionLatencyMonitors.get(key);
+      if (monitor == null) {
+        try {
+          monitor = new TransitionLatencyMonitor(MonitorDomainNames.CLMParticipantReport.name(),
+              _instanceName, resourceName, transition).register();
+        } catch (JMException e) {
+          LOG.warn(String.format("Error in creating TransitionLatencyMonitor for %s", key), e);
+          return;
+        }
+        _transitionLatencyMonitors.put(key, monitor);
+      }
+    }
+    monitor.updateLatency(queueWaitMs, handlerExecutionMs, currentStateWriteMs);
+  }
+
   private ObjectName getObjectName(String name) throws MalformedObjectNameException {
     return new ObjectName(String.format("%s:%s", MonitorDomainNames.CLMParticipantReport.name(), name));
   }
@@ -162,6 +225,22 @@ public class ParticipantStatusMonitor {
       }
     }
     _monitorMap.clear();
+    if (_transitionLatencyMonitors != null) {
+      List<TransitionLatencyMonitor> monitors;
+      synchronized (_transitionLatencyMonitors) {
+        monitors = new ArrayList<>(_transitionLatencyMonitors.values());
+        _transitionLatencyMonitors.clear();
+      }
+      for (TransitionLatencyMonitor monitor : monitors) {
+        monitor.unregister();
+      }
+    }
+    if (_timerWheelMonitors != null) {
+      for (TimerWheelMonitor timerWheelMonitor : _timerWheelMonitors.values()) {
+        timerWheelMonitor.unregister();
+      }
+      _timerWheelMonitors.clear();
+    }
   }
 
   public void createExecutorMonitor(String type, ExecutorService executor) {
@@ -189,4 +268,20 @@ public class ParticipantStatusMonitor {
       }
     }
   }
+
+  public void createTimerWheelMonitor(String timerName, HashedWheelTimer timer) {
+    if (_timerWheelMonitors == null) {
+      return;
+    }
+
+    try {
+      TimerWheelMonitor monitor =
+          new TimerWheelMonitor(MonitorDomainNames.CLMParticipantReport.name(), _instanceName,
+              timerName).register();
+      timer.setMonitor(monitor);
+      _timerWheelMonitors.put(timerName, monitor);
+    } catch (JMException e) {
+      LOG.warn(String.format("Error in creating TimerWheelMonitor for timer=%s", timerName), e);
+    }
+  }
 }
@@ -51,6 +51,17 @@ public class RoutingTableProviderMonitor extends DynamicMBeanProvider {
   private HistogramDynamicMetric _statePropLatencyGauge;
 
   public RoutingTableProviderMonitor(final PropertyType propertyType, String clusterName) {
+    this(propertyType, clusterName, propertyType.equals(PropertyType.CURRENTSTATES));
+  }
+
+  /**
+   * @param propertyType the data type of the routing table
+   * @param clusterName the cluster name
+   * @param statePropagationLatencyEnabled whether to report StatePropagationLatencyGauge, by
+   *          default only for current states
+   */
+  public RoutingTableProviderMonitor(final PropertyType propertyType, String clusterName,
+      boolean statePropagationLatencyEnabled) {
     _propertyType = propertyType;
     _clusterName = clusterName == null ? DEFAULT : clusterName;
 
@@ -64,7 +75,7 @@ public class RoutingTableProviderMonitor extends DynamicMBeanProvider {
     _callbackCounter = new SimpleDynamicMetric("CallbackCounter", 0l);
     _eventQueueSizeGauge = new SimpleDynamicMetric("EventQueueSizeGauge", 0l);
     _dataRefreshCounter = new SimpleDynamicMetric("DataRefreshCounter", 0l);
-    if (propertyType.equals(PropertyType.CURRENTSTATES)) {
+    if (statePropagationLatencyEnabled) {
       _statePropLatencyGauge = new HistogramDynamicMetric("StatePropagationLatencyGauge",
           new Histogram(
               new SlidingTimeWindowArrayReservoir(getResetIntervalInMs(), TimeUnit.MILLISECONDS)));
@@ -87,7 +98,7 @@ public class RoutingTableProviderMonitor extends DynamicMBeanProvider {
     _eventQueueSizeGauge.updateValue(currentQueueSize);
   }
 
-  public void increaseDataRefreshCounters(long startTime) {
+  public synchronized void increaseDataRefreshCounters(long startTime) {
     _dataRefreshCounter.updateValue(_dataRefreshCounter.getValue() + 1);
     _dataRefreshLatencyGauge.updateValue(System.currentTimeMillis() - startTime);
   }
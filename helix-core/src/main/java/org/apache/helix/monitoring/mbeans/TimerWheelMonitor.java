@@ -0,0 +1,93 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.HistogramDynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.SimpleDynamicMetric;
+
+/**
+ * Reports the health of a {@link org.apache.helix.util.HashedWheelTimer}. A growing tick lag means
+ * the timer worker is falling behind, e.g. because expired tasks are slow, and timeouts fire late.
+ */
+public class TimerWheelMonitor extends DynamicMBeanProvider {
+  private static final String MBEAN_DESCRIPTION = "Helix Timer Wheel Monitor";
+  public static final String TIMER_KEY = "Timer";
+
+  private final String _domainName;
+  private final String _instanceName;
+  private final String _timerName;
+  private final String _sensorName;
+
+  private HistogramDynamicMetric _tickLagGauge;
+  private SimpleDynamicMetric<Long> _pendingTimeoutsGauge;
+  private SimpleDynamicMetric<Long> _expiredTimeoutsCounter;
+
+  public TimerWheelMonitor(String domainName, String instanceName, String timerName) {
+    _domainName = domainName;
+    _instanceName = instanceName;
+    _timerName = timerName;
+    _sensorName = String.format("%s.%s", ParticipantMessageMonitor.PARTICIPANT_STATUS_KEY,
+        timerName);
+
+    _tickLagGauge = new HistogramDynamicMetric("TickLagGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(getResetIntervalInMs(), TimeUnit.MILLISECONDS)));
+    _pendingTimeoutsGauge = new SimpleDynamicMetric("PendingTimeoutsGauge", 0l);
+    _expiredTimeoutsCounter = new SimpleDynamicMetric("ExpiredTimeoutsCounter", 0l);
+  }
+
+  @Override
+  public String getSensorName() {
+    return _sensorName;
+  }
+
+  /**
+   * Called by the timer worker once per tick
+   * @param tickLagMs how late the tick was processed
+   * @param pendingTimeouts number of pending timeouts
+   * @param expiredTimeouts number of timeouts fired in this tick
+   */
+  public void updateTick(long tickLagMs, long pendingTimeouts, long expiredTimeouts) {
+    _tickLagGauge.updateValue(tickLagMs);
+    _pendingTimeoutsGauge.updateValue(pendingTimeouts);
+    if (expiredTimeouts > 0) {
+      incrementSimpleDynamicMetric(_expiredTimeoutsCounter, expiredTimeouts);
+    }
+  }
+
+  @Override
+  public TimerWheelMonitor register() throws JMException {
+    List<DynamicMetric<?, ?>> attributeList = new ArrayList<>();
+    attributeList.add(_tickLagGauge);
+    attributeList.add(_pendingTimeoutsGauge);
+    attributeList.add(_expiredTimeoutsCounter);
+    doRegister(attributeList, MBEAN_DESCRIPTION, _domainName,
+        ParticipantMessageMonitor.PARTICIPANT_KEY, _instanceName, TIMER_KEY, _timerName);
+    return this;
+  }
+}
@@ -0,0 +1,104 @@
+package org.apache.helix.monitoring.mbeans;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.SlidingTimeWindowArrayReservoir;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMBeanProvider;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.DynamicMetric;
+import org.apache.helix.monitoring.mbeans.dynamicMBeans.HistogramDynamicMetric;
+
+/**
+ * Latency histograms of the state transitions of one resource and one (from, to) transition on a
+ * participant, split into the time the message waited to be executed, the time spent in the
+ * state model and the time spent writing the current state.
+ */
+public class TransitionLatencyMonitor extends DynamicMBeanProvider {
+  private static final String MBEAN_DESCRIPTION = "Helix Participant Transition Latency Monitor";
+  public static final String RESOURCE_KEY = "Resource";
+  public static final String TRANSITION_KEY = "Transition";
+
+  private final String _domainName;
+  private final String _instanceName;
+  private final String _resourceName;
+  private final String _transition;
+
+  private HistogramDynamicMetric _queueWaitLatencyGauge;
+  private HistogramDynamicMetric _handlerExecutionLatencyGauge;
+  private HistogramDynamicMetric _currentStateWriteLatencyGauge;
+
+  public TransitionLatencyMonitor(String domainName, String instanceName, String resourceName,
+      String transition) {
+    _domainName = domainName;
+    _instanceName = instanceName;
+    _resourceName = resourceName;
+    _transition = transition;
+
+    _queueWaitLatencyGauge = new HistogramDynamicMetric("QueueWaitLatencyGauge", new Histogram(
+        new SlidingTimeWindowArrayReservoir(getResetIntervalInMs(), TimeUnit.MILLISECONDS)));
+    _handlerExecutionLatencyGauge = new HistogramDynamicMetric("HandlerExecutionLatencyGauge",
+        new Histogram(
+            new SlidingTimeWindowArrayReservoir(getResetIntervalInMs(), TimeUnit.MILLISECONDS)));
+    _currentStateWriteLatencyGauge = new HistogramDynamicMetric("CurrentStateWriteLatencyGauge",
+        new Histogram(
+            new SlidingTimeWindowArrayReservoir(getResetIntervalInMs(), TimeUnit.MILLISECONDS)));
+  }
+
+  @Override
+  public String getSensorName() {
+    return String.format("%s.%s.%s.%s", ParticipantMessageMonitor.PARTICIPANT_STATUS_KEY,
+        _instanceName, _resourceName, _transition);
+  }
+
+  /**
+   * Record the latencies of one state transition, negative values are not recorded
+   * @param queueWaitMs time between the message was read and the transition started
+   * @param handlerExecutionMs time spent in the state model transition method
+   * @param currentStateWriteMs time spent persisting the resulting current state
+   */
+  public void updateLatency(long queueWaitMs, long handlerExecutionMs, long currentStateWriteMs) {
+    if (queueWaitMs >= 0) {
+      _queueWaitLatencyGauge.updateValue(queueWaitMs);
+    }
+    if (handlerExecutionMs >= 0) {
+      _handlerExecutionLatencyGauge.updateValue(handlerExecutionMs);
+    }
+    if (currentStateWriteMs >= 0) {
+      _currentStateWriteLatencyGauge.updateValue(currentStateWriteMs);
+    }
+  }
+
+  @Override
+  public TransitionLatencyMonitor register() throws JMException {
+    List<DynamicMetric<?, ?>> attributeList = new ArrayList<>();
+    attributeList.add(_queueWaitLatencyGauge);
+    attributeList.add(_handlerExecutionLatencyGauge);
+    attributeList.add(_currentStateWriteLatencyGauge);
+    doRegister(attributeList, MBEAN_DESCRIPTION, _domainName,
+        ParticipantMessageMonitor.PARTICIPANT_KEY, _instanceName, RESOURCE_KEY, _resourceName,
+        TRANSITION_KEY, _transition);
+    return this;
+  }
+}
@@ -28,6 +28,8 @@ public class WorkflowMonitor implements WorkflowMonitorMBean {
   private String _clusterName;
   private String _workflowType;
 
+  // Updated under the monitor lock, because the workflows of different quota types may be
+  // scheduled in parallel and share the monitor of a workflow type
   private long _successfulWorkflowCount;
   private long _failedWorkflowCount;
   private long _failedWorkflowGauge;
@@ -54,42 +56,42 @@ public class WorkflowMonitor implements WorkflowMonitorMBean {
   }
 
   @Override
-  public long getSuccessfulWorkflowCount() {
+  public synchronized long getSuccessfulWorkflowCount() {
     return _successfulWorkflowCount;
   }
 
   @Override
-  public long getFailedWorkflowCount() {
+  public synchronized long getFailedWorkflowCount() {
     return _failedWorkflowCount;
   }
 
   @Override
-  public long getFailedWorkflowGauge() {
+  public synchronized long getFailedWorkflowGauge() {
     return _failedWorkflowGauge;
   }
 
   @Override
-  public long getExistingWorkflowGauge() {
+  public synchronized long getExistingWorkflowGauge() {
     return _existingWorkflowGauge;
   }
 
   @Override
-  public long getQueuedWorkflowGauge() {
+  public synchronized long getQueuedWorkflowGauge() {
     return _queuedWorkflowGauge;
   }
 
   @Override
-  public long getRunningWorkflowGauge() {
+  public synchronized long getRunningWorkflowGauge() {
     return _runningWorkflowGauge;
   }
 
   @Override
-  public long getWorkflowLatencyCount() {
+  public synchronized long getWorkflowLatencyCount() {
     return _totalWorkflowLatencyCount;
   }
 
   @Override
-  public long getMaximumWorkflowLatencyGauge() {
+  public synchronized long getMaximumWorkflowLatencyGauge() {
     return _maximumWorkflowLatencyGauge;
   }
 
@@ -110,7 +112,7 @@ public class WorkflowMonitor implements WorkflowMonitorMBean {
     updateWorkflowCounters(to, 0);
   }
 
-  public void updateWorkflowCounters(TaskState to, long latency) {
+  public synchronized void updateWorkflowCounters(TaskState to, long latency) {
     if (to.equals(TaskState.FAILED)) {
       _failedWorkflowCount++;
     } else if (to.equals(TaskState.COMPLETED)) {
@@ -125,7 +127,7 @@ public class WorkflowMonitor implements WorkflowMonitorMBean {
   /**
    * Reset gauges
    */
-  public void resetGauges() {
+  public synchronized void resetGauges() {
     _failedWorkflowGauge = 0L;
     _existingWorkflowGauge = 0L;
     _runningWorkflowGauge = 0L;
@@ -140,7 +142,7 @@ public class WorkflowMonitor implements WorkflowMonitorMBean {
    * Refresh gauges via transition state
    * @param current current workflow state
    */
-  public void updateWorkflowGauges(TaskState current) {
+  public synchronized void updateWorkflowGauges(TaskState current) {
     if (current == null || current.equals(TaskState.NOT_STARTED)) {
       _queuedWorkflowGauge++;
     } else if (current.equals(TaskState.IN_PROGRESS)) {
@@ -0,0 +1,379 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A RoutingTable of ExternalViews that stores the replicas of each resource in primitive arrays
+ * instead of maps and collections of InstanceConfigs: instances are referenced by their ordinal,
+ * states by their index in a per resource dictionary, and partitions are looked up with a binary
+ * search in the sorted partition names. This takes a fraction of the memory of a RoutingTable for
+ * clusters with a large number of replicas, at the cost of building the returned collections on
+ * every lookup. Instance ordinals are returned as views of the shared ordinal array instead, which
+ * are cached once looked up.
+ */
+class CompactRoutingTable extends RoutingTable {
+  private static final Logger logger = LoggerFactory.getLogger(CompactRoutingTable.class);
+
+  private final Collection<ExternalView> _externalViews;
+  // mapping a resourceName to the ExternalView the CompactResource was built from
+  private final Map<String, ExternalView> _externalViewMap;
+  private final Map<String, CompactResource> _resourceMap;
+  // mapping a resource group name to its member resources
+  private final Map<String, List<CompactResource>> _resourceGroupMap;
+
+  CompactRoutingTable(Collection<ExternalView> externalViews,
+      Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
+      PropertyType propertyType, RoutingTable previousTable) {
+    super(Collections.<ExternalView> emptyList(), instanceConfigs, liveInstances, propertyType);
+    _externalViews = new HashSet<>(externalViews);
+    _externalViewMap = new HashMap<>();
+    _resourceMap = new HashMap<>();
+    _resourceGroupMap = new HashMap<>();
+
+    CompactRoutingTable previous = null;
+    if (previousTable instanceof CompactRoutingTable
+        && previousTable.getPropertyType() == propertyType
+        && hasSameInstanceConfigs(previousTable)) {
+      previous = (CompactRoutingTable) previousTable;
+    }
+    for (ExternalView extView : _externalViews) {
+      String resourceName = extView.getId();
+      _externalViewMap.put(resourceName, extView);
+      CompactResource resource = null;
+      if (previous != null && previous._externalViewMap.get(resourceName) == extView) {
+        resource = previous._resourceMap.get(resourceName);
+      }
+      if (resource == null) {
+        resource = new CompactResource(extView, _instanceOrdinalMap);
+      }
+      _resourceMap.put(resourceName, resource);
+      if (resource.resourceGroupName != null) {
+        List<CompactResource> members = _resourceGroupMap.get(resource.resourceGroupName);
+        if (members == null) {
+          members = new ArrayList<>();
+          _resourceGroupMap.put(resource.resourceGroupName, members);
+        }
+        members.add(resource);
+      }
+    }
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResource(String resourceName, String state) {
+    CompactResource resource = _resourceMap.get(resourceName);
+    if (resource == null) {
+      return Collections.emptySet();
+    }
+    Set<InstanceConfig> instanceSet = new TreeSet<>(INSTANCE_CONFIG_COMPARATOR);
+    resource.addInstances(state, _instanceConfigArray, instanceSet);
+    return Collections.unmodifiableSet(instanceSet);
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String state) {
+    return getInstancesForResourceGroup(resourceGroupName, state, (List<String>) null);
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName, String state,
+      List<String> resourceTags) {
+    List<CompactResource> members = _resourceGroupMap.get(resourceGroupName);
+    if (members == null) {
+      return Collections.emptySet();
+    }
+    Set<InstanceConfig> instanceSet = new TreeSet<>(INSTANCE_CONFIG_COMPARATOR);
+    for (CompactResource resource : members) {
+      if (resourceTags == null || resourceTags.contains(resource.instanceGroupTag)) {
+        resource.addInstances(state, _instanceConfigArray, instanceSet);
+      }
+    }
+    return Collections.unmodifiableSet(instanceSet);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResource(String resourceName, String partitionName,
+      String state) {
+    return getSortedInstancesForResource(resourceName, partitionName, state);
+  }
+
+  @Override
+  public List<InstanceConfig> getSortedInstancesForResource(String resourceName,
+      String partitionName, String state) {
+    CompactResource resource = _resourceMap.get(resourceName);
+    if (resource == null) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    resource.addInstances(partitionName, state, _instanceConfigArray, instanceList);
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  public InstanceOrdinals getInstanceOrdinalsForResource(String resourceName,
+      String partitionName, String state) {
+    CompactResource resource = _resourceMap.get(resourceName);
+    if (resource == null) {
+      return InstanceOrdinals.EMPTY;
+    }
+    return resource.getOrdinals(partitionName, state);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String partitionName, String state) {
+    List<CompactResource> members = _resourceGroupMap.get(resourceGroupName);
+    if (members == null) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    for (CompactResource resource : members) {
+      resource.addInstances(partitionName, state, _instanceConfigArray, instanceList);
+    }
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String partitionName, String state, List<String> resourceTags) {
+    List<CompactResource> members = _resourceGroupMap.get(resourceGroupName);
+    if (members == null) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    for (String tag : resourceTags) {
+      for (CompactResource resource : members) {
+        if (tag.equals(resource.instanceGroupTag)) {
+          resource.addInstances(partitionName, state, _instanceConfigArray, instanceList);
+        }
+      }
+    }
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  protected Collection<String> getResources() {
+    Set<String> resources = new HashSet<>();
+    for (Map.Entry<String, CompactResource> entry : _resourceMap.entrySet()) {
+      if (entry.getValue().hasReplicas()) {
+        resources.add(entry.getKey());
+      }
+    }
+    return Collections.unmodifiableCollection(resources);
+  }
+
+  @Override
+  Object getResourceData(String resourceName) {
+    return _resourceMap.get(resourceName);
+  }
+
+  @Override
+  Map<String, Map<String, String>> getPartitionStateMaps(String resourceName) {
+    CompactResource resource = _resourceMap.get(resourceName);
+    if (resource == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, Map<String, String>> partitionStateMaps = new HashMap<>();
+    for (int p = 0; p < resource.partitions.length; p++) {
+      Map<String, String> stateMap = new HashMap<>();
+      for (int i = resource.offsets[p]; i < resource.offsets[p + 1]; i++) {
+        stateMap.put(_instanceConfigArray[resource.ordinals[i]].getInstanceName(),
+            resource.states[resource.stateIndexes[i]]);
+      }
+      if (!stateMap.isEmpty()) {
+        partitionStateMaps.put(resource.partitions[p], stateMap);
+      }
+    }
+    return partitionStateMaps;
+  }
+
+  @Override
+  protected Collection<ExternalView> getExternalViews() {
+    return Collections.unmodifiableCollection(_externalViews);
+  }
+
+  /**
+   * The replicas of one resource. The replicas of the partition at index i of the sorted partition
+   * names are stored from offsets[i] to offsets[i + 1] - 1 in the ordinal and state arrays, sorted
+   * by state index and then by instance ordinal.
+   */
+  static class CompactResource {
+    final String resourceGroupName;
+    final String instanceGroupTag;
+    final String[] partitions;
+    final String[] states;
+    final int[] offsets;
+    final int[] ordinals;
+    final byte[] stateIndexes;
+    // views of the ordinals of each {partition, state} at partition index * states + state index,
+    // created on the first lookup of a partition
+    private volatile InstanceOrdinals[] ordinalViews;
+
+    CompactResource(ExternalView extView, Map<String, Integer> instanceOrdinalMap) {
+      if (extView.isGroupRoutingEnabled()) {
+        resourceGroupName = extView.getResourceGroupName();
+        instanceGroupTag = extView.getInstanceGroupTag();
+      } else {
+        resourceGroupName = null;
+        instanceGroupTag = null;
+      }
+      partitions = extView.getPartitionSet().toArray(new String[0]);
+      Arrays.sort(partitions);
+
+      List<String> stateList = new ArrayList<>();
+      int replicaCount = 0;
+      for (String partition : partitions) {
+        for (String state : extView.getStateMap(partition).values()) {
+          if (!stateList.contains(state)) {
+            stateList.add(state);
+          }
+          replicaCount++;
+        }
+      }
+      if (stateList.size() > Byte.MAX_VALUE) {
+        throw new IllegalArgumentException(
+            "Too many states in the ExternalView of " + extView.getId());
+      }
+      states = stateList.toArray(new String[0]);
+
+      // encode each replica as a long of (state index, ordinal) to sort them within a partition
+      offsets = new int[partitions.length + 1];
+      long[] replicas = new long[replicaCount];
+      int count = 0;
+      for (int i = 0; i < partitions.length; i++) {
+        offsets[i] = count;
+        for (Map.Entry<String, String> entry : extView.getStateMap(partitions[i]).entrySet()) {
+          Integer ordinal = instanceOrdinalMap.get(entry.getKey());
+          if (ordinal == null) {
+            logger.warn(
+                "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
+                    + "Skip recording partition assignment entry: Partition {}, Participant {}, State {}.",
+                entry.getKey(), partitions[i], entry.getKey(), entry.getValue());
+            continue;
+          }
+          replicas[count++] = ((long) stateList.indexOf(entry.getValue()) << 32) | ordinal;
+        }
+        Arrays.sort(replicas, offsets[i], count);
+      }
+      offsets[partitions.length] = count;
+
+      ordinals = new int[count];
+      stateIndexes = new byte[count];
+      for (int i = 0; i < count; i++) {
+        ordinals[i] = (int) replicas[i];
+        stateIndexes[i] = (byte) (replicas[i] >>> 32);
+      }
+    }
+
+    boolean hasReplicas() {
+      return ordinals.length > 0;
+    }
+
+    private int indexOfState(String state) {
+      for (int i = 0; i < states.length; i++) {
+        if (states[i].equals(state)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    void addInstances(String state, InstanceConfig[] instanceConfigs,
+        Collection<InstanceConfig> instances) {
+      int stateIndex = indexOfState(state);
+      if (stateIndex < 0) {
+        return;
+      }
+      for (int i = 0; i < ordinals.length; i++) {
+        if (stateIndexes[i] == stateIndex) {
+          instances.add(instanceConfigs[ordinals[i]]);
+        }
+      }
+    }
+
+    void addInstances(String partition, String state, InstanceConfig[] instanceConfigs,
+        Collection<InstanceConfig> instances) {
+      int partitionIndex = Arrays.binarySearch(partitions, partition);
+      int stateIndex = indexOfState(state);
+      if (partitionIndex < 0 || stateIndex < 0) {
+        return;
+      }
+      for (int i = offsets[partitionIndex]; i < offsets[partitionIndex + 1]; i++) {
+        if (stateIndexes[i] == stateIndex) {
+          instances.add(instanceConfigs[ordinals[i]]);
+        }
+      }
+    }
+
+    InstanceOrdinals getOrdinals(String partition, String state) {
+      int partitionIndex = Arrays.binarySearch(partitions, partition);
+      int stateIndex = indexOfState(state);
+      if (partitionIndex < 0 || stateIndex < 0) {
+        return InstanceOrdinals.EMPTY;
+      }
+      InstanceOrdinals[] views = ordinalViews;
+      if (views == null) {
+        // concurrent callers may create it more than once, which is harmless
+        views = new InstanceOrdinals[partitions.length * states.length];
+        ordinalViews = views;
+      }
+      int viewIndex = partitionIndex * states.length + stateIndex;
+      InstanceOrdinals view = views[viewIndex];
+      if (view == null) {
+        view = createOrdinalView(partitionIndex, stateIndex);
+        views[viewIndex] = view;
+      }
+      return view;
+    }
+
+    private InstanceOrdinals createOrdinalView(int partitionIndex, int stateIndex) {
+      // replicas of the same state are contiguous within a partition
+      int from = offsets[partitionIndex];
+      int to = offsets[partitionIndex + 1];
+      while (from < to && stateIndexes[from] != stateIndex) {
+        from++;
+      }
+      int end = from;
+      while (end < to && stateIndexes[end] == stateIndex) {
+        end++;
+      }
+      return from == end ? InstanceOrdinals.EMPTY
+          : new InstanceOrdinals(ordinals, from, end - from);
+    }
+  }
+}
@@ -36,6 +36,8 @@ public class CustomizedViewRoutingTable extends RoutingTable {
   private static final Logger logger = LoggerFactory.getLogger(CustomizedViewRoutingTable.class);
 
   private final Collection<CustomizedView> _customizedViews;
+  // mapping a resourceName to the CustomizedView the ResourceInfo was built from
+  private final Map<String, CustomizedView> _customizedViewMap;
   /*
    * The customizedStateType field is the type the controller is aggregating.
    * For example if RoutingTableProvider initialized using the code below:
@@ -60,27 +62,57 @@ public class CustomizedViewRoutingTable extends RoutingTable {
   protected CustomizedViewRoutingTable(Collection<CustomizedView> customizedViews,
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
       PropertyType propertytype, String customizedStateType) {
+    this(customizedViews, instanceConfigs, liveInstances, propertytype, customizedStateType, null);
+  }
+
+  /**
+   * Build a CustomizedViewRoutingTable, sharing the routing information of the resources whose
+   * CustomizedView is the same object as the one the previous table was built from.
+   * @param previousTable the table to share unchanged resources with, null for a full build
+   */
+  protected CustomizedViewRoutingTable(Collection<CustomizedView> customizedViews,
+      Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
+      PropertyType propertytype, String customizedStateType, RoutingTable previousTable) {
     super(Collections.<ExternalView> emptyList(), instanceConfigs, liveInstances,
         PropertyType.CUSTOMIZEDVIEW);
     _customizedStateType = customizedStateType;
     _customizedViews = new HashSet<>(customizedViews);
-    refresh(_customizedViews);
+    _customizedViewMap = new HashMap<>();
+    for (CustomizedView customizedView : _customizedViews) {
+      _customizedViewMap.put(customizedView.getId(), customizedView);
+    }
+    refresh(_customizedViews, previousTable);
+    freeze();
+  }
+
+  private boolean canShareResources(RoutingTable previousTable) {
+    if (!(previousTable instanceof CustomizedViewRoutingTable)) {
+      return false;
+    }
+    CustomizedViewRoutingTable previous = (CustomizedViewRoutingTable) previousTable;
+    return _customizedStateType.equals(previous._customizedStateType)
+        && _customizedViewMap.size() == _customizedViews.size()
+        && hasSameInstanceConfigs(previous);
   }
 
-  private void refresh(Collection<CustomizedView> customizedViewList) {
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<>();
+  private void refresh(Collection<CustomizedView> customizedViewList,
+      RoutingTable previousTable) {
     if (customizedViewList != null && !customizedViewList.isEmpty()) {
-      for (InstanceConfig config : _instanceConfigs) {
-        instanceConfigMap.put(config.getId(), config);
-      }
+      Map<String, CustomizedView> previousViewMap = canShareResources(previousTable)
+          ? ((CustomizedViewRoutingTable) previousTable)._customizedViewMap
+          : Collections.<String, CustomizedView> emptyMap();
       for (CustomizedView customizeView : customizedViewList) {
         String resourceName = customizeView.getId();
+        if (previousViewMap.get(resourceName) == customizeView) {
+          shareResource(previousTable, resourceName);
+          continue;
+        }
         for (String partitionName : customizeView.getPartitionSet()) {
           Map<String, String> stateMap = customizeView.getStateMap(partitionName);
           for (String instanceName : stateMap.keySet()) {
             String customizedState = stateMap.get(instanceName);
-            if (instanceConfigMap.containsKey(instanceName)) {
-              InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
+            if (_instanceConfigMap.containsKey(instanceName)) {
+              InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
               addEntry(resourceName, partitionName, customizedState, instanceConfig);
             } else {
               logger.warn(
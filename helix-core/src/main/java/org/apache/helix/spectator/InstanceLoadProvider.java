@@ -0,0 +1,35 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import org.apache.helix.model.InstanceConfig;
+
+/**
+ * Pluggable load signal of the instances used by {@link ReplicaSelector}, e.g. the number of
+ * outstanding requests of a router to each instance. It is called on the request path, so it must
+ * be thread safe and cheap.
+ */
+public interface InstanceLoadProvider {
+  /**
+   * @param instanceConfig the instance
+   * @return the current load of the instance, lower is better, 0 if unknown
+   */
+  double getLoad(InstanceConfig instanceConfig);
+}
@@ -0,0 +1,68 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Immutable ordinals of the instances that host a {partition, state}, sorted ascending. An ordinal
+ * is the position of the instance in the instance configs of the routing table it is obtained
+ * from, see {@link RoutingTableSnapshot#getInstanceConfig(int)}.
+ */
+public class InstanceOrdinals {
+  static final InstanceOrdinals EMPTY = new InstanceOrdinals(new int[0]);
+
+  private final int[] _ordinals;
+  private final int _offset;
+  private final int _length;
+
+  InstanceOrdinals(int[] ordinals) {
+    this(ordinals, 0, ordinals.length);
+  }
+
+  /**
+   * A view of the given range of an array shared with other ordinals, which is not copied
+   */
+  InstanceOrdinals(int[] ordinals, int offset, int length) {
+    _ordinals = ordinals;
+    _offset = offset;
+    _length = length;
+  }
+
+  /**
+   * @return the number of instances
+   */
+  public int size() {
+    return _length;
+  }
+
+  public boolean isEmpty() {
+    return _length == 0;
+  }
+
+  /**
+   * @param index from 0 to size() - 1
+   * @return the ordinal of the instance at the given index
+   */
+  public int get(int index) {
+    if (index < 0 || index >= _length) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _length);
+    }
+    return _ordinals[_offset + index];
+  }
+}
@@ -0,0 +1,479 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+
+import static org.apache.helix.spectator.MappedRoutingTableFormat.INSTANCE_CONFIGS_OFFSET;
+import static org.apache.helix.spectator.MappedRoutingTableFormat.LIVE_INSTANCES_OFFSET;
+import static org.apache.helix.spectator.MappedRoutingTableFormat.PROPERTY_TYPE_OFFSET;
+import static org.apache.helix.spectator.MappedRoutingTableFormat.RESOURCE_COUNT_OFFSET;
+import static org.apache.helix.spectator.MappedRoutingTableFormat.RESOURCE_ENTRY_SIZE;
+import static org.apache.helix.spectator.MappedRoutingTableFormat.RESOURCE_INDEX_OFFSET;
+
+/**
+ * A RoutingTable that looks up the routing information in place in the payload of a file written
+ * by {@link MappedRoutingTablePublisher}, see {@link MappedRoutingTableFormat}. Only the instance
+ * configs and live instances are decoded; resources and partitions are found with binary searches
+ * in the mapped buffer, which must not change while the table is in use.
+ */
+class MappedRoutingTable extends RoutingTable {
+  private final ByteBuffer _payload;
+  private final int _resourceCount;
+  private final int _resourceIndexOffset;
+  private volatile Collection<ExternalView> _externalViews;
+
+  private MappedRoutingTable(ByteBuffer payload, List<InstanceConfig> instanceConfigs,
+      List<LiveInstance> liveInstances, PropertyType propertyType) {
+    super(Collections.<ExternalView> emptyList(), instanceConfigs, liveInstances, propertyType);
+    _payload = payload;
+    _resourceCount = payload.getInt(RESOURCE_COUNT_OFFSET);
+    _resourceIndexOffset = payload.getInt(RESOURCE_INDEX_OFFSET);
+  }
+
+  /**
+   * @param payload the payload of a routing table file, only read with absolute gets
+   */
+  static MappedRoutingTable create(ByteBuffer payload) {
+    try {
+      List<InstanceConfig> instanceConfigs = new ArrayList<>();
+      for (ZNRecord record : readRecords(payload, payload.getInt(INSTANCE_CONFIGS_OFFSET))) {
+        instanceConfigs.add(new InstanceConfig(record));
+      }
+      List<LiveInstance> liveInstances = new ArrayList<>();
+      for (ZNRecord record : readRecords(payload, payload.getInt(LIVE_INSTANCES_OFFSET))) {
+        liveInstances.add(new LiveInstance(record));
+      }
+      PropertyType propertyType =
+          PropertyType.valueOf(readString(payload, payload.getInt(PROPERTY_TYPE_OFFSET)));
+      return new MappedRoutingTable(payload, instanceConfigs, liveInstances, propertyType);
+    } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+      throw new HelixException("Failed to read the routing table", e);
+    }
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResource(String resourceName, String state) {
+    int resource = findResource(resourceName);
+    if (resource < 0) {
+      return Collections.emptySet();
+    }
+    Set<InstanceConfig> instanceSet = new TreeSet<>(INSTANCE_CONFIG_COMPARATOR);
+    addInstances(resource, state, instanceSet);
+    return Collections.unmodifiableSet(instanceSet);
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String state) {
+    return getInstancesForResourceGroup(resourceGroupName, state, (List<String>) null);
+  }
+
+  @Override
+  public Set<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName, String state,
+      List<String> resourceTags) {
+    List<Integer> members = getResourceGroupMembers(resourceGroupName);
+    if (members.isEmpty()) {
+      return Collections.emptySet();
+    }
+    Set<InstanceConfig> instanceSet = new TreeSet<>(INSTANCE_CONFIG_COMPARATOR);
+    for (int entry : members) {
+      if (resourceTags == null || resourceTags.contains(getInstanceGroupTag(entry))) {
+        addInstances(getResourceOffset(entry), state, instanceSet);
+      }
+    }
+    return Collections.unmodifiableSet(instanceSet);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResource(String resourceName, String partitionName,
+      String state) {
+    return getSortedInstancesForResource(resourceName, partitionName, state);
+  }
+
+  @Override
+  public List<InstanceConfig> getSortedInstancesForResource(String resourceName,
+      String partitionName, String state) {
+    int resource = findResource(resourceName);
+    if (resource < 0) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    addInstances(resource, partitionName, state, instanceList);
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  public InstanceOrdinals getInstanceOrdinalsForResource(String resourceName,
+      String partitionName, String state) {
+    int resource = findResource(resourceName);
+    if (resource < 0) {
+      return InstanceOrdinals.EMPTY;
+    }
+    int partitionCount = _payload.getInt(resource);
+    int partition = findPartition(resource, partitionName);
+    int stateIndex = indexOfState(resource, state);
+    if (partition < 0 || stateIndex < 0) {
+      return InstanceOrdinals.EMPTY;
+    }
+    // replicas of the same state are contiguous within a partition
+    int from = getReplicaOffset(resource, partition);
+    int to = getReplicaOffset(resource, partition + 1);
+    int stateIndexesOffset = getStateIndexesOffset(resource, partitionCount);
+    while (from < to && _payload.get(stateIndexesOffset + from) != stateIndex) {
+      from++;
+    }
+    int end = from;
+    while (end < to && _payload.get(stateIndexesOffset + end) == stateIndex) {
+      end++;
+    }
+    if (from == end) {
+      return InstanceOrdinals.EMPTY;
+    }
+    return new MappedInstanceOrdinals(_payload,
+        getOrdinalsOffset(resource, partitionCount) + 4 * from, end - from);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String partitionName, String state) {
+    List<Integer> members = getResourceGroupMembers(resourceGroupName);
+    if (members.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    for (int entry : members) {
+      addInstances(getResourceOffset(entry), partitionName, state, instanceList);
+    }
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  public List<InstanceConfig> getInstancesForResourceGroup(String resourceGroupName,
+      String partitionName, String state, List<String> resourceTags) {
+    List<Integer> members = getResourceGroupMembers(resourceGroupName);
+    if (members.isEmpty()) {
+      return Collections.emptyList();
+    }
+    List<InstanceConfig> instanceList = new ArrayList<>();
+    for (String tag : resourceTags) {
+      for (int entry : members) {
+        if (tag.equals(getInstanceGroupTag(entry))) {
+          addInstances(getResourceOffset(entry), partitionName, state, instanceList);
+        }
+      }
+    }
+    return Collections.unmodifiableList(instanceList);
+  }
+
+  @Override
+  protected Collection<String> getResources() {
+    Set<String> resources = new HashSet<>();
+    for (int entry = 0; entry < _resourceCount; entry++) {
+      int resource = getResourceOffset(entry);
+      if (getReplicaOffset(resource, _payload.getInt(resource)) > 0) {
+        resources.add(readString(_payload, getEntryField(entry, 0)));
+      }
+    }
+    return Collections.unmodifiableCollection(resources);
+  }
+
+  @Override
+  Map<String, Map<String, String>> getPartitionStateMaps(String resourceName) {
+    int resource = findResource(resourceName);
+    if (resource < 0) {
+      return Collections.emptyMap();
+    }
+    return readPartitionStateMaps(resource);
+  }
+
+  /**
+   * The external views are rebuilt from the routing information on the first call. They only have
+   * the state maps and the resource group fields.
+   */
+  @Override
+  protected Collection<ExternalView> getExternalViews() {
+    Collection<ExternalView> externalViews = _externalViews;
+    if (externalViews == null) {
+      List<ExternalView> views = new ArrayList<>(_resourceCount);
+      for (int entry = 0; entry < _resourceCount; entry++) {
+        ExternalView view = new ExternalView(readString(_payload, getEntryField(entry, 0)));
+        int groupName = getEntryField(entry, 1);
+        int tag = getEntryField(entry, 2);
+        if (groupName >= 0 || tag >= 0) {
+          ZNRecord record = view.getRecord();
+          record.setBooleanField(ExternalView.ExternalViewProperty.GROUP_ROUTING_ENABLED.name(),
+              true);
+          if (groupName >= 0) {
+            record.setSimpleField(ExternalView.ExternalViewProperty.RESOURCE_GROUP_NAME.name(),
+                readString(_payload, groupName));
+          }
+          if (tag >= 0) {
+            record.setSimpleField(ExternalView.ExternalViewProperty.INSTANCE_GROUP_TAG.name(),
+                readString(_payload, tag));
+          }
+        }
+        for (Map.Entry<String, Map<String, String>> partition : readPartitionStateMaps(
+            getResourceOffset(entry)).entrySet()) {
+          view.setStateMap(partition.getKey(), partition.getValue());
+        }
+        views.add(view);
+      }
+      externalViews = Collections.unmodifiableCollection(views);
+      _externalViews = externalViews;
+    }
+    return externalViews;
+  }
+
+  private Map<String, Map<String, String>> readPartitionStateMaps(int resource) {
+    int partitionCount = _payload.getInt(resource);
+    int ordinalsOffset = getOrdinalsOffset(resource, partitionCount);
+    int stateIndexesOffset = getStateIndexesOffset(resource, partitionCount);
+    Map<String, Map<String, String>> partitionStateMaps = new HashMap<>();
+    for (int p = 0; p < partitionCount; p++) {
+      Map<String, String> stateMap = new HashMap<>();
+      for (int i = getReplicaOffset(resource, p); i < getReplicaOffset(resource, p + 1); i++) {
+        stateMap.put(_instanceConfigArray[_payload.getInt(ordinalsOffset + 4 * i)]
+            .getInstanceName(), getState(resource, _payload.get(stateIndexesOffset + i)));
+      }
+      if (!stateMap.isEmpty()) {
+        partitionStateMaps.put(readString(_payload, getPartitionName(resource, p)), stateMap);
+      }
+    }
+    return partitionStateMaps;
+  }
+
+  private void addInstances(int resource, String state, Collection<InstanceConfig> instances) {
+    int stateIndex = indexOfState(resource, state);
+    if (stateIndex < 0) {
+      return;
+    }
+    int partitionCount = _payload.getInt(resource);
+    int ordinalsOffset = getOrdinalsOffset(resource, partitionCount);
+    int stateIndexesOffset = getStateIndexesOffset(resource, partitionCount);
+    int replicaCount = getReplicaOffset(resource, partitionCount);
+    for (int i = 0; i < replicaCount; i++) {
+      if (_payload.get(stateIndexesOffset + i) == stateIndex) {
+        instances.add(_instanceConfigArray[_payload.getInt(ordinalsOffset + 4 * i)]);
+      }
+    }
+  }
+
+  private void addInstances(int resource, String partitionName, String state,
+      Collection<InstanceConfig> instances) {
+    int partition = findPartition(resource, partitionName);
+    int stateIndex = indexOfState(resource, state);
+    if (partition < 0 || stateIndex < 0) {
+      return;
+    }
+    int partitionCount = _payload.getInt(resource);
+    int ordinalsOffset = getOrdinalsOffset(resource, partitionCount);
+    int stateIndexesOffset = getStateIndexesOffset(resource, partitionCount);
+    for (int i = getReplicaOffset(resource, partition);
+        i < getReplicaOffset(resource, partition + 1); i++) {
+      if (_payload.get(stateIndexesOffset + i) == stateIndex) {
+        instances.add(_instanceConfigArray[_payload.getInt(ordinalsOffset + 4 * i)]);
+      }
+    }
+  }
+
+  /**
+   * @return the offset of the resource, or -1 if not found
+   */
+  private int findResource(String resourceName) {
+    int low = 0;
+    int high = _resourceCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(_payload, getEntryField(mid, 0), resourceName);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return getResourceOffset(mid);
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return the index of the partition in the resource, or -1 if not found
+   */
+  private int findPartition(int resource, String partitionName) {
+    int low = 0;
+    int high = _payload.getInt(resource) - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = compare(_payload, getPartitionName(resource, mid), partitionName);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private int indexOfState(int resource, String state) {
+    int stateCount = _payload.getInt(resource + 4);
+    for (int i = 0; i < stateCount; i++) {
+      if (compare(_payload, _payload.getInt(resource + 8 + 4 * i), state) == 0) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private List<Integer> getResourceGroupMembers(String resourceGroupName) {
+    List<Integer> members = new ArrayList<>();
+    for (int entry = 0; entry < _resourceCount; entry++) {
+      int groupName = getEntryField(entry, 1);
+      if (groupName >= 0 && compare(_payload, groupName, resourceGroupName) == 0) {
+        members.add(entry);
+      }
+    }
+    return members;
+  }
+
+  private String getInstanceGroupTag(int entry) {
+    int tag = getEntryField(entry, 2);
+    return tag < 0 ? null : readString(_payload, tag);
+  }
+
+  private int getEntryField(int entry, int field) {
+    return _payload.getInt(_resourceIndexOffset + entry * RESOURCE_ENTRY_SIZE + 4 * field);
+  }
+
+  private int getResourceOffset(int entry) {
+    return getEntryField(entry, 3);
+  }
+
+  private String getState(int resource, int stateIndex) {
+    return readString(_payload, _payload.getInt(resource + 8 + 4 * stateIndex));
+  }
+
+  private int getPartitionName(int resource, int partition) {
+    return _payload.getInt(getPartitionsOffset(resource) + 4 * partition);
+  }
+
+  private int getPartitionsOffset(int resource) {
+    return resource + 8 + 4 * _payload.getInt(resource + 4);
+  }
+
+  private int getReplicaOffset(int resource, int partition) {
+    int partitionCount = _payload.getInt(resource);
+    return _payload.getInt(getPartitionsOffset(resource) + 4 * (partitionCount + partition));
+  }
+
+  private int getOrdinalsOffset(int resource, int partitionCount) {
+    return getPartitionsOffset(resource) + 4 * (2 * partitionCount + 1);
+  }
+
+  private int getStateIndexesOffset(int resource, int partitionCount) {
+    return getOrdinalsOffset(resource, partitionCount)
+        + 4 * getReplicaOffset(resource, partitionCount);
+  }
+
+  /**
+   * Compare a string of the payload with the given one, in the order of String.compareTo
+   */
+  private static int compare(ByteBuffer payload, int offset, String string) {
+    if (string == null) {
+      return 1;
+    }
+    int length = payload.getInt(offset);
+    int min = Math.min(length, string.length());
+    for (int i = 0; i < min; i++) {
+      char c = payload.getChar(offset + 4 + 2 * i);
+      if (c != string.charAt(i)) {
+        return c - string.charAt(i);
+      }
+    }
+    return length - string.length();
+  }
+
+  private static String readString(ByteBuffer payload, int offset) {
+    char[] chars = new char[payload.getInt(offset)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = payload.getChar(offset + 4 + 2 * i);
+    }
+    return new String(chars);
+  }
+
+  private static List<ZNRecord> readRecords(ByteBuffer payload, int offset) {
+    int count = payload.getInt(offset);
+    List<ZNRecord> records = new ArrayList<>(count);
+    offset += 4;
+    for (int i = 0; i < count; i++) {
+      byte[] record = new byte[payload.getInt(offset)];
+      ByteBuffer source = payload.duplicate();
+      source.position(offset + 4);
+      source.get(record);
+      offset += 4 + record.length;
+      ZNRecord znRecord = (ZNRecord) MappedRoutingTableFormat.SERIALIZER.deserialize(record);
+      if (znRecord == null) {
+        throw new HelixException("Failed to deserialize a record of the routing table");
+      }
+      records.add(znRecord);
+    }
+    return records;
+  }
+
+  /**
+   * Ordinals read from the mapped buffer
+   */
+  private static final class MappedInstanceOrdinals extends InstanceOrdinals {
+    private final ByteBuffer _payload;
+    private final int _offset;
+
+    MappedInstanceOrdinals(ByteBuffer payload, int offset, int length) {
+      super(null, 0, length);
+      _payload = payload;
+      _offset = offset;
+    }
+
+    @Override
+    public int get(int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      return _payload.getInt(_offset + 4 * index);
+    }
+  }
+}
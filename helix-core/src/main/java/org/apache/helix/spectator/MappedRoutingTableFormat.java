@@ -0,0 +1,318 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.zookeeper.datamodel.serializer.ZNRecordSerializer;
+
+/**
+ * Binary layout of the routing table files shared by {@link MappedRoutingTablePublisher} and
+ * {@link MappedRoutingTableReader}. The routing information is stored the same way as in
+ * {@link CompactRoutingTable}, with instance ordinals and state indexes in flat arrays, so that
+ * {@link MappedRoutingTable} can look it up in the mapped file without decoding it.
+ *
+ * <pre>
+ * header:
+ * offset 0   int   magic
+ * offset 4   int   layout version
+ * offset 8   long  sequence of the publication
+ * offset 16  int   payload length
+ * offset 20  int   CRC32 of the payload
+ * offset 24  int   superseded, set to 1 once a newer file replaced this one
+ * offset 32  payload, offsets below are relative to its start:
+ * 0          int   property type (string offset)
+ * 4          int   offset of the instance configs: int count, then (int length, serialized
+ *                  ZNRecord) each, in ordinal order
+ * 8          int   offset of the live instances: int count, then (int length, serialized
+ *                  ZNRecord) each
+ * 12         int   number of resources
+ * 16         int   offset of the resource index: per resource sorted by name, (int name,
+ *                  int resource group name or -1, int instance group tag or -1, int offset)
+ * 20         strings: (int length, UTF-16 chars) each
+ *
+ * resource:
+ *            int   number of partitions P
+ *            int   number of states S
+ *            S x int     states (string offsets)
+ *            P x int     partition names (string offsets), sorted
+ *            P+1 x int   replica offsets, the replicas of partition i are from offsets[i] to
+ *                        offsets[i + 1] - 1, sorted by state index and then by ordinal
+ *            R x int     instance ordinals of the replicas
+ *            R x byte    state indexes of the replicas
+ * </pre>
+ *
+ * Strings are stored as UTF-16 chars so that they are compared in place in the order of
+ * {@link String#compareTo(String)}. A file is never modified once published, except for the
+ * superseded flag.
+ */
+final class MappedRoutingTableFormat {
+  static final int MAGIC = 0x484c5254;
+  static final int LAYOUT_VERSION = 1;
+
+  static final int MAGIC_OFFSET = 0;
+  static final int VERSION_OFFSET = 4;
+  static final int SEQUENCE_OFFSET = 8;
+  static final int LENGTH_OFFSET = 16;
+  static final int CHECKSUM_OFFSET = 20;
+  static final int SUPERSEDED_OFFSET = 24;
+  static final int HEADER_SIZE = 32;
+
+  static final int PROPERTY_TYPE_OFFSET = 0;
+  static final int INSTANCE_CONFIGS_OFFSET = 4;
+  static final int LIVE_INSTANCES_OFFSET = 8;
+  static final int RESOURCE_COUNT_OFFSET = 12;
+  static final int RESOURCE_INDEX_OFFSET = 16;
+  static final int STRINGS_OFFSET = 20;
+  static final int RESOURCE_ENTRY_SIZE = 16;
+
+  static final ZNRecordSerializer SERIALIZER = new ZNRecordSerializer();
+
+  private MappedRoutingTableFormat() {
+  }
+
+  /**
+   * Encode the header and the payload of a routing table file
+   */
+  static byte[] encode(RoutingTableSnapshot snapshot, long sequence) {
+    byte[] payload = encodePayload(snapshot);
+    ByteBuffer file = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+    file.putInt(MAGIC_OFFSET, MAGIC);
+    file.putInt(VERSION_OFFSET, LAYOUT_VERSION);
+    file.putLong(SEQUENCE_OFFSET, sequence);
+    file.putInt(LENGTH_OFFSET, payload.length);
+    CRC32 crc = new CRC32();
+    crc.update(payload, 0, payload.length);
+    file.putInt(CHECKSUM_OFFSET, (int) crc.getValue());
+    file.position(HEADER_SIZE);
+    file.put(payload);
+    return file.array();
+  }
+
+  /**
+   * Check the header of a mapped file and return its payload
+   * @param buffer the whole file
+   * @return a view of the payload
+   */
+  static ByteBuffer validate(ByteBuffer buffer) {
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+      throw new HelixException("Not a routing table file");
+    }
+    int version = buffer.getInt(VERSION_OFFSET);
+    if (version != LAYOUT_VERSION) {
+      throw new HelixException(
+          "Unsupported routing table layout version " + version + ", expected " + LAYOUT_VERSION);
+    }
+    int length = buffer.getInt(LENGTH_OFFSET);
+    if (length < STRINGS_OFFSET || HEADER_SIZE + (long) length > buffer.capacity()) {
+      throw new HelixException("Truncated routing table file, payload length " + length);
+    }
+    ByteBuffer payload = buffer.duplicate();
+    payload.position(HEADER_SIZE);
+    payload.limit(HEADER_SIZE + length);
+    payload = payload.slice();
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    if ((int) crc.getValue() != buffer.getInt(CHECKSUM_OFFSET)) {
+      throw new HelixException("Corrupted routing table file, checksum mismatch");
+    }
+    return payload;
+  }
+
+  private static byte[] encodePayload(RoutingTableSnapshot snapshot) {
+    InstanceConfig[] instanceConfigs =
+        snapshot.getInstanceConfigs().toArray(new InstanceConfig[0]);
+    Arrays.sort(instanceConfigs, RoutingTable.INSTANCE_CONFIG_COMPARATOR);
+    Map<String, Integer> ordinalMap = new HashMap<>();
+    for (int i = 0; i < instanceConfigs.length; i++) {
+      ordinalMap.put(instanceConfigs[i].getId(), i);
+    }
+    List<ExternalView> externalViews = new ArrayList<>(snapshot.getExternalViews());
+    externalViews.sort((view1, view2) -> view1.getId().compareTo(view2.getId()));
+
+    try {
+      // strings first, so that their offsets are known when writing the rest
+      StringPool strings = new StringPool(STRINGS_OFFSET);
+      strings.add(snapshot.getPropertyType().name());
+      for (ExternalView externalView : externalViews) {
+        strings.add(externalView.getId());
+        if (externalView.isGroupRoutingEnabled()) {
+          strings.add(externalView.getResourceGroupName());
+          strings.add(externalView.getInstanceGroupTag());
+        }
+        for (String partition : externalView.getPartitionSet()) {
+          strings.add(partition);
+          strings.addAll(externalView.getStateMap(partition).values());
+        }
+      }
+
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+      // placeholders of the fixed fields
+      out.write(new byte[STRINGS_OFFSET]);
+      strings.writeTo(out);
+      int instanceConfigsOffset = out.size();
+      writeProperties(out, Arrays.asList(instanceConfigs));
+      int liveInstancesOffset = out.size();
+      writeProperties(out, snapshot.getLiveInstances());
+
+      int resourceIndexOffset = out.size();
+      int resourceOffset = resourceIndexOffset + externalViews.size() * RESOURCE_ENTRY_SIZE;
+      ByteArrayOutputStream resourceBytes = new ByteArrayOutputStream();
+      DataOutputStream resourceOut = new DataOutputStream(resourceBytes);
+      for (ExternalView externalView : externalViews) {
+        boolean grouped = externalView.isGroupRoutingEnabled();
+        out.writeInt(strings.get(externalView.getId()));
+        out.writeInt(grouped ? strings.get(externalView.getResourceGroupName()) : -1);
+        out.writeInt(grouped ? strings.get(externalView.getInstanceGroupTag()) : -1);
+        out.writeInt(resourceOffset + resourceOut.size());
+        writeResource(resourceOut, externalView, ordinalMap, strings);
+      }
+      resourceOut.flush();
+      resourceBytes.writeTo(out);
+      out.flush();
+
+      ByteBuffer payload = ByteBuffer.wrap(bytes.toByteArray());
+      payload.putInt(PROPERTY_TYPE_OFFSET, strings.get(snapshot.getPropertyType().name()));
+      payload.putInt(INSTANCE_CONFIGS_OFFSET, instanceConfigsOffset);
+      payload.putInt(LIVE_INSTANCES_OFFSET, liveInstancesOffset);
+      payload.putInt(RESOURCE_COUNT_OFFSET, externalViews.size());
+      payload.putInt(RESOURCE_INDEX_OFFSET, resourceIndexOffset);
+      return payload.array();
+    } catch (IOException e) {
+      throw new HelixException("Failed to encode the routing table", e);
+    }
+  }
+
+  private static void writeResource(DataOutputStream out, ExternalView externalView,
+      Map<String, Integer> ordinalMap, StringPool strings) throws IOException {
+    String[] partitions = externalView.getPartitionSet().toArray(new String[0]);
+    Arrays.sort(partitions);
+    List<String> states = new ArrayList<>();
+    int replicaCount = 0;
+    for (String partition : partitions) {
+      for (String state : externalView.getStateMap(partition).values()) {
+        if (!states.contains(state)) {
+          states.add(state);
+        }
+        replicaCount++;
+      }
+    }
+    if (states.size() > Byte.MAX_VALUE) {
+      throw new HelixException("Too many states in the ExternalView of " + externalView.getId());
+    }
+
+    // encode each replica as a long of (state index, ordinal) to sort them within a partition
+    int[] offsets = new int[partitions.length + 1];
+    long[] replicas = new long[replicaCount];
+    int count = 0;
+    for (int i = 0; i < partitions.length; i++) {
+      offsets[i] = count;
+      for (Map.Entry<String, String> entry : externalView.getStateMap(partitions[i])
+          .entrySet()) {
+        Integer ordinal = ordinalMap.get(entry.getKey());
+        if (ordinal != null) {
+          replicas[count++] = ((long) states.indexOf(entry.getValue()) << 32) | ordinal;
+        }
+      }
+      Arrays.sort(replicas, offsets[i], count);
+    }
+    offsets[partitions.length] = count;
+
+    out.writeInt(partitions.length);
+    out.writeInt(states.size());
+    for (String state : states) {
+      out.writeInt(strings.get(state));
+    }
+    for (String partition : partitions) {
+      out.writeInt(strings.get(partition));
+    }
+    for (int offset : offsets) {
+      out.writeInt(offset);
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeInt((int) replicas[i]);
+    }
+    for (int i = 0; i < count; i++) {
+      out.writeByte((int) (replicas[i] >>> 32));
+    }
+  }
+
+  private static void writeProperties(DataOutputStream out,
+      Collection<? extends HelixProperty> properties) throws IOException {
+    out.writeInt(properties.size());
+    for (HelixProperty property : properties) {
+      byte[] record = SERIALIZER.serialize(property.getRecord());
+      out.writeInt(record.length);
+      out.write(record);
+    }
+  }
+
+  /**
+   * Distinct strings of the payload, with their offsets
+   */
+  private static final class StringPool {
+    private final Map<String, Integer> _offsets = new LinkedHashMap<>();
+    private int _size;
+
+    StringPool(int start) {
+      _size = start;
+    }
+
+    void add(String string) {
+      if (string != null && !_offsets.containsKey(string)) {
+        _offsets.put(string, _size);
+        _size += 4 + 2 * string.length();
+      }
+    }
+
+    void addAll(Collection<String> strings) {
+      for (String string : strings) {
+        add(string);
+      }
+    }
+
+    int get(String string) {
+      return string == null ? -1 : _offsets.get(string);
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+      for (String string : _offsets.keySet()) {
+        out.writeInt(string.length());
+        out.writeChars(string);
+      }
+    }
+  }
+}
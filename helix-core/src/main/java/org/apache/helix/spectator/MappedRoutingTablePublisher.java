@@ -0,0 +1,159 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.PropertyType;
+import org.apache.helix.api.listeners.RoutingTableChangeListener;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the routing table of a {@link RoutingTableProvider} to a memory-mapped file, so that
+ * the other processes on the same host can route with a {@link MappedRoutingTableReader} instead
+ * of running their own provider, ZooKeeper session and watches.<br>
+ * Register it on one provider based on external views, and publish the current snapshot once
+ * since the listener is only called on changes:
+ * <pre>
+ * provider.addRoutingTableChangeListener(publisher, null);
+ * publisher.publish(provider.getRoutingTableSnapshot());
+ * </pre>
+ * Every routing table is written to a new file that atomically replaces the previous one, which
+ * is then flagged as superseded, so the files mapped by the readers never change while they look
+ * them up. This relies on the POSIX semantics of renaming over a file that is still mapped.<br>
+ * Only one publisher may write a file at a time.
+ */
+public class MappedRoutingTablePublisher implements RoutingTableChangeListener, Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(MappedRoutingTablePublisher.class);
+
+  private final File _file;
+  private final File _tempFile;
+  // the header of the file currently published, to flag it superseded
+  private MappedByteBuffer _header;
+  private long _sequence;
+  private boolean _closed = false;
+
+  /**
+   * Create a publisher of the given file. An existing routing table file is kept until the first
+   * publication and its sequence continues, so that running readers keep working after the
+   * publisher restarts. Otherwise an empty routing table is published.
+   * @param file the file to publish to, created if it does not exist
+   */
+  public MappedRoutingTablePublisher(File file) throws IOException {
+    _file = file;
+    _tempFile = new File(file.getPath() + ".tmp");
+    if (file.length() >= MappedRoutingTableFormat.HEADER_SIZE) {
+      try {
+        _header = mapHeader(file);
+        MappedRoutingTableFormat.validate(_header);
+        _sequence = _header.getLong(MappedRoutingTableFormat.SEQUENCE_OFFSET);
+        return;
+      } catch (HelixException e) {
+        LOG.warn("Replace the invalid routing table file {}", file, e);
+        _header = null;
+      }
+    }
+    _sequence = 0L;
+    write(new RoutingTableSnapshot(new RoutingTable(Collections.<ExternalView> emptyList(),
+        Collections.<InstanceConfig> emptyList(), Collections.<LiveInstance> emptyList())));
+  }
+
+  @Override
+  public void onRoutingTableChange(RoutingTableSnapshot routingTableSnapshot, Object context) {
+    try {
+      publish(routingTableSnapshot);
+    } catch (HelixException e) {
+      LOG.error("Failed to publish the routing table to {}", _file, e);
+    }
+  }
+
+  /**
+   * Write a routing table snapshot to the file
+   * @param routingTableSnapshot a snapshot based on external views or target external views
+   */
+  public synchronized void publish(RoutingTableSnapshot routingTableSnapshot) {
+    PropertyType propertyType = routingTableSnapshot.getPropertyType();
+    if (propertyType != PropertyType.EXTERNALVIEW
+        && propertyType != PropertyType.TARGETEXTERNALVIEW) {
+      throw new HelixException(
+          "Only routing tables based on external views can be published, not " + propertyType);
+    }
+    if (_closed) {
+      throw new HelixException("Routing table publisher of " + _file + " is closed");
+    }
+    try {
+      write(routingTableSnapshot);
+    } catch (IOException e) {
+      throw new HelixException("Failed to publish the routing table to " + _file, e);
+    }
+  }
+
+  private void write(RoutingTableSnapshot routingTableSnapshot) throws IOException {
+    byte[] content = MappedRoutingTableFormat.encode(routingTableSnapshot, _sequence + 1);
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(_tempFile, "rw")) {
+      randomAccessFile.setLength(0);
+      FileChannel channel = randomAccessFile.getChannel();
+      ByteBuffer buffer = ByteBuffer.wrap(content);
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    Files.move(_tempFile.toPath(), _file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+    _sequence++;
+
+    // the readers of the previous file switch to the new one
+    MappedByteBuffer previousHeader = _header;
+    _header = mapHeader(_file);
+    if (previousHeader != null) {
+      previousHeader.putInt(MappedRoutingTableFormat.SUPERSEDED_OFFSET, 1);
+    }
+    LOG.debug("Published routing table of {} bytes to {}, sequence {}", content.length, _file,
+        _sequence);
+  }
+
+  private static MappedByteBuffer mapHeader(File file) throws IOException {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+      // the mapping stays valid once the file is closed
+      return randomAccessFile.getChannel()
+          .map(FileChannel.MapMode.READ_WRITE, 0, randomAccessFile.length());
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    _closed = true;
+    _header = null;
+  }
+}
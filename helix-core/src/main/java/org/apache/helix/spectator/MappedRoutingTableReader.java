@@ -0,0 +1,140 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only view of a routing table published by a {@link MappedRoutingTablePublisher} of another
+ * process on the same host. The file is memory-mapped and looked up in place, so checking for a
+ * new routing table only reads the superseded flag in the header of the current file, and a new
+ * routing table only costs mapping its file and reading its instance configs.
+ */
+public class MappedRoutingTableReader implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(MappedRoutingTableReader.class);
+  private static final int MAX_READ_ATTEMPTS = 100;
+  private static final RoutingTableSnapshot EMPTY_SNAPSHOT = new RoutingTableSnapshot(
+      new RoutingTable(Collections.<ExternalView> emptyList(),
+          Collections.<InstanceConfig> emptyList(), Collections.<LiveInstance> emptyList()));
+
+  private final File _file;
+  private volatile Snapshot _snapshot = new Snapshot(null, EMPTY_SNAPSHOT);
+  private volatile boolean _closed = false;
+
+  /**
+   * @param file a file written by a {@link MappedRoutingTablePublisher}. It may not be published
+   *          yet, in which case every lookup checks the file until it is.
+   */
+  public MappedRoutingTableReader(File file) throws IOException {
+    _file = file;
+    reload();
+  }
+
+  /**
+   * Get the latest published routing table. Snapshots returned earlier remain valid.
+   * @return the routing table snapshot, empty if nothing has been published yet
+   */
+  public RoutingTableSnapshot getRoutingTableSnapshot() {
+    Snapshot snapshot = _snapshot;
+    if (snapshot._buffer != null
+        && snapshot._buffer.getInt(MappedRoutingTableFormat.SUPERSEDED_OFFSET) == 0) {
+      return snapshot._routingTableSnapshot;
+    }
+    return reload();
+  }
+
+  private synchronized RoutingTableSnapshot reload() {
+    if (_closed) {
+      throw new HelixException("Routing table reader of " + _file + " is closed");
+    }
+    for (int attempt = 0; attempt < MAX_READ_ATTEMPTS; attempt++) {
+      Snapshot snapshot = _snapshot;
+      if (snapshot._buffer != null
+          && snapshot._buffer.getInt(MappedRoutingTableFormat.SUPERSEDED_OFFSET) == 0) {
+        return snapshot._routingTableSnapshot;
+      }
+      ByteBuffer buffer = map();
+      if (buffer == null) {
+        // the publisher has not initialized the file yet
+        return snapshot._routingTableSnapshot;
+      }
+      if (buffer.getInt(MappedRoutingTableFormat.SUPERSEDED_OFFSET) != 0) {
+        // replaced since it was opened
+        continue;
+      }
+      _snapshot = new Snapshot(buffer, new RoutingTableSnapshot(
+          MappedRoutingTable.create(MappedRoutingTableFormat.validate(buffer))));
+      return _snapshot._routingTableSnapshot;
+    }
+    LOG.warn("Failed to read the latest routing table from {}, use the previous one", _file);
+    return _snapshot._routingTableSnapshot;
+  }
+
+  /**
+   * @return the mapped file, null if it is not initialized
+   */
+  private ByteBuffer map() {
+    try (RandomAccessFile randomAccessFile = new RandomAccessFile(_file, "r")) {
+      long size = randomAccessFile.length();
+      if (size < MappedRoutingTableFormat.HEADER_SIZE) {
+        return null;
+      }
+      // the mapping stays valid once the file is closed or replaced
+      return randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+    } catch (FileNotFoundException e) {
+      return null;
+    } catch (IOException e) {
+      throw new HelixException("Failed to map the routing table file " + _file, e);
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    _closed = true;
+    _snapshot = new Snapshot(null, _snapshot._routingTableSnapshot);
+  }
+
+  /**
+   * A routing table and the mapped file it is looked up in
+   */
+  private static final class Snapshot {
+    final ByteBuffer _buffer;
+    final RoutingTableSnapshot _routingTableSnapshot;
+
+    Snapshot(ByteBuffer buffer, RoutingTableSnapshot routingTableSnapshot) {
+      _buffer = buffer;
+      _routingTableSnapshot = routingTableSnapshot;
+    }
+  }
+}
@@ -0,0 +1,265 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.helix.model.InstanceConfig;
+
+/**
+ * Selects one of the instances hosting a {resource, partition, state} from a
+ * {@link RoutingTableSnapshot}. Supported strategies are:
+ * <ul>
+ * <li>RANDOM: uniformly at random</li>
+ * <li>POWER_OF_TWO_CHOICES: the less loaded of two random instances</li>
+ * <li>WEIGHTED: at random, proportionally to the instance weight (1 if not set) divided by
+ * (1 + load)</li>
+ * </ul>
+ * If a local zone is set, the instances in that zone are preferred and the others are only
+ * selected when the zone has no replica.<br>
+ * A selector is thread safe and lock free, and does not allocate when used with the default
+ * RoutingTable. Per instance information is computed once per routing table.
+ */
+public class ReplicaSelector {
+  public enum Strategy {
+    RANDOM,
+    POWER_OF_TWO_CHOICES,
+    WEIGHTED
+  }
+
+  private final Strategy _strategy;
+  private final InstanceLoadProvider _loadProvider;
+  private final String _faultZoneType;
+  private final String _localZone;
+
+  private volatile InstanceIndex _instanceIndex;
+
+  private ReplicaSelector(Strategy strategy, InstanceLoadProvider loadProvider,
+      String faultZoneType, String localZone) {
+    _strategy = strategy;
+    _loadProvider = loadProvider;
+    _faultZoneType = faultZoneType;
+    _localZone = localZone;
+  }
+
+  /**
+   * Select an instance hosting the {resource, partition} in the given state.
+   * @param snapshot
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @return the selected instance, null if there is no instance in the given state
+   */
+  public InstanceConfig select(RoutingTableSnapshot snapshot, String resourceName,
+      String partitionName, String state) {
+    RoutingTable routingTable = snapshot.getRoutingTable();
+    InstanceOrdinals ordinals =
+        routingTable.getInstanceOrdinalsForResource(resourceName, partitionName, state);
+    int size = ordinals.size();
+    if (size == 0) {
+      return null;
+    }
+    InstanceIndex index = getInstanceIndex(routingTable);
+
+    // restrict the candidates to the local zone if it hosts any replica
+    boolean[] candidateFilter = null;
+    int candidates = size;
+    if (index.local != null) {
+      int localCount = 0;
+      for (int i = 0; i < size; i++) {
+        if (index.local[ordinals.get(i)]) {
+          localCount++;
+        }
+      }
+      if (localCount > 0) {
+        candidateFilter = index.local;
+        candidates = localCount;
+      }
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    int selected;
+    switch (_strategy) {
+    case POWER_OF_TWO_CHOICES:
+      int first = random.nextInt(candidates);
+      selected = getCandidate(ordinals, candidateFilter, first);
+      if (candidates > 1 && _loadProvider != null) {
+        int second = random.nextInt(candidates - 1);
+        if (second >= first) {
+          second++;
+        }
+        int other = getCandidate(ordinals, candidateFilter, second);
+        if (getLoad(routingTable.getInstanceConfig(other)) < getLoad(
+            routingTable.getInstanceConfig(selected))) {
+          selected = other;
+        }
+      }
+      break;
+    case WEIGHTED:
+      selected = selectWeighted(routingTable, index, ordinals, candidateFilter, candidates,
+          random);
+      break;
+    default:
+      selected = getCandidate(ordinals, candidateFilter, random.nextInt(candidates));
+    }
+    return routingTable.getInstanceConfig(selected);
+  }
+
+  private int selectWeighted(RoutingTable routingTable, InstanceIndex index,
+      InstanceOrdinals ordinals, boolean[] candidateFilter, int candidates,
+      ThreadLocalRandom random) {
+    double totalWeight = 0;
+    for (int i = 0; i < ordinals.size(); i++) {
+      int ordinal = ordinals.get(i);
+      if (candidateFilter == null || candidateFilter[ordinal]) {
+        totalWeight += getWeight(routingTable, index, ordinal);
+      }
+    }
+    if (totalWeight <= 0) {
+      return getCandidate(ordinals, candidateFilter, random.nextInt(candidates));
+    }
+    // the loads may change between the two passes, so fall back to the last candidate
+    double target = random.nextDouble() * totalWeight;
+    int selected = -1;
+    for (int i = 0; i < ordinals.size(); i++) {
+      int ordinal = ordinals.get(i);
+      if (candidateFilter == null || candidateFilter[ordinal]) {
+        selected = ordinal;
+        target -= getWeight(routingTable, index, ordinal);
+        if (target < 0) {
+          break;
+        }
+      }
+    }
+    return selected;
+  }
+
+  private double getWeight(RoutingTable routingTable, InstanceIndex index, int ordinal) {
+    return index.capacity[ordinal] / (1 + getLoad(routingTable.getInstanceConfig(ordinal)));
+  }
+
+  private double getLoad(InstanceConfig instanceConfig) {
+    if (_loadProvider == null) {
+      return 0;
+    }
+    return Math.max(0, _loadProvider.getLoad(instanceConfig));
+  }
+
+  /**
+   * @return the ordinal of the n-th candidate
+   */
+  private static int getCandidate(InstanceOrdinals ordinals, boolean[] candidateFilter, int n) {
+    if (candidateFilter == null) {
+      return ordinals.get(n);
+    }
+    for (int i = 0; i < ordinals.size(); i++) {
+      int ordinal = ordinals.get(i);
+      if (candidateFilter[ordinal] && n-- == 0) {
+        return ordinal;
+      }
+    }
+    throw new IllegalStateException("Candidate " + n + " not found");
+  }
+
+  private InstanceIndex getInstanceIndex(RoutingTable routingTable) {
+    InstanceIndex index = _instanceIndex;
+    if (index == null || index.routingTable != routingTable) {
+      // concurrent callers may build it more than once, which is harmless
+      index = new InstanceIndex(routingTable);
+      _instanceIndex = index;
+    }
+    return index;
+  }
+
+  private String getZone(InstanceConfig instanceConfig) {
+    if (_faultZoneType == null) {
+      return instanceConfig.getZoneId();
+    }
+    try {
+      return instanceConfig.getDomainAsMap().get(_faultZoneType);
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Per ordinal information of the instances of one routing table
+   */
+  private class InstanceIndex {
+    final RoutingTable routingTable;
+    final boolean[] local;
+    final double[] capacity;
+
+    InstanceIndex(RoutingTable routingTable) {
+      this.routingTable = routingTable;
+      int instanceCount = routingTable._instanceConfigArray.length;
+      local = _localZone == null ? null : new boolean[instanceCount];
+      capacity = new double[instanceCount];
+      for (int i = 0; i < instanceCount; i++) {
+        InstanceConfig instanceConfig = routingTable.getInstanceConfig(i);
+        if (local != null) {
+          local[i] = _localZone.equals(getZone(instanceConfig));
+        }
+        int weight = instanceConfig.getWeight();
+        capacity[i] = weight == InstanceConfig.WEIGHT_NOT_SET ? 1 : Math.max(0, weight);
+      }
+    }
+  }
+
+  public static class Builder {
+    private Strategy _strategy = Strategy.RANDOM;
+    private InstanceLoadProvider _loadProvider;
+    private String _faultZoneType;
+    private String _localZone;
+
+    public Builder setStrategy(Strategy strategy) {
+      _strategy = strategy;
+      return this;
+    }
+
+    /**
+     * Set the load signal used by the POWER_OF_TWO_CHOICES and WEIGHTED strategies
+     * @param loadProvider
+     */
+    public Builder setLoadProvider(InstanceLoadProvider loadProvider) {
+      _loadProvider = loadProvider;
+      return this;
+    }
+
+    /**
+     * Prefer the instances in the given zone
+     * @param faultZoneType the domain key of the fault zone, e.g. "zone", or null to use the
+     *          zone id of the InstanceConfig
+     * @param localZone the zone of the caller
+     */
+    public Builder setLocalZone(String faultZoneType, String localZone) {
+      _faultZoneType = faultZoneType;
+      _localZone = localZone;
+      return this;
+    }
+
+    public ReplicaSelector build() {
+      if (_strategy == null) {
+        throw new IllegalArgumentException("Strategy is not set");
+      }
+      return new ReplicaSelector(_strategy, _loadProvider, _faultZoneType, _localZone);
+    }
+  }
+}
@@ -20,10 +20,16 @@ package org.apache.helix.spectator;
  */
 
 import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixDataAccessor;
@@ -76,6 +82,18 @@ class RoutingDataCache extends BasicClusterDataCache {
     requireFullRefresh();
   }
 
+  /**
+   * Called by {@link #refresh(HelixDataAccessor, ExecutorService, SourceRefreshListener)} once the
+   * data of one source is refreshed.
+   */
+  interface SourceRefreshListener {
+    /**
+     * @param propertyType the source data type
+     * @param customizedStateType the customized state type for CUSTOMIZEDVIEW, null otherwise
+     */
+    void onSourceRefreshed(PropertyType propertyType, String customizedStateType);
+  }
+
   /**
    * This refreshes the cluster data by re-fetching the data from zookeeper in an efficient way
    *
@@ -85,61 +103,79 @@ class RoutingDataCache extends BasicClusterDataCache {
    */
   @Override
   public synchronized void refresh(HelixDataAccessor accessor) {
+    refresh(accessor, null, null);
+  }
+
+  /**
+   * Refresh the cluster data. The LiveInstances and InstanceConfigs, which all the routing tables
+   * use, are refreshed first. Then every source data type, and every customized state type, is
+   * refreshed on its own and the listener is called as soon as it is done, so that the routing
+   * table of a source does not wait for the other sources.
+   * @param accessor
+   * @param executor runs the sources in parallel, null to refresh them one after another
+   * @param listener called for every source once its data is refreshed, may be null. It is called
+   *          from the executor threads if there is an executor.
+   */
+  public synchronized void refresh(HelixDataAccessor accessor, ExecutorService executor,
+      SourceRefreshListener listener) {
     LOG.info("START: RoutingDataCache.refresh() for cluster " + _clusterName);
     long startTime = System.currentTimeMillis();
 
-    super.refresh(accessor);
+    refreshLiveInstancesAndInstanceConfigs(accessor);
+    if (_sourceDataTypeMap.containsKey(PropertyType.CURRENTSTATES)
+        && _propertyDataChangedMap.get(HelixConstants.ChangeType.CURRENT_STATE)) {
+      /**
+       * Workaround of https://github.com/apache/helix/issues/919.
+       * Why it is workaround?
+       * 1. Before a larger scale refactoring, to minimize the impact on cache logic, this change
+       * introduces extra read to update the liveInstance list before processing current states.
+       * 2. This change does not handle the corresponding callback handlers, which should also be
+       * registered when a new liveInstance node is found.
+       * TODO: Refactor cache processing logic and also refine the callback handler registration
+       * TODO: logic.
+       **/
+      _liveInstancePropertyCache.refresh(accessor);
+    }
+
+    List<Callable<Object>> tasks = new ArrayList<>();
+    tasks.add(sourceTask(() -> refreshExternalViews(accessor), PropertyType.EXTERNALVIEW, null,
+        listener));
     for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
-      long start = System.currentTimeMillis();
       switch (propertyType) {
       case TARGETEXTERNALVIEW:
-        if (_propertyDataChangedMap.get(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW)) {
-          _propertyDataChangedMap.put(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW, false);
-          _targetExternalViewCache.refresh(accessor);
-          LOG.info("Reload " + _targetExternalViewCache.getExternalViewMap().keySet().size()
-              + " TargetExternalViews. Takes " + (System.currentTimeMillis() - start) + " ms");
-        }
+        tasks.add(sourceTask(() -> refreshTargetExternalViews(accessor), propertyType, null,
+            listener));
         break;
       case CURRENTSTATES:
-        if (_propertyDataChangedMap.get(HelixConstants.ChangeType.CURRENT_STATE)) {
-          _propertyDataChangedMap.put(HelixConstants.ChangeType.CURRENT_STATE, false);
-          /**
-           * Workaround of https://github.com/apache/helix/issues/919.
-           * Why it is workaround?
-           * 1. Before a larger scale refactoring, to minimize the impact on cache logic, this change
-           * introduces extra read to update the liveInstance list before processing current states.
-           * 2. This change does not handle the corresponding callback handlers, which should also be
-           * registered when a new liveInstance node is found.
-           * TODO: Refactor cache processing logic and also refine the callback handler registration
-           * TODO: logic.
-           **/
-          _liveInstancePropertyCache.refresh(accessor);
-          Map<String, LiveInstance> liveInstanceMap = getLiveInstances();
-          _currentStateCache.refresh(accessor, liveInstanceMap);
-          LOG.info("Reload CurrentStates. Takes " + (System.currentTimeMillis() - start) + " ms");
-        }
+        tasks.add(
+            sourceTask(() -> refreshCurrentStates(accessor), propertyType, null, listener));
         break;
       case CUSTOMIZEDVIEW: {
-        if (_propertyDataChangedMap.get(HelixConstants.ChangeType.CUSTOMIZED_VIEW)) {
-          for (String customizedStateType : _sourceDataTypeMap.get(PropertyType.CUSTOMIZEDVIEW)) {
-            _customizedViewCaches.get(customizedStateType).refresh(accessor);
-          }
-          LOG.info("Reload CustomizedView for types "
-              + _sourceDataTypeMap.get(PropertyType.CUSTOMIZEDVIEW) + " Takes "
-              + (System.currentTimeMillis() - start) + " ms");
-        }
+        boolean changed = _propertyDataChangedMap.get(HelixConstants.ChangeType.CUSTOMIZED_VIEW);
         _propertyDataChangedMap.put(HelixConstants.ChangeType.CUSTOMIZED_VIEW, false);
+        for (String customizedStateType : _sourceDataTypeMap.get(PropertyType.CUSTOMIZEDVIEW)) {
+          tasks.add(sourceTask(() -> {
+            if (changed) {
+              refreshCustomizedView(accessor, customizedStateType);
+            }
+          }, propertyType, customizedStateType, listener));
+        }
       }
         break;
       default:
         break;
       }
     }
+    runSourceTasks(tasks, executor);
+
     long endTime = System.currentTimeMillis();
     LOG.info("END: RoutingDataCache.refresh() for cluster " + _clusterName + ", took " + (endTime
         - startTime) + " ms");
 
     if (LOG.isDebugEnabled()) {
+      LOG.debug("LiveInstances: {}", _liveInstancePropertyCache.getPropertyMap());
+      LOG.debug("ExternalViews: {}", _externalViewCache.getExternalViewMap().keySet());
+      LOG.debug("InstanceConfigs: {}", _instanceConfigPropertyCache.getPropertyMap());
       LOG.debug("CurrentStates: " + _currentStateCache);
       LOG.debug("TargetExternalViews: " + _targetExternalViewCache.getExternalViewMap());
       for (String customizedStateType : _sourceDataTypeMap.getOrDefault(PropertyType.CUSTOMIZEDVIEW,
@@ -150,6 +186,85 @@ class RoutingDataCache extends BasicClusterDataCache {
     }
   }
 
+  private Callable<Object> sourceTask(Runnable refresh, PropertyType propertyType,
+      String customizedStateType, SourceRefreshListener listener) {
+    return () -> {
+      refresh.run();
+      if (listener != null && _sourceDataTypeMap.containsKey(propertyType)) {
+        listener.onSourceRefreshed(propertyType, customizedStateType);
+      }
+      return null;
+    };
+  }
+
+  private void runSourceTasks(List<Callable<Object>> tasks, ExecutorService executor) {
+    try {
+      if (executor == null || tasks.size() <= 1) {
+        for (Callable<Object> task : tasks) {
+          task.call();
+        }
+        return;
+      }
+      List<Future<Object>> futures = executor.invokeAll(tasks);
+      for (Future<Object> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new HelixException("Interrupted while refreshing the routing data", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new HelixException("Failed to refresh the routing data", e.getCause());
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new HelixException("Failed to refresh the routing data", e);
+    }
+  }
+
+  private void refreshTargetExternalViews(HelixDataAccessor accessor) {
+    if (_propertyDataChangedMap.get(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW)) {
+      long start = System.currentTimeMillis();
+      _propertyDataChangedMap.put(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW, false);
+      _targetExternalViewCache.refresh(accessor);
+      LOG.info("Reload " + _targetExternalViewCache.getExternalViewMap().keySet().size()
+          + " TargetExternalViews. Takes " + (System.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+  private void refreshCurrentStates(HelixDataAccessor accessor) {
+    if (_propertyDataChangedMap.get(HelixConstants.ChangeType.CURRENT_STATE)) {
+      long start = System.currentTimeMillis();
+      _propertyDataChangedMap.put(HelixConstants.ChangeType.CURRENT_STATE, false);
+      Map<String, LiveInstance> liveInstanceMap = getLiveInstances();
+      _currentStateCache.refresh(accessor, liveInstanceMap);
+      LOG.info("Reload CurrentStates. Takes " + (System.currentTimeMillis() - start) + " ms");
+    }
+  }
+
+  private void refreshCustomizedView(HelixDataAccessor accessor, String customizedStateType) {
+    long start = System.currentTimeMillis();
+    _customizedViewCaches.get(customizedStateType).refresh(accessor);
+    LOG.info("Reload CustomizedView for type " + customizedStateType + " Takes "
+        + (System.currentTimeMillis() - start) + " ms");
+  }
+
+  /**
+   * Only read and cache the ExternalViews, TargetExternalViews and CurrentStates of the given
+   * resources. The next refresh reloads them.
+   * @param resourceNames names of the resources, or null to cache all resources
+   */
+  public synchronized void setResourceFilter(Set<String> resourceNames) {
+    _externalViewCache.setResourceFilter(resourceNames);
+    _targetExternalViewCache.setResourceFilter(resourceNames);
+    _currentStateCache.setResourceFilter(resourceNames);
+    notifyDataChange(HelixConstants.ChangeType.EXTERNAL_VIEW);
+    notifyDataChange(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW);
+    notifyDataChange(HelixConstants.ChangeType.CURRENT_STATE);
+  }
+
   /**
    * Retrieves the TargetExternalView for all resources
    *
@@ -20,11 +20,13 @@ package org.apache.helix.spectator;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -55,6 +57,16 @@ class RoutingTable {
   protected final Collection<InstanceConfig> _instanceConfigs;
   private final Collection<ExternalView> _externalViews;
 
+  // mapping an instance name to its InstanceConfig
+  protected final Map<String, InstanceConfig> _instanceConfigMap;
+  // mapping a resourceName to the ExternalView the ResourceInfo was built from
+  private final Map<String, ExternalView> _externalViewMap;
+  // mapping a resourceName to the CurrentStates of each instance the ResourceInfo was built from
+  private final Map<String, Map<String, CurrentState>> _resourceCurrentStateMap;
+  // all InstanceConfigs sorted by id, the position of an instance is its ordinal
+  protected final InstanceConfig[] _instanceConfigArray;
+  protected final Map<String, Integer> _instanceOrdinalMap;
+
   private final PropertyType _propertyType;
 
   @Deprecated
@@ -74,11 +86,24 @@ class RoutingTable {
 
   public RoutingTable(Map<String, Map<String, Map<String, CurrentState>>> currentStateMap,
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances) {
+    this(currentStateMap, instanceConfigs, liveInstances, null);
+  }
+
+  /**
+   * Build a RoutingTable from the current states, sharing the routing information of the
+   * resources whose CurrentState objects on all the live instances are the same as the ones the
+   * previous table was built from.
+   * @param previousTable the table to share unchanged resources with, null for a full build
+   */
+  protected RoutingTable(Map<String, Map<String, Map<String, CurrentState>>> currentStateMap,
+      Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
+      RoutingTable previousTable) {
     // TODO Aggregate currentState to an ExternalView in the RoutingTable, so there is no need to
     // refresh according to the currentStateMap. - jjwang
     this(Collections.<ExternalView> emptyList(),
         instanceConfigs, liveInstances, PropertyType.CURRENTSTATES);
-    refresh(currentStateMap);
+    refresh(currentStateMap, previousTable);
+    freeze();
   }
 
   public RoutingTable(Collection<ExternalView> externalViews,
@@ -89,6 +114,19 @@ class RoutingTable {
 
   protected RoutingTable(Collection<ExternalView> externalViews, Collection<InstanceConfig> instanceConfigs,
       Collection<LiveInstance> liveInstances, PropertyType propertytype) {
+    this(externalViews, instanceConfigs, liveInstances, propertytype, null);
+  }
+
+  /**
+   * Build a RoutingTable from the given ExternalViews, sharing the routing information of the
+   * resources whose ExternalView is the same object as the one the previous table was built from.
+   * The data caches keep the same objects for the ZNodes that are not changed, so only the changed
+   * resources are rebuilt.
+   * @param previousTable the table to share unchanged resources with, null for a full build
+   */
+  protected RoutingTable(Collection<ExternalView> externalViews, Collection<InstanceConfig> instanceConfigs,
+      Collection<LiveInstance> liveInstances, PropertyType propertytype,
+      RoutingTable previousTable) {
     // TODO Refactor these constructors so we don't have so many constructor.
     _propertyType = propertytype;
     _resourceInfoMap = new HashMap<>();
@@ -96,51 +134,180 @@ class RoutingTable {
     _liveInstances = new HashSet<>(liveInstances);
     _instanceConfigs = new HashSet<>(instanceConfigs);
     _externalViews = new HashSet<>(externalViews);
-    refresh(_externalViews);
+    _instanceConfigMap = new HashMap<>();
+    for (InstanceConfig config : _instanceConfigs) {
+      _instanceConfigMap.put(config.getId(), config);
+    }
+    _resourceCurrentStateMap = new HashMap<>();
+    _externalViewMap = new HashMap<>();
+    for (ExternalView extView : _externalViews) {
+      _externalViewMap.put(extView.getId(), extView);
+    }
+    _instanceConfigArray = _instanceConfigMap.values().toArray(new InstanceConfig[0]);
+    Arrays.sort(_instanceConfigArray, INSTANCE_CONFIG_COMPARATOR);
+    _instanceOrdinalMap = new HashMap<>();
+    for (int i = 0; i < _instanceConfigArray.length; i++) {
+      _instanceOrdinalMap.put(_instanceConfigArray[i].getId(), i);
+    }
+    if (canShareResources(previousTable)) {
+      refresh(_externalViews, previousTable);
+    } else {
+      refresh(_externalViews);
+    }
+    freeze();
+  }
+
+  /**
+   * Precompute the immutable views returned by the lookup methods, so that lookups do not
+   * allocate. Must be called once all the entries are added, and again by subclasses that add
+   * entries after this constructor.
+   */
+  protected void freeze() {
+    for (ResourceInfo resourceInfo : _resourceInfoMap.values()) {
+      resourceInfo.freeze(_instanceOrdinalMap);
+    }
+    for (ResourceGroupInfo resourceGroupInfo : _resourceGroupInfoMap.values()) {
+      resourceGroupInfo.freeze(_instanceOrdinalMap);
+    }
+  }
+
+  private boolean canShareResources(RoutingTable previousTable) {
+    return previousTable != null && previousTable._propertyType == _propertyType
+        && _externalViewMap.size() == _externalViews.size()
+        && hasSameInstanceConfigs(previousTable);
+  }
+
+  /**
+   * Resources can be shared with the previous table only if it was built with exactly the same
+   * InstanceConfig objects, since the shared entries reference them.
+   */
+  protected boolean hasSameInstanceConfigs(RoutingTable previousTable) {
+    if (previousTable._instanceConfigMap.size() != _instanceConfigMap.size()) {
+      return false;
+    }
+    for (Map.Entry<String, InstanceConfig> entry : _instanceConfigMap.entrySet()) {
+      if (previousTable._instanceConfigMap.get(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reuse the routing information of a resource built by the previous table.
+   */
+  protected void shareResource(RoutingTable previousTable, String resourceName) {
+    ResourceInfo resourceInfo = previousTable._resourceInfoMap.get(resourceName);
+    if (resourceInfo != null) {
+      _resourceInfoMap.put(resourceName, resourceInfo);
+    }
   }
 
   private void refresh(Collection<ExternalView> externalViewList) {
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<>();
     if (externalViewList != null && !externalViewList.isEmpty()) {
-      for (InstanceConfig config : _instanceConfigs) {
-        instanceConfigMap.put(config.getId(), config);
-      }
       for (ExternalView extView : externalViewList) {
-        String resourceName = extView.getId();
-        for (String partitionName : extView.getPartitionSet()) {
-          Map<String, String> stateMap = extView.getStateMap(partitionName);
-          for (String instanceName : stateMap.keySet()) {
-            String currentState = stateMap.get(instanceName);
-            if (instanceConfigMap.containsKey(instanceName)) {
-              InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
-              if (extView.isGroupRoutingEnabled()) {
-                addEntry(resourceName, extView.getResourceGroupName(),
-                    extView.getInstanceGroupTag(), partitionName, currentState, instanceConfig);
-              } else {
-                addEntry(resourceName, partitionName, currentState, instanceConfig);
-              }
-            } else {
-              logger.warn(
-                  "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
-                      + "Skip recording partition assignment entry: Partition {}, Participant {}, State {}.",
-                  instanceName, partitionName, instanceName, stateMap.get(instanceName));
-            }
+        addEntries(extView, true);
+      }
+    }
+  }
+
+  /**
+   * Reuse the ResourceInfo of the unchanged ExternalViews and the ResourceGroupInfo of the
+   * resource groups without any changed, added or removed member, and rebuild the others.
+   */
+  private void refresh(Collection<ExternalView> externalViewList, RoutingTable previousTable) {
+    Set<String> changedResourceGroups = new HashSet<>();
+    for (ExternalView previousView : previousTable._externalViewMap.values()) {
+      if (previousView.isGroupRoutingEnabled()
+          && _externalViewMap.get(previousView.getId()) != previousView) {
+        changedResourceGroups.add(previousView.getResourceGroupName());
+      }
+    }
+
+    int rebuiltResources = 0;
+    for (ExternalView extView : externalViewList) {
+      String resourceName = extView.getId();
+      if (previousTable._externalViewMap.get(resourceName) == extView) {
+        shareResource(previousTable, resourceName);
+      } else {
+        addEntries(extView, false);
+        rebuiltResources++;
+        if (extView.isGroupRoutingEnabled()) {
+          changedResourceGroups.add(extView.getResourceGroupName());
+        }
+      }
+    }
+
+    for (ExternalView extView : externalViewList) {
+      if (!extView.isGroupRoutingEnabled()) {
+        continue;
+      }
+      String resourceGroupName = extView.getResourceGroupName();
+      if (changedResourceGroups.contains(resourceGroupName)) {
+        addResourceGroupEntries(extView);
+      } else if (!_resourceGroupInfoMap.containsKey(resourceGroupName)) {
+        ResourceGroupInfo resourceGroupInfo =
+            previousTable._resourceGroupInfoMap.get(resourceGroupName);
+        if (resourceGroupInfo != null) {
+          _resourceGroupInfoMap.put(resourceGroupName, resourceGroupInfo);
+        }
+      }
+    }
+    logger.debug("Rebuilt {} out of {} resources of the RoutingTable.", rebuiltResources,
+        externalViewList.size());
+  }
+
+  /**
+   * Add the partition assignments of an ExternalView.
+   * @param includeResourceGroup whether to also add the entries to the resource group
+   */
+  private void addEntries(ExternalView extView, boolean includeResourceGroup) {
+    String resourceName = extView.getId();
+    for (String partitionName : extView.getPartitionSet()) {
+      Map<String, String> stateMap = extView.getStateMap(partitionName);
+      for (String instanceName : stateMap.keySet()) {
+        String currentState = stateMap.get(instanceName);
+        if (_instanceConfigMap.containsKey(instanceName)) {
+          InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
+          if (includeResourceGroup && extView.isGroupRoutingEnabled()) {
+            addEntry(resourceName, extView.getResourceGroupName(),
+                extView.getInstanceGroupTag(), partitionName, currentState, instanceConfig);
+          } else {
+            addEntry(resourceName, partitionName, currentState, instanceConfig);
           }
+        } else {
+          logger.warn(
+              "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
+                  + "Skip recording partition assignment entry: Partition {}, Participant {}, State {}.",
+              instanceName, partitionName, instanceName, stateMap.get(instanceName));
         }
       }
     }
   }
 
-  private void refresh(Map<String, Map<String, Map<String, CurrentState>>> currentStateMap) {
-    Map<String, InstanceConfig> instanceConfigMap = new HashMap<>();
-    if (currentStateMap != null && !currentStateMap.isEmpty()) {
-      for (InstanceConfig config : _instanceConfigs) {
-        instanceConfigMap.put(config.getId(), config);
+  /**
+   * Add the partition assignments of an ExternalView to its resource group only.
+   */
+  private void addResourceGroupEntries(ExternalView extView) {
+    for (String partitionName : extView.getPartitionSet()) {
+      Map<String, String> stateMap = extView.getStateMap(partitionName);
+      for (String instanceName : stateMap.keySet()) {
+        InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
+        if (instanceConfig != null) {
+          addResourceGroupEntry(extView.getResourceGroupName(), extView.getInstanceGroupTag(),
+              partitionName, stateMap.get(instanceName), instanceConfig);
+        }
       }
+    }
+  }
+
+  private void refresh(Map<String, Map<String, Map<String, CurrentState>>> currentStateMap,
+      RoutingTable previousTable) {
+    if (currentStateMap != null && !currentStateMap.isEmpty()) {
       for (LiveInstance liveInstance : _liveInstances) {
         String instanceName = liveInstance.getInstanceName();
         String sessionId = liveInstance.getEphemeralOwner();
-        InstanceConfig instanceConfig = instanceConfigMap.get(instanceName);
+        InstanceConfig instanceConfig = _instanceConfigMap.get(instanceName);
         if (instanceConfig == null) {
           logger.warn(
               "Participant {} is not found with proper configuration information. It might already be removed from the cluster. "
@@ -157,15 +324,52 @@ class RoutingTable {
 
         for (CurrentState currentState : currentStates.values()) {
           String resourceName = currentState.getResourceName();
-          Map<String, String> stateMap = currentState.getPartitionStateMap();
-
-          for (String partitionName : stateMap.keySet()) {
-            String state = stateMap.get(partitionName);
-            addEntry(resourceName, partitionName, state, instanceConfig);
+          Map<String, CurrentState> instanceStateMap = _resourceCurrentStateMap.get(resourceName);
+          if (instanceStateMap == null) {
+            instanceStateMap = new LinkedHashMap<>();
+            _resourceCurrentStateMap.put(resourceName, instanceStateMap);
           }
+          instanceStateMap.put(instanceName, currentState);
+        }
+      }
+    }
+
+    boolean canShareResources = previousTable != null
+        && previousTable._propertyType == PropertyType.CURRENTSTATES
+        && hasSameInstanceConfigs(previousTable);
+    int rebuiltResources = 0;
+    for (Map.Entry<String, Map<String, CurrentState>> entry : _resourceCurrentStateMap
+        .entrySet()) {
+      String resourceName = entry.getKey();
+      if (canShareResources && isSameCurrentStates(
+          previousTable._resourceCurrentStateMap.get(resourceName), entry.getValue())) {
+        shareResource(previousTable, resourceName);
+        continue;
+      }
+      rebuiltResources++;
+      for (Map.Entry<String, CurrentState> instanceState : entry.getValue().entrySet()) {
+        InstanceConfig instanceConfig = _instanceConfigMap.get(instanceState.getKey());
+        Map<String, String> stateMap = instanceState.getValue().getPartitionStateMap();
+        for (String partitionName : stateMap.keySet()) {
+          addEntry(resourceName, partitionName, stateMap.get(partitionName), instanceConfig);
         }
       }
     }
+    logger.debug("Rebuilt {} out of {} resources of the RoutingTable.", rebuiltResources,
+        _resourceCurrentStateMap.size());
+  }
+
+  private static boolean isSameCurrentStates(Map<String, CurrentState> previousStates,
+      Map<String, CurrentState> currentStates) {
+    if (previousStates == null || previousStates.size() != currentStates.size()) {
+      return false;
+    }
+    for (Map.Entry<String, CurrentState> entry : currentStates.entrySet()) {
+      if (previousStates.get(entry.getKey()) != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
   }
 
   protected void addEntry(String resourceName, String partitionName, String state,
@@ -183,7 +387,11 @@ class RoutingTable {
   private void addEntry(String resourceName, String resourceGroupName, String resourceTag,
       String partitionName, String state, InstanceConfig config) {
     addEntry(resourceName, partitionName, state, config);
+    addResourceGroupEntry(resourceGroupName, resourceTag, partitionName, state, config);
+  }
 
+  private void addResourceGroupEntry(String resourceGroupName, String resourceTag,
+      String partitionName, String state, InstanceConfig config) {
     if (!_resourceGroupInfoMap.containsKey(resourceGroupName)) {
       _resourceGroupInfoMap.put(resourceGroupName, new ResourceGroupInfo());
     }
@@ -286,6 +494,56 @@ class RoutingTable {
     return instanceList;
   }
 
+  /**
+   * returns the instances for {resource,partition} pair that are in a specific {state}, sorted by
+   * instance id. The list is computed when the table is built, so this does not allocate.
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @return an immutable list, empty if there is no instance in a given state
+   */
+  public List<InstanceConfig> getSortedInstancesForResource(String resourceName,
+      String partitionName, String state) {
+    ResourceInfo resourceInfo = get(resourceName);
+    if (resourceInfo != null) {
+      PartitionInfo keyInfo = resourceInfo.get(partitionName);
+      if (keyInfo != null) {
+        return keyInfo.getSorted(state);
+      }
+    }
+    return Collections.emptyList();
+  }
+
+  /**
+   * returns the ordinals of the instances for {resource,partition} pair that are in a specific
+   * {state}, use {@link #getInstanceConfig(int)} to resolve them. This does not allocate.
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @return empty ordinals if there is no instance in a given state
+   */
+  public InstanceOrdinals getInstanceOrdinalsForResource(String resourceName,
+      String partitionName, String state) {
+    ResourceInfo resourceInfo = get(resourceName);
+    if (resourceInfo != null) {
+      PartitionInfo keyInfo = resourceInfo.get(partitionName);
+      if (keyInfo != null) {
+        return keyInfo.getOrdinals(state);
+      }
+    }
+    return InstanceOrdinals.EMPTY;
+  }
+
+  /**
+   * returns the InstanceConfig of an ordinal returned by
+   * {@link #getInstanceOrdinalsForResource(String, String, String)}
+   * @param ordinal
+   * @return the InstanceConfig
+   */
+  public InstanceConfig getInstanceConfig(int ordinal) {
+    return _instanceConfigArray[ordinal];
+  }
+
   /**
    * returns the instances for {resource group,partition} pair in all resources belongs to the given
    * resource group that are in a specific {state}.
@@ -309,7 +567,7 @@ class RoutingTable {
     if (instanceList == null) {
       instanceList = Collections.emptyList();
     }
-    return Collections.unmodifiableList(instanceList);
+    return instanceList;
   }
 
   /**
@@ -335,6 +593,36 @@ class RoutingTable {
     return Collections.unmodifiableCollection(_resourceInfoMap.keySet());
   }
 
+  /**
+   * Returns the object holding the routing information of a resource, the same object in two
+   * tables means the resource is the same in both.
+   */
+  Object getResourceData(String resourceName) {
+    return _resourceInfoMap.get(resourceName);
+  }
+
+  /**
+   * Returns the partition -> instance -> state maps of a resource.
+   */
+  Map<String, Map<String, String>> getPartitionStateMaps(String resourceName) {
+    ResourceInfo resourceInfo = _resourceInfoMap.get(resourceName);
+    if (resourceInfo == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, Map<String, String>> partitionStateMaps = new HashMap<>();
+    for (Map.Entry<String, PartitionInfo> partition : resourceInfo.partitionInfoMap.entrySet()) {
+      Map<String, String> stateMap = new HashMap<>();
+      for (Map.Entry<String, List<InstanceConfig>> state : partition.getValue().stateInfoMap
+          .entrySet()) {
+        for (InstanceConfig instanceConfig : state.getValue()) {
+          stateMap.put(instanceConfig.getInstanceName(), state.getKey());
+        }
+      }
+      partitionStateMaps.put(partition.getKey(), stateMap);
+    }
+    return partitionStateMaps;
+  }
+
   /**
    * returns the instances for {resource group,partition} pair contains any of the given tags
    * that are in a specific {state}.
@@ -393,12 +681,14 @@ class RoutingTable {
 
   /**
    * Class to store instances, partitions and their states for each resource.
+   * It is not modified once the RoutingTable is built, so it can be shared by subsequent tables.
    */
-  class ResourceInfo {
+  static class ResourceInfo {
     // store PartitionInfo for each partition
     Map<String, PartitionInfo> partitionInfoMap;
     // stores the Set of Instances in a given state
     Map<String, Set<InstanceConfig>> stateInfoMap;
+    boolean frozen;
 
     public ResourceInfo() {
       partitionInfoMap = new HashMap<>();
@@ -426,12 +716,30 @@ class RoutingTable {
     PartitionInfo get(String stateUnitKey) {
       return partitionInfoMap.get(stateUnitKey);
     }
+
+    /**
+     * Make the instance collections immutable and precompute the sorted views. A shared
+     * ResourceInfo is already frozen, and the ordinals are the same since it is only shared
+     * between tables with the same instances.
+     */
+    void freeze(Map<String, Integer> instanceOrdinalMap) {
+      if (frozen) {
+        return;
+      }
+      for (Map.Entry<String, Set<InstanceConfig>> entry : stateInfoMap.entrySet()) {
+        entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+      }
+      for (PartitionInfo partitionInfo : partitionInfoMap.values()) {
+        partitionInfo.freeze(instanceOrdinalMap);
+      }
+      frozen = true;
+    }
   }
 
   /**
    * Class to store instances, partitions and their states for each resource group.
    */
-  class ResourceGroupInfo {
+  static class ResourceGroupInfo {
     // aggregated partitions and instances info for all resources in the resource group.
     ResourceInfo aggregatedResourceInfo;
 
@@ -483,10 +791,20 @@ class RoutingTable {
 
       return resourceInfo.get(stateUnitKey);
     }
+
+    void freeze(Map<String, Integer> instanceOrdinalMap) {
+      aggregatedResourceInfo.freeze(instanceOrdinalMap);
+      for (ResourceInfo resourceInfo : tagToResourceMap.values()) {
+        resourceInfo.freeze(instanceOrdinalMap);
+      }
+    }
   }
 
-  class PartitionInfo {
+  static class PartitionInfo {
     Map<String, List<InstanceConfig>> stateInfoMap;
+    // immutable views computed by freeze()
+    Map<String, List<InstanceConfig>> sortedStateInfoMap;
+    Map<String, InstanceOrdinals> stateOrdinalsMap;
 
     public PartitionInfo() {
       stateInfoMap = new HashMap<>();
@@ -507,9 +825,35 @@ class RoutingTable {
     boolean containsState(String state) {
       return stateInfoMap.containsKey(state);
     }
+
+    List<InstanceConfig> getSorted(String state) {
+      List<InstanceConfig> sorted = sortedStateInfoMap.get(state);
+      return sorted == null ? Collections.<InstanceConfig> emptyList() : sorted;
+    }
+
+    InstanceOrdinals getOrdinals(String state) {
+      InstanceOrdinals ordinals = stateOrdinalsMap.get(state);
+      return ordinals == null ? InstanceOrdinals.EMPTY : ordinals;
+    }
+
+    void freeze(Map<String, Integer> instanceOrdinalMap) {
+      sortedStateInfoMap = new HashMap<>();
+      stateOrdinalsMap = new HashMap<>();
+      for (Map.Entry<String, List<InstanceConfig>> entry : stateInfoMap.entrySet()) {
+        InstanceConfig[] sorted = entry.getValue().toArray(new InstanceConfig[0]);
+        Arrays.sort(sorted, INSTANCE_CONFIG_COMPARATOR);
+        int[] ordinals = new int[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+          ordinals[i] = instanceOrdinalMap.get(sorted[i].getId());
+        }
+        sortedStateInfoMap.put(entry.getKey(), Collections.unmodifiableList(Arrays.asList(sorted)));
+        stateOrdinalsMap.put(entry.getKey(), new InstanceOrdinals(ordinals));
+        entry.setValue(Collections.unmodifiableList(entry.getValue()));
+      }
+    }
   }
 
-  private static Comparator<InstanceConfig> INSTANCE_CONFIG_COMPARATOR =
+  static final Comparator<InstanceConfig> INSTANCE_CONFIG_COMPARATOR =
       new Comparator<InstanceConfig>() {
         @Override
         public int compare(InstanceConfig config1, InstanceConfig config2) {
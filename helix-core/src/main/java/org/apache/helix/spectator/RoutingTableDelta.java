@@ -0,0 +1,195 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.helix.model.InstanceConfig;
+
+/**
+ * The difference between two consecutive routing tables of a RoutingTableProvider: the replicas
+ * that were added, removed or changed state, and the instances that were added or removed.
+ */
+public class RoutingTableDelta {
+  public enum ChangeType {
+    ADDED,
+    REMOVED,
+    STATE_CHANGED
+  }
+
+  /**
+   * A change of one replica, i.e. of one (resource, partition, instance)
+   */
+  public static class ReplicaChange {
+    private final ChangeType _changeType;
+    private final String _resourceName;
+    private final String _partitionName;
+    private final String _instanceName;
+    private final String _previousState;
+    private final String _currentState;
+
+    ReplicaChange(ChangeType changeType, String resourceName, String partitionName,
+        String instanceName, String previousState, String currentState) {
+      _changeType = changeType;
+      _resourceName = resourceName;
+      _partitionName = partitionName;
+      _instanceName = instanceName;
+      _previousState = previousState;
+      _currentState = currentState;
+    }
+
+    public ChangeType getChangeType() {
+      return _changeType;
+    }
+
+    public String getResourceName() {
+      return _resourceName;
+    }
+
+    public String getPartitionName() {
+      return _partitionName;
+    }
+
+    public String getInstanceName() {
+      return _instanceName;
+    }
+
+    /**
+     * @return the state before the change, null if the replica was added
+     */
+    public String getPreviousState() {
+      return _previousState;
+    }
+
+    /**
+     * @return the state after the change, null if the replica was removed
+     */
+    public String getCurrentState() {
+      return _currentState;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s.%s@%s: %s -> %s", _changeType, _resourceName, _partitionName,
+          _instanceName, _previousState, _currentState);
+    }
+  }
+
+  private final List<ReplicaChange> _replicaChanges;
+  private final Set<String> _addedInstances;
+  private final Set<String> _removedInstances;
+
+  private RoutingTableDelta(List<ReplicaChange> replicaChanges, Set<String> addedInstances,
+      Set<String> removedInstances) {
+    _replicaChanges = Collections.unmodifiableList(replicaChanges);
+    _addedInstances = Collections.unmodifiableSet(addedInstances);
+    _removedInstances = Collections.unmodifiableSet(removedInstances);
+  }
+
+  /**
+   * Compute the difference between two routing tables. The resources whose routing information is
+   * shared by both tables are not compared.
+   */
+  static RoutingTableDelta compute(RoutingTable previous, RoutingTable current) {
+    List<ReplicaChange> replicaChanges = new ArrayList<>();
+    Set<String> resources = new HashSet<>(previous.getResources());
+    resources.addAll(current.getResources());
+    for (String resourceName : resources) {
+      Object previousData = previous.getResourceData(resourceName);
+      if (previousData != null && previousData == current.getResourceData(resourceName)) {
+        continue;
+      }
+      Map<String, Map<String, String>> previousStateMaps =
+          previous.getPartitionStateMaps(resourceName);
+      Map<String, Map<String, String>> currentStateMaps =
+          current.getPartitionStateMaps(resourceName);
+      for (Map.Entry<String, Map<String, String>> partition : currentStateMaps.entrySet()) {
+        Map<String, String> previousStateMap = previousStateMaps.get(partition.getKey());
+        for (Map.Entry<String, String> replica : partition.getValue().entrySet()) {
+          String previousState =
+              previousStateMap == null ? null : previousStateMap.get(replica.getKey());
+          if (previousState == null) {
+            replicaChanges.add(new ReplicaChange(ChangeType.ADDED, resourceName,
+                partition.getKey(), replica.getKey(), null, replica.getValue()));
+          } else if (!previousState.equals(replica.getValue())) {
+            replicaChanges.add(new ReplicaChange(ChangeType.STATE_CHANGED, resourceName,
+                partition.getKey(), replica.getKey(), previousState, replica.getValue()));
+          }
+        }
+      }
+      for (Map.Entry<String, Map<String, String>> partition : previousStateMaps.entrySet()) {
+        Map<String, String> currentStateMap = currentStateMaps.get(partition.getKey());
+        for (Map.Entry<String, String> replica : partition.getValue().entrySet()) {
+          if (currentStateMap == null || !currentStateMap.containsKey(replica.getKey())) {
+            replicaChanges.add(new ReplicaChange(ChangeType.REMOVED, resourceName,
+                partition.getKey(), replica.getKey(), replica.getValue(), null));
+          }
+        }
+      }
+    }
+
+    Set<String> previousInstances = getInstanceNames(previous.getInstanceConfigs());
+    Set<String> currentInstances = getInstanceNames(current.getInstanceConfigs());
+    Set<String> addedInstances = new HashSet<>(currentInstances);
+    addedInstances.removeAll(previousInstances);
+    Set<String> removedInstances = new HashSet<>(previousInstances);
+    removedInstances.removeAll(currentInstances);
+    return new RoutingTableDelta(replicaChanges, addedInstances, removedInstances);
+  }
+
+  private static Set<String> getInstanceNames(Collection<InstanceConfig> instanceConfigs) {
+    Set<String> instanceNames = new HashSet<>();
+    for (InstanceConfig instanceConfig : instanceConfigs) {
+      instanceNames.add(instanceConfig.getInstanceName());
+    }
+    return instanceNames;
+  }
+
+  /**
+   * @return the replicas that were added, removed or changed state
+   */
+  public List<ReplicaChange> getReplicaChanges() {
+    return _replicaChanges;
+  }
+
+  /**
+   * @return the names of the instances whose InstanceConfig was added
+   */
+  public Set<String> getAddedInstances() {
+    return _addedInstances;
+  }
+
+  /**
+   * @return the names of the instances whose InstanceConfig was removed
+   */
+  public Set<String> getRemovedInstances() {
+    return _removedInstances;
+  }
+
+  public boolean isEmpty() {
+    return _replicaChanges.isEmpty() && _addedInstances.isEmpty() && _removedInstances.isEmpty();
+  }
+}
@@ -19,9 +19,11 @@ package org.apache.helix.spectator;
  * under the License.
  */
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -36,6 +38,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import com.google.common.collect.ImmutableMap;
 import javax.management.JMException;
 
+import org.apache.helix.BaseDataAccessor;
 import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixException;
@@ -43,6 +46,7 @@ import org.apache.helix.HelixManager;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyType;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.api.listeners.ConfigChangeListener;
 import org.apache.helix.api.listeners.CurrentStateChangeListener;
 import org.apache.helix.api.listeners.CustomizedViewChangeListener;
@@ -63,6 +67,8 @@ import org.apache.helix.model.ExternalView;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.monitoring.mbeans.RoutingTableProviderMonitor;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.helix.zookeeper.zkclient.IZkDataListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,6 +84,17 @@ public class RoutingTableProvider
   private final Map<PropertyType, List<String>> _sourceDataTypeMap;
   private final Map<RoutingTableChangeListener, ListenerContext> _routingTableChangeListenerMap;
   private final Map<PropertyType, RoutingTableProviderMonitor> _monitorMap;
+  // Names of the subscribed resources, null if the provider subscribes to the whole cluster
+  private final Set<String> _subscribedResources;
+  private final IZkDataListener _resourceDataListener = new ResourceDataListener();
+  // Whether the ExternalView routing tables are stored in the compact encoding
+  private final boolean _useCompactRoutingTable = Boolean.parseBoolean(
+      System.getProperty(SystemPropertyKeys.SPECTATOR_COMPACT_ROUTING_TABLE_ENABLED, "false"));
+  // Whether the routing data of the different sources is refreshed in parallel
+  private final boolean _useParallelRefresh = Boolean.parseBoolean(System
+      .getProperty(SystemPropertyKeys.SPECTATOR_PARALLEL_ROUTING_DATA_REFRESH_ENABLED, "false"));
+  // Serializes the routing table updates and the listener notifications of the sources
+  private final Object _publishLock = new Object();
 
   // For periodic refresh
   private long _lastRefreshTimestamp;
@@ -87,6 +104,10 @@ public class RoutingTableProvider
   // For computing intensive reporting logic
   private ExecutorService _reportExecutor;
   private Future _reportingTask = null;
+  private Future _externalViewReportingTask = null;
+  // Refreshes the routing data of the sources in parallel, null if the parallel refresh is
+  // disabled or there is only one source
+  private ExecutorService _refreshExecutor;
 
   protected static final  String DEFAULT_PROPERTY_TYPE = "HELIX_DEFAULT_PROPERTY";
   protected static final  String DEFAULT_STATE_TYPE = "HELIX_DEFAULT";
@@ -136,8 +157,33 @@ public class RoutingTableProvider
   public RoutingTableProvider(HelixManager helixManager,
       Map<PropertyType, List<String>> sourceDataTypeMap, boolean isPeriodicRefreshEnabled,
       long periodRefreshInterval) throws HelixException {
+    this(helixManager, sourceDataTypeMap, isPeriodicRefreshEnabled, periodRefreshInterval, null);
+  }
+
+  /**
+   * Initialize an instance of RoutingTableProvider that only reads and watches the routing data of
+   * the given resources. Resources can be added to or removed from the subscription later with
+   * {@link #subscribeResources(Collection)} and {@link #unsubscribeResources(Collection)}.
+   * The ExternalViews and TargetExternalViews are watched per subscribed resource. CurrentStates
+   * are still watched per live instance, but only the ones of the subscribed resources are read.
+   * @param helixManager
+   * @param sourceDataTypeMap CustomizedView is not supported
+   * @param isPeriodicRefreshEnabled true if periodic refresh is enabled, false otherwise
+   * @param periodRefreshInterval only effective if isPeriodRefreshEnabled is true
+   * @param subscribedResources names of the resources to route to, or null for all resources of
+   *          the cluster
+   * @throws HelixException
+   */
+  public RoutingTableProvider(HelixManager helixManager,
+      Map<PropertyType, List<String>> sourceDataTypeMap, boolean isPeriodicRefreshEnabled,
+      long periodRefreshInterval, Collection<String> subscribedResources) throws HelixException {
 
     validateSourceDataTypeMap(sourceDataTypeMap);
+    if (subscribedResources != null
+        && sourceDataTypeMap.containsKey(PropertyType.CUSTOMIZEDVIEW)) {
+      throw new HelixException("Resource subscription does not support CustomizedView!");
+    }
+    _subscribedResources = subscribedResources == null ? null : new HashSet<>(subscribedResources);
 
     _routingTableRefMap = new HashMap<>();
     _helixManager = helixManager;
@@ -175,7 +221,9 @@ public class RoutingTableProvider
     _monitorMap = new HashMap<>();
 
     for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
-      _monitorMap.put(propertyType, new RoutingTableProviderMonitor(propertyType, clusterName));
+      // external views carry the state end times if the controller stamps them
+      _monitorMap.put(propertyType, new RoutingTableProviderMonitor(propertyType, clusterName,
+          propertyType == PropertyType.CURRENTSTATES || propertyType == PropertyType.EXTERNALVIEW));
       try {
         _monitorMap.get(propertyType).register();
       } catch (JMException e) {
@@ -183,9 +231,15 @@ public class RoutingTableProvider
       }
     }
     _reportExecutor = Executors.newSingleThreadExecutor();
+    if (_useParallelRefresh && _routingTableRefMap.size() > 1) {
+      _refreshExecutor = Executors.newFixedThreadPool(_routingTableRefMap.size());
+    }
 
     // Start Updaters
     _routerUpdater = new RouterUpdater(clusterName, sourceDataTypeMap);
+    if (_subscribedResources != null) {
+      _routerUpdater.setResourceFilter(_subscribedResources);
+    }
     _routerUpdater.start();
 
     // Add listeners
@@ -224,6 +278,10 @@ public class RoutingTableProvider
       for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
         switch (propertyType) {
         case EXTERNALVIEW:
+          if (_subscribedResources != null) {
+            // watched per subscribed resource
+            break;
+          }
           try {
             _helixManager.addExternalViewChangeListener(this);
           } catch (Exception e) {
@@ -261,6 +319,10 @@ public class RoutingTableProvider
             shutdown();
             throw new HelixException("Target External View is not enabled!");
           }
+          if (_subscribedResources != null) {
+            // watched per subscribed resource
+            break;
+          }
 
           try {
             _helixManager.addTargetExternalViewChangeListener(this);
@@ -277,6 +339,11 @@ public class RoutingTableProvider
           throw new HelixException(String.format("Unsupported source data type: %s", propertyType));
         }
       }
+      if (_subscribedResources != null) {
+        synchronized (_subscribedResources) {
+          subscribeResourceDataChanges(_subscribedResources);
+        }
+      }
       try {
         _helixManager.addInstanceConfigChangeListener(this);
         _helixManager.addLiveInstanceChangeListener(this);
@@ -320,7 +387,9 @@ public class RoutingTableProvider
       _periodicRefreshExecutor.shutdown();
     }
     _routerUpdater.shutdown();
-
+    if (_refreshExecutor != null) {
+      _refreshExecutor.shutdown();
+    }
 
     for (PropertyType propertyType : _monitorMap.keySet()) {
       _monitorMap.get(propertyType).unregister();
@@ -352,6 +421,11 @@ public class RoutingTableProvider
           break;
         }
       }
+      if (_subscribedResources != null) {
+        synchronized (_subscribedResources) {
+          unsubscribeResourceDataChanges(_subscribedResources);
+        }
+      }
     }
   }
 
@@ -403,6 +477,155 @@ public class RoutingTableProvider
     return snapshots;
   }
 
+  /**
+   * Add resources to the subscription of a provider created with subscribed resources. Their
+   * routing data is read and watched from now on, and the routing table is refreshed
+   * asynchronously.
+   * @param resourceNames names of the resources to add
+   */
+  public void subscribeResources(Collection<String> resourceNames) {
+    checkResourceSubscription();
+    synchronized (_subscribedResources) {
+      Set<String> newResources = new HashSet<>(resourceNames);
+      newResources.removeAll(_subscribedResources);
+      if (newResources.isEmpty()) {
+        return;
+      }
+      _subscribedResources.addAll(newResources);
+      _routerUpdater.setResourceFilter(_subscribedResources);
+      subscribeResourceDataChanges(newResources);
+      logger.info("Subscribed to resources {}", newResources);
+    }
+    queueResourceRefresh();
+  }
+
+  /**
+   * Remove resources from the subscription of a provider created with subscribed resources. They
+   * are removed from the routing table asynchronously.
+   * @param resourceNames names of the resources to remove
+   */
+  public void unsubscribeResources(Collection<String> resourceNames) {
+    checkResourceSubscription();
+    synchronized (_subscribedResources) {
+      Set<String> removedResources = new HashSet<>(resourceNames);
+      removedResources.retainAll(_subscribedResources);
+      if (removedResources.isEmpty()) {
+        return;
+      }
+      _subscribedResources.removeAll(removedResources);
+      _routerUpdater.setResourceFilter(_subscribedResources);
+      unsubscribeResourceDataChanges(removedResources);
+      logger.info("Unsubscribed from resources {}", removedResources);
+    }
+    queueResourceRefresh();
+  }
+
+  /**
+   * @return names of the subscribed resources, or null if the provider subscribes to the whole
+   *         cluster
+   */
+  public Set<String> getSubscribedResources() {
+    if (_subscribedResources == null) {
+      return null;
+    }
+    synchronized (_subscribedResources) {
+      return Collections.unmodifiableSet(new HashSet<>(_subscribedResources));
+    }
+  }
+
+  private void checkResourceSubscription() {
+    if (_subscribedResources == null) {
+      throw new HelixException(
+          "RoutingTableProvider subscribes to the whole cluster, create it with subscribed resources!");
+    }
+  }
+
+  private void subscribeResourceDataChanges(Collection<String> resourceNames) {
+    if (_helixManager == null) {
+      return;
+    }
+    BaseDataAccessor<ZNRecord> baseAccessor =
+        _helixManager.getHelixDataAccessor().getBaseDataAccessor();
+    for (String path : getResourceDataPaths(resourceNames)) {
+      // also watches for the creation of the znode if the resource does not exist yet
+      baseAccessor.subscribeDataChanges(path, _resourceDataListener);
+    }
+  }
+
+  private void unsubscribeResourceDataChanges(Collection<String> resourceNames) {
+    if (_helixManager == null) {
+      return;
+    }
+    BaseDataAccessor<ZNRecord> baseAccessor =
+        _helixManager.getHelixDataAccessor().getBaseDataAccessor();
+    for (String path : getResourceDataPaths(resourceNames)) {
+      baseAccessor.unsubscribeDataChanges(path, _resourceDataListener);
+    }
+  }
+
+  private List<String> getResourceDataPaths(Collection<String> resourceNames) {
+    PropertyKey.Builder keyBuilder = _helixManager.getHelixDataAccessor().keyBuilder();
+    List<String> paths = new ArrayList<>();
+    for (String resourceName : resourceNames) {
+      if (_sourceDataTypeMap.containsKey(PropertyType.EXTERNALVIEW)) {
+        paths.add(keyBuilder.externalView(resourceName).getPath());
+      }
+      if (_sourceDataTypeMap.containsKey(PropertyType.TARGETEXTERNALVIEW)) {
+        paths.add(keyBuilder.targetExternalView(resourceName).getPath());
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Queue a refresh of the routing data of the subscribed resources
+   */
+  private void queueResourceRefresh() {
+    if (_helixManager == null) {
+      return;
+    }
+    for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
+      NotificationContext context = new NotificationContext(_helixManager);
+      context.setType(NotificationContext.Type.CALLBACK);
+      switch (propertyType) {
+      case EXTERNALVIEW:
+        context.setChangeType(HelixConstants.ChangeType.EXTERNAL_VIEW);
+        _routerUpdater.queueEvent(context, ClusterEventType.ExternalViewChange,
+            HelixConstants.ChangeType.EXTERNAL_VIEW);
+        break;
+      case TARGETEXTERNALVIEW:
+        context.setChangeType(HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW);
+        _routerUpdater.queueEvent(context, ClusterEventType.TargetExternalViewChange,
+            HelixConstants.ChangeType.TARGET_EXTERNAL_VIEW);
+        break;
+      case CURRENTSTATES:
+        context.setChangeType(HelixConstants.ChangeType.CURRENT_STATE);
+        _routerUpdater.queueEvent(context, ClusterEventType.CurrentStateChange,
+            HelixConstants.ChangeType.CURRENT_STATE);
+        break;
+      default:
+        break;
+      }
+    }
+  }
+
+  /**
+   * Watches the ExternalView and TargetExternalView znodes of the subscribed resources. The data is
+   * read by the RoutingDataCache on refresh, so it is not prefetched here.
+   */
+  @org.apache.helix.zookeeper.zkclient.annotation.PreFetch(enabled = false)
+  private class ResourceDataListener implements IZkDataListener {
+    @Override
+    public void handleDataChange(String dataPath, Object data) {
+      queueResourceRefresh();
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) {
+      queueResourceRefresh();
+    }
+  }
+
   /**
    * Add RoutingTableChangeListener with user defined context
    * @param routingTableChangeListener
@@ -795,9 +1018,12 @@ public class RoutingTableProvider
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
       String referenceKey) {
     long startTime = System.currentTimeMillis();
-    PropertyType propertyType = _routingTableRefMap.get(referenceKey).get().getPropertyType();
-    RoutingTable newRoutingTable =
-        new RoutingTable(externalViews, instanceConfigs, liveInstances, propertyType);
+    RoutingTable previousRoutingTable = _routingTableRefMap.get(referenceKey).get();
+    RoutingTable newRoutingTable = _useCompactRoutingTable
+        ? new CompactRoutingTable(externalViews, instanceConfigs, liveInstances,
+            previousRoutingTable.getPropertyType(), previousRoutingTable)
+        : new RoutingTable(externalViews, instanceConfigs, liveInstances,
+            previousRoutingTable.getPropertyType(), previousRoutingTable);
     resetRoutingTableAndNotify(startTime, newRoutingTable, referenceKey);
   }
 
@@ -805,10 +1031,10 @@ public class RoutingTableProvider
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
       String referenceKey) {
     long startTime = System.currentTimeMillis();
-    PropertyType propertyType = _routingTableRefMap.get(referenceKey).get().getPropertyType();
-    String customizedStateType = _routingTableRefMap.get(referenceKey).get().getStateType();
+    RoutingTable previousRoutingTable = _routingTableRefMap.get(referenceKey).get();
     RoutingTable newRoutingTable = new CustomizedViewRoutingTable(customizedViews, instanceConfigs,
-        liveInstances, propertyType, customizedStateType);
+        liveInstances, previousRoutingTable.getPropertyType(),
+        previousRoutingTable.getStateType(), previousRoutingTable);
     resetRoutingTableAndNotify(startTime, newRoutingTable, referenceKey);
   }
 
@@ -816,20 +1042,21 @@ public class RoutingTableProvider
       Collection<InstanceConfig> instanceConfigs, Collection<LiveInstance> liveInstances,
       String referenceKey) {
     long startTime = System.currentTimeMillis();
-    RoutingTable newRoutingTable =
-        new RoutingTable(currentStateMap, instanceConfigs, liveInstances);
+    RoutingTable newRoutingTable = new RoutingTable(currentStateMap, instanceConfigs,
+        liveInstances, _routingTableRefMap.get(referenceKey).get());
     resetRoutingTableAndNotify(startTime, newRoutingTable, referenceKey);
   }
 
   private void resetRoutingTableAndNotify(long startTime, RoutingTable newRoutingTable, String referenceKey) {
-    _routingTableRefMap.get(referenceKey).set(newRoutingTable);
+    RoutingTable previousRoutingTable =
+        _routingTableRefMap.get(referenceKey).getAndSet(newRoutingTable);
     String clusterName = _helixManager != null ? _helixManager.getClusterName() : null;
     logger.info("Refreshed the RoutingTable for cluster {}, took {} ms.", clusterName,
         (System.currentTimeMillis() - startTime));
 
     // TODO: move the callback user code logic to separate thread upon routing table statePropagation latency
     // integration test result. If the latency is more than 2 secs, we need to change this part.
-    notifyRoutingTableChange(clusterName, referenceKey);
+    notifyRoutingTableChange(clusterName, previousRoutingTable, newRoutingTable);
 
     // Update timestamp for last refresh
     if (_isPeriodicRefreshEnabled) {
@@ -837,15 +1064,20 @@ public class RoutingTableProvider
     }
   }
 
-  private void notifyRoutingTableChange(String clusterName, String referenceKey) {
+  private void notifyRoutingTableChange(String clusterName, RoutingTable previousRoutingTable,
+      RoutingTable newRoutingTable) {
     // This call back is called in the main event queue of RoutingTableProvider. We add log to
     // record time spent
     // here. Potentially, we should call this callback in a separate thread if this is a bottleneck.
     long startTime = System.currentTimeMillis();
+    if (_routingTableChangeListenerMap.isEmpty()) {
+      return;
+    }
+    // computed once for all the listeners
+    RoutingTableDelta delta = RoutingTableDelta.compute(previousRoutingTable, newRoutingTable);
     for (Map.Entry<RoutingTableChangeListener, ListenerContext> entry : _routingTableChangeListenerMap
         .entrySet()) {
-      entry.getKey().onRoutingTableChange(
-          new RoutingTableSnapshot(_routingTableRefMap.get(referenceKey).get()),
+      entry.getKey().onRoutingTableChange(new RoutingTableSnapshot(newRoutingTable), delta,
           entry.getValue().getContext());
     }
     logger.info("RoutingTableProvider user callback time for cluster {}, took {} ms.", clusterName,
@@ -862,6 +1094,10 @@ public class RoutingTableProvider
       _dataCache = new RoutingDataCache(clusterName, _sourceDataTypeMap);
     }
 
+    void setResourceFilter(Set<String> resourceNames) {
+      _dataCache.setResourceFilter(resourceNames);
+    }
+
     @Override
     protected void handleEvent(ClusterEvent event) {
       NotificationContext changeContext = event.getAttribute(AttributeName.changeContext.name());
@@ -891,45 +1127,64 @@ public class RoutingTableProvider
           throw new HelixException("HelixManager is not connected for router update event.");
         }
 
-        long startTime = System.currentTimeMillis();
-
-        _dataCache.refresh(manager.getHelixDataAccessor());
-        for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
-          switch (propertyType) {
-          case EXTERNALVIEW: {
-            String keyReference = generateReferenceKey(propertyType.name(), DEFAULT_STATE_TYPE);
-            refreshExternalView(_dataCache.getExternalViews().values(),
-                _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
-                keyReference);
-          }
-            break;
-          case TARGETEXTERNALVIEW: {
-            String keyReference = generateReferenceKey(propertyType.name(), DEFAULT_STATE_TYPE);
-            refreshExternalView(_dataCache.getTargetExternalViews().values(),
-                _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
-                keyReference);
-          }
-              break;
-            case CUSTOMIZEDVIEW:
-              for (String customizedStateType : _sourceDataTypeMap.getOrDefault(PropertyType.CUSTOMIZEDVIEW, Collections.emptyList())) {
-                String keyReference = generateReferenceKey(propertyType.name(),  customizedStateType);
-                refreshCustomizedView(_dataCache.getCustomizedView(customizedStateType).values(),
-                    _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(), keyReference);
+        final long startTime = System.currentTimeMillis();
+
+        // Every source is published as soon as its own data is refreshed, so that e.g. the
+        // ExternalView routing table does not wait for the CurrentStates of the whole cluster.
+        // The sources are only read in parallel, the routing tables are still updated and the
+        // listeners notified one source at a time.
+        _dataCache.refresh(manager.getHelixDataAccessor(), _refreshExecutor,
+            (propertyType, customizedStateType) -> {
+              synchronized (_publishLock) {
+                refreshRoutingTable(propertyType, customizedStateType);
+                _monitorMap.get(propertyType).increaseDataRefreshCounters(startTime);
               }
-              break;
-            case CURRENTSTATES: {
-              String keyReference = generateReferenceKey(propertyType.name(),  DEFAULT_STATE_TYPE);;
-              refreshCurrentState(_dataCache.getCurrentStatesMap(), _dataCache.getInstanceConfigMap().values(),
-                  _dataCache.getLiveInstances().values(), keyReference);
-              recordPropagationLatency(System.currentTimeMillis(), _dataCache.getCurrentStateSnapshot());
-            }
-              break;
-            default:
-              logger.warn("Unsupported source data type: {}, stop refreshing the routing table!", propertyType);
-          }
+            });
+      }
+    }
 
-          _monitorMap.get(propertyType).increaseDataRefreshCounters(startTime);
-        }
+    /**
+     * Rebuild the routing table of one source from the refreshed data cache.
+     * @param propertyType
+     * @param customizedStateType the customized state type for CUSTOMIZEDVIEW, null otherwise
+     */
+    private void refreshRoutingTable(PropertyType propertyType, String customizedStateType) {
+      switch (propertyType) {
+      case EXTERNALVIEW: {
+        String keyReference = generateReferenceKey(propertyType.name(), DEFAULT_STATE_TYPE);
+        RoutingTable previousRoutingTable = _routingTableRefMap.get(keyReference).get();
+        refreshExternalView(_dataCache.getExternalViews().values(),
+            _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
+            keyReference);
+        recordExternalViewPropagationLatency(System.currentTimeMillis(), previousRoutingTable,
+            _routingTableRefMap.get(keyReference).get());
+      }
+        break;
+      case TARGETEXTERNALVIEW: {
+        String keyReference = generateReferenceKey(propertyType.name(), DEFAULT_STATE_TYPE);
+        refreshExternalView(_dataCache.getTargetExternalViews().values(),
+            _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
+            keyReference);
+      }
+        break;
+      case CUSTOMIZEDVIEW: {
+        String keyReference = generateReferenceKey(propertyType.name(), customizedStateType);
+        refreshCustomizedView(_dataCache.getCustomizedView(customizedStateType).values(),
+            _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
+            keyReference);
+      }
+        break;
+      case CURRENTSTATES: {
+        String keyReference = generateReferenceKey(propertyType.name(), DEFAULT_STATE_TYPE);
+        refreshCurrentState(_dataCache.getCurrentStatesMap(),
+            _dataCache.getInstanceConfigMap().values(), _dataCache.getLiveInstances().values(),
+            keyReference);
+        recordPropagationLatency(System.currentTimeMillis(), _dataCache.getCurrentStateSnapshot());
+      }
+        break;
+      default:
+        logger.warn("Unsupported source data type: {}, stop refreshing the routing table!",
+            propertyType);
       }
     }
 
@@ -955,12 +1210,11 @@ public class RoutingTableProvider
               for (String partition : partitionStateEndTimes.keySet()) {
                 long endTime = partitionStateEndTimes.get(partition);
                 if (currentTime >= endTime) {
-                  for (PropertyType propertyType : _sourceDataTypeMap.keySet()) {
-                    _monitorMap.get(propertyType).recordStatePropagationLatency(currentTime - endTime);
-                    logger.debug(
-                        "CurrentState updated in the routing table. Node Key {}, Partition {}, end time {}, Propagation latency {}",
-                        key.toString(), partition, endTime, currentTime - endTime);
-                  }
+                  _monitorMap.get(PropertyType.CURRENTSTATES)
+                      .recordStatePropagationLatency(currentTime - endTime);
+                  logger.debug(
+                      "CurrentState updated in the routing table. Node Key {}, Partition {}, end time {}, Propagation latency {}",
+                      key.toString(), partition, endTime, currentTime - endTime);
                 } else {
                   // Verbose log in case currentTime < endTime. This could be the case that Router
                   // clock is slower than the participant clock.
@@ -976,6 +1230,66 @@ public class RoutingTableProvider
       }
     }
 
+    /**
+     * Report participant transition completion to routing table propagation latency, based on the
+     * transition end times the controller stamps in the external views. One sample is recorded per
+     * partition whose end time moved forward since the previous routing table.
+     * This method is not threadsafe. Take care of _externalViewReportingTask atomicity if use in
+     * multi-threads.
+     */
+    private void recordExternalViewPropagationLatency(final long currentTime,
+        final RoutingTable previousRoutingTable, final RoutingTable routingTable) {
+      // Same as the current state reporting, only one task runs at a time and the metric is sampled.
+      if (_externalViewReportingTask == null || _externalViewReportingTask.isDone()) {
+        _externalViewReportingTask = _reportExecutor.submit(new Callable<Object>() {
+          @Override
+          public Object call() {
+            // If the previous routing table is empty, this is the first time refresh. So the
+            // end times are not considered as recent changes.
+            Collection<ExternalView> previousExternalViews = previousRoutingTable.getExternalViews();
+            if (previousExternalViews.isEmpty()) {
+              return null;
+            }
+            Map<String, ExternalView> previousExternalViewMap = new HashMap<>();
+            for (ExternalView externalView : previousExternalViews) {
+              previousExternalViewMap.put(externalView.getResourceName(), externalView);
+            }
+            RoutingTableProviderMonitor monitor = _monitorMap.get(PropertyType.EXTERNALVIEW);
+            for (ExternalView externalView : routingTable.getExternalViews()) {
+              ExternalView previousExternalView =
+                  previousExternalViewMap.get(externalView.getResourceName());
+              if (externalView == previousExternalView) {
+                continue;
+              }
+              Map<String, Long> previousEndTimes = previousExternalView == null
+                  ? Collections.<String, Long> emptyMap()
+                  : previousExternalView.getStateEndTimes();
+              for (Map.Entry<String, Long> endTimeEntry
+                  : externalView.getStateEndTimes().entrySet()) {
+                String partition = endTimeEntry.getKey();
+                long endTime = endTimeEntry.getValue();
+                Long previousEndTime = previousEndTimes.get(partition);
+                if (previousEndTime != null && previousEndTime >= endTime) {
+                  continue;
+                }
+                if (currentTime >= endTime) {
+                  monitor.recordStatePropagationLatency(currentTime - endTime);
+                  logger.debug(
+                      "ExternalView updated in the routing table. Resource {}, Partition {}, end time {}, Propagation latency {}",
+                      externalView.getResourceName(), partition, endTime, currentTime - endTime);
+                } else {
+                  // Router clock could be slower than the participant clock.
+                  logger.trace(
+                      "ExternalView updated in the routing table. Resource {}, Partition {}, end time {}, Propagation latency {}",
+                      externalView.getResourceName(), partition, endTime, currentTime - endTime);
+                }
+              }
+            }
+            return null;
+          }
+        });
+      }
+    }
 
     public void queueEvent(NotificationContext context, ClusterEventType eventType,
         HelixConstants.ChangeType changeType) {
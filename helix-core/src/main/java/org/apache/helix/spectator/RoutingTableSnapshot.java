@@ -67,6 +67,60 @@ public class RoutingTableSnapshot {
     return _routingTable.getInstancesForResource(resourceName, partitionName, state);
   }
 
+  /**
+   * returns the instances for {resource,partition} pair that are in a specific {state}, sorted by
+   * instance id. The list is computed when the routing table is built, so this does not allocate.
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @return an immutable list, empty if there is no instance in a given state
+   */
+  public List<InstanceConfig> getSortedInstancesForResource(String resourceName,
+      String partitionName, String state) {
+    return _routingTable.getSortedInstancesForResource(resourceName, partitionName, state);
+  }
+
+  /**
+   * returns the ordinals of the instances for {resource,partition} pair that are in a specific
+   * {state}. This does not allocate, so a replica can be picked with e.g.
+   * <pre>
+   * InstanceOrdinals ordinals = snapshot.getInstanceOrdinalsForResource(resource, partition, state);
+   * InstanceConfig instance = snapshot.getInstanceConfig(ordinals.get(random.nextInt(ordinals.size())));
+   * </pre>
+   * The ordinals are only valid within this snapshot.
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @return empty ordinals if there is no instance in a given state
+   */
+  public InstanceOrdinals getInstanceOrdinalsForResource(String resourceName,
+      String partitionName, String state) {
+    return _routingTable.getInstanceOrdinalsForResource(resourceName, partitionName, state);
+  }
+
+  /**
+   * returns the InstanceConfig of an ordinal returned by
+   * {@link #getInstanceOrdinalsForResource(String, String, String)}
+   * @param ordinal
+   * @return the InstanceConfig
+   */
+  public InstanceConfig getInstanceConfig(int ordinal) {
+    return _routingTable.getInstanceConfig(ordinal);
+  }
+
+  /**
+   * selects one of the instances for {resource,partition} pair that are in a specific {state}
+   * @param resourceName
+   * @param partitionName
+   * @param state
+   * @param selector the selection strategy
+   * @return the selected instance, null if there is no instance in a given state
+   */
+  public InstanceConfig selectInstance(String resourceName, String partitionName, String state,
+      ReplicaSelector selector) {
+    return selector.select(this, resourceName, partitionName, state);
+  }
+
   /**
    * returns all instances for resources contains any given tags in {resource group} that are in a
    * specific {state}
@@ -167,6 +221,10 @@ public class RoutingTableSnapshot {
     return Collections.emptySet();
   }
 
+  RoutingTable getRoutingTable() {
+    return _routingTable;
+  }
+
   /**
    * Returns the PropertyType associated with this RoutingTableSnapshot
    * @return
@@ -625,10 +625,10 @@ public abstract class AbstractTaskDispatcher {
       if (participantCapacity == InstanceConfig.MAX_CONCURRENT_TASK_NOT_SET) {
         participantCapacity = cache.getClusterConfig().getMaxConcurrentTaskPerInstance();
       }
-      int participantLimitation =
-          participantCapacity - cache.getParticipantActiveTaskCount(instance);
-      // New tasks to be assigned
-      int numToAssign = Math.min(jobCfgLimitation, participantLimitation);
+      // New tasks to be assigned. The slots are reserved on the participant up front because the
+      // workflows of other quota types may be scheduled in parallel
+      int numToAssign =
+          cache.reserveParticipantTaskSlots(instance, participantCapacity, jobCfgLimitation);
       if (LOG.isDebugEnabled()) {
         LOG.debug(String.format(
             "Throttle tasks to be assigned to instance %s using limitation: Job Concurrent Task(%d), "
@@ -661,8 +661,7 @@ public abstract class AbstractTaskDispatcher {
                 TaskPartitionState.RUNNING, instance));
           }
         }
-        cache.setParticipantActiveTaskCount(instance,
-            cache.getParticipantActiveTaskCount(instance) + nextPartitions.size());
+        cache.releaseParticipantTaskSlots(instance, numToAssign - nextPartitions.size());
       } else {
         // No assignment was actually scheduled, so this assignment needs to be released
         // Put all assignments in throttledSet. Be sure to subtract excludeSet because excludeSet is
@@ -991,8 +990,12 @@ public abstract class AbstractTaskDispatcher {
     Set<String> ret = new HashSet<>();
 
     if (!workflowCfg.isAllowOverlapJobAssignment()) {
-      // exclude all instances that has been assigned other jobs' tasks
-      for (String jobName : workflowCfg.getJobDag().getAllNodes()) {
+      // exclude all instances that has been assigned other jobs' tasks. Only the started jobs,
+      // which are inflight in the runtime job DAG, can be running.
+      RuntimeJobDag runtimeJobDag =
+          cache.getTaskDataCache().getRuntimeJobDag(workflowCfg.getWorkflowId());
+      for (String jobName : runtimeJobDag == null ? workflowCfg.getJobDag().getAllNodes()
+          : runtimeJobDag.getInflightJobList()) {
         if (jobName.equals(currentJobName)) {
           continue;
         }
@@ -1087,11 +1090,25 @@ public abstract class AbstractTaskDispatcher {
    * @return returns true if all tasks are {@link TaskState#STOPPED}, false otherwise.
    */
   protected boolean isWorkflowStopped(WorkflowContext ctx, WorkflowConfig cfg) {
+    return isWorkflowStopped(ctx, cfg, null);
+  }
+
+  /**
+   * Checks if the workflow has been stopped. If the runtime job DAG of the workflow is given, only
+   * its inflight jobs are looked at, because it holds all the started jobs of the workflow there.
+   * @param ctx Workflow context containing task states
+   * @param cfg Workflow config containing set of tasks
+   * @param runtimeJobDag the runtime job DAG of the workflow, or null
+   * @return returns true if all tasks are {@link TaskState#STOPPED}, false otherwise.
+   */
+  protected boolean isWorkflowStopped(WorkflowContext ctx, WorkflowConfig cfg,
+      RuntimeJobDag runtimeJobDag) {
     if (cfg.isRecurring()) {
       return cfg.getTargetState() == TargetState.STOP;
     }
 
-    for (String job : cfg.getJobDag().getAllNodes()) {
+    for (String job : runtimeJobDag == null ? cfg.getJobDag().getAllNodes()
+        : runtimeJobDag.getInflightJobList()) {
       TaskState jobState = ctx.getJobState(job);
       if (jobState != null
           && (jobState.equals(TaskState.IN_PROGRESS) || jobState.equals(TaskState.STOPPING))) {
@@ -31,6 +31,7 @@ import org.apache.helix.model.ClusterConfig;
 import org.apache.helix.model.InstanceConfig;
 import org.apache.helix.model.LiveInstance;
 import org.apache.helix.task.assigner.AssignableInstance;
+import org.apache.helix.task.assigner.QuotaCapacityIndex;
 import org.apache.helix.task.assigner.TaskAssignResult;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
@@ -38,6 +39,12 @@ import org.codehaus.jackson.node.ObjectNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * AssignableInstanceManager is the quota ledger of the task framework. Quota is charged and
+ * released under the lock of each AssignableInstance, so that workflows of different quota types
+ * scheduled in parallel only contend when they charge the same instance. Use
+ * {@link #reserve(String, TaskConfig, String)} to check and charge the quota of a task atomically.
+ */
 public class AssignableInstanceManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(AssignableInstanceManager.class);
@@ -54,6 +61,10 @@ public class AssignableInstanceManager {
   // This map is quota type -> remaining global quota
   private Map<String, Integer> _globalThreadBasedQuotaMap;
 
+  // AssignableInstances ranked by remaining capacity of each quota type, kept up to date on every
+  // assign and release so task assigners do not need to rank all the instances for every job
+  private QuotaCapacityIndex _quotaCapacityIndex;
+
   /**
    * Basic constructor for AssignableInstanceManager to allow an empty instantiation.
    * buildAssignableInstances() must be explicitly called after instantiation.
@@ -62,6 +73,7 @@ public class AssignableInstanceManager {
     _assignableInstanceMap = new ConcurrentHashMap<>();
     _taskAssignResultMap = new ConcurrentHashMap<>();
     _globalThreadBasedQuotaMap = new ConcurrentHashMap<>();
+    _quotaCapacityIndex = new QuotaCapacityIndex();
   }
 
   /**
@@ -173,6 +185,10 @@ public class AssignableInstanceManager {
     }
     LOG.info(
         "AssignableInstanceManager built AssignableInstances from scratch based on contexts in TaskDataCache due to Controller switch or ClusterConfig change.");
+    _quotaCapacityIndex.clear();
+    for (AssignableInstance assignableInstance : _assignableInstanceMap.values()) {
+      _quotaCapacityIndex.update(assignableInstance);
+    }
     computeGlobalThreadBasedCapacity();
   }
 
@@ -217,6 +233,8 @@ public class AssignableInstanceManager {
       }
       // Remove because we've confirmed that this AssignableInstance is a LiveInstance as well
       staleAssignableInstances.remove(_assignableInstanceMap.get(instanceName));
+      // Capacity may have changed with the configs
+      _quotaCapacityIndex.update(_assignableInstanceMap.get(instanceName));
     }
 
     // AssignableInstances that are not live need to be removed from the map because they are not
@@ -236,6 +254,7 @@ public class AssignableInstanceManager {
         }
       }
       _assignableInstanceMap.remove(instanceToBeRemoved.getInstanceName());
+      _quotaCapacityIndex.remove(instanceToBeRemoved.getInstanceName());
       LOG.debug(
           "Non-live AssignableInstance removed for instance: {} during updateAssignableInstances",
           instanceToBeRemoved.getInstanceName());
@@ -275,6 +294,14 @@ public class AssignableInstanceManager {
     return Collections.unmodifiableSet(new HashSet<>(_assignableInstanceMap.values()));
   }
 
+  /**
+   * Returns the index of AssignableInstances by remaining capacity of each quota type.
+   * @return quotaCapacityIndex
+   */
+  public QuotaCapacityIndex getQuotaCapacityIndex() {
+    return _quotaCapacityIndex;
+  }
+
   /**
    * Returns taskId -> TaskAssignResult mappings.
    * @return taskAssignResultMap
@@ -314,13 +341,15 @@ public class AssignableInstanceManager {
           taskConfig.getId());
       quotaType = AssignableInstance.DEFAULT_QUOTA_TYPE;
     }
-    if (_assignableInstanceMap.containsKey(instanceName)) {
-      _assignableInstanceMap.get(instanceName).release(taskConfig, quotaType);
+    AssignableInstance assignableInstance = _assignableInstanceMap.get(instanceName);
+    if (assignableInstance != null) {
+      synchronized (assignableInstance) {
+        assignableInstance.release(taskConfig, quotaType);
+        _quotaCapacityIndex.update(assignableInstance);
+      }
     }
 
-    if (_globalThreadBasedQuotaMap.containsKey(quotaType)) {
-      _globalThreadBasedQuotaMap.put(quotaType, _globalThreadBasedQuotaMap.get(quotaType) + 1);
-    }
+    _globalThreadBasedQuotaMap.computeIfPresent(quotaType, (type, quota) -> quota + 1);
   }
 
   /**
@@ -346,14 +375,37 @@ public class AssignableInstanceManager {
    * @throws IllegalStateException
    */
   public void assign(String instanceName, TaskAssignResult result) throws IllegalStateException {
-    if (result != null && _assignableInstanceMap.containsKey(instanceName)) {
-      _assignableInstanceMap.get(instanceName).assign(result);
-      _taskAssignResultMap.put(result.getTaskConfig().getId(), result);
+    AssignableInstance assignableInstance = _assignableInstanceMap.get(instanceName);
+    if (result != null && assignableInstance != null) {
+      synchronized (assignableInstance) {
+        assignableInstance.assign(result);
+        _taskAssignResultMap.put(result.getTaskConfig().getId(), result);
+        _quotaCapacityIndex.update(assignableInstance);
+      }
     }
 
-    if (_globalThreadBasedQuotaMap.containsKey(result.getQuotaType())) {
-      _globalThreadBasedQuotaMap
-          .put(result.getQuotaType(), _globalThreadBasedQuotaMap.get(result.getQuotaType()) - 1);
+    _globalThreadBasedQuotaMap.computeIfPresent(result.getQuotaType(), (type, quota) -> quota - 1);
+  }
+
+  /**
+   * Wrapper for AssignableInstance tryAssign and assign: the task is assigned if tryAssign is
+   * successful, and no other task can charge the instance in between
+   * @param instanceName
+   * @param task
+   * @param quotaType
+   * @return the TaskAssignResult of tryAssign, or null if the instance does not exist
+   */
+  public TaskAssignResult reserve(String instanceName, TaskConfig task, String quotaType) {
+    AssignableInstance assignableInstance = _assignableInstanceMap.get(instanceName);
+    if (assignableInstance == null) {
+      return null;
+    }
+    synchronized (assignableInstance) {
+      TaskAssignResult result = assignableInstance.tryAssign(task, quotaType);
+      if (result.isSuccessful()) {
+        assign(instanceName, result);
+      }
+      return result;
     }
   }
 
@@ -0,0 +1,58 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * A {@link Task} that runs without holding a thread of the participant's task executor. The
+ * task is started with {@link #runAsync}, and it is done when the returned stage completes.
+ * The task is cancelled through the {@link TaskCancellationToken} instead of {@link #cancel()}.
+ */
+public interface AsyncTask extends Task {
+  /**
+   * Start the task.
+   * @param cancellationToken signals the task to stop, after which the task should complete its
+   *          result with {@link TaskResult.Status#CANCELED}
+   * @param progressReporter writes the progress or partial results of the task to its
+   *          {@link UserContentStore}
+   * @return a stage completed with the result of the task
+   */
+  CompletionStage<TaskResult> runAsync(TaskCancellationToken cancellationToken,
+      TaskProgressReporter progressReporter);
+
+  /**
+   * Run the task with {@link #runAsync} and wait for its result. The {@link TaskRunner} starts
+   * async tasks with {@link #runAsync} instead. The task cannot be cancelled, and its progress
+   * reports are dropped.
+   */
+  @Override
+  default TaskResult run() {
+    return runAsync(new TaskCancellationToken(), TaskProgressReporter.noop()).toCompletableFuture()
+        .join();
+  }
+
+  /**
+   * Async tasks are cancelled through their {@link TaskCancellationToken}.
+   */
+  @Override
+  default void cancel() {
+  }
+}
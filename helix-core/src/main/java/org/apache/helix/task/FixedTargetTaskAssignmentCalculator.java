@@ -277,12 +277,11 @@ public class FixedTargetTaskAssignmentCalculator extends TaskAssignmentCalculato
 
             // Actual assignment logic: try to charge resources first and assign if successful
             if (_assignableInstanceManager.getAssignableInstanceNames().contains(instance)) {
-              // Try to assign first
+              // Try to assign first, the task is assigned if successful
               TaskAssignResult taskAssignResult =
-                  _assignableInstanceManager.tryAssign(instance, taskConfig, quotaType);
+                  _assignableInstanceManager.reserve(instance, taskConfig, quotaType);
               if (taskAssignResult.isSuccessful()) {
-                // There exists a partition, the states match up, and tryAssign successful. Assign!
-                _assignableInstanceManager.assign(instance, taskAssignResult);
+                // There exists a partition, the states match up, and the quota is charged
                 result.get(instance).add(targetPartitionId);
                 // To prevent double assign of the tasks on other replicas of the targetResource
                 // partition
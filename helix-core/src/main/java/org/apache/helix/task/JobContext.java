@@ -20,6 +20,7 @@ package org.apache.helix.task;
  */
 
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -50,6 +51,9 @@ public class JobContext extends HelixProperty {
     EXECUTION_START_TIME, // Time at which the first task of this job got scheduled
   }
 
+  // Partitions changed through this object, so that a bucketed context only writes their buckets
+  private final Set<Integer> _changedPartitions = new HashSet<>();
+
   public JobContext(ZNRecord record) {
     super(record);
   }
@@ -304,7 +308,26 @@ public class JobContext extends HelixProperty {
     return getMapField(p, false);
   }
 
+  /**
+   * @return the partitions changed through this object since it was created or since the last
+   *         {@link #clearChangedPartitions()}
+   */
+  public Set<Integer> getChangedPartitions() {
+    return _changedPartitions;
+  }
+
+  /**
+   * Called once the changes are persisted
+   */
+  public void clearChangedPartitions() {
+    _changedPartitions.clear();
+  }
+
   private Map<String, String> getMapField(int p, boolean createIfNotPresent) {
+    if (createIfNotPresent) {
+      // only the setters create the map field
+      _changedPartitions.add(p);
+    }
     String pStr = String.valueOf(p);
     Map<String, String> map = _record.getMapField(pStr);
     if (map == null && createIfNotPresent) {
@@ -0,0 +1,266 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.BaseDataAccessor;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+
+/**
+ * Bucketed layout of a {@link JobContext}, for jobs with too many tasks to rewrite the whole
+ * context on every change.
+ * The context node keeps the simple fields and the bucket size. The partitions are split into
+ * buckets of consecutive partition ids, each stored in its own node under
+ * {@link TaskConstants#CONTEXT_BUCKETS_NODE}. A bucket is stored by column: one map field per
+ * context property, from partition id to value, so the property names are not repeated for every
+ * task. Only the buckets of the changed partitions need to be written.
+ */
+public final class JobContextBuckets {
+  private static final String BUCKET_SIZE = "BUCKET_SIZE";
+  private static final String NUM_BUCKETS = "NUM_BUCKETS";
+  // Partitions of the bucket, including the ones without any property
+  private static final String PARTITIONS = "PARTITIONS";
+
+  private JobContextBuckets() {
+  }
+
+  /**
+   * @param record a context record as stored in the context node
+   * @return true if the partitions of the context are stored in buckets
+   */
+  public static boolean isBucketed(ZNRecord record) {
+    return record != null && record.getSimpleField(BUCKET_SIZE) != null;
+  }
+
+  /**
+   * @param root a bucketed context node record
+   * @return the number of partitions per bucket
+   */
+  public static int getBucketSize(ZNRecord root) {
+    return Integer.parseInt(root.getSimpleField(BUCKET_SIZE));
+  }
+
+  /**
+   * @param partition partition id
+   * @param bucketSize number of partitions per bucket
+   * @return the bucket of the partition
+   */
+  public static int getBucket(int partition, int bucketSize) {
+    return partition / bucketSize;
+  }
+
+  /**
+   * @param contextPath path of the context node
+   * @param bucket bucket id
+   * @return path of the bucket node
+   */
+  public static String getBucketPath(String contextPath, int bucket) {
+    return getBucketsPath(contextPath) + "/" + bucket;
+  }
+
+  /**
+   * @param contextPath path of the context node
+   * @return path of the parent node of the buckets
+   */
+  public static String getBucketsPath(String contextPath) {
+    return contextPath.substring(0, contextPath.lastIndexOf('/') + 1)
+        + TaskConstants.CONTEXT_BUCKETS_NODE;
+  }
+
+  /**
+   * Build the record of the context node, which has the simple fields of the context
+   * @param context the full context record
+   * @param bucketSize number of partitions per bucket
+   * @return the context node record
+   */
+  public static ZNRecord encodeRoot(ZNRecord context, int bucketSize) {
+    ZNRecord root = new ZNRecord(context.getId());
+    root.setSimpleFields(new TreeMap<>(context.getSimpleFields()));
+    root.setSimpleField(BUCKET_SIZE, String.valueOf(bucketSize));
+    int maxPartition = -1;
+    for (String partition : context.getMapFields().keySet()) {
+      maxPartition = Math.max(maxPartition, Integer.parseInt(partition));
+    }
+    root.setSimpleField(NUM_BUCKETS, String.valueOf(
+        maxPartition < 0 ? 0 : getBucket(maxPartition, bucketSize) + 1));
+    return root;
+  }
+
+  /**
+   * Build the records of the given buckets in one pass over the partitions
+   * @param context the full context record
+   * @param bucketSize number of partitions per bucket
+   * @param buckets the buckets to build, null for all of them
+   * @return bucket id -> bucket record. A bucket without any partition has an empty record.
+   */
+  public static Map<Integer, ZNRecord> encodeBuckets(ZNRecord context, int bucketSize,
+      Set<Integer> buckets) {
+    Map<Integer, ZNRecord> records = new TreeMap<>();
+    if (buckets != null) {
+      for (int bucket : buckets) {
+        records.put(bucket, new ZNRecord(String.valueOf(bucket)));
+      }
+    }
+    for (Map.Entry<String, Map<String, String>> entry : context.getMapFields().entrySet()) {
+      int bucket = getBucket(Integer.parseInt(entry.getKey()), bucketSize);
+      ZNRecord record = records.get(bucket);
+      if (record == null) {
+        if (buckets != null) {
+          continue;
+        }
+        record = new ZNRecord(String.valueOf(bucket));
+        records.put(bucket, record);
+      }
+      List<String> partitions = record.getListField(PARTITIONS);
+      if (partitions == null) {
+        partitions = new ArrayList<>();
+        record.setListField(PARTITIONS, partitions);
+      }
+      partitions.add(entry.getKey());
+      for (Map.Entry<String, String> property : entry.getValue().entrySet()) {
+        Map<String, String> column = record.getMapField(property.getKey());
+        if (column == null) {
+          column = new TreeMap<>();
+          record.setMapField(property.getKey(), column);
+        }
+        column.put(entry.getKey(), property.getValue());
+      }
+    }
+    return records;
+  }
+
+  /**
+   * Rebuild the full context record
+   * @param root the context node record
+   * @param buckets the bucket records, null records are skipped
+   * @return the context record in the flat layout
+   */
+  public static ZNRecord decode(ZNRecord root, Collection<ZNRecord> buckets) {
+    ZNRecord context = new ZNRecord(root.getId());
+    Map<String, String> simpleFields = new TreeMap<>(root.getSimpleFields());
+    simpleFields.remove(BUCKET_SIZE);
+    simpleFields.remove(NUM_BUCKETS);
+    context.setSimpleFields(simpleFields);
+    context.setVersion(root.getVersion());
+    Map<String, Map<String, String>> partitionMaps = new HashMap<>();
+    for (ZNRecord bucket : buckets) {
+      if (bucket == null) {
+        continue;
+      }
+      List<String> partitions = bucket.getListField(PARTITIONS);
+      if (partitions != null) {
+        for (String partition : partitions) {
+          partitionMaps.put(partition, new TreeMap<>());
+        }
+      }
+      for (Map.Entry<String, Map<String, String>> column : bucket.getMapFields().entrySet()) {
+        for (Map.Entry<String, String> value : column.getValue().entrySet()) {
+          Map<String, String> partitionMap = partitionMaps.get(value.getKey());
+          if (partitionMap == null) {
+            partitionMap = new TreeMap<>();
+            partitionMaps.put(value.getKey(), partitionMap);
+          }
+          partitionMap.put(column.getKey(), value.getValue());
+        }
+      }
+    }
+    context.setMapFields(partitionMaps);
+    return context;
+  }
+
+  /**
+   * @param contextPath path of the context node
+   * @param root the context node record
+   * @return paths of all the bucket nodes of the context
+   */
+  public static List<String> getBucketPaths(String contextPath, ZNRecord root) {
+    int numBuckets = Integer.parseInt(root.getSimpleField(NUM_BUCKETS));
+    List<String> paths = new ArrayList<>(numBuckets);
+    for (int i = 0; i < numBuckets; i++) {
+      paths.add(getBucketPath(contextPath, i));
+    }
+    return paths;
+  }
+
+  /**
+   * Read a context in either layout
+   * @param accessor the accessor
+   * @param contextPath path of the context node
+   * @return the context record in the flat layout, or null if it does not exist
+   */
+  public static ZNRecord read(BaseDataAccessor<ZNRecord> accessor, String contextPath) {
+    ZNRecord record = accessor.get(contextPath, null, AccessOption.PERSISTENT);
+    if (!isBucketed(record)) {
+      return record;
+    }
+    return decode(record,
+        accessor.get(getBucketPaths(contextPath, record), null, AccessOption.PERSISTENT, false));
+  }
+
+  /**
+   * Write the given buckets and then the context node
+   * @param accessor the accessor
+   * @param contextPath path of the context node
+   * @param context the full context record
+   * @param bucketSize number of partitions per bucket
+   * @param buckets the buckets to write, null for all of them
+   * @return true if all the writes succeeded
+   */
+  public static boolean write(BaseDataAccessor<ZNRecord> accessor, String contextPath,
+      ZNRecord context, int bucketSize, Set<Integer> buckets) {
+    Map<Integer, ZNRecord> bucketRecords = encodeBuckets(context, bucketSize, buckets);
+    List<String> paths = new ArrayList<>(bucketRecords.size());
+    for (int bucket : bucketRecords.keySet()) {
+      paths.add(getBucketPath(contextPath, bucket));
+    }
+    boolean[] success = accessor.setChildren(paths, new ArrayList<>(bucketRecords.values()),
+        AccessOption.PERSISTENT);
+    for (boolean s : success) {
+      if (!s) {
+        return false;
+      }
+    }
+    // The context node is written last, so it never refers to buckets that are not written yet
+    return accessor.set(contextPath, encodeRoot(context, bucketSize), AccessOption.PERSISTENT);
+  }
+
+  /**
+   * @param partitions partition ids
+   * @param bucketSize number of partitions per bucket
+   * @return the buckets of the partitions
+   */
+  public static Set<Integer> getBuckets(Collection<Integer> partitions, int bucketSize) {
+    Set<Integer> buckets = new TreeSet<>();
+    for (int partition : partitions) {
+      buckets.add(getBucket(partition, bucketSize));
+    }
+    return buckets;
+  }
+}
@@ -103,7 +103,8 @@ public class JobDispatcher extends AbstractTaskDispatcher {
     }
 
     if (!TaskUtil.isJobStarted(jobName, workflowCtx) && !isJobReadyToSchedule(jobName, workflowCfg,
-        workflowCtx, TaskUtil.getInCompleteJobCount(workflowCfg, workflowCtx),
+        workflowCtx, TaskUtil.getInCompleteJobCount(workflowCfg, workflowCtx,
+            _dataProvider.getTaskDataCache().getRuntimeJobDag(workflowResource)),
         _dataProvider.getJobConfigMap(), _dataProvider,
         _dataProvider.getAssignableInstanceManager())) {
       LOG.info("Job is not ready to run " + jobName);
@@ -171,7 +172,8 @@ public class JobDispatcher extends AbstractTaskDispatcher {
           workflowCtx.setJobState(jobName, TaskState.STOPPING);
         }
         // Workflow has been stopped if all in progress jobs are stopped
-        if (isWorkflowStopped(workflowCtx, workflowCfg)) {
+        if (isWorkflowStopped(workflowCtx, workflowCfg,
+            _dataProvider.getTaskDataCache().getRuntimeJobDag(workflowResource))) {
           workflowCtx.setWorkflowState(TaskState.STOPPED);
         } else {
           workflowCtx.setWorkflowState(TaskState.STOPPING);
@@ -0,0 +1,149 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.model.CurrentState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges the requested states reported by the tasks of the same job into one current state
+ * update. While a task writes its request, the requests of the other tasks of the job are queued,
+ * and they are all written together by the next task, so that short tasks finishing at the same
+ * time do not each pay for a ZK write. One batcher is shared by the tasks of a participant.
+ */
+class RequestedStateBatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(RequestedStateBatcher.class);
+
+  // current state path -> requests of the tasks of the job
+  private final Map<String, Batch> _batches = new HashMap<>();
+
+  /**
+   * Request a state change for a task, together with the requests of the other tasks of the same
+   * job. Waits until the request is written. If the thread is interrupted while waiting, the
+   * request is withdrawn unless it is being written, and false is returned.
+   *
+   * @param accessor  connected Helix data accessor
+   * @param key       the current state of the job
+   * @param resource  the job name
+   * @param partition the task partition name
+   * @param state     the requested state
+   * @return true if the request was persisted, false otherwise
+   */
+  boolean request(HelixDataAccessor accessor, PropertyKey key, String resource, String partition,
+      TaskPartitionState state) {
+    String path = key.getPath();
+    Request request = new Request(partition, state);
+    List<Request> requests;
+    synchronized (this) {
+      Batch batch = _batches.get(path);
+      if (batch == null) {
+        batch = new Batch();
+        _batches.put(path, batch);
+      }
+      batch._pending.add(request);
+      while (!request._done && batch._writing) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          LOG.warn("Interrupted while requesting a state transition to {} for partition {}.",
+              state, partition);
+          batch._pending.remove(request);
+          Thread.currentThread().interrupt();
+          return false;
+        }
+      }
+      if (request._done) {
+        return request._success;
+      }
+      // The request is not written yet, write it with the ones queued so far
+      batch._writing = true;
+      requests = batch._pending;
+      batch._pending = new ArrayList<>();
+    }
+
+    boolean success = false;
+    try {
+      success = write(accessor, key, resource, requests);
+    } finally {
+      synchronized (this) {
+        for (Request written : requests) {
+          written._success = success;
+          written._done = true;
+        }
+        Batch batch = _batches.get(path);
+        batch._writing = false;
+        if (batch._pending.isEmpty()) {
+          _batches.remove(path);
+        }
+        notifyAll();
+      }
+    }
+    return success;
+  }
+
+  /**
+   * @return the number of requests waiting for the current write of the job
+   */
+  synchronized int getPendingRequests(PropertyKey key) {
+    Batch batch = _batches.get(key.getPath());
+    return batch == null ? 0 : batch._pending.size();
+  }
+
+  private boolean write(HelixDataAccessor accessor, PropertyKey key, String resource,
+      List<Request> requests) {
+    CurrentState currStateDelta = new CurrentState(resource);
+    for (Request request : requests) {
+      currStateDelta.setRequestedState(request._partition, request._state.name());
+    }
+    LOG.debug("Requesting state transitions for {} partitions of {}.", requests.size(), resource);
+    try {
+      return accessor.updateProperty(key, currStateDelta);
+    } catch (Exception e) {
+      LOG.error(String.format("Error when requesting state transitions for %d partitions of %s.",
+          requests.size(), resource), e);
+      return false;
+    }
+  }
+
+  private static class Batch {
+    private List<Request> _pending = new ArrayList<>();
+    private boolean _writing = false;
+  }
+
+  private static class Request {
+    private final String _partition;
+    private final TaskPartitionState _state;
+    private boolean _done = false;
+    private boolean _success = false;
+
+    Request(String partition, TaskPartitionState state) {
+      _partition = partition;
+      _state = state;
+    }
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.helix.task;
  */
 
 import java.util.ArrayDeque;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -32,7 +33,10 @@ import org.slf4j.LoggerFactory;
  * RuntimeJobDag is a job DAG that provides the job iterator functionality at runtime (when jobs are
  * actually being assigned per job category). This is to support assignment of jobs based on their
  * categories and quotas. RuntimeJobDag uses the list scheduling algorithm using ready-list and
- * inflight-list to return jobs available for scheduling.
+ * inflight-list to return jobs available for scheduling. For a generic workflow, each job not ready
+ * yet keeps a counter of its unfinished parents, which is decremented when a parent finishes, so
+ * finishing a job only touches its direct children. The inflight-list holds every job that is
+ * started but not finished, so the dispatchers only look at these jobs to count the running jobs.
  * NOTE: RuntimeJobDag is not thread-safe.
  */
 public class RuntimeJobDag extends JobDag {
@@ -44,8 +48,8 @@ public class RuntimeJobDag extends JobDag {
   private Set<String> _inflightJobList; // Jobs that are scheduled but not yet finished
   private boolean _hasDagChanged; // Flag for DAG modification for job queues; if true, ready-list
                                   // must be re-computed
-  private Map<String, Set<String>> _successorMap; // Two dependency maps for populating ready-list
-  private Map<String, Set<String>> _predecessorMap; // when jobs are finished
+  private Map<String, Integer> _inDegreeMap; // Unfinished parent counts of jobs not ready yet
+  private Set<String> _finishedJobs; // Jobs that are finished
   private boolean _isJobQueue;
   private int _numParallelJobs;
   private String _lastJob;
@@ -58,18 +62,40 @@ public class RuntimeJobDag extends JobDag {
     // For job list iterator scheduling
     _readyJobList = new ArrayDeque<>();
     _inflightJobList = new HashSet<>();
+    _inDegreeMap = new HashMap<>();
+    _finishedJobs = new HashSet<>();
     _hasDagChanged = true;
     _version = 0;
   }
 
   public RuntimeJobDag(JobDag jobDag, boolean isJobQueue, int numParallelJobs, int version) {
+    this(jobDag, isJobQueue, numParallelJobs, version, Collections.<String>emptySet());
+  }
+
+  public RuntimeJobDag(JobDag jobDag, boolean isJobQueue, int numParallelJobs, int version,
+      Set<String> finishedJobs) {
+    this(jobDag, isJobQueue, numParallelJobs, version, finishedJobs,
+        Collections.<String>emptySet());
+  }
+
+  /**
+   * Constructor for a runtime job DAG that continues from the given finished jobs, so that the
+   * jobs already finished are not returned by the job iterator again. The finished jobs are only
+   * used for a generic workflow, a job queue always starts over. The started jobs are put in the
+   * inflight-list, and for a generic workflow they are left out of the ready-list.
+   * @param finishedJobs the jobs of the DAG that are already finished
+   * @param startedJobs the jobs of the DAG that are started but not finished
+   */
+  public RuntimeJobDag(JobDag jobDag, boolean isJobQueue, int numParallelJobs, int version,
+      Set<String> finishedJobs, Set<String> startedJobs) {
     this._childrenToParents = jobDag.getChildrenToParents();
     this._parentsToChildren = jobDag.getParentsToChildren();
     this._allNodes = jobDag.getAllNodes();
     this._isJobQueue = isJobQueue;
     this._numParallelJobs = numParallelJobs <= 0 ? DEFAULT_NUM_PARALLEL_JOBS : numParallelJobs;
     this._version = version;
-    generateJobList();
+    _inflightJobList = new HashSet<>(startedJobs);
+    generateJobList(isJobQueue ? Collections.<String>emptySet() : finishedJobs);
   }
 
   public int getVersion() {
@@ -168,64 +194,91 @@ public class RuntimeJobDag extends JobDag {
         }
         _lastJob = nextJob;
       }
-    } else if (_successorMap.containsKey(job)) {
-        for (String successor : _successorMap.get(job)) {
-          // Remove finished job from predecessor map
-        if (_predecessorMap.containsKey(successor)) {
-          Set<String> predecessors = _predecessorMap.get(successor);
-          predecessors.remove(job);
-          // Successor must have no predecessors before being added to ready-list
-          if (predecessors.isEmpty()) {
-            _readyJobList.offer(successor);
+    } else if (!_finishedJobs.contains(job)) {
+      for (String child : getDirectChildren(job)) {
+        Integer inDegree = _inDegreeMap.get(child);
+        if (inDegree == null) {
+          continue;
+        }
+        // Child must have no unfinished parents before being added to ready-list
+        if (inDegree <= 1) {
+          _inDegreeMap.remove(child);
+          if (!_inflightJobList.contains(child)) {
+            _readyJobList.offer(child);
           }
+        } else {
+          _inDegreeMap.put(child, inDegree - 1);
         }
       }
     }
-    _successorMap.remove(job);
+    _finishedJobs.add(job);
     return true;
   }
 
   /**
    * Must be called BEFORE using job iterator method and AFTER a full DAG has been added.
-   * Resets all job lists and regenerates the ready list. Also, sets the job DAG change flag back to
-   * false.
+   * Resets all job lists and regenerates the ready list. The inflight jobs still in the DAG stay in
+   * the inflight-list. Also, sets the job DAG change flag back to false.
    * The reason this method cannot be in the constructor is that DAG is empty at initialization,
    * and only the client will know when they are done with adding individual jobs to DAG and job
    * list is ready to be created.
    */
   public void generateJobList() {
-    resetJobListAndDependencyMaps();
-    computeIndependentNodes();
-    _readyJobList.addAll(_independentNodes);
-    if (_isJobQueue && _readyJobList.size() > 0) {
-      // For job queue, only get number of parallel jobs to run in the ready list.
-      for (int i = 1; i < _numParallelJobs; i++) {
-        if (_parentsToChildren.containsKey(_readyJobList.peekLast())) {
-          _readyJobList.offer(_parentsToChildren.get(_readyJobList.peekLast()).iterator().next());
-        }
-      }
-    }
-    _hasDagChanged = false;
+    generateJobList(Collections.<String>emptySet());
   }
 
   /**
-   * Re-initialize ready and in-flight lists. Also perform a deep-copy of dependency maps because
-   * iterator methods will modify successor and predecessor relationships.
+   * Resets all job lists, and regenerates the ready list and the unfinished parent counters with
+   * the given jobs already finished. The inflight jobs of a generic workflow are not put in the
+   * ready list again.
    */
-  private void resetJobListAndDependencyMaps() {
+  private void generateJobList(Set<String> finishedJobs) {
     _readyJobList = new ArrayDeque<>();
-    _inflightJobList = new HashSet<>();
-    _successorMap = new HashMap<>();
-    _predecessorMap = new HashMap<>();
-    for (Map.Entry<String, Set<String>> entry : _parentsToChildren.entrySet()) {
-      _successorMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
-    }
-    for (Map.Entry<String, Set<String>> entry : _childrenToParents.entrySet()) {
-      _predecessorMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
+    _inDegreeMap = new HashMap<>();
+    _finishedJobs = new HashSet<>(finishedJobs);
+    _finishedJobs.retainAll(_allNodes);
+    _inflightJobList.retainAll(_allNodes);
+    _inflightJobList.removeAll(_finishedJobs);
+    if (_isJobQueue) {
+      computeIndependentNodes();
+      // The jobs of a queue are returned in order, so an inflight job is returned again here
+      _readyJobList.addAll(_independentNodes);
+      if (_readyJobList.size() > 0) {
+        // For job queue, only get number of parallel jobs to run in the ready list.
+        for (int i = 1; i < _numParallelJobs; i++) {
+          if (_parentsToChildren.containsKey(_readyJobList.peekLast())) {
+            _readyJobList.offer(_parentsToChildren.get(_readyJobList.peekLast()).iterator().next());
+          }
+        }
+      }
+    } else {
+      for (String job : _allNodes) {
+        if (_finishedJobs.contains(job)) {
+          continue;
+        }
+        int inDegree = 0;
+        for (String parent : getDirectParents(job)) {
+          if (!_finishedJobs.contains(parent)) {
+            inDegree++;
+          }
+        }
+        if (inDegree == 0) {
+          if (!_inflightJobList.contains(job)) {
+            _readyJobList.offer(job);
+          }
+        } else {
+          _inDegreeMap.put(job, inDegree);
+        }
+      }
     }
+    _hasDagChanged = false;
   }
 
   public Set<String> getInflightJobList() {
     return new HashSet<>(_inflightJobList);
   }
+
+  public Set<String> getFinishedJobs() {
+    return new HashSet<>(_finishedJobs);
+  }
 }
@@ -0,0 +1,86 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Signals an {@link AsyncTask} that it should stop. The task either polls
+ * {@link #isCancelled()} or registers a callback with {@link #onCancel(Runnable)}, and completes
+ * its result with {@link TaskResult.Status#CANCELED} once it has stopped.
+ */
+public final class TaskCancellationToken {
+  private static final Logger LOG = LoggerFactory.getLogger(TaskCancellationToken.class);
+
+  private final List<Runnable> _callbacks = new ArrayList<>();
+  private volatile boolean _cancelled = false;
+
+  /**
+   * @return true if the task has been asked to stop
+   */
+  public boolean isCancelled() {
+    return _cancelled;
+  }
+
+  /**
+   * Register a callback to run when the task is cancelled. The callback runs right away if the
+   * task is already cancelled.
+   * @param callback the callback, which should not block
+   */
+  public void onCancel(Runnable callback) {
+    synchronized (_callbacks) {
+      if (!_cancelled) {
+        _callbacks.add(callback);
+        return;
+      }
+    }
+    runCallback(callback);
+  }
+
+  /**
+   * Cancel the task. Only the first call runs the callbacks.
+   */
+  void cancel() {
+    List<Runnable> callbacks;
+    synchronized (_callbacks) {
+      if (_cancelled) {
+        return;
+      }
+      _cancelled = true;
+      callbacks = new ArrayList<>(_callbacks);
+      _callbacks.clear();
+    }
+    for (Runnable callback : callbacks) {
+      runCallback(callback);
+    }
+  }
+
+  private void runCallback(Runnable callback) {
+    try {
+      callback.run();
+    } catch (Exception e) {
+      LOG.error("Failed to run the cancellation callback of the task.", e);
+    }
+  }
+}
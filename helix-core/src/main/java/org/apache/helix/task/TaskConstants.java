@@ -43,6 +43,10 @@ public class TaskConstants {
    * The context node for workflow and job
    */
   public static final String CONTEXT_NODE = "Context";
+  /**
+   * The parent node of the partition buckets of a bucketed job context
+   */
+  public static final String CONTEXT_BUCKETS_NODE = "ContextBuckets";
 
   public static final long DEFAULT_NEVER_TIMEOUT = -1; // never timeout
 
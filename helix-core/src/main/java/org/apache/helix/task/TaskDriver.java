@@ -27,6 +27,9 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.helix.AccessOption;
 import org.apache.helix.BaseDataAccessor;
@@ -91,6 +94,7 @@ public class TaskDriver {
   private final HelixPropertyStore<ZNRecord> _propertyStore;
   private final HelixAdmin _admin;
   private final String _clusterName;
+  private final WorkflowContextWatcher _contextWatcher;
 
   public TaskDriver(HelixManager manager) {
     this(manager.getClusterManagmentTool(), manager.getHelixDataAccessor(),
@@ -123,6 +127,7 @@ public class TaskDriver {
     _accessor = accessor;
     _propertyStore = propertyStore;
     _clusterName = clusterName;
+    _contextWatcher = new WorkflowContextWatcher(propertyStore);
   }
 
   /**
@@ -883,6 +888,89 @@ public class TaskDriver {
     return workflowConfigMap;
   }
 
+  /**
+   * Wait until the workflow reaches one of the given states, without polling ZK. The future fails
+   * with a HelixException if timeout happens. It may be completed on the ZK event thread, so
+   * expensive dependent actions should use the async variants of CompletableFuture.
+   * @param workflowName The workflow to be monitored
+   * @param timeout A long integer presents the time out, in milliseconds
+   * @param targetStates Specified states that user would like to stop monitoring
+   * @return A future of the workflow state, it can be cancelled to stop waiting
+   */
+  public CompletableFuture<TaskState> waitForWorkflowState(String workflowName, long timeout,
+      TaskState... targetStates) {
+    Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(targetStates));
+    return _contextWatcher.waitFor(workflowName,
+        ctx -> ctx != null && allowedStates.contains(ctx.getWorkflowState())
+            ? ctx.getWorkflowState()
+            : null,
+        timeout, ctx -> String.format(
+            "Workflow \"%s\" context is empty or not in states: \"%s\", current state: \"%s\"",
+            workflowName, Arrays.asList(targetStates),
+            ctx == null ? "null" : ctx.getWorkflowState()));
+  }
+
+  /**
+   * Wait until the job reaches one of the given states, without polling ZK. The future fails with
+   * a HelixException if the workflow does not exist or if timeout happens. It may be completed on
+   * the ZK event thread, so expensive dependent actions should use the async variants of
+   * CompletableFuture.
+   * @param workflowName The workflow that contains the job to monitor
+   * @param jobName The specified job to monitor
+   * @param timeout A long integer presents the time out, in milliseconds
+   * @param states Specified states that user would like to stop monitoring
+   * @return A future of the job state, it can be cancelled to stop waiting
+   */
+  public CompletableFuture<TaskState> waitForJobState(String workflowName, String jobName,
+      long timeout, TaskState... states) {
+    // Get workflow config
+    WorkflowConfig workflowConfig = getWorkflowConfig(workflowName);
+
+    if (workflowConfig == null) {
+      CompletableFuture<TaskState> future = new CompletableFuture<>();
+      future.completeExceptionally(
+          new HelixException(String.format("Workflow \"%s\" does not exists!", workflowName)));
+      return future;
+    }
+    if (!workflowConfig.isRecurring()) {
+      return waitForSingleWorkflowJobState(workflowName, jobName, timeout, states);
+    }
+
+    // if it's recurring, need to wait for the scheduled workflow and reconstruct the job name
+    long deadline = System.currentTimeMillis() + timeout;
+    String denamespacedJobName = jobName.substring(workflowName.length() + 1);
+    CompletableFuture<String> scheduledWorkflowFuture = _contextWatcher.waitFor(workflowName,
+        ctx -> ctx == null ? null : ctx.getLastScheduledSingleWorkflow(), timeout,
+        ctx -> String.format("Recurring workflow \"%s\" has not scheduled any workflow",
+            workflowName));
+    AtomicReference<CompletableFuture<TaskState>> jobStateFuture = new AtomicReference<>();
+    CompletableFuture<TaskState> future = scheduledWorkflowFuture.thenCompose(scheduledWorkflow -> {
+      jobStateFuture.set(waitForSingleWorkflowJobState(scheduledWorkflow, denamespacedJobName,
+          Math.max(deadline - System.currentTimeMillis(), 0L), states));
+      return jobStateFuture.get();
+    });
+    // propagate the cancellation to the underlying waits
+    future.whenComplete((state, e) -> {
+      scheduledWorkflowFuture.cancel(false);
+      if (jobStateFuture.get() != null) {
+        jobStateFuture.get().cancel(false);
+      }
+    });
+    return future;
+  }
+
+  private CompletableFuture<TaskState> waitForSingleWorkflowJobState(String workflowName,
+      String jobName, long timeout, TaskState... states) {
+    Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(states));
+    return _contextWatcher.waitFor(workflowName,
+        ctx -> ctx != null && allowedStates.contains(ctx.getJobState(jobName))
+            ? ctx.getJobState(jobName)
+            : null,
+        timeout, ctx -> String.format(
+            "Workflow \"%s\" context is null or job \"%s\" is not in states: %s", workflowName,
+            jobName, allowedStates));
+  }
+
   /**
    * This call will be blocked until either workflow reaches to one of the state specified
    * in the arguments, or timeout happens. If timeout happens, then it will throw a HelixException
@@ -895,27 +983,7 @@ public class TaskDriver {
    */
   public TaskState pollForWorkflowState(String workflowName, long timeout,
       TaskState... targetStates) throws InterruptedException {
-    // Wait for completion.
-    long st = System.currentTimeMillis();
-    WorkflowContext ctx;
-    Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(targetStates));
-
-    long timeToSleep = timeout > 100L ? 100L : timeout;
-    do {
-      Thread.sleep(timeToSleep);
-      ctx = getWorkflowContext(workflowName);
-    } while ((ctx == null || ctx.getWorkflowState() == null
-        || !allowedStates.contains(ctx.getWorkflowState()))
-        && System.currentTimeMillis() < st + timeout);
-
-    if (ctx == null || !allowedStates.contains(ctx.getWorkflowState())) {
-      throw new HelixException(String.format(
-          "Workflow \"%s\" context is empty or not in states: \"%s\", current state: \"%s\"",
-          workflowName, Arrays.asList(targetStates),
-          ctx == null ? "null" : ctx.getWorkflowState().toString()));
-    }
-
-    return ctx.getWorkflowState();
+    return getWaitResult(waitForWorkflowState(workflowName, timeout, targetStates));
   }
 
   /**
@@ -945,44 +1013,7 @@ public class TaskDriver {
    */
   public TaskState pollForJobState(String workflowName, String jobName, long timeout,
       TaskState... states) throws InterruptedException {
-    // Get workflow config
-    WorkflowConfig workflowConfig = getWorkflowConfig(workflowName);
-
-    if (workflowConfig == null) {
-      throw new HelixException(String.format("Workflow \"%s\" does not exists!", workflowName));
-    }
-
-    long timeToSleep = timeout > 50L ? 50L : timeout;
-
-    WorkflowContext ctx;
-    if (workflowConfig.isRecurring()) {
-      // if it's recurring, need to reconstruct workflow and job name
-      do {
-        Thread.sleep(timeToSleep);
-        ctx = getWorkflowContext(workflowName);
-      } while ((ctx == null || ctx.getLastScheduledSingleWorkflow() == null));
-
-      jobName = jobName.substring(workflowName.length() + 1);
-      workflowName = ctx.getLastScheduledSingleWorkflow();
-    }
-
-    Set<TaskState> allowedStates = new HashSet<>(Arrays.asList(states));
-    // Wait for state
-    long st = System.currentTimeMillis();
-    do {
-      Thread.sleep(timeToSleep);
-      ctx = getWorkflowContext(workflowName);
-    } while ((ctx == null || ctx.getJobState(jobName) == null
-        || !allowedStates.contains(ctx.getJobState(jobName)))
-        && System.currentTimeMillis() < st + timeout);
-
-    if (ctx == null || !allowedStates.contains(ctx.getJobState(jobName))) {
-      throw new HelixException(
-          String.format("Workflow \"%s\" context is null or job \"%s\" is not in states: %s",
-              workflowName, jobName, allowedStates));
-    }
-
-    return ctx.getJobState(jobName);
+    return getWaitResult(waitForJobState(workflowName, jobName, timeout, states));
   }
 
   /**
@@ -1000,6 +1031,21 @@ public class TaskDriver {
     return pollForJobState(workflowName, jobName, DEFAULT_TIMEOUT, states);
   }
 
+  private static TaskState getWaitResult(CompletableFuture<TaskState> future)
+      throws InterruptedException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      future.cancel(false);
+      throw e;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new HelixException(e.getCause());
+    }
+  }
+
   /**
    * This function returns the timestamp of the very last task that was scheduled. It is provided to
    * help determine
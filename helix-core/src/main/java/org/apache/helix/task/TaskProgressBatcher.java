@@ -0,0 +1,210 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixManager;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.util.HelixUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Collects the progress reported by the tasks of a participant, and writes it to the task user
+ * content at most once per flush interval, with one update per job.
+ */
+class TaskProgressBatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(TaskProgressBatcher.class);
+  private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+  // The batcher of the task state model factory of each participant, shared with the task state
+  // models and task runners created outside the factory
+  private static final Map<HelixManager, TaskProgressBatcher> PARTICIPANT_BATCHERS =
+      new ConcurrentHashMap<>();
+
+  private final HelixManager _manager;
+  private final ScheduledExecutorService _scheduler;
+  private final long _flushInterval;
+  // Keeps the writes in the order the reports were taken
+  private final Object _writeLock = new Object();
+  // job -> task -> key-value pairs not written yet
+  private Map<String, Map<String, Map<String, String>>> _pending = new HashMap<>();
+  private boolean _flushScheduled = false;
+  // Actions waiting for the next periodic write, such as reporting the result of a finished task
+  private List<Runnable> _afterFlush = new ArrayList<>();
+
+  /**
+   * @param manager the participant's Helix manager
+   * @param scheduler runs the periodic writes. If null, every report is written right away.
+   */
+  TaskProgressBatcher(HelixManager manager, ScheduledExecutorService scheduler) {
+    _manager = manager;
+    _scheduler = scheduler;
+    _flushInterval = HelixUtil.getSystemPropertyAsLong(
+        SystemPropertyKeys.TASK_PROGRESS_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL);
+  }
+
+  /**
+   * Make the batcher the one shared by the tasks of a participant.
+   */
+  static void register(HelixManager manager, TaskProgressBatcher batcher) {
+    if (manager != null) {
+      PARTICIPANT_BATCHERS.put(manager, batcher);
+    }
+  }
+
+  static void unregister(HelixManager manager, TaskProgressBatcher batcher) {
+    if (manager != null) {
+      PARTICIPANT_BATCHERS.remove(manager, batcher);
+    }
+  }
+
+  /**
+   * @param manager the participant's Helix manager
+   * @param scheduler runs the periodic writes of the new batcher if the participant has none
+   * @return the batcher registered for the participant, or a new batcher
+   */
+  static TaskProgressBatcher getParticipantBatcher(HelixManager manager,
+      ScheduledExecutorService scheduler) {
+    TaskProgressBatcher batcher = manager == null ? null : PARTICIPANT_BATCHERS.get(manager);
+    return batcher != null ? batcher : new TaskProgressBatcher(manager, scheduler);
+  }
+
+  void report(String job, String task, String key, String value) {
+    synchronized (this) {
+      _pending.computeIfAbsent(job, k -> new HashMap<>())
+          .computeIfAbsent(task, k -> new HashMap<>()).put(key, value);
+      if (_scheduler != null && _flushInterval > 0) {
+        if (!_flushScheduled) {
+          _flushScheduled = scheduleFlush();
+        }
+        if (_flushScheduled) {
+          return;
+        }
+      }
+    }
+    flush(job, task);
+  }
+
+  /**
+   * Write the pending reports of all the tasks
+   */
+  void flush() {
+    List<Runnable> afterFlush;
+    synchronized (_writeLock) {
+      Map<String, Map<String, Map<String, String>>> pending;
+      synchronized (this) {
+        pending = _pending;
+        _pending = new HashMap<>();
+        afterFlush = _afterFlush;
+        _afterFlush = new ArrayList<>();
+        _flushScheduled = false;
+      }
+      for (Map.Entry<String, Map<String, Map<String, String>>> jobReports : pending.entrySet()) {
+        write(jobReports.getKey(), jobReports.getValue());
+      }
+    }
+    runAfterFlush(afterFlush);
+  }
+
+  /**
+   * Write the pending reports of a task, then run the given action. If the task has reports
+   * waiting for the next periodic write, they are written by it, so that a finishing task does not
+   * bypass the flush interval, and the action is run after that write.
+   */
+  void flush(String job, String task, Runnable afterFlush) {
+    synchronized (this) {
+      Map<String, Map<String, String>> jobReports = _pending.get(job);
+      if (_flushScheduled && jobReports != null && jobReports.containsKey(task)) {
+        _afterFlush.add(afterFlush);
+        return;
+      }
+    }
+    try {
+      flush(job, task);
+    } finally {
+      runAfterFlush(Collections.singletonList(afterFlush));
+    }
+  }
+
+  /**
+   * Write the pending reports of a task
+   */
+  void flush(String job, String task) {
+    synchronized (_writeLock) {
+      Map<String, String> taskReports;
+      synchronized (this) {
+        Map<String, Map<String, String>> jobReports = _pending.get(job);
+        if (jobReports == null) {
+          return;
+        }
+        taskReports = jobReports.remove(task);
+        if (jobReports.isEmpty()) {
+          _pending.remove(job);
+        }
+      }
+      if (taskReports != null) {
+        write(job, Collections.singletonMap(task, taskReports));
+      }
+    }
+  }
+
+  private void runAfterFlush(List<Runnable> actions) {
+    for (Runnable action : actions) {
+      try {
+        action.run();
+      } catch (Exception e) {
+        LOG.error("Failed to run the action after writing the task progress.", e);
+      }
+    }
+  }
+
+  private boolean scheduleFlush() {
+    try {
+      _scheduler.schedule(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      }, _flushInterval, TimeUnit.MILLISECONDS);
+      return true;
+    } catch (RejectedExecutionException e) {
+      LOG.warn("Failed to schedule the write of the task progress, write it right away.", e);
+      return false;
+    }
+  }
+
+  private void write(String job, Map<String, Map<String, String>> taskReports) {
+    try {
+      TaskUtil.addOrUpdateTaskUserContentMaps(_manager.getHelixPropertyStore(), job, taskReports);
+    } catch (Exception e) {
+      LOG.error("Failed to write the progress of tasks {} in job {}.", taskReports.keySet(), job,
+          e);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+/**
+ * Reports the progress or partial results of a task as task level key-value pairs of the
+ * {@link UserContentStore}. The reports of all the tasks of a participant are written in batches,
+ * at most once per {@code helixTask.progressFlushInterval}, so a task may report as often as it
+ * likes. Only the last value reported for a key is written. All the reports are written before the
+ * task reports its result. The reports of a task that is not run by a {@link TaskRunner} are
+ * dropped.
+ */
+public final class TaskProgressReporter {
+  private final TaskProgressBatcher _batcher;
+  private final String _jobName;
+  private final String _taskName;
+
+  TaskProgressReporter(TaskProgressBatcher batcher, String jobName, String taskName) {
+    _batcher = batcher;
+    _jobName = jobName;
+    _taskName = taskName;
+  }
+
+  /**
+   * @return a reporter that drops the reports, for a task that is not run by a {@link TaskRunner}
+   */
+  static TaskProgressReporter noop() {
+    return new TaskProgressReporter(null, null, null);
+  }
+
+  /**
+   * Report a key-value pair of the task. It can be read with
+   * {@link UserContentStore#getUserContent} in the task scope.
+   * @param key the key of key-value pair
+   * @param value the value of key-value pair
+   */
+  public void report(String key, String value) {
+    if (_batcher != null) {
+      _batcher.report(_jobName, _taskName, key, value);
+    }
+  }
+
+  /**
+   * Write the reports of the task that are not written yet, with the next periodic write of the
+   * participant if there is one, then run the given action.
+   */
+  void flush(Runnable afterFlush) {
+    if (_batcher != null) {
+      _batcher.flush(_jobName, _taskName, afterFlush);
+    } else {
+      afterFlush.run();
+    }
+  }
+}
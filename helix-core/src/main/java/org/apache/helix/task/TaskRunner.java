@@ -19,10 +19,11 @@ package org.apache.helix.task;
  * under the License.
  */
 
+import java.util.concurrent.CompletionStage;
+
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
 import org.apache.helix.PropertyKey;
-import org.apache.helix.model.CurrentState;
 import org.apache.helix.task.TaskResult.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,31 +52,93 @@ public class TaskRunner implements Runnable {
   private volatile boolean _timeout = false;
   // If true, indicates that the task has finished.
   private volatile boolean _done = false;
+  // Signals an async task to stop.
+  private final TaskCancellationToken _cancellationToken = new TaskCancellationToken();
+  private final TaskProgressReporter _progressReporter;
+  // Merges the requested states of the tasks of a job finishing at the same time
+  private final RequestedStateBatcher _requestedStateBatcher;
 
 
   public TaskRunner(Task task, String taskName, String taskPartition, String instance,
       HelixManager manager, String sessionId) {
+    this(task, taskName, taskPartition, instance, manager, sessionId,
+        TaskProgressBatcher.getParticipantBatcher(manager, null), new RequestedStateBatcher());
+  }
+
+  TaskRunner(Task task, String taskName, String taskPartition, String instance,
+      HelixManager manager, String sessionId, TaskProgressBatcher progressBatcher,
+      RequestedStateBatcher requestedStateBatcher) {
     _task = task;
     _taskName = taskName;
     _taskPartition = taskPartition;
     _instance = instance;
     _manager = manager;
     _sessionId = sessionId;
+    _progressReporter = new TaskProgressReporter(progressBatcher, taskName, taskPartition);
+    _requestedStateBatcher = requestedStateBatcher;
   }
 
   @Override
   public void run() {
+    signalStarted();
+    if (_task instanceof AsyncTask) {
+      runAsync((AsyncTask) _task);
+      return;
+    }
+
+    TaskResult result;
+    try {
+      result = _task.run();
+    } catch (ThreadDeath death) {
+      signalDone();
+      throw death;
+    } catch (Throwable t) {
+      LOG.error("Problem running the task, report task as FAILED.", t);
+      result = new TaskResult(Status.FAILED, "Exception happened in running task: " + t.getMessage());
+    }
+    finish(result);
+  }
+
+  /**
+   * Starts an async task. The thread is released once the task has started, the result is
+   * reported by the thread that completes the task.
+   */
+  private void runAsync(AsyncTask task) {
+    CompletionStage<TaskResult> stage;
     try {
-      signalStarted();
-      try {
-        _result = _task.run();
-      } catch (ThreadDeath death) {
-        throw death;
-      } catch (Throwable t) {
+      stage = task.runAsync(_cancellationToken, _progressReporter);
+    } catch (ThreadDeath death) {
+      signalDone();
+      throw death;
+    } catch (Throwable t) {
+      LOG.error("Problem starting the task, report task as FAILED.", t);
+      finish(
+          new TaskResult(Status.FAILED, "Exception happened in running task: " + t.getMessage()));
+      return;
+    }
+    if (stage == null) {
+      finish(new TaskResult(Status.FAILED, "The task returned no result"));
+      return;
+    }
+    stage.whenComplete((result, t) -> {
+      if (t != null) {
         LOG.error("Problem running the task, report task as FAILED.", t);
-        _result = new TaskResult(Status.FAILED, "Exception happened in running task: " + t.getMessage());
+        finish(
+            new TaskResult(Status.FAILED, "Exception happened in running task: " + t.getMessage()));
+      } else {
+        finish(result);
       }
+    });
+  }
 
+  private void finish(TaskResult result) {
+    _result = result;
+    // The result is reported once the progress of the task is written
+    _progressReporter.flush(this::reportResult);
+  }
+
+  private void reportResult() {
+    try {
       switch (_result.getStatus()) {
       case COMPLETED:
         requestStateTransition(TaskPartitionState.COMPLETED);
@@ -104,10 +167,14 @@ public class TaskRunner implements Runnable {
           new TaskResult(Status.FAILED, "Exception happened in running task: " + e.getMessage());
       requestStateTransition(TaskPartitionState.TASK_ERROR);
     } finally {
-      synchronized (_doneSync) {
-        _done = true;
-        _doneSync.notifyAll();
-      }
+      signalDone();
+    }
+  }
+
+  private void signalDone() {
+    synchronized (_doneSync) {
+      _done = true;
+      _doneSync.notifyAll();
     }
   }
 
@@ -126,6 +193,7 @@ public class TaskRunner implements Runnable {
    */
   public void cancel() {
     if (!_done) {
+      _cancellationToken.cancel();
       _task.cancel();
     }
   }
@@ -181,8 +249,8 @@ public class TaskRunner implements Runnable {
    */
   private void requestStateTransition(TaskPartitionState state) {
     boolean success =
-        setRequestedState(_manager.getHelixDataAccessor(), _instance, _sessionId, _taskName,
-            _taskPartition, state);
+        setRequestedState(_requestedStateBatcher, _manager.getHelixDataAccessor(), _instance,
+            _sessionId, _taskName, _taskPartition, state);
     if (!success) {
       LOG.error(String
           .format(
@@ -194,6 +262,7 @@ public class TaskRunner implements Runnable {
   /**
    * Request a state change for a specific task.
    *
+   * @param batcher   merges the request with the ones of the other tasks of the job
    * @param accessor  connected Helix data accessor
    * @param instance  the instance serving the task
    * @param sessionId the current session of the instance
@@ -202,17 +271,16 @@ public class TaskRunner implements Runnable {
    * @param state     the requested state
    * @return true if the request was persisted, false otherwise
    */
-  private static boolean setRequestedState(HelixDataAccessor accessor, String instance,
-      String sessionId, String resource, String partition, TaskPartitionState state) {
+  private static boolean setRequestedState(RequestedStateBatcher batcher,
+      HelixDataAccessor accessor, String instance, String sessionId, String resource,
+      String partition, TaskPartitionState state) {
     LOG.debug(
         String.format("Requesting a state transition to %s for partition %s.", state, partition));
     try {
       PropertyKey.Builder keyBuilder = accessor.keyBuilder();
       PropertyKey key = keyBuilder.currentState(instance, sessionId, resource);
-      CurrentState currStateDelta = new CurrentState(resource);
-      currStateDelta.setRequestedState(partition, state.name());
 
-      return accessor.updateProperty(key, currStateDelta);
+      return batcher.request(accessor, key, resource, partition, state);
     } catch (Exception e) {
       LOG.error(String
           .format("Error when requesting a state transition to %s for partition %s.", state,
@@ -43,6 +43,8 @@ public class TaskStateModel extends StateModel {
   private ScheduledFuture timeout_task;
   private TaskRunner _taskRunner;
   private final ScheduledExecutorService _timeoutTaskExecutor;
+  private final TaskProgressBatcher _progressBatcher;
+  private final RequestedStateBatcher _requestedStateBatcher;
 
   public TaskStateModel(HelixManager manager, Map<String, TaskFactory> taskFactoryRegistry,
       ScheduledExecutorService taskExecutor) {
@@ -51,10 +53,20 @@ public class TaskStateModel extends StateModel {
 
   public TaskStateModel(HelixManager manager, Map<String, TaskFactory> taskFactoryRegistry,
       ScheduledExecutorService taskExecutor, ScheduledExecutorService timerTaskExecutor) {
+    this(manager, taskFactoryRegistry, taskExecutor, timerTaskExecutor,
+        TaskProgressBatcher.getParticipantBatcher(manager, timerTaskExecutor),
+        new RequestedStateBatcher());
+  }
+
+  TaskStateModel(HelixManager manager, Map<String, TaskFactory> taskFactoryRegistry,
+      ScheduledExecutorService taskExecutor, ScheduledExecutorService timerTaskExecutor,
+      TaskProgressBatcher progressBatcher, RequestedStateBatcher requestedStateBatcher) {
     _manager = manager;
     _taskFactoryRegistry = taskFactoryRegistry;
     _taskExecutor = taskExecutor;
     _timeoutTaskExecutor = timerTaskExecutor;
+    _progressBatcher = progressBatcher;
+    _requestedStateBatcher = requestedStateBatcher;
   }
 
   public boolean isShutdown() {
@@ -327,7 +339,7 @@ public class TaskStateModel extends StateModel {
     // Submit the task for execution
     _taskRunner =
         new TaskRunner(task, msg.getResourceName(), taskPartition, msg.getTgtName(), _manager,
-            msg.getTgtSessionId());
+            msg.getTgtSessionId(), _progressBatcher, _requestedStateBatcher);
     _taskExecutor.submit(_taskRunner);
     _taskRunner.waitTillStarted();
 
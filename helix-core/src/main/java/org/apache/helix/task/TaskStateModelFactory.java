@@ -44,6 +44,10 @@ public class TaskStateModelFactory extends StateModelFactory<TaskStateModel> {
   private final Map<String, TaskFactory> _taskFactoryRegistry;
   private final ScheduledExecutorService _taskExecutor;
   private final ScheduledExecutorService _timerTaskExecutor;
+  // Batches the progress reported by all the tasks of the participant
+  private final TaskProgressBatcher _progressBatcher;
+  // Merges the requested states of the tasks of a job of the participant finishing at the same time
+  private final RequestedStateBatcher _requestedStateBatcher = new RequestedStateBatcher();
   private ThreadPoolExecutorMonitor _monitor;
   public final static int TASK_THREADPOOL_SIZE = 40;
 
@@ -70,6 +74,8 @@ public class TaskStateModelFactory extends StateModelFactory<TaskStateModel> {
         return new Thread(r, "TaskStateModelFactory-timeTask_thread");
       }
     });
+    _progressBatcher = new TaskProgressBatcher(manager, _timerTaskExecutor);
+    TaskProgressBatcher.register(manager, _progressBatcher);
     if (_taskExecutor instanceof ThreadPoolExecutor) {
       try {
         _monitor = new ThreadPoolExecutorMonitor(TaskConstants.STATE_MODEL_NAME,
@@ -82,7 +88,8 @@ public class TaskStateModelFactory extends StateModelFactory<TaskStateModel> {
 
   @Override
   public TaskStateModel createNewStateModel(String resourceName, String partitionKey) {
-    return new TaskStateModel(_manager, _taskFactoryRegistry, _taskExecutor, _timerTaskExecutor);
+    return new TaskStateModel(_manager, _taskFactoryRegistry, _taskExecutor, _timerTaskExecutor,
+        _progressBatcher, _requestedStateBatcher);
   }
 
   public void shutdown() {
@@ -91,6 +98,9 @@ public class TaskStateModelFactory extends StateModelFactory<TaskStateModel> {
     }
     _taskExecutor.shutdown();
     _timerTaskExecutor.shutdown();
+    // Write the progress of the tasks that was waiting for the next periodic write
+    TaskProgressBatcher.unregister(_manager, _progressBatcher);
+    _progressBatcher.flush();
     if (_monitor != null) {
       _monitor.unregister();
     }
@@ -100,6 +110,7 @@ public class TaskStateModelFactory extends StateModelFactory<TaskStateModel> {
   void shutdownNow() {
     _taskExecutor.shutdownNow();
     _timerTaskExecutor.shutdownNow();
+    TaskProgressBatcher.unregister(_manager, _progressBatcher);
     if (_monitor != null) {
       _monitor.unregister();
     }
@@ -20,16 +20,19 @@ package org.apache.helix.task;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 import com.google.common.base.Joiner;
 import com.google.common.collect.Sets;
 import org.apache.helix.AccessOption;
+import org.apache.helix.BaseDataAccessor;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
@@ -194,9 +197,8 @@ public class TaskUtil {
    */
   protected static JobContext getJobContext(HelixPropertyStore<ZNRecord> propertyStore,
       String jobResource) {
-    ZNRecord r = propertyStore.get(
-        Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, jobResource, CONTEXT_NODE), null,
-        AccessOption.PERSISTENT);
+    ZNRecord r = JobContextBuckets.read(propertyStore,
+        Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, jobResource, CONTEXT_NODE));
     return r != null ? new JobContext(r) : null;
   }
 
@@ -440,6 +442,22 @@ public class TaskUtil {
       throw new IllegalArgumentException(
           "job and task must be not null when adding task user content");
     }
+    addOrUpdateTaskUserContentMaps(propertyStore, job,
+        Collections.singletonMap(task, contentToAddOrUpdate));
+  }
+
+  /**
+   * Add or update the user content of several tasks of a job with one update
+   * @param propertyStore property store
+   * @param job the name of job
+   * @param contentToAddOrUpdate task -> key-value pairs to add or update
+   */
+  /* package */
+  static void addOrUpdateTaskUserContentMaps(final HelixPropertyStore<ZNRecord> propertyStore,
+      final String job, final Map<String, Map<String, String>> contentToAddOrUpdate) {
+    if (job == null) {
+      throw new IllegalArgumentException("job must be not null when adding task user content");
+    }
     String path =
         Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, job, USER_CONTENT_NODE);
 
@@ -451,14 +469,19 @@ public class TaskUtil {
           // This should not happen, but if it is missing, create one
           znRecord = new ZNRecord(new ZNRecord(TaskUtil.USER_CONTENT_NODE));
         }
-        if (znRecord.getMapField(task) == null) {
-          znRecord.setMapField(task, new HashMap<String, String>());
+        for (Map.Entry<String, Map<String, String>> taskContent : contentToAddOrUpdate
+            .entrySet()) {
+          String task = taskContent.getKey();
+          if (znRecord.getMapField(task) == null) {
+            znRecord.setMapField(task, new HashMap<String, String>());
+          }
+          znRecord.getMapField(task).putAll(taskContent.getValue());
         }
-        znRecord.getMapField(task).putAll(contentToAddOrUpdate);
         return znRecord;
       }
     }, AccessOption.PERSISTENT)) {
-      LOG.error("Failed to update the task UserContentStore for task {} in job {}", task, job);
+      LOG.error("Failed to update the task UserContentStore for tasks {} in job {}",
+          contentToAddOrUpdate.keySet(), job);
     }
   }
 
@@ -780,6 +803,104 @@ public class TaskUtil {
     return true;
   }
 
+  /**
+   * Remove the configs, IS/EV and contexts of jobs, in the same order as
+   * {@link #removeJob(HelixDataAccessor, HelixPropertyStore, String)}. Each kind of node is removed
+   * for all the jobs with one batch of asynchronous requests.
+   * @param accessor
+   * @param propertyStore
+   * @param jobs namespaced job names
+   * @return the jobs whose nodes are all removed
+   */
+  protected static Set<String> removeJobs(HelixDataAccessor accessor,
+      HelixPropertyStore<ZNRecord> propertyStore, Set<String> jobs) {
+    Set<String> removedJobs = new HashSet<>(jobs);
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+    BaseDataAccessor<ZNRecord> baseAccessor = accessor.getBaseDataAccessor();
+    removeJobNodes(baseAccessor, removedJobs, job -> keyBuilder.resourceConfig(job).getPath(),
+        "config");
+    removeJobNodes(baseAccessor, removedJobs, job -> keyBuilder.idealStates(job).getPath(),
+        "IdealState");
+    removeJobNodes(baseAccessor, removedJobs, job -> keyBuilder.externalView(job).getPath(),
+        "ExternalView");
+    // The context node and the previous assignment are removed before their parent node
+    removeJobNodes(propertyStore, removedJobs,
+        job -> Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, job, CONTEXT_NODE),
+        "job context");
+    removeJobNodes(propertyStore, removedJobs, job -> Joiner.on("/")
+            .join(TaskConstants.REBALANCER_CONTEXT_ROOT, job, TaskConstants.PREV_RA_NODE),
+        "previous assignment");
+    removeJobNodes(propertyStore, removedJobs,
+        job -> Joiner.on("/").join(TaskConstants.REBALANCER_CONTEXT_ROOT, job), "job context");
+    return removedJobs;
+  }
+
+  /**
+   * Remove one node of each job if it exists. The jobs whose node fails to be removed are removed
+   * from the given set.
+   */
+  private static void removeJobNodes(BaseDataAccessor<ZNRecord> accessor, Set<String> jobs,
+      Function<String, String> pathBuilder, String nodeType) {
+    if (jobs.isEmpty()) {
+      return;
+    }
+    List<String> jobList = new ArrayList<>(jobs);
+    List<String> paths = new ArrayList<>(jobList.size());
+    for (String job : jobList) {
+      paths.add(pathBuilder.apply(job));
+    }
+    boolean[] exists = accessor.exists(paths, AccessOption.PERSISTENT);
+    List<String> existingJobs = new ArrayList<>();
+    List<String> existingPaths = new ArrayList<>();
+    for (int i = 0; i < exists.length; i++) {
+      if (exists[i]) {
+        existingJobs.add(jobList.get(i));
+        existingPaths.add(paths.get(i));
+      }
+    }
+    if (existingPaths.isEmpty()) {
+      return;
+    }
+    boolean[] success = accessor.remove(existingPaths, AccessOption.PERSISTENT);
+    for (int i = 0; i < success.length; i++) {
+      // A node with children, such as the buckets of a context, is removed recursively
+      if (!success[i] && !accessor.remove(existingPaths.get(i), AccessOption.PERSISTENT)) {
+        LOG.warn(String.format(
+            "Error occurred while trying to remove %s for %s. Failed to remove node %s.", nodeType,
+            existingJobs.get(i), existingPaths.get(i)));
+        jobs.remove(existingJobs.get(i));
+      }
+    }
+  }
+
+  /**
+   * Return the jobs in the DAG of a workflow whose config is missing, because the job was deleted
+   * manually or left in the DAG by a failed clean-up attempt. The configs are looked up with one
+   * batch of asynchronous requests.
+   * @param accessor
+   * @param workflowConfig
+   * @return namespaced names of the jobs without config
+   */
+  public static Set<String> getJobsWithoutConfig(HelixDataAccessor accessor,
+      WorkflowConfig workflowConfig) {
+    List<String> jobs = new ArrayList<>(workflowConfig.getJobDag().getAllNodes());
+    Set<String> jobsWithoutConfig = new HashSet<>();
+    if (jobs.isEmpty()) {
+      return jobsWithoutConfig;
+    }
+    List<String> paths = new ArrayList<>(jobs.size());
+    for (String job : jobs) {
+      paths.add(accessor.keyBuilder().resourceConfig(job).getPath());
+    }
+    boolean[] exists = accessor.getBaseDataAccessor().exists(paths, AccessOption.PERSISTENT);
+    for (int i = 0; i < exists.length; i++) {
+      if (!exists[i]) {
+        jobsWithoutConfig.add(jobs.get(i));
+      }
+    }
+    return jobsWithoutConfig;
+  }
+
   /** Remove the job name from the DAG from the queue configuration */
   // Job name should be namespaced job name here.
   protected static boolean removeJobsFromDag(final HelixDataAccessor accessor,
@@ -959,8 +1080,24 @@ public class TaskUtil {
    * @return
    */
   public static int getInCompleteJobCount(WorkflowConfig workflowCfg, WorkflowContext workflowCtx) {
+    return getInCompleteJobCount(workflowCfg, workflowCtx, null);
+  }
+
+  /**
+   * Count the number of jobs in a workflow that are not in final state. If the runtime job DAG of
+   * the workflow is given, only its inflight jobs are looked at, because it holds all the started
+   * jobs of the workflow there.
+   * @param workflowCfg
+   * @param workflowCtx
+   * @param runtimeJobDag the runtime job DAG of the workflow, or null
+   * @return
+   */
+  public static int getInCompleteJobCount(WorkflowConfig workflowCfg, WorkflowContext workflowCtx,
+      RuntimeJobDag runtimeJobDag) {
     int inCompleteCount = 0;
-    for (String jobName : workflowCfg.getJobDag().getAllNodes()) {
+    Set<String> jobs = runtimeJobDag == null ? workflowCfg.getJobDag().getAllNodes()
+        : runtimeJobDag.getInflightJobList();
+    for (String jobName : jobs) {
       TaskState jobState = workflowCtx.getJobState(jobName);
       if (jobState == TaskState.IN_PROGRESS || jobState == TaskState.STOPPED
           || jobState == TaskState.STOPPING) {
@@ -998,27 +1135,7 @@ public class TaskUtil {
         LOG.info("No job to purge for the queue " + workflow);
       } else {
         LOG.info("Purge jobs " + expiredJobs + " from queue " + workflow);
-        Set<String> failedJobRemovals = new HashSet<>();
-        for (String job : expiredJobs) {
-          if (!TaskUtil.removeJob(manager.getHelixDataAccessor(), manager.getHelixPropertyStore(),
-              job)) {
-            failedJobRemovals.add(job);
-            LOG.warn("Failed to clean up expired and completed jobs from workflow " + workflow);
-          }
-          rebalanceScheduler.removeScheduledRebalance(job);
-        }
-
-        // If the job removal failed, make sure we do NOT prematurely delete it from DAG so that the
-        // removal will be tried again at next purge
-        expiredJobs.removeAll(failedJobRemovals);
-
-        if (!TaskUtil.removeJobsFromDag(manager.getHelixDataAccessor(), workflow, expiredJobs,
-            true)) {
-          LOG.warn("Error occurred while trying to remove jobs + " + expiredJobs
-              + " from the workflow " + workflow);
-        }
-
-        if (expiredJobs.size() > 0) {
+        if (purgeJobs(workflow, expiredJobs, manager, rebalanceScheduler).size() > 0) {
           // Update workflow context will be in main pipeline not here. Otherwise, it will cause
           // concurrent write issue. It is possible that jobs got purged but there is no event to
           // trigger the pipeline to clean context.
@@ -1037,7 +1154,46 @@ public class TaskUtil {
     setNextJobPurgeTime(workflow, currentTime, purgeInterval, rebalanceScheduler, manager);
   }
 
-  private static void setNextJobPurgeTime(String workflow, long currentTime, long purgeInterval,
+  /**
+   * Purge the given expired jobs of a workflow. Their nodes are removed in batches, and then the
+   * removed jobs are taken out of the DAG. A job that fails to be removed is kept in the DAG, so
+   * that its removal is tried again at the next purge.
+   * The workflow context is not updated here but in the main pipeline, which must be triggered by
+   * the caller. Otherwise, the context would be written concurrently.
+   * @param workflow
+   * @param jobs namespaced names of the expired jobs
+   * @param manager
+   * @param rebalanceScheduler
+   * @return the purged jobs
+   */
+  public static Set<String> purgeJobs(String workflow, Set<String> jobs, HelixManager manager,
+      RebalanceScheduler rebalanceScheduler) {
+    Set<String> purgedJobs =
+        removeJobs(manager.getHelixDataAccessor(), manager.getHelixPropertyStore(), jobs);
+    for (String job : jobs) {
+      rebalanceScheduler.removeScheduledRebalance(job);
+    }
+    if (purgedJobs.size() < jobs.size()) {
+      LOG.warn("Failed to clean up expired and completed jobs " + Sets.difference(jobs, purgedJobs)
+          + " from workflow " + workflow);
+    }
+    if (!purgedJobs.isEmpty() && !TaskUtil.removeJobsFromDag(manager.getHelixDataAccessor(),
+        workflow, purgedJobs, true)) {
+      LOG.warn("Error occurred while trying to remove jobs + " + purgedJobs + " from the workflow "
+          + workflow);
+    }
+    return purgedJobs;
+  }
+
+  /**
+   * Schedule the next job purge of a workflow, unless an earlier rebalance is already scheduled.
+   * @param workflow
+   * @param currentTime
+   * @param purgeInterval
+   * @param rebalanceScheduler
+   * @param manager
+   */
+  public static void setNextJobPurgeTime(String workflow, long currentTime, long purgeInterval,
       RebalanceScheduler rebalanceScheduler, HelixManager manager) {
     long nextPurgeTime = currentTime + purgeInterval;
     long currentScheduledTime = rebalanceScheduler.getRebalanceTime(workflow);
@@ -0,0 +1,172 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import com.google.common.base.Joiner;
+import org.apache.helix.HelixException;
+import org.apache.helix.store.HelixPropertyStore;
+import org.apache.helix.util.HashedWheelTimer;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.helix.zookeeper.zkclient.IZkDataListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Waits for conditions on workflow contexts without polling. All the waiters of a workflow share a
+ * single data watch on its context node, and the context is read once per change for all of them.
+ * The watch is removed once the last waiter of the workflow is done.
+ */
+class WorkflowContextWatcher {
+  private static final Logger LOG = LoggerFactory.getLogger(WorkflowContextWatcher.class);
+  private static final HashedWheelTimer TIMEOUT_TIMER = new HashedWheelTimer("TaskDriverWait");
+  // Longer timeouts would overflow the timer deadline
+  private static final long MAX_TIMEOUT = TimeUnit.DAYS.toMillis(3650);
+
+  private final HelixPropertyStore<ZNRecord> _propertyStore;
+  // workflow name -> watch, guarded by this
+  private final Map<String, WorkflowWatch> _watches = new HashMap<>();
+
+  WorkflowContextWatcher(HelixPropertyStore<ZNRecord> propertyStore) {
+    _propertyStore = propertyStore;
+  }
+
+  /**
+   * Wait until the condition is met by the context of the given workflow.
+   * The returned future may be completed on the ZK event thread or the timeout timer thread, so
+   * expensive dependent actions should use the async variants of CompletableFuture.
+   * @param workflow the workflow name
+   * @param condition returns the result once the condition is met and null otherwise. The
+   *          context it is called with is null if the workflow has no context.
+   * @param timeout timeout in milliseconds
+   * @param timeoutMessage builds the message of the HelixException the future fails with on
+   *          timeout, from the last seen context
+   * @return the future, it can be cancelled to stop waiting
+   */
+  <T> CompletableFuture<T> waitFor(String workflow, Function<WorkflowContext, T> condition,
+      long timeout, Function<WorkflowContext, String> timeoutMessage) {
+    Waiter<T> waiter = new Waiter<>(condition);
+    WorkflowWatch watch = addWaiter(workflow, waiter);
+    HashedWheelTimer.Timeout timer = TIMEOUT_TIMER.newTimeout(() -> waiter._future
+            .completeExceptionally(new HelixException(timeoutMessage.apply(waiter._lastContext))),
+        Math.min(timeout, MAX_TIMEOUT), TimeUnit.MILLISECONDS);
+    waiter._future.whenComplete((result, e) -> {
+      timer.cancel();
+      removeWaiter(watch, waiter);
+    });
+    // The watch is set before the first read, so no change in between can be missed
+    waiter.check(readContext(workflow));
+    return waiter._future;
+  }
+
+  /**
+   * @return number of workflows that are currently watched
+   */
+  synchronized int getWatchedWorkflowCount() {
+    return _watches.size();
+  }
+
+  private synchronized WorkflowWatch addWaiter(String workflow, Waiter<?> waiter) {
+    WorkflowWatch watch = _watches.get(workflow);
+    if (watch == null) {
+      watch = new WorkflowWatch(workflow);
+      _watches.put(workflow, watch);
+      _propertyStore.subscribeDataChanges(watch._path, watch);
+    }
+    watch._waiters.add(waiter);
+    return watch;
+  }
+
+  private synchronized void removeWaiter(WorkflowWatch watch, Waiter<?> waiter) {
+    watch._waiters.remove(waiter);
+    if (watch._waiters.isEmpty() && _watches.get(watch._workflow) == watch) {
+      _watches.remove(watch._workflow);
+      _propertyStore.unsubscribeDataChanges(watch._path, watch);
+    }
+  }
+
+  private WorkflowContext readContext(String workflow) {
+    return TaskUtil.getWorkflowContext(_propertyStore, workflow);
+  }
+
+  private static final class Waiter<T> {
+    private final Function<WorkflowContext, T> _condition;
+    private final CompletableFuture<T> _future = new CompletableFuture<>();
+    private volatile WorkflowContext _lastContext;
+
+    private Waiter(Function<WorkflowContext, T> condition) {
+      _condition = condition;
+    }
+
+    private void check(WorkflowContext context) {
+      if (_future.isDone()) {
+        return;
+      }
+      _lastContext = context;
+      try {
+        T result = _condition.apply(context);
+        if (result != null) {
+          _future.complete(result);
+        }
+      } catch (RuntimeException e) {
+        _future.completeExceptionally(e);
+      }
+    }
+  }
+
+  private final class WorkflowWatch implements IZkDataListener {
+    private final String _workflow;
+    private final String _path;
+    private final Set<Waiter<?>> _waiters = ConcurrentHashMap.newKeySet();
+
+    private WorkflowWatch(String workflow) {
+      _workflow = workflow;
+      _path = Joiner.on("/")
+          .join(TaskConstants.REBALANCER_CONTEXT_ROOT, workflow, TaskUtil.CONTEXT_NODE);
+    }
+
+    @Override
+    public void handleDataChange(String dataPath, Object data) {
+      // The ZkClient already read the new data to renew the watch, reuse it if possible
+      notifyWaiters(data instanceof ZNRecord ? new WorkflowContext((ZNRecord) data)
+          : readContext(_workflow));
+    }
+
+    @Override
+    public void handleDataDeleted(String dataPath) {
+      notifyWaiters(null);
+    }
+
+    private void notifyWaiters(WorkflowContext context) {
+      LOG.debug("Context of workflow {} changed, notify {} waiters", _workflow, _waiters.size());
+      for (Waiter<?> waiter : _waiters) {
+        waiter.check(context);
+      }
+    }
+  }
+}
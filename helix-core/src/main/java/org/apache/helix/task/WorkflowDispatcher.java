@@ -168,7 +168,7 @@ public class WorkflowDispatcher extends AbstractTaskDispatcher {
     if (!finalStates.contains(workflowCtx.getWorkflowState())
         && TargetState.STOP.equals(targetState)) {
       LOG.info("Workflow " + workflow + " is marked as stopped. Workflow state is " + workflowCtx.getWorkflowState());
-      if (isWorkflowStopped(workflowCtx, workflowCfg)) {
+      if (isWorkflowStopped(workflowCtx, workflowCfg, runtimeJobDag)) {
         workflowCtx.setWorkflowState(TaskState.STOPPED);
         _clusterDataCache.updateWorkflowContext(workflow, workflowCtx);
       }
@@ -248,10 +248,12 @@ public class WorkflowDispatcher extends AbstractTaskDispatcher {
       return;
     }
 
-    int inCompleteAllJobCount = TaskUtil.getInCompleteJobCount(workflowCfg, workflowCtx);
+    RuntimeJobDag runtimeJobDag = clusterDataCache.getTaskDataCache().getRuntimeJobDag(workflow);
+    int inCompleteAllJobCount =
+        TaskUtil.getInCompleteJobCount(workflowCfg, workflowCtx, runtimeJobDag);
     int scheduledJobs = 0;
     long timeToSchedule = Long.MAX_VALUE;
-    JobDag jobDag = clusterDataCache.getTaskDataCache().getRuntimeJobDag(workflow);
+    JobDag jobDag = runtimeJobDag;
     if (jobDag == null) {
       jobDag = workflowCfg.getJobDag();
     }
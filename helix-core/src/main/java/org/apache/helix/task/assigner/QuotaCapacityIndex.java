@@ -0,0 +1,170 @@
+package org.apache.helix.task.assigner;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.helix.model.LiveInstance;
+
+/**
+ * Index of AssignableInstances by the remaining thread capacity of every quota type, so the
+ * instance with the most remaining capacity of a quota type can be found in log time instead of
+ * ranking all the instances for every job. For each quota type the instances are kept in buckets
+ * keyed by remaining capacity; an instance is moved to another bucket when it is re-indexed
+ * after an assignment or a release.
+ */
+public class QuotaCapacityIndex {
+  private static final String RESOURCE_TYPE =
+      LiveInstance.InstanceResourceType.TASK_EXEC_THREAD.name();
+
+  // quota type -> remaining capacity -> instances
+  private final Map<String, TreeMap<Integer, Set<AssignableInstance>>> _buckets = new HashMap<>();
+  // instance name -> quota type -> remaining capacity currently indexed
+  private final Map<String, Map<String, Integer>> _indexedCapacity = new HashMap<>();
+  private final Map<String, AssignableInstance> _instances = new HashMap<>();
+
+  /**
+   * Add an instance or re-index it after its capacity or usage changed
+   */
+  public synchronized void update(AssignableInstance instance) {
+    String instanceName = instance.getInstanceName();
+    AssignableInstance previous = _instances.put(instanceName, instance);
+    if (previous != null && previous != instance) {
+      // the instance was replaced, drop all the entries of the previous object
+      removeEntries(previous, _indexedCapacity.remove(instanceName));
+    }
+    Map<String, Integer> indexed = _indexedCapacity.get(instanceName);
+    if (indexed == null) {
+      indexed = new HashMap<>();
+      _indexedCapacity.put(instanceName, indexed);
+    }
+
+    Map<String, Integer> totalCapacity = instance.getTotalCapacity().get(RESOURCE_TYPE);
+    Map<String, Integer> usedCapacity = instance.getUsedCapacity().get(RESOURCE_TYPE);
+    Map<String, Integer> remainingCapacity = new HashMap<>();
+    if (totalCapacity != null && usedCapacity != null) {
+      for (Map.Entry<String, Integer> entry : totalCapacity.entrySet()) {
+        Integer used = usedCapacity.get(entry.getKey());
+        remainingCapacity.put(entry.getKey(), entry.getValue() - (used == null ? 0 : used));
+      }
+    }
+
+    Iterator<Map.Entry<String, Integer>> iter = indexed.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<String, Integer> entry = iter.next();
+      Integer remaining = remainingCapacity.get(entry.getKey());
+      if (!entry.getValue().equals(remaining)) {
+        removeEntry(entry.getKey(), entry.getValue(), instance);
+        iter.remove();
+      }
+    }
+    for (Map.Entry<String, Integer> entry : remainingCapacity.entrySet()) {
+      if (!indexed.containsKey(entry.getKey())) {
+        TreeMap<Integer, Set<AssignableInstance>> buckets = _buckets.get(entry.getKey());
+        if (buckets == null) {
+          buckets = new TreeMap<>();
+          _buckets.put(entry.getKey(), buckets);
+        }
+        Set<AssignableInstance> bucket = buckets.get(entry.getValue());
+        if (bucket == null) {
+          bucket = new LinkedHashSet<>();
+          buckets.put(entry.getValue(), bucket);
+        }
+        bucket.add(instance);
+        indexed.put(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  /**
+   * Remove an instance from the index
+   */
+  public synchronized void remove(String instanceName) {
+    AssignableInstance instance = _instances.remove(instanceName);
+    if (instance != null) {
+      removeEntries(instance, _indexedCapacity.remove(instanceName));
+    }
+  }
+
+  public synchronized void clear() {
+    _buckets.clear();
+    _indexedCapacity.clear();
+    _instances.clear();
+  }
+
+  /**
+   * Returns the instance with the most remaining capacity of the quota type, or null if no instance
+   * is indexed for the quota type. The returned instance may have no remaining capacity.
+   * @param quotaType quota type
+   * @return AssignableInstance
+   */
+  public synchronized AssignableInstance peek(String quotaType) {
+    TreeMap<Integer, Set<AssignableInstance>> buckets = _buckets.get(quotaType);
+    if (buckets == null || buckets.isEmpty()) {
+      return null;
+    }
+    return buckets.lastEntry().getValue().iterator().next();
+  }
+
+  /**
+   * Check whether the index ranks exactly the given instances for the quota type, in which case
+   * peek() is equivalent to ranking the given instances.
+   * @param quotaType quota type
+   * @param instanceNames names of the instances to rank
+   */
+  public synchronized boolean covers(String quotaType, Collection<String> instanceNames) {
+    TreeMap<Integer, Set<AssignableInstance>> buckets = _buckets.get(quotaType);
+    if (buckets == null || instanceNames.size() != _instances.size()) {
+      return false;
+    }
+    int count = 0;
+    for (Set<AssignableInstance> bucket : buckets.values()) {
+      count += bucket.size();
+    }
+    return count == _instances.size() && instanceNames.containsAll(_instances.keySet());
+  }
+
+  private void removeEntries(AssignableInstance instance, Map<String, Integer> indexed) {
+    if (indexed != null) {
+      for (Map.Entry<String, Integer> entry : indexed.entrySet()) {
+        removeEntry(entry.getKey(), entry.getValue(), instance);
+      }
+    }
+  }
+
+  private void removeEntry(String quotaType, int remaining, AssignableInstance instance) {
+    TreeMap<Integer, Set<AssignableInstance>> buckets = _buckets.get(quotaType);
+    Set<AssignableInstance> bucket = buckets.get(remaining);
+    bucket.remove(instance);
+    if (bucket.isEmpty()) {
+      buckets.remove(remaining);
+      if (buckets.isEmpty()) {
+        _buckets.remove(quotaType);
+      }
+    }
+  }
+}
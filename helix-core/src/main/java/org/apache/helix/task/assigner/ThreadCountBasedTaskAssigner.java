@@ -75,31 +75,37 @@ public class ThreadCountBasedTaskAssigner implements TaskAssigner {
   public Map<String, TaskAssignResult> assignTasks(
       AssignableInstanceManager assignableInstanceManager, Collection<String> instances,
       Iterable<TaskConfig> tasks, String quotaType) {
-    Iterable<AssignableInstance> assignableInstances = new HashSet<>();
-    // Only add the AssignableInstances that are also in instances
-    for (String instance : instances) {
-      ((HashSet<AssignableInstance>) assignableInstances)
-          .add(assignableInstanceManager.getAssignableInstance(instance));
-    }
-
     if (tasks == null || !tasks.iterator().hasNext()) {
       logger.warn("No task to assign!");
       return Collections.emptyMap();
     }
-    if (assignableInstances == null || !assignableInstances.iterator().hasNext()) {
-      logger.warn("No instance to assign!");
-      return buildNoInstanceAssignment(tasks, quotaType);
-    }
     if (quotaType == null || quotaType.equals("") || quotaType.equals("null")) {
       // Sometimes null is stored as a String literal
       logger.warn("Quota type is null. Assigning it as DEFAULT type!");
       quotaType = AssignableInstance.DEFAULT_QUOTA_TYPE;
     }
 
-    logger.info("Assigning tasks with quota type {}", quotaType);
+    // When the tasks can be assigned to all the instances, rank them with the index maintained by
+    // AssignableInstanceManager instead of building a sched queue of all the instances
+    QuotaCapacityIndex index = assignableInstanceManager.getQuotaCapacityIndex();
+    String indexQuotaType = getIndexQuotaType(index, instances, quotaType);
+    PriorityQueue<AssignableInstance> queue = null;
+    if (indexQuotaType == null) {
+      Iterable<AssignableInstance> assignableInstances = new HashSet<>();
+      // Only add the AssignableInstances that are also in instances
+      for (String instance : instances) {
+        ((HashSet<AssignableInstance>) assignableInstances)
+            .add(assignableInstanceManager.getAssignableInstance(instance));
+      }
+      if (!assignableInstances.iterator().hasNext()) {
+        logger.warn("No instance to assign!");
+        return buildNoInstanceAssignment(tasks, quotaType);
+      }
+      // Build a sched queue
+      queue = buildSchedQueue(quotaType, assignableInstances);
+    }
 
-    // Build a sched queue
-    PriorityQueue<AssignableInstance> queue = buildSchedQueue(quotaType, assignableInstances);
+    logger.info("Assigning tasks with quota type {}", quotaType);
 
     // Assign
     Map<String, TaskAssignResult> assignResults = new HashMap<>();
@@ -127,8 +133,11 @@ public class ThreadCountBasedTaskAssigner implements TaskAssigner {
       }
 
       // Try to assign the task to least used instance
-      AssignableInstance instance = queue.poll();
-      TaskAssignResult result = instance.tryAssign(task, quotaType);
+      AssignableInstance instance = queue == null ? index.peek(indexQuotaType) : queue.poll();
+      // If the task is accepted by the instance, it is also assigned to the instance. This
+      // re-ranks the instance in the index
+      TaskAssignResult result =
+          assignableInstanceManager.reserve(instance.getInstanceName(), task, quotaType);
       assignResults.put(task.getId(), result);
 
       if (!result.isSuccessful()) {
@@ -136,17 +145,33 @@ public class ThreadCountBasedTaskAssigner implements TaskAssigner {
         // subsequent tasks
         lastFailure = result;
       } else {
-        // If the task is successfully accepted by the instance, assign it to the instance
-        assignableInstanceManager.assign(instance.getInstanceName(), result);
-
         // requeue the instance to rank again
-        queue.offer(instance);
+        if (queue != null) {
+          queue.offer(instance);
+        }
       }
     }
     logger.info("Finished assigning tasks with quota type {}", quotaType);
     return assignResults;
   }
 
+  /**
+   * Returns the quota type to rank the instances by in the index, or null if the index does not
+   * rank exactly the given instances. Instances that do not support the quota type are ranked by
+   * the DEFAULT quota type, because the tasks will be assigned as DEFAULT.
+   */
+  private String getIndexQuotaType(QuotaCapacityIndex index, Collection<String> instances,
+      String quotaType) {
+    if (index.covers(quotaType, instances)) {
+      return quotaType;
+    }
+    if (index.peek(quotaType) == null
+        && index.covers(AssignableInstance.DEFAULT_QUOTA_TYPE, instances)) {
+      return AssignableInstance.DEFAULT_QUOTA_TYPE;
+    }
+    return null;
+  }
+
   private PriorityQueue<AssignableInstance> buildSchedQueue(String quotaType,
       Iterable<AssignableInstance> instances) {
     AssignableInstanceComparator comparator = new AssignableInstanceComparator(quotaType);
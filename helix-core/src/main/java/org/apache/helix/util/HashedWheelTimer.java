@@ -0,0 +1,446 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.monitoring.mbeans.TimerWheelMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel for large numbers of short-lived timeouts, e.g. message execution timeouts
+ * and async callback expirations, which are mostly cancelled before they fire.
+ * Scheduling and cancellation are O(1): new and cancelled timeouts are queued and moved into, or
+ * unlinked from, the wheel buckets by a single daemon worker thread on its next tick. The price is
+ * that timeouts fire with the precision of one tick.
+ * Expired tasks run on the worker thread, so they are expected to be short, unless the timer is
+ * given an executor to run them on.
+ */
+public class HashedWheelTimer {
+  private static final Logger LOG = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+  public static final long DEFAULT_TICK_DURATION_MS = 100;
+  public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+  // bound the work of a single tick, so a burst of new timeouts does not delay expirations
+  private static final int MAX_TIMEOUTS_TRANSFERRED_PER_TICK = 100000;
+
+  private static final int WORKER_INIT = 0;
+  private static final int WORKER_STARTED = 1;
+  private static final int WORKER_STOPPED = 2;
+
+  private final String _name;
+  private final long _tickDurationNs;
+  private final Bucket[] _wheel;
+  private final int _mask;
+  private final Thread _workerThread;
+  private final AtomicInteger _workerState = new AtomicInteger(WORKER_INIT);
+  private final Queue<Timeout> _newTimeouts = new ConcurrentLinkedQueue<>();
+  private final Queue<Timeout> _cancelledTimeouts = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger _pendingTimeouts = new AtomicInteger();
+  private final CountDownLatch _startTimeInitialized = new CountDownLatch(1);
+  // runs the expired tasks, null to run them on the worker thread
+  private final Executor _taskExecutor;
+
+  private volatile long _startTime = 0;
+  private volatile long _lastTickLagMs = 0;
+  private volatile TimerWheelMonitor _monitor;
+
+  /**
+   * Create a timer with the default tick duration and wheel size
+   * @param name name of the timer, used for the worker thread name
+   */
+  public HashedWheelTimer(String name) {
+    this(name, DEFAULT_TICK_DURATION_MS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL);
+  }
+
+  /**
+   * Create a timer
+   * @param name name of the timer, used for the worker thread name
+   * @param tickDuration the duration of one tick, which is the precision of the timeouts
+   * @param unit time unit of the tick duration
+   * @param ticksPerWheel number of buckets of the wheel, rounded up to a power of two
+   */
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+    this(name, tickDuration, unit, ticksPerWheel, null);
+  }
+
+  /**
+   * Create a timer whose expired tasks run on the given executor
+   * @param name name of the timer, used for the worker thread name
+   * @param taskExecutor executor of the expired tasks
+   */
+  public HashedWheelTimer(String name, Executor taskExecutor) {
+    this(name, DEFAULT_TICK_DURATION_MS, TimeUnit.MILLISECONDS, DEFAULT_TICKS_PER_WHEEL,
+        taskExecutor);
+  }
+
+  /**
+   * Create a timer
+   * @param name name of the timer, used for the worker thread name
+   * @param tickDuration the duration of one tick, which is the precision of the timeouts
+   * @param unit time unit of the tick duration
+   * @param ticksPerWheel number of buckets of the wheel, rounded up to a power of two
+   * @param taskExecutor executor of the expired tasks, or null to run them on the worker thread
+   */
+  public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel,
+      Executor taskExecutor) {
+    if (tickDuration <= 0 || ticksPerWheel <= 0) {
+      throw new IllegalArgumentException(
+          "tickDuration and ticksPerWheel must be positive: " + tickDuration + ", " + ticksPerWheel);
+    }
+    _name = name;
+    _taskExecutor = taskExecutor;
+    _tickDurationNs = unit.toNanos(tickDuration);
+
+    int wheelSize = 1;
+    while (wheelSize < ticksPerWheel) {
+      wheelSize <<= 1;
+    }
+    _wheel = new Bucket[wheelSize];
+    for (int i = 0; i < wheelSize; i++) {
+      _wheel[i] = new Bucket();
+    }
+    _mask = wheelSize - 1;
+
+    _workerThread = new Thread(new Worker(), "HashedWheelTimer-" + name);
+    _workerThread.setDaemon(true);
+  }
+
+  /**
+   * Set the monitor that receives the tick lag and the number of pending timeouts
+   * @param monitor the monitor, or null to stop reporting
+   */
+  public void setMonitor(TimerWheelMonitor monitor) {
+    _monitor = monitor;
+  }
+
+  /**
+   * Schedule a task to run once after the given delay. The worker thread is started on the first
+   * call.
+   * @param task the task to run
+   * @param delay delay before the task runs
+   * @param unit time unit of the delay
+   * @return handle to cancel the timeout
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    if (task == null) {
+      throw new IllegalArgumentException("task can't be null");
+    }
+    start();
+    long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - _startTime;
+    Timeout timeout = new Timeout(task, deadline);
+    _pendingTimeouts.incrementAndGet();
+    _newTimeouts.add(timeout);
+    return timeout;
+  }
+
+  private void start() {
+    switch (_workerState.get()) {
+      case WORKER_INIT:
+        if (_workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+          _workerThread.start();
+        }
+        break;
+      case WORKER_STARTED:
+        break;
+      default:
+        throw new HelixException("Timer " + _name + " has already been stopped");
+    }
+    // wait until the worker has initialized the start time
+    boolean interrupted = false;
+    while (_startTime == 0) {
+      try {
+        _startTimeInitialized.await();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Stop the worker thread. Timeouts that have not fired are dropped.
+   */
+  public void stop() {
+    if (Thread.currentThread() == _workerThread) {
+      throw new HelixException("Timer " + _name + " can't be stopped from one of its tasks");
+    }
+    if (_workerState.getAndSet(WORKER_STOPPED) == WORKER_STARTED) {
+      _workerThread.interrupt();
+      try {
+        _workerThread.join(_tickDurationNs / 1000000 + 1000);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * @return number of timeouts that are scheduled and have neither fired nor been cancelled
+   */
+  public int getPendingTimeouts() {
+    return _pendingTimeouts.get();
+  }
+
+  /**
+   * @return how late, in ms, the worker processed its most recent tick
+   */
+  public long getLastTickLagMs() {
+    return _lastTickLagMs;
+  }
+
+  private class Worker implements Runnable {
+    private long _tick = 0;
+
+    @Override
+    public void run() {
+      long startTime = System.nanoTime();
+      // 0 is used as the not-yet-started marker
+      _startTime = startTime == 0 ? 1 : startTime;
+      _startTimeInitialized.countDown();
+
+      while (_workerState.get() == WORKER_STARTED) {
+        long now = waitForNextTick();
+        if (now < 0) {
+          continue;
+        }
+        long tickDeadline = _tickDurationNs * (_tick + 1);
+        _lastTickLagMs = TimeUnit.NANOSECONDS.toMillis(now - tickDeadline);
+
+        processCancelledTimeouts();
+        transferNewTimeouts();
+        int expired = _wheel[(int) (_tick & _mask)].expireTimeouts(now);
+        _tick++;
+
+        TimerWheelMonitor monitor = _monitor;
+        if (monitor != null) {
+          monitor.updateTick(_lastTickLagMs, _pendingTimeouts.get(), expired);
+        }
+      }
+      LOG.info("HashedWheelTimer {} stopped, dropping {} pending timeouts", _name,
+          _pendingTimeouts.get());
+    }
+
+    /**
+     * @return current time relative to the start time, or -1 if interrupted by stop()
+     */
+    private long waitForNextTick() {
+      long deadline = _tickDurationNs * (_tick + 1);
+      while (true) {
+        long currentTime = System.nanoTime() - _startTime;
+        long sleepTimeMs = (deadline - currentTime + 999999) / 1000000;
+        if (sleepTimeMs <= 0) {
+          return currentTime;
+        }
+        try {
+          Thread.sleep(sleepTimeMs);
+        } catch (InterruptedException e) {
+          if (_workerState.get() == WORKER_STOPPED) {
+            return -1;
+          }
+        }
+      }
+    }
+
+    private void transferNewTimeouts() {
+      for (int i = 0; i < MAX_TIMEOUTS_TRANSFERRED_PER_TICK; i++) {
+        Timeout timeout = _newTimeouts.poll();
+        if (timeout == null) {
+          break;
+        }
+        if (timeout.isCancelled()) {
+          // counted down when its entry in the cancelled queue is processed
+          continue;
+        }
+        long calculatedTick = timeout._deadline / _tickDurationNs;
+        timeout._remainingRounds = (calculatedTick - _tick) / _wheel.length;
+        // a timeout that is already due goes into the current bucket
+        long ticks = Math.max(calculatedTick, _tick);
+        _wheel[(int) (ticks & _mask)].add(timeout);
+      }
+    }
+
+    private void processCancelledTimeouts() {
+      Timeout timeout;
+      while ((timeout = _cancelledTimeouts.poll()) != null) {
+        if (timeout._bucket != null) {
+          timeout._bucket.remove(timeout);
+        }
+        _pendingTimeouts.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Handle of a scheduled task
+   */
+  public final class Timeout {
+    private static final int STATE_INIT = 0;
+    private static final int STATE_CANCELLED = 1;
+    private static final int STATE_EXPIRED = 2;
+
+    private final Runnable _task;
+    private final long _deadline;
+    private final AtomicInteger _state = new AtomicInteger(STATE_INIT);
+
+    // the fields below are only accessed by the worker thread
+    private long _remainingRounds;
+    private Bucket _bucket;
+    private Timeout _next;
+    private Timeout _prev;
+
+    private Timeout(Runnable task, long deadline) {
+      _task = task;
+      _deadline = deadline;
+    }
+
+    /**
+     * Cancel the timeout. It is ok to cancel multiple times.
+     * @return true if the timeout was cancelled by this call, false if it has already fired or been
+     *         cancelled
+     */
+    public boolean cancel() {
+      if (!_state.compareAndSet(STATE_INIT, STATE_CANCELLED)) {
+        return false;
+      }
+      _cancelledTimeouts.add(this);
+      return true;
+    }
+
+    public boolean isCancelled() {
+      return _state.get() == STATE_CANCELLED;
+    }
+
+    public boolean isExpired() {
+      return _state.get() == STATE_EXPIRED;
+    }
+
+    private boolean expire() {
+      if (!_state.compareAndSet(STATE_INIT, STATE_EXPIRED)) {
+        // cancelled, counted down when its entry in the cancelled queue is processed
+        return false;
+      }
+      _pendingTimeouts.decrementAndGet();
+      if (_taskExecutor != null) {
+        try {
+          _taskExecutor.execute(this::runTask);
+          return true;
+        } catch (RejectedExecutionException e) {
+          LOG.warn("Executor of timer {} rejected a timeout task, run it on the worker thread",
+              _name, e);
+        }
+      }
+      runTask();
+      return true;
+    }
+
+    private void runTask() {
+      try {
+        _task.run();
+      } catch (Throwable t) {
+        LOG.warn("Timeout task threw an exception in timer " + _name, t);
+      }
+    }
+
+    private void reschedule() {
+      _newTimeouts.add(this);
+    }
+  }
+
+  /**
+   * Doubly linked list of timeouts, so a cancelled timeout can be unlinked in O(1)
+   */
+  private static final class Bucket {
+    private Timeout _head;
+    private Timeout _tail;
+
+    void add(Timeout timeout) {
+      timeout._bucket = this;
+      if (_head == null) {
+        _head = _tail = timeout;
+      } else {
+        _tail._next = timeout;
+        timeout._prev = _tail;
+        _tail = timeout;
+      }
+    }
+
+    /**
+     * Fire all timeouts of this bucket that are due in the current round
+     * @return number of fired timeouts
+     */
+    int expireTimeouts(long now) {
+      int expired = 0;
+      Timeout timeout = _head;
+      while (timeout != null) {
+        Timeout next = timeout._next;
+        if (timeout._remainingRounds <= 0) {
+          remove(timeout);
+          if (timeout._deadline <= now) {
+            if (timeout.expire()) {
+              expired++;
+            }
+          } else {
+            // should not happen as a timeout is always put into the bucket of its deadline, put it
+            // back so that it still fires, and is still counted as pending
+            LOG.warn("Timeout deadline {} is later than the current tick {}", timeout._deadline,
+                now);
+            timeout.reschedule();
+          }
+        } else if (timeout.isCancelled()) {
+          remove(timeout);
+        } else {
+          timeout._remainingRounds--;
+        }
+        timeout = next;
+      }
+      return expired;
+    }
+
+    void remove(Timeout timeout) {
+      if (timeout._bucket != this) {
+        return;
+      }
+      if (timeout._prev != null) {
+        timeout._prev._next = timeout._next;
+      } else {
+        _head = timeout._next;
+      }
+      if (timeout._next != null) {
+        timeout._next._prev = timeout._prev;
+      } else {
+        _tail = timeout._prev;
+      }
+      timeout._prev = null;
+      timeout._next = null;
+      timeout._bucket = null;
+    }
+  }
+}
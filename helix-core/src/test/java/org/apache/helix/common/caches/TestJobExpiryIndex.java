@@ -0,0 +1,74 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestJobExpiryIndex {
+
+  @Test
+  public void testExpiredJobsInOrder() {
+    JobExpiryIndex index = new JobExpiryIndex();
+    index.update("job_3", 300L);
+    index.update("job_1", 100L);
+    index.update("job_2", 200L);
+    index.update("job_4", 200L);
+
+    Assert.assertEquals(toList(index.getExpiredJobs(50L)), Collections.emptyList());
+    Assert.assertEquals(toList(index.getExpiredJobs(100L)), Collections.singletonList("job_1"));
+    Assert.assertEquals(toList(index.getExpiredJobs(250L)),
+        Arrays.asList("job_1", "job_2", "job_4"));
+
+    // Move a job to a later expiry time
+    index.update("job_1", 400L);
+    Assert.assertEquals(toList(index.getExpiredJobs(1000L)),
+        Arrays.asList("job_2", "job_4", "job_3", "job_1"));
+    Assert.assertEquals(index.size(), 4);
+  }
+
+  @Test
+  public void testRemoveJobs() {
+    JobExpiryIndex index = new JobExpiryIndex();
+    index.update("job_1", 100L);
+    index.update("job_2", 100L);
+    index.update("job_3", 300L);
+
+    index.remove("job_1");
+    Assert.assertFalse(index.contains("job_1"));
+    index.retainAll(new HashSet<>(Arrays.asList("job_1", "job_3")));
+    Assert.assertFalse(index.contains("job_2"));
+    Assert.assertEquals(toList(index.getExpiredJobs(1000L)), Collections.singletonList("job_3"));
+    Assert.assertEquals(index.size(), 1);
+  }
+
+  private List<String> toList(Iterator<String> jobs) {
+    List<String> list = new ArrayList<>();
+    jobs.forEachRemaining(list::add);
+    return list;
+  }
+}
@@ -0,0 +1,113 @@
+package org.apache.helix.common.caches;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestTaskDataFingerprint {
+
+  @Test
+  public void testUnchangedRecord() {
+    ZNRecord record = createRecord();
+    TaskDataFingerprint fingerprint = TaskDataFingerprint.of(record);
+    // A copy with the fields inserted in another order has the same fingerprint
+    ZNRecord copy = new ZNRecord(record.getId());
+    for (String mapField : Arrays.asList("2", "1", "0")) {
+      copy.setMapField(mapField, new HashMap<>(record.getMapField(mapField)));
+    }
+    copy.setListField("list", record.getListField("list"));
+    copy.setSimpleField("STATE", "IN_PROGRESS");
+    copy.setSimpleField("NAME", "job");
+
+    TaskDataFingerprint copyFingerprint = TaskDataFingerprint.of(copy);
+    Assert.assertEquals(copyFingerprint, fingerprint);
+    Assert.assertFalse(copyFingerprint.isRootChanged(fingerprint));
+    Assert.assertTrue(copyFingerprint.getChangedMapFields(fingerprint).isEmpty());
+    Assert.assertEquals(copyFingerprint.getSize(), fingerprint.getSize());
+  }
+
+  @Test
+  public void testChangedFields() {
+    ZNRecord record = createRecord();
+    TaskDataFingerprint fingerprint = TaskDataFingerprint.of(record);
+
+    record.getMapField("1").put("STATE", "COMPLETED");
+    record.getMapFields().remove("2");
+    record.setMapField("3", Collections.singletonMap("STATE", "INIT"));
+    TaskDataFingerprint changed = TaskDataFingerprint.of(record);
+    Assert.assertNotEquals(changed, fingerprint);
+    Assert.assertFalse(changed.isRootChanged(fingerprint));
+    Assert.assertEquals(changed.getChangedMapFields(fingerprint),
+        new HashSet<>(Arrays.asList("1", "2", "3")));
+
+    record.setSimpleField("STATE", "COMPLETED");
+    Assert.assertTrue(TaskDataFingerprint.of(record).isRootChanged(changed));
+
+    // The values are not mixed up with the keys
+    record.setListField("list", Arrays.asList("ab", "c"));
+    TaskDataFingerprint list = TaskDataFingerprint.of(record);
+    record.setListField("list", Arrays.asList("a", "bc"));
+    Assert.assertTrue(TaskDataFingerprint.of(record).isRootChanged(list));
+  }
+
+  @Test
+  public void testTimestampOnlyChange() {
+    ZNRecord record = createRecord();
+    record.setSimpleField("START_TIME", "1000");
+    TaskDataFingerprint fingerprint = TaskDataFingerprint.of(record);
+
+    record.setSimpleField("LAST_PURGE_TIME", "2000");
+    TaskDataFingerprint timestamps = TaskDataFingerprint.of(record);
+    Assert.assertNotEquals(timestamps, fingerprint);
+    Assert.assertTrue(timestamps.isRootChanged(fingerprint));
+    Assert.assertTrue(timestamps.isOnlyTimestampChanged(fingerprint));
+    Assert.assertEquals(TaskDataFingerprint.getTimestampFields(record).keySet(),
+        Collections.singleton("LAST_PURGE_TIME"));
+
+    // The lifecycle timestamps are changes like the other simple fields
+    record.setSimpleField("FINISH_TIME", "3000");
+    Assert.assertFalse(TaskDataFingerprint.of(record).isOnlyTimestampChanged(timestamps));
+
+    record.setSimpleField("STATE", "COMPLETED");
+    Assert.assertFalse(TaskDataFingerprint.of(record).isOnlyTimestampChanged(fingerprint));
+  }
+
+  private ZNRecord createRecord() {
+    ZNRecord record = new ZNRecord("TaskContext");
+    record.setSimpleField("NAME", "job");
+    record.setSimpleField("STATE", "IN_PROGRESS");
+    record.setListField("list", Arrays.asList("a", "b"));
+    for (int i = 0; i < 3; i++) {
+      Map<String, String> mapField = new HashMap<>();
+      mapField.put("STATE", "RUNNING");
+      mapField.put("ASSIGNED_PARTICIPANT", "localhost_" + (12918 + i));
+      record.setMapField(String.valueOf(i), mapField);
+    }
+    return record;
+  }
+}
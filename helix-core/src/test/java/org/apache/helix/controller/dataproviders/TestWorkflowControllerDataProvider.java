@@ -70,4 +70,22 @@ public class TestWorkflowControllerDataProvider extends TaskTestBase {
     Assert.assertTrue(expectedValuesAchieved);
 
   }
+
+  @Test
+  public void testReserveParticipantTaskSlots() {
+    WorkflowControllerDataProvider cache =
+        new WorkflowControllerDataProvider("CLUSTER_" + TestHelper.getTestClassName());
+    String instance = "localhost_1";
+    cache.setParticipantActiveTaskCount(instance, 8);
+
+    // Only the remaining capacity can be reserved
+    Assert.assertEquals(cache.reserveParticipantTaskSlots(instance, 10, 5), 2);
+    Assert.assertEquals(cache.getParticipantActiveTaskCount(instance).intValue(), 10);
+    Assert.assertEquals(cache.reserveParticipantTaskSlots(instance, 10, 5), 0);
+
+    // Unused slots are given back
+    cache.releaseParticipantTaskSlots(instance, 1);
+    Assert.assertEquals(cache.getParticipantActiveTaskCount(instance).intValue(), 9);
+    Assert.assertEquals(cache.reserveParticipantTaskSlots(instance, 10, 5), 1);
+  }
 }
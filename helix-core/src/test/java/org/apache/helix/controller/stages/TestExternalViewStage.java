@@ -19,17 +19,23 @@ package org.apache.helix.controller.stages;
  * under the License.
  */
 
+import java.util.Collections;
 import java.util.List;
 
+import org.apache.helix.HelixConstants;
 import org.apache.helix.HelixDataAccessor;
 import org.apache.helix.HelixManager;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.TestHelper;
 import org.apache.helix.ZkUnitTestBase;
 import org.apache.helix.controller.dataproviders.ResourceControllerDataProvider;
 import org.apache.helix.controller.pipeline.Pipeline;
 import org.apache.helix.manager.zk.ZKHelixDataAccessor;
 import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.model.CurrentState;
 import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.LiveInstance;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
@@ -87,4 +93,96 @@ public class TestExternalViewStage extends ZkUnitTestBase {
     deleteLiveInstances(clusterName);
     deleteCluster(clusterName);
   }
+
+  @Test
+  public void testStateEndTimes() throws Exception {
+    String clusterName = "CLUSTER_" + TestHelper.getTestMethodName();
+
+    HelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    HelixManager manager = new DummyClusterManager(clusterName, accessor);
+
+    setupIdealState(clusterName, new int[] {
+        0, 1
+    }, new String[] {
+        "TestDB"
+    }, 1, 2);
+    List<LiveInstance> liveInstances = setupLiveInstances(clusterName, new int[] {
+        0, 1
+    });
+    setupStateModel(clusterName);
+
+    ClusterEvent event = new ClusterEvent(ClusterEventType.Unknown);
+    ResourceControllerDataProvider cache = new ResourceControllerDataProvider(clusterName);
+    event.addAttribute(AttributeName.helixmanager.name(), manager);
+    event.addAttribute(AttributeName.ControllerDataProvider.name(), cache);
+
+    ExternalViewComputeStage externalViewComputeStage;
+    System.setProperty(SystemPropertyKeys.CONTROLLER_EXTERNAL_VIEW_STATE_END_TIME_ENABLED, "true");
+    try {
+      externalViewComputeStage = new ExternalViewComputeStage();
+    } finally {
+      System.clearProperty(SystemPropertyKeys.CONTROLLER_EXTERNAL_VIEW_STATE_END_TIME_ENABLED);
+    }
+    PropertyKey externalViewKey = accessor.keyBuilder().externalView("TestDB");
+
+    setCurrentState(accessor, liveInstances.get(0), "MASTER", 1000L);
+    setCurrentState(accessor, liveInstances.get(1), "SLAVE", 2000L);
+    runExternalViewStage(event, cache, externalViewComputeStage);
+    ExternalView externalView = accessor.getProperty(externalViewKey);
+    Assert.assertEquals(externalView.getStateEndTime("TestDB_0"), 2000L);
+    int version = externalView.getStat().getVersion();
+
+    // A newer end time without a state change does not rewrite the external view
+    setCurrentState(accessor, liveInstances.get(0), "MASTER", 3000L);
+    runExternalViewStage(event, cache, externalViewComputeStage);
+    externalView = accessor.getProperty(externalViewKey);
+    Assert.assertEquals(externalView.getStateEndTime("TestDB_0"), 2000L);
+    Assert.assertEquals(externalView.getStat().getVersion(), version);
+
+    // The end time does not move backward
+    setCurrentState(accessor, liveInstances.get(0), "SLAVE", 1500L);
+    runExternalViewStage(event, cache, externalViewComputeStage);
+    externalView = accessor.getProperty(externalViewKey);
+    Assert.assertEquals(externalView.getStateMap("TestDB_0").get("localhost_0"), "SLAVE");
+    Assert.assertEquals(externalView.getStateEndTime("TestDB_0"), 2000L);
+
+    setCurrentState(accessor, liveInstances.get(1), "MASTER", 4000L);
+    runExternalViewStage(event, cache, externalViewComputeStage);
+    externalView = accessor.getProperty(externalViewKey);
+    Assert.assertEquals(externalView.getStateEndTime("TestDB_0"), 4000L);
+    // The end times are kept in their own field, not as partitions or per partition fields
+    Assert.assertEquals(externalView.getPartitionSet().size(), 1);
+    Assert.assertEquals(externalView.getRecord().getListFields().keySet(),
+        Collections.singleton(ExternalView.ExternalViewProperty.STATE_END_TIMES.name()));
+
+    if (manager.isConnected()) {
+      manager.disconnect(); // For DummyClusterManager, this is not necessary
+    }
+    deleteLiveInstances(clusterName);
+    deleteCluster(clusterName);
+  }
+
+  private void setCurrentState(HelixDataAccessor accessor, LiveInstance liveInstance,
+      String state, long endTime) {
+    CurrentState currentState = new CurrentState("TestDB");
+    currentState.setSessionId(liveInstance.getEphemeralOwner());
+    currentState.setStateModelDefRef("MasterSlave");
+    currentState.setState("TestDB_0", state);
+    currentState.setEndTime("TestDB_0", endTime);
+    accessor.setProperty(accessor.keyBuilder()
+        .currentState(liveInstance.getInstanceName(), liveInstance.getEphemeralOwner(), "TestDB"),
+        currentState);
+  }
+
+  private void runExternalViewStage(ClusterEvent event, ResourceControllerDataProvider cache,
+      ExternalViewComputeStage externalViewComputeStage) throws Exception {
+    cache.notifyDataChange(HelixConstants.ChangeType.CURRENT_STATE);
+    Pipeline dataRefresh = new Pipeline();
+    dataRefresh.addStage(new ReadClusterDataStage());
+    runPipeline(event, dataRefresh);
+    runStage(event, new ResourceComputationStage());
+    runStage(event, new CurrentStateComputationStage());
+    runStage(event, externalViewComputeStage);
+  }
 }
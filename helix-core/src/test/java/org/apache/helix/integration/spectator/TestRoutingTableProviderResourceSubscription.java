@@ -0,0 +1,179 @@
+package org.apache.helix.integration.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.helix.HelixException;
+import org.apache.helix.HelixManager;
+import org.apache.helix.HelixManagerFactory;
+import org.apache.helix.InstanceType;
+import org.apache.helix.PropertyType;
+import org.apache.helix.TestHelper;
+import org.apache.helix.common.ZkTestBase;
+import org.apache.helix.integration.manager.ClusterControllerManager;
+import org.apache.helix.integration.manager.MockParticipantManager;
+import org.apache.helix.model.IdealState;
+import org.apache.helix.spectator.RoutingTableProvider;
+import org.apache.helix.tools.ClusterVerifiers.BestPossibleExternalViewVerifier;
+import org.apache.helix.tools.ClusterVerifiers.ZkHelixClusterVerifier;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TestRoutingTableProviderResourceSubscription extends ZkTestBase {
+  private static final int NUM_NODES = 3;
+  private static final int START_PORT = 12918;
+  private final String CLUSTER_NAME = CLUSTER_PREFIX + "_" + getShortClassName();
+  private MockParticipantManager[] _participants;
+  private ClusterControllerManager _controller;
+  private HelixManager _spectator;
+  private ZkHelixClusterVerifier _clusterVerifier;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    _gSetupTool.addCluster(CLUSTER_NAME, true);
+    _participants = new MockParticipantManager[NUM_NODES];
+    for (int i = 0; i < NUM_NODES; i++) {
+      String instanceName = PARTICIPANT_PREFIX + "_" + (START_PORT + i);
+      _gSetupTool.addInstanceToCluster(CLUSTER_NAME, instanceName);
+      _participants[i] = new MockParticipantManager(ZK_ADDR, CLUSTER_NAME, instanceName);
+      _participants[i].syncStart();
+    }
+    for (int r = 0; r < 3; r++) {
+      addResource("TestDB_" + r);
+    }
+
+    _controller = new ClusterControllerManager(ZK_ADDR, CLUSTER_NAME, CONTROLLER_PREFIX + "_0");
+    _controller.syncStart();
+
+    _spectator = HelixManagerFactory
+        .getZKHelixManager(CLUSTER_NAME, "spectator", InstanceType.SPECTATOR, ZK_ADDR);
+    _spectator.connect();
+
+    _clusterVerifier =
+        new BestPossibleExternalViewVerifier.Builder(CLUSTER_NAME).setZkAddr(ZK_ADDR).build();
+    Assert.assertTrue(_clusterVerifier.verifyByPolling());
+  }
+
+  @AfterClass
+  public void afterClass() {
+    if (_spectator != null && _spectator.isConnected()) {
+      _spectator.disconnect();
+    }
+    if (_controller != null && _controller.isConnected()) {
+      _controller.syncStop();
+    }
+    for (MockParticipantManager participant : _participants) {
+      if (participant != null && participant.isConnected()) {
+        participant.syncStop();
+      }
+    }
+    deleteCluster(CLUSTER_NAME);
+  }
+
+  private void addResource(String resourceName) {
+    _gSetupTool.addResourceToCluster(CLUSTER_NAME, resourceName, 4, "MasterSlave",
+        IdealState.RebalanceMode.FULL_AUTO.name());
+    _gSetupTool.rebalanceStorageCluster(CLUSTER_NAME, resourceName, 2);
+  }
+
+  private RoutingTableProvider createProvider(PropertyType propertyType, String... resources) {
+    Map<PropertyType, List<String>> sourceDataTypeMap =
+        ImmutableMap.of(propertyType, Collections.<String> emptyList());
+    return new RoutingTableProvider(_spectator, sourceDataTypeMap, false, 0L,
+        Arrays.asList(resources));
+  }
+
+  private boolean hasResources(RoutingTableProvider provider, String... resources) {
+    return new HashSet<>(provider.getResources()).equals(new HashSet<>(Arrays.asList(resources)))
+        && provider.getInstancesForResource(resources[0], resources[0] + "_0", "MASTER")
+            .size() == 1;
+  }
+
+  @Test
+  public void testExternalViewSubscription() throws Exception {
+    RoutingTableProvider provider = createProvider(PropertyType.EXTERNALVIEW, "TestDB_0");
+    try {
+      Assert.assertTrue(TestHelper.verify(() -> hasResources(provider, "TestDB_0"), 10000));
+      Assert.assertEquals(provider.getSubscribedResources(),
+          Collections.singleton("TestDB_0"));
+
+      provider.subscribeResources(Arrays.asList("TestDB_1"));
+      Assert.assertTrue(
+          TestHelper.verify(() -> hasResources(provider, "TestDB_1", "TestDB_0"), 10000));
+
+      provider.unsubscribeResources(Arrays.asList("TestDB_0"));
+      Assert.assertTrue(TestHelper.verify(() -> hasResources(provider, "TestDB_1"), 10000));
+
+      // a resource subscribed before it exists is routed once its external view is created
+      provider.subscribeResources(Arrays.asList("TestDB_3"));
+      addResource("TestDB_3");
+      Assert.assertTrue(_clusterVerifier.verifyByPolling());
+      Assert.assertTrue(
+          TestHelper.verify(() -> hasResources(provider, "TestDB_3", "TestDB_1"), 10000));
+
+      // changes of a subscribed resource are watched
+      _participants[0].syncStop();
+      Assert.assertTrue(_clusterVerifier.verifyByPolling());
+      Assert.assertTrue(TestHelper.verify(() -> provider
+          .getInstancesForResource("TestDB_1", "SLAVE").stream()
+          .noneMatch(config -> config.getInstanceName().equals(_participants[0].getInstanceName())),
+          10000));
+    } finally {
+      provider.shutdown();
+      if (!_participants[0].isConnected()) {
+        _participants[0] = new MockParticipantManager(ZK_ADDR, CLUSTER_NAME,
+            _participants[0].getInstanceName());
+        _participants[0].syncStart();
+      }
+    }
+  }
+
+  @Test(dependsOnMethods = "testExternalViewSubscription")
+  public void testCurrentStateSubscription() throws Exception {
+    Assert.assertTrue(_clusterVerifier.verifyByPolling());
+    RoutingTableProvider provider = createProvider(PropertyType.CURRENTSTATES, "TestDB_2");
+    try {
+      Assert.assertTrue(TestHelper.verify(() -> hasResources(provider, "TestDB_2"), 10000));
+      provider.subscribeResources(Arrays.asList("TestDB_0"));
+      Assert.assertTrue(
+          TestHelper.verify(() -> hasResources(provider, "TestDB_0", "TestDB_2"), 10000));
+    } finally {
+      provider.shutdown();
+    }
+  }
+
+  @Test(expectedExceptions = HelixException.class)
+  public void testSubscribeOnWholeClusterProvider() {
+    RoutingTableProvider provider = new RoutingTableProvider(_spectator);
+    try {
+      provider.subscribeResources(Arrays.asList("TestDB_0"));
+    } finally {
+      provider.shutdown();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package org.apache.helix.integration.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.model.ClusterConfig;
+import org.apache.helix.task.JobConfig;
+import org.apache.helix.task.TaskState;
+import org.apache.helix.task.TaskUtil;
+import org.apache.helix.task.Workflow;
+import org.apache.helix.task.WorkflowConfig;
+import org.apache.helix.task.assigner.AssignableInstance;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that the workflows of different quota types complete when the controller schedules the
+ * quota types in parallel.
+ */
+public class TestParallelQuotaTypeScheduling extends TaskTestBase {
+  private static final String[] QUOTA_TYPES = {AssignableInstance.DEFAULT_QUOTA_TYPE, "A", "B"};
+  private static final int NUM_WORKFLOWS_PER_TYPE = 3;
+  private static final int NUM_JOBS = 3;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    System.setProperty(SystemPropertyKeys.TASK_SCHEDULING_PARALLELISM,
+        String.valueOf(QUOTA_TYPES.length));
+    try {
+      super.beforeClass();
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_SCHEDULING_PARALLELISM);
+    }
+  }
+
+  @Test
+  public void testParallelQuotaTypes() throws InterruptedException {
+    ClusterConfig clusterConfig = _manager.getConfigAccessor().getClusterConfig(CLUSTER_NAME);
+    clusterConfig.resetTaskQuotaRatioMap();
+    for (String quotaType : QUOTA_TYPES) {
+      clusterConfig.setTaskQuotaRatio(quotaType, 1);
+    }
+    _manager.getConfigAccessor().setClusterConfig(CLUSTER_NAME, clusterConfig);
+
+    List<String> workflows = new ArrayList<>();
+    for (String quotaType : QUOTA_TYPES) {
+      for (int i = 0; i < NUM_WORKFLOWS_PER_TYPE; i++) {
+        String workflowName = TestHelper.getTestMethodName() + "_" + quotaType + "_" + i;
+        Workflow.Builder workflowBuilder = new Workflow.Builder(workflowName)
+            .setWorkflowConfig(new WorkflowConfig.Builder(workflowName)
+                .setWorkFlowType(quotaType).setAllowOverlapJobAssignment(true).build());
+        for (int j = 0; j < NUM_JOBS; j++) {
+          workflowBuilder.addJob("JOB" + j,
+              new JobConfig.Builder().setCommand(MockTask.TASK_COMMAND).setNumberOfTasks(2)
+                  .setJobType(quotaType)
+                  .setJobCommandConfigMap(ImmutableMap.of(MockTask.JOB_DELAY, "10")));
+        }
+        _driver.start(workflowBuilder.build());
+        workflows.add(workflowName);
+      }
+    }
+
+    for (String workflowName : workflows) {
+      _driver.pollForWorkflowState(workflowName, TaskState.COMPLETED);
+      for (int j = 0; j < NUM_JOBS; j++) {
+        Assert.assertEquals(_driver.getWorkflowContext(workflowName)
+                .getJobState(TaskUtil.getNamespacedJobName(workflowName, "JOB" + j)),
+            TaskState.COMPLETED);
+      }
+    }
+  }
+}
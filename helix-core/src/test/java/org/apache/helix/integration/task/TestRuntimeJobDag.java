@@ -20,6 +20,8 @@ package org.apache.helix.integration.task;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -115,6 +117,82 @@ public class TestRuntimeJobDag {
     testRegularDAGHelper(jobDag);
   }
 
+  @Test(dependsOnMethods = "testRegularDAGAndGenerateJobList")
+  public void testContinueFromFinishedJobs() {
+    // 1 -> 3, 2 -> 3, 3 -> 4
+    RuntimeJobDag jobDag = createJobDag(Arrays.asList("1", "2", "3", "4"));
+    jobDag.addParentToChild("1", "3");
+    jobDag.addParentToChild("2", "3");
+    jobDag.addParentToChild("3", "4");
+    jobDag.generateJobList();
+    emptyJobSets();
+    actualJobs.add(jobDag.getNextJob());
+    actualJobs.add(jobDag.getNextJob());
+    expectedJobs.addAll(Arrays.asList("1", "2"));
+    Assert.assertEquals(actualJobs, expectedJobs);
+    jobDag.finishJob("1");
+    // Finishing a job twice does not make its children ready
+    jobDag.finishJob("1");
+    Assert.assertFalse(jobDag.hasNextJob());
+    Assert.assertEquals(jobDag.getFinishedJobs(), Collections.singleton("1"));
+
+    // A DAG built from the finished jobs only returns the jobs that are not finished yet
+    RuntimeJobDag newJobDag = new RuntimeJobDag(jobDag, false, 1, 1, jobDag.getFinishedJobs());
+    Assert.assertEquals(newJobDag.getNextJob(), "2");
+    Assert.assertFalse(newJobDag.hasNextJob());
+    newJobDag.finishJob("2");
+    Assert.assertEquals(newJobDag.getNextJob(), "3");
+    newJobDag.finishJob("3");
+    Assert.assertEquals(newJobDag.getNextJob(), "4");
+    newJobDag.finishJob("4");
+    Assert.assertFalse(newJobDag.hasNextJob());
+
+    // A job queue starts over
+    RuntimeJobDag queue = new RuntimeJobDag(jobDag, true, 1, 1, jobDag.getFinishedJobs());
+    Assert.assertEquals(queue.getFinishedJobs(), Collections.emptySet());
+  }
+
+  @Test(dependsOnMethods = "testContinueFromFinishedJobs")
+  public void testContinueFromStartedJobs() {
+    // 1 -> 3, 2 -> 3, 3 -> 4
+    RuntimeJobDag jobDag = createJobDag(Arrays.asList("1", "2", "3", "4"));
+    jobDag.addParentToChild("1", "3");
+    jobDag.addParentToChild("2", "3");
+    jobDag.addParentToChild("3", "4");
+
+    // The started jobs are inflight and not returned by the job iterator again
+    RuntimeJobDag newJobDag = new RuntimeJobDag(jobDag, false, 1, 1,
+        Collections.singleton("1"), Collections.singleton("2"));
+    Assert.assertEquals(newJobDag.getInflightJobList(), Collections.singleton("2"));
+    Assert.assertFalse(newJobDag.hasNextJob());
+    newJobDag.finishJob("2");
+    Assert.assertEquals(newJobDag.getNextJob(), "3");
+    Assert.assertEquals(newJobDag.getInflightJobList(), Collections.singleton("3"));
+
+    // A child started already is not returned when its parents finish
+    newJobDag = new RuntimeJobDag(jobDag, false, 1, 1, Collections.<String>emptySet(),
+        new HashSet<>(Arrays.asList("1", "3")));
+    Assert.assertEquals(newJobDag.getNextJob(), "2");
+    newJobDag.finishJob("1");
+    newJobDag.finishJob("2");
+    Assert.assertFalse(newJobDag.hasNextJob());
+    newJobDag.finishJob("3");
+    Assert.assertEquals(newJobDag.getNextJob(), "4");
+
+    // A job queue returns its started jobs again in order, and they stay inflight
+    RuntimeJobDag queue = createJobDag(Arrays.asList("1", "2", "3"));
+    queue.addParentToChild("1", "2");
+    queue.addParentToChild("2", "3");
+    queue = new RuntimeJobDag(queue, true, 1, 1, Collections.<String>emptySet(),
+        Collections.singleton("1"));
+    Assert.assertEquals(queue.getInflightJobList(), Collections.singleton("1"));
+    Assert.assertEquals(queue.getNextJob(), "1");
+    Assert.assertFalse(queue.hasNextJob());
+    queue.finishJob("1");
+    Assert.assertEquals(queue.getNextJob(), "2");
+    Assert.assertEquals(queue.getInflightJobList(), Collections.singleton("2"));
+  }
+
   private void testRegularDAGHelper(RuntimeJobDag jobDag) {
     emptyJobSets();
     // 5, 7, 3 are un-parented nodes to start with
@@ -19,6 +19,13 @@ package org.apache.helix.integration.task;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixException;
 import org.apache.helix.TestHelper;
 import org.apache.helix.task.TaskState;
 import org.apache.helix.task.Workflow;
@@ -56,4 +63,56 @@ public class TestWorkflowAndJobPoll extends TaskTestBase {
             TaskState.COMPLETED, TaskState.FAILED);
     Assert.assertEquals(TaskState.COMPLETED, polledState);
   }
+
+  @Test public void testAsyncWait() throws Exception {
+    String jobResource = TestHelper.getTestMethodName();
+    String jobName = String.format("%s_%s", jobResource, jobResource);
+    Workflow.Builder builder =
+        WorkflowGenerator.generateDefaultSingleJobWorkflowBuilder(jobResource);
+
+    // Wait before the workflow even exists, many waiters share the same watch
+    List<CompletableFuture<TaskState>> futures = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      futures.add(_driver.waitForWorkflowState(jobResource, 10000L, TaskState.COMPLETED,
+          TaskState.FAILED));
+    }
+    CompletableFuture<TaskState> cancelledFuture =
+        _driver.waitForWorkflowState(jobResource, 10000L, TaskState.COMPLETED);
+    Assert.assertTrue(cancelledFuture.cancel(false));
+    _driver.start(builder.build());
+
+    Assert.assertEquals(_driver.waitForJobState(jobResource, jobName, 10000L, TaskState.COMPLETED)
+        .get(10, TimeUnit.SECONDS), TaskState.COMPLETED);
+    for (CompletableFuture<TaskState> future : futures) {
+      Assert.assertEquals(future.get(10, TimeUnit.SECONDS), TaskState.COMPLETED);
+    }
+
+    // Already in the state, completes right away
+    Assert.assertTrue(_driver.waitForWorkflowState(jobResource, 0L, TaskState.COMPLETED).isDone());
+
+    // Never reaches the state
+    CompletableFuture<TaskState> timeoutFuture =
+        _driver.waitForWorkflowState(jobResource, 500L, TaskState.STOPPED);
+    try {
+      timeoutFuture.get(10, TimeUnit.SECONDS);
+      Assert.fail("The wait should time out");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof HelixException);
+    }
+    try {
+      _driver.pollForWorkflowState(jobResource, 500L, TaskState.STOPPED);
+      Assert.fail("The poll should time out");
+    } catch (HelixException e) {
+      // expected
+    }
+
+    // No such workflow
+    try {
+      _driver.waitForJobState("NoSuchWorkflow", "NoSuchWorkflow_job", 500L, TaskState.COMPLETED)
+          .get();
+      Assert.fail("The wait should fail");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof HelixException);
+    }
+  }
 }
@@ -0,0 +1,166 @@
+package org.apache.helix.messaging;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.Criteria;
+import org.apache.helix.HelixException;
+import org.apache.helix.InstanceType;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.tools.DefaultIdealStateCalculator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCriteriaEvaluator {
+  private List<ExternalView> _externalViews;
+
+  private CriteriaIndex createIndex() {
+    List<String> instances = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      instances.add("localhost_" + (12918 + i));
+    }
+    _externalViews = Arrays.asList(
+        new ExternalView(DefaultIdealStateCalculator.calculateIdealState(instances, 10, 2, "DB",
+            "MASTER", "SLAVE")),
+        new ExternalView(DefaultIdealStateCalculator.calculateIdealState(instances, 20, 2,
+            "OtherDB", "MASTER", "SLAVE")));
+    CriteriaIndex index = new CriteriaIndex();
+    // localhost_12922 is not live
+    index.refresh(_externalViews, instances.subList(0, 4));
+    return index;
+  }
+
+  private Criteria createCriteria(String instance, String resource, String partition,
+      String state) {
+    Criteria criteria = new Criteria();
+    criteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    criteria.setInstanceName(instance);
+    criteria.setResource(resource);
+    criteria.setPartition(partition);
+    criteria.setPartitionState(state);
+    return criteria;
+  }
+
+  /**
+   * Count the live replicas of the given resource, partition and state the brute force way
+   */
+  private int countReplicas(String resource, String partition, String state) {
+    int count = 0;
+    for (ExternalView externalView : _externalViews) {
+      if (resource != null && !externalView.getResourceName().equalsIgnoreCase(resource)) {
+        continue;
+      }
+      for (String p : externalView.getPartitionSet()) {
+        if (partition != null && !p.equals(partition)) {
+          continue;
+        }
+        for (Map.Entry<String, String> entry : externalView.getStateMap(p).entrySet()) {
+          if (!entry.getKey().equals("localhost_12922")
+              && (state == null || entry.getValue().equalsIgnoreCase(state))) {
+            count++;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  @Test
+  public void testEvaluateCriteriaWithIndex() {
+    CriteriaIndex index = createIndex();
+    CriteriaEvaluator evaluator = new CriteriaEvaluator();
+
+    List<Map<String, String>> rows =
+        evaluator.evaluateCriteria(createCriteria("%", "%", "%", "%"), index);
+    Assert.assertEquals(rows.size(), countReplicas(null, null, null));
+    // some replicas are on the instance that is not live
+    Assert.assertTrue(rows.size() < 90);
+
+    rows = evaluator.evaluateCriteria(createCriteria("%", "DB", "%", "MASTER"), index);
+    Assert.assertEquals(rows.size(), countReplicas("DB", null, "MASTER"));
+    for (Map<String, String> row : rows) {
+      Assert.assertEquals(row.get("resourceName"), "DB");
+      Assert.assertEquals(row.get("partitionState"), "MASTER");
+      Assert.assertFalse(row.get("instanceName").equals("localhost_12922"));
+    }
+
+    // exact lookup, matching is case insensitive
+    rows = evaluator.evaluateCriteria(createCriteria("%", "db", "DB_3", "%"), index);
+    Assert.assertEquals(rows.size(), countReplicas("DB", "DB_3", null));
+    rows = evaluator.evaluateCriteria(createCriteria("%", "OtherDB", "OtherDB_13", "slave"), index);
+    Assert.assertEquals(rows.size(), countReplicas("OtherDB", "OtherDB_13", "SLAVE"));
+
+    // '_' matches a single character
+    rows = evaluator.evaluateCriteria(createCriteria("localhost_1291_", "DB", "", ""), index);
+    Assert.assertEquals(rows.size(), 2);
+    rows = evaluator.evaluateCriteria(createCriteria("localhost_12918", "DB", "", ""), index);
+    Assert.assertEquals(rows.size(), 1);
+    Assert.assertEquals(rows.get(0).get("partitionName"), "");
+    Assert.assertEquals(rows.get(0).get("partitionState"), "");
+
+    // no match
+    rows = evaluator.evaluateCriteria(createCriteria("%", "NoSuchDB", "%", "%"), index);
+    Assert.assertTrue(rows.isEmpty());
+    rows = evaluator.evaluateCriteria(createCriteria("localhost_12922", "%", "%", "%"), index);
+    Assert.assertTrue(rows.isEmpty());
+  }
+
+  @Test
+  public void testEvaluateCriteriaWithLiteralNames() {
+    ExternalView externalView = new ExternalView("Case_DB");
+    externalView.setState("P_0", "localhost_12918", "MASTER");
+    externalView.setState("p_0", "localhost_12919", "SLAVE");
+    externalView.setState("PX0", "localhost_12918", "SLAVE");
+    CriteriaIndex index = new CriteriaIndex();
+    index.refresh(Arrays.asList(externalView), Arrays.asList("localhost_12918", "localhost_12919"));
+    CriteriaEvaluator evaluator = new CriteriaEvaluator();
+
+    // a name with '_' that exists is taken literally, and matches the keys in any case
+    List<Map<String, String>> rows =
+        evaluator.evaluateCriteria(createCriteria("%", "case_db", "p_0", "%"), index);
+    Assert.assertEquals(rows.size(), 2);
+    for (Map<String, String> row : rows) {
+      Assert.assertEquals(row.get("partitionName").toLowerCase(), "p_0");
+    }
+    rows = evaluator.evaluateCriteria(createCriteria("LOCALHOST_12918", "Case_DB", "%", "%"), index);
+    Assert.assertEquals(rows.size(), 2);
+    for (Map<String, String> row : rows) {
+      Assert.assertEquals(row.get("instanceName"), "localhost_12918");
+    }
+
+    // otherwise '_' matches a single character
+    rows = evaluator.evaluateCriteria(createCriteria("%", "Case_DB", "_X0", "%"), index);
+    Assert.assertEquals(rows.size(), 1);
+    Assert.assertEquals(rows.get(0).get("partitionName"), "PX0");
+    rows = evaluator.evaluateCriteria(createCriteria("%", "Case_DB", "px0", "%"), index);
+    Assert.assertEquals(rows.size(), 1);
+  }
+
+  @Test(expectedExceptions = HelixException.class)
+  public void testDataSourceMismatch() {
+    Criteria criteria = createCriteria("%", "%", "%", "%");
+    criteria.setDataSource(Criteria.DataSource.IDEALSTATES);
+    new CriteriaEvaluator().evaluateCriteria(criteria, createIndex());
+  }
+}
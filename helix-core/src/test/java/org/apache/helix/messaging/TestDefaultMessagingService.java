@@ -20,13 +20,17 @@ package org.apache.helix.messaging;
  */
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import com.google.common.collect.ImmutableList;
 import org.apache.helix.Criteria;
 import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixException;
 import org.apache.helix.HelixManager;
 import org.apache.helix.HelixProperty;
 import org.apache.helix.InstanceType;
@@ -34,6 +38,7 @@ import org.apache.helix.MockAccessor;
 import org.apache.helix.NotificationContext;
 import org.apache.helix.PropertyKey;
 import org.apache.helix.PropertyType;
+import org.apache.helix.messaging.handling.AsyncCallbackService;
 import org.apache.helix.messaging.handling.HelixTaskResult;
 import org.apache.helix.messaging.handling.MessageHandler;
 import org.apache.helix.messaging.handling.MessageHandlerFactory;
@@ -58,6 +63,8 @@ public class TestDefaultMessagingService {
         PropertyType type = key.getType();
         if (type == PropertyType.EXTERNALVIEW || type == PropertyType.IDEALSTATES) {
           return (T) new ExternalView(_externalView);
+        } else if (type == PropertyType.MESSAGES) {
+          return super.getProperty(key);
         }
         return null;
       }
@@ -302,4 +309,136 @@ public class TestDefaultMessagingService {
     Assert.assertTrue(
         svc.getMessageHandlerFactoryMap().containsKey(Message.MessageType.CONTROLLER_MSG.name()));
   }
+
+  @Test
+  public void testSendBulk() throws Exception {
+    MockHelixManager manager = new MockHelixManager();
+    DefaultMessagingService svc = new DefaultMessagingService(manager);
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+
+    Criteria recipientCriteria = new Criteria();
+    recipientCriteria.setInstanceName("%");
+    recipientCriteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    recipientCriteria.setResource("DB");
+    recipientCriteria.setPartition("%");
+    recipientCriteria.setSelfExcluded(false);
+
+    Message template = new Message("TestingMessageHandler", UUID.randomUUID().toString());
+    CompletableFuture<List<Message>> future = svc.sendBulk(recipientCriteria, template, -1, 5);
+
+    // 200 messages over 5 instances, only 5 outstanding per instance
+    List<Message> written = new ArrayList<>();
+    for (String instance : manager._instances) {
+      List<String> msgIds = accessor.getChildNames(keyBuilder.messages(instance));
+      Assert.assertEquals(msgIds.size(), 5);
+      for (String msgId : msgIds) {
+        written.add(accessor.<Message> getProperty(keyBuilder.message(instance, msgId)));
+      }
+    }
+
+    // every reply frees a slot of the replying instance for its next message
+    AsyncCallbackService callbackService = svc.getAsyncCallbackService();
+    int replied = 0;
+    while (!written.isEmpty()) {
+      Message msg = written.remove(0);
+      Assert.assertFalse(future.isDone());
+      accessor.removeProperty(keyBuilder.message(msg.getTgtName(), msg.getId()));
+      Message reply = Message.createReplyMessage(msg, msg.getTgtName(),
+          Collections.<String, String> emptyMap());
+      callbackService.createHandler(reply, null).handleMessage();
+      replied++;
+
+      List<String> msgIds = accessor.getChildNames(keyBuilder.messages(msg.getTgtName()));
+      Assert.assertTrue(msgIds.size() <= 5);
+      for (String msgId : msgIds) {
+        Message pending = accessor.getProperty(keyBuilder.message(msg.getTgtName(), msgId));
+        if (!written.contains(pending)) {
+          written.add(pending);
+        }
+      }
+    }
+    Assert.assertEquals(replied, 200);
+    Assert.assertTrue(future.isDone());
+    Assert.assertEquals(future.get().size(), 200);
+  }
+
+  @Test
+  public void testSendBulkWithFailedWrites() throws Exception {
+    MockHelixManager manager = new MockHelixManager();
+    final String failingInstance = manager._instances.get(0);
+    manager._accessor = manager.new MockDataAccessor() {
+      @Override
+      public <T extends HelixProperty> boolean[] createChildren(List<PropertyKey> keys,
+          List<T> children) {
+        boolean[] results = super.createChildren(keys, children);
+        for (int i = 0; i < keys.size(); i++) {
+          if (keys.get(i).getPath().contains(failingInstance)) {
+            removeProperty(keys.get(i));
+            results[i] = false;
+          }
+        }
+        return results;
+      }
+    };
+    DefaultMessagingService svc = new DefaultMessagingService(manager);
+    HelixDataAccessor accessor = manager.getHelixDataAccessor();
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+
+    Criteria recipientCriteria = new Criteria();
+    recipientCriteria.setInstanceName(failingInstance);
+    recipientCriteria.setRecipientInstanceType(InstanceType.PARTICIPANT);
+    recipientCriteria.setResource("DB");
+    recipientCriteria.setPartition("%");
+    recipientCriteria.setSelfExcluded(false);
+
+    // every write fails, the future fails right away and the callback is not kept
+    Message template = new Message("TestingMessageHandler", UUID.randomUUID().toString());
+    CompletableFuture<List<Message>> future = svc.sendBulk(recipientCriteria, template, -1, 5);
+    Assert.assertTrue(future.isCompletedExceptionally());
+    BulkSendException failure = getBulkSendException(future);
+    Assert.assertEquals(failure.getFailedMessages().size(), 40);
+    Assert.assertTrue(failure.getRepliedMessages().isEmpty());
+
+    Message reply = Message.createReplyMessage(failure.getFailedMessages().get(0),
+        failingInstance, Collections.<String, String> emptyMap());
+    try {
+      svc.getAsyncCallbackService().createHandler(reply, null);
+      Assert.fail("The callback of a failed bulk send should be unregistered");
+    } catch (HelixException e) {
+      // expected
+    }
+
+    // some writes fail, the future fails with the replies of the messages that were sent
+    recipientCriteria.setInstanceName("%");
+    future = svc.sendBulk(recipientCriteria, template, -1, -1);
+    List<Message> written = new ArrayList<>();
+    for (String instance : manager._instances) {
+      for (String msgId : accessor.getChildNames(keyBuilder.messages(instance))) {
+        written.add(accessor.<Message> getProperty(keyBuilder.message(instance, msgId)));
+      }
+    }
+    Assert.assertEquals(written.size(), 160);
+    for (Message msg : written) {
+      Assert.assertFalse(future.isDone());
+      reply = Message.createReplyMessage(msg, msg.getTgtName(),
+          Collections.<String, String> emptyMap());
+      svc.getAsyncCallbackService().createHandler(reply, null).handleMessage();
+    }
+    failure = getBulkSendException(future);
+    Assert.assertEquals(failure.getFailedMessages().size(), 40);
+    Assert.assertEquals(failure.getRepliedMessages().size(), 160);
+  }
+
+  private static BulkSendException getBulkSendException(CompletableFuture<List<Message>> future)
+      throws InterruptedException {
+    try {
+      future.get();
+      Assert.fail("Bulk send should fail");
+      return null;
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof BulkSendException);
+      return (BulkSendException) e.getCause();
+    }
+  }
 }
@@ -0,0 +1,118 @@
+package org.apache.helix.model;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestBulkTransitionMessage {
+
+  @Test
+  public void testExpandBulkTransitionMessage() {
+    Message message = new Message(Message.MessageType.STATE_TRANSITION, "bulkMsg");
+    message.setResourceName("TestDB");
+    message.setTgtName("localhost_12918");
+    message.setStateModelDef("MasterSlave");
+    message.setBatchMessageMode(true);
+    message.addBulkTransition("TestDB_0", "OFFLINE", "SLAVE");
+    message.addBulkTransition("TestDB_1", "SLAVE", "MASTER");
+    message.addBulkTransition("TestDB_2", "MASTER", "SLAVE");
+
+    Assert.assertTrue(message.isBulkTransitionMessage());
+    Assert.assertEquals(message.getPartitionNames().size(), 3);
+
+    List<Message> subMessages = message.expandBatchMessage(false);
+    Assert.assertEquals(subMessages.size(), 3);
+    Message subMsg = subMessages.get(1);
+    Assert.assertEquals(subMsg.getPartitionName(), "TestDB_1");
+    Assert.assertEquals(subMsg.getFromState(), "SLAVE");
+    Assert.assertEquals(subMsg.getToState(), "MASTER");
+    Assert.assertEquals(subMsg.getResourceName(), "TestDB");
+    Assert.assertEquals(subMsg.getStateModelDef(), "MasterSlave");
+    Assert.assertEquals(subMsg.getAttribute(Message.Attributes.PARENT_MSG_ID), "bulkMsg");
+    Assert.assertFalse(subMsg.getBatchMessageMode());
+    Assert.assertFalse(subMsg.getMsgId().equals("bulkMsg"));
+    // sub-messages do not carry the partition list of the bulk message
+    Assert.assertTrue(subMsg.getPartitionNames().isEmpty());
+
+    for (Message pendingMsg : message.expandBatchMessage(true)) {
+      Assert.assertEquals(pendingMsg.getMsgId(), "bulkMsg");
+      Assert.assertNull(pendingMsg.getAttribute(Message.Attributes.PARENT_MSG_ID));
+    }
+  }
+
+  @Test
+  public void testExpandBatchMessage() {
+    Message message = new Message(Message.MessageType.STATE_TRANSITION, "batchMsg");
+    message.setFromState("OFFLINE");
+    message.setToState("SLAVE");
+    message.setBatchMessageMode(true);
+    message.addPartitionName("TestDB_0");
+    message.addPartitionName("TestDB_1");
+
+    Assert.assertFalse(message.isBulkTransitionMessage());
+    List<Message> subMessages = message.expandBatchMessage(false);
+    Assert.assertEquals(subMessages.size(), 2);
+    for (Message subMsg : subMessages) {
+      Assert.assertEquals(subMsg.getFromState(), "OFFLINE");
+      Assert.assertEquals(subMsg.getToState(), "SLAVE");
+    }
+  }
+
+  @Test
+  public void testSubMessagesAreDeepCopies() {
+    Message message = new Message(Message.MessageType.STATE_TRANSITION, "batchMsg");
+    message.setTgtName("localhost_12918");
+    message.setFromState("OFFLINE");
+    message.setToState("SLAVE");
+    message.setBatchMessageMode(true);
+    message.addPartitionName("TestDB_0");
+    message.addPartitionName("TestDB_1");
+    Message relayMessage = new Message(Message.MessageType.STATE_TRANSITION, "relayMsg");
+    message.attachRelayMessage("localhost_12919", relayMessage);
+
+    List<Message> subMessages = message.expandBatchMessage(true);
+    Message subMsg = subMessages.get(0);
+    // list fields other than the partition list are kept
+    Assert.assertTrue(subMsg.hasRelayMessages());
+    Assert.assertEquals(subMsg.getRelayMessage("localhost_12919").getId(), "relayMsg");
+    Assert.assertTrue(subMsg.getPartitionNames().isEmpty());
+
+    // the fields of a sub-message are not shared with the batch message or other sub-messages
+    subMsg.getRecord().getMapField("localhost_12919").put("key", "value");
+    subMsg.getRecord().getListField(Message.Attributes.RELAY_PARTICIPANTS.name()).clear();
+    Assert.assertNull(message.getRecord().getMapField("localhost_12919").get("key"));
+    Assert.assertNull(subMessages.get(1).getRecord().getMapField("localhost_12919").get("key"));
+    Assert.assertTrue(message.hasRelayMessages());
+    Assert.assertTrue(subMessages.get(1).hasRelayMessages());
+  }
+
+  @Test
+  public void testLiveInstanceSupport() {
+    // Participants that do not announce the support only get batch messages of one transition
+    LiveInstance liveInstance = new LiveInstance("localhost_12918");
+    liveInstance.setHelixVersion("1.0.2-SNAPSHOT");
+    Assert.assertFalse(liveInstance.isBulkTransitionMessageSupported());
+    liveInstance.setBulkTransitionMessageSupported(true);
+    Assert.assertTrue(new LiveInstance(liveInstance.getRecord()).isBulkTransitionMessageSupported());
+  }
+}
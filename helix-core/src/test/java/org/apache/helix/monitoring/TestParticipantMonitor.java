@@ -20,18 +20,21 @@ package org.apache.helix.monitoring;
  */
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import javax.management.InstanceNotFoundException;
 import javax.management.MBeanAttributeInfo;
 import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
 import javax.management.MBeanServerConnection;
 import javax.management.MBeanServerNotification;
 import javax.management.MalformedObjectNameException;
 import javax.management.ObjectInstance;
 import javax.management.ObjectName;
 
+import org.apache.helix.SystemPropertyKeys;
 import org.apache.helix.TestHelper;
 import org.apache.helix.monitoring.mbeans.ClusterMBeanObserver;
 import org.apache.helix.monitoring.mbeans.MonitorDomainNames;
@@ -162,4 +165,46 @@ public class TestParticipantMonitor {
     monitorListener.disconnect();
     System.out.println("END TestParticipantMonitor");
   }
+
+  @Test()
+  public void testReportTransitionLatency() throws Exception {
+    String instanceName = TestHelper.getTestMethodName();
+    System.setProperty(SystemPropertyKeys.PARTICIPANT_TRANSITION_LATENCY_MAX_SERIES, "2");
+    ParticipantStatusMonitor monitor;
+    try {
+      monitor = new ParticipantStatusMonitor(true, instanceName);
+    } finally {
+      System.clearProperty(SystemPropertyKeys.PARTICIPANT_TRANSITION_LATENCY_MAX_SERIES);
+    }
+
+    MBeanServer beanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName db1Name = getObjectName(
+        "ParticipantName=" + instanceName + ",Resource=db_1,Transition=OFFLINE--SLAVE");
+    ObjectName db2Name = getObjectName(
+        "ParticipantName=" + instanceName + ",Resource=db_2,Transition=OFFLINE--SLAVE");
+    ObjectName db3Name = getObjectName(
+        "ParticipantName=" + instanceName + ",Resource=db_3,Transition=OFFLINE--SLAVE");
+    try {
+      monitor.reportTransitionLatency("db_1", "OFFLINE--SLAVE", 10, 100, 5);
+      monitor.reportTransitionLatency("db_1", "OFFLINE--SLAVE", 30, 300, -1);
+      Assert.assertEquals(beanServer.getAttribute(db1Name, "QueueWaitLatencyGauge.Mean"), 20.0);
+      Assert.assertEquals(beanServer.getAttribute(db1Name, "HandlerExecutionLatencyGauge.Max"),
+          300L);
+      // negative latencies are not recorded
+      Assert.assertEquals(beanServer.getAttribute(db1Name, "CurrentStateWriteLatencyGauge.Mean"),
+          5.0);
+
+      monitor.reportTransitionLatency("db_2", "OFFLINE--SLAVE", 10, 100, 5);
+      // db_1 is used more recently than db_2, so db_2 is evicted
+      monitor.reportTransitionLatency("db_1", "OFFLINE--SLAVE", 10, 100, 5);
+      monitor.reportTransitionLatency("db_3", "OFFLINE--SLAVE", 10, 100, 5);
+      Assert.assertTrue(beanServer.isRegistered(db1Name));
+      Assert.assertFalse(beanServer.isRegistered(db2Name));
+      Assert.assertTrue(beanServer.isRegistered(db3Name));
+    } finally {
+      monitor.shutDown();
+    }
+    Assert.assertFalse(beanServer.isRegistered(db1Name));
+    Assert.assertFalse(beanServer.isRegistered(db3Name));
+  }
 }
@@ -31,6 +31,10 @@ import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
 import javax.management.JMException;
@@ -54,6 +58,9 @@ import org.apache.helix.model.Message;
 import org.apache.helix.model.Partition;
 import org.apache.helix.model.Resource;
 import org.apache.helix.model.StateModelDefinition;
+import org.apache.helix.task.JobConfig;
+import org.apache.helix.task.TaskState;
+import org.apache.helix.task.WorkflowConfig;
 import org.apache.helix.tools.DefaultIdealStateCalculator;
 import org.apache.helix.tools.StateModelConfigGenerator;
 import org.testng.Assert;
@@ -491,6 +498,48 @@ public class TestClusterStatusMonitor {
     }
   }
 
+  @Test
+  public void testConcurrentTaskCounterUpdates() throws Exception {
+    String clusterName = "testCluster_" + TestHelper.getTestMethodName();
+    ClusterStatusMonitor monitor = new ClusterStatusMonitor(clusterName);
+    monitor.active();
+    // Untyped jobs and workflows all share the DEFAULT monitors
+    JobConfig jobConfig = new JobConfig.Builder().setWorkflow("workflow").setCommand("MOCK")
+        .setNumberOfTasks(1).build();
+    WorkflowConfig workflowConfig = new WorkflowConfig.Builder("workflow").build();
+    int numThreads = 4;
+    int numUpdates = 10000;
+
+    // The workflows of different quota types update the counters in parallel
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < numThreads; i++) {
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < numUpdates; j++) {
+            monitor.updateJobCounters(jobConfig, TaskState.COMPLETED, 1L);
+            monitor.updateWorkflowCounters(workflowConfig, TaskState.COMPLETED, 1L);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get(TestHelper.WAIT_DURATION, TimeUnit.MILLISECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    long expected = (long) numThreads * numUpdates;
+    JobMonitor jobMonitor = monitor.getJobMonitor(null);
+    Assert.assertEquals(jobMonitor.getAttribute("SuccessfulJobCount"), expected);
+    Assert.assertEquals(jobMonitor.getAttribute("JobLatencyCount"), expected);
+    WorkflowMonitor workflowMonitor =
+        monitor.getWorkflowMonitor(ClusterStatusMonitor.DEFAULT_WORKFLOW_JOB_TYPE);
+    Assert.assertEquals(workflowMonitor.getSuccessfulWorkflowCount(), expected);
+    Assert.assertEquals(workflowMonitor.getWorkflowLatencyCount(), expected);
+    monitor.reset();
+  }
+
   private void verifyCapacityMetrics(ClusterStatusMonitor monitor, Map<String, Double> maxUsageMap,
       Map<String, Map<String, Integer>> instanceCapacityMap)
       throws MalformedObjectNameException, IOException, AttributeNotFoundException, MBeanException,
@@ -108,6 +108,24 @@ public class TestRoutingTableProviderMonitor {
     monitor.unregister();
   }
 
+  @Test
+  public void testExternalViewStatePropagationMetrics() throws JMException {
+    PropertyType type = PropertyType.EXTERNALVIEW;
+    RoutingTableProviderMonitor monitor =
+        new RoutingTableProviderMonitor(type, TEST_CLUSTER, true);
+    monitor.register();
+    ObjectName name = buildObjectName(type, TEST_CLUSTER);
+    try {
+      Assert.assertEquals(
+          (long) _beanServer.getAttribute(name, "StatePropagationLatencyGauge.Max"), 0);
+      monitor.recordStatePropagationLatency(5);
+      Assert.assertEquals(
+          (long) _beanServer.getAttribute(name, "StatePropagationLatencyGauge.Max"), 5);
+    } finally {
+      monitor.unregister();
+    }
+  }
+
   public void testCurrentStateMetrics() throws JMException, InterruptedException {
     PropertyType type = PropertyType.CURRENTSTATES;
     RoutingTableProviderMonitor monitor = new RoutingTableProviderMonitor(type, TEST_CLUSTER);
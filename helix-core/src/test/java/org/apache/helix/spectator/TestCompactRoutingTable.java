@@ -0,0 +1,152 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.tools.DefaultIdealStateCalculator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestCompactRoutingTable {
+  private static final String[] STATES = new String[] { "MASTER", "SLAVE", "OFFLINE" };
+
+  private List<InstanceConfig> createInstanceConfigs(int numInstances) {
+    List<InstanceConfig> instanceConfigs = new ArrayList<>();
+    for (int i = 0; i < numInstances; i++) {
+      InstanceConfig config = new InstanceConfig("localhost_" + (12918 + i));
+      config.setHostName("localhost");
+      config.setPort(Integer.toString(12918 + i));
+      instanceConfigs.add(config);
+    }
+    return instanceConfigs;
+  }
+
+  private List<ExternalView> createExternalViews() {
+    List<String> instances = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      instances.add("localhost_" + (12918 + i));
+    }
+    List<ExternalView> externalViews = new ArrayList<>();
+    for (int r = 0; r < 4; r++) {
+      ExternalView externalView = new ExternalView(DefaultIdealStateCalculator
+          .calculateIdealState(instances, 16, 2, "DB_" + r, "MASTER", "SLAVE"));
+      if (r >= 2) {
+        externalView.getRecord().setSimpleField(
+            ExternalView.ExternalViewProperty.RESOURCE_GROUP_NAME.toString(), "GroupDB");
+        externalView.getRecord().setSimpleField(
+            ExternalView.ExternalViewProperty.INSTANCE_GROUP_TAG.toString(), "tag_" + r);
+        externalView.getRecord().setBooleanField(
+            ExternalView.ExternalViewProperty.GROUP_ROUTING_ENABLED.name(), true);
+      }
+      externalViews.add(externalView);
+    }
+    return externalViews;
+  }
+
+  @Test
+  public void testSameResultsAsRoutingTable() {
+    // localhost_12923 has no InstanceConfig, its replicas are skipped
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs(5);
+    List<ExternalView> externalViews = createExternalViews();
+    RoutingTable expected = new RoutingTable(externalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+    RoutingTable compact = new CompactRoutingTable(externalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+
+    Assert.assertEquals(new HashSet<>(compact.getResources()),
+        new HashSet<>(expected.getResources()));
+    Assert.assertEquals(compact.getExternalViews().size(), externalViews.size());
+    List<String> tags = Arrays.asList("tag_3", "tag_2");
+    for (String state : STATES) {
+      Assert.assertEquals(compact.getInstancesForResourceGroup("GroupDB", state),
+          expected.getInstancesForResourceGroup("GroupDB", state));
+      Assert.assertEquals(compact.getInstancesForResourceGroup("GroupDB", state, tags),
+          expected.getInstancesForResourceGroup("GroupDB", state, tags));
+      for (ExternalView externalView : externalViews) {
+        String resource = externalView.getResourceName();
+        Assert.assertEquals(compact.getInstancesForResource(resource, state),
+            expected.getInstancesForResource(resource, state));
+        for (String partition : externalView.getPartitionSet()) {
+          Assert.assertEquals(compact.getInstancesForResource(resource, partition, state),
+              expected.getSortedInstancesForResource(resource, partition, state));
+          InstanceOrdinals ordinals =
+              compact.getInstanceOrdinalsForResource(resource, partition, state);
+          InstanceOrdinals expectedOrdinals =
+              expected.getInstanceOrdinalsForResource(resource, partition, state);
+          Assert.assertEquals(ordinals.size(), expectedOrdinals.size());
+          for (int i = 0; i < ordinals.size(); i++) {
+            Assert.assertEquals(ordinals.get(i), expectedOrdinals.get(i));
+          }
+          // the view is cached, later lookups do not allocate
+          Assert.assertSame(compact.getInstanceOrdinalsForResource(resource, partition, state),
+              ordinals);
+          try {
+            ordinals.get(ordinals.size());
+            Assert.fail("Reading past the view should fail");
+          } catch (IndexOutOfBoundsException e) {
+            // expected
+          }
+          if (!partition.startsWith("DB_0")) {
+            Assert.assertEquals(
+                new HashSet<>(compact.getInstancesForResourceGroup("GroupDB", partition, state)),
+                new HashSet<>(expected.getInstancesForResourceGroup("GroupDB", partition, state)));
+            Assert.assertEquals(
+                new HashSet<>(
+                    compact.getInstancesForResourceGroup("GroupDB", partition, state, tags)),
+                new HashSet<>(
+                    expected.getInstancesForResourceGroup("GroupDB", partition, state, tags)));
+          }
+        }
+      }
+    }
+    Assert.assertTrue(compact.getInstancesForResource("DB_0", "DB_0_100", "MASTER").isEmpty());
+    Assert.assertTrue(compact.getInstancesForResource("NoSuchDB", "MASTER").isEmpty());
+    Assert.assertTrue(compact.getInstancesForResourceGroup("NoSuchGroup", "MASTER").isEmpty());
+  }
+
+  @Test
+  public void testUnchangedResourcesAreShared() {
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs(6);
+    List<ExternalView> externalViews = createExternalViews();
+    CompactRoutingTable previous = new CompactRoutingTable(externalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+
+    List<ExternalView> newExternalViews = new ArrayList<>(externalViews);
+    ExternalView changed = new ExternalView(externalViews.get(1).getRecord());
+    changed.setState("DB_1_0", "localhost_12918", "OFFLINE");
+    newExternalViews.set(1, changed);
+    CompactRoutingTable current = new CompactRoutingTable(newExternalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, previous);
+
+    Assert.assertEquals(current.getInstancesForResource("DB_1", "DB_1_0", "OFFLINE").size(), 1);
+    Assert.assertTrue(previous.getInstancesForResource("DB_1", "DB_1_0", "OFFLINE").isEmpty());
+    Assert.assertEquals(current.getInstancesForResource("DB_0", "MASTER"),
+        previous.getInstancesForResource("DB_0", "MASTER"));
+  }
+}
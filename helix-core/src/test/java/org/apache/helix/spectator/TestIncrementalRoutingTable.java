@@ -0,0 +1,278 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestIncrementalRoutingTable {
+  private static final int NUM_INSTANCES = 3;
+
+  private List<InstanceConfig> createInstanceConfigs() {
+    List<InstanceConfig> instanceConfigs = new ArrayList<>();
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      InstanceConfig config = new InstanceConfig("localhost_" + (12918 + i));
+      config.setHostName("localhost");
+      config.setPort(Integer.toString(12918 + i));
+      instanceConfigs.add(config);
+    }
+    return instanceConfigs;
+  }
+
+  private ExternalView createExternalView(String resourceName, String resourceGroupName,
+      String masterInstance) {
+    ExternalView externalView = new ExternalView(resourceName);
+    if (resourceGroupName != null) {
+      externalView.getRecord().setSimpleField(
+          ExternalView.ExternalViewProperty.RESOURCE_GROUP_NAME.toString(), resourceGroupName);
+      externalView.getRecord().setSimpleField(
+          ExternalView.ExternalViewProperty.INSTANCE_GROUP_TAG.toString(), resourceName);
+      externalView.getRecord().setBooleanField(
+          ExternalView.ExternalViewProperty.GROUP_ROUTING_ENABLED.name(), true);
+    }
+    for (int p = 0; p < 4; p++) {
+      String partition = resourceGroupName == null ? resourceName + "_" + p : "Group_" + p;
+      for (int i = 0; i < NUM_INSTANCES; i++) {
+        String instanceName = "localhost_" + (12918 + i);
+        externalView.setState(partition, instanceName,
+            instanceName.equals(masterInstance) ? "MASTER" : "SLAVE");
+      }
+    }
+    return externalView;
+  }
+
+  @Test
+  public void testUnchangedResourcesAreShared() {
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs();
+    List<ExternalView> externalViews = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      externalViews.add(createExternalView("DB_" + i, null, "localhost_12918"));
+    }
+    externalViews.add(createExternalView("GroupDB_0", "GroupDB", "localhost_12918"));
+    externalViews.add(createExternalView("GroupDB_1", "GroupDB", "localhost_12918"));
+    externalViews.add(createExternalView("OtherGroupDB_0", "OtherGroupDB", "localhost_12918"));
+
+    RoutingTable previous = new RoutingTable(externalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+
+    // move the master of one resource and of one member of a resource group, drop one resource
+    List<ExternalView> newExternalViews = new ArrayList<>(externalViews);
+    newExternalViews.set(3, createExternalView("DB_3", null, "localhost_12919"));
+    newExternalViews.set(10, createExternalView("GroupDB_0", "GroupDB", "localhost_12920"));
+    newExternalViews.remove(9);
+    RoutingTable current = new RoutingTable(newExternalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, previous);
+
+    Assert.assertSame(current.get("DB_0"), previous.get("DB_0"));
+    Assert.assertNotSame(current.get("DB_3"), previous.get("DB_3"));
+    Assert.assertNull(current.get("DB_9"));
+    Assert.assertSame(current.get("GroupDB_1"), previous.get("GroupDB_1"));
+    Assert.assertNotSame(current.getResourceGroup("GroupDB"), previous.getResourceGroup("GroupDB"));
+    Assert.assertSame(current.getResourceGroup("OtherGroupDB"),
+        previous.getResourceGroup("OtherGroupDB"));
+
+    // the result must be the same as the one of a full build
+    RoutingTable expected = new RoutingTable(newExternalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+    Assert.assertEquals(current.getResources(), expected.getResources());
+    for (String resource : expected.getResources()) {
+      for (String state : new String[] { "MASTER", "SLAVE" }) {
+        Assert.assertEquals(current.getInstancesForResource(resource, state),
+            expected.getInstancesForResource(resource, state));
+        for (int p = 0; p < 4; p++) {
+          String partition = resource + "_" + p;
+          Assert.assertEquals(current.getInstancesForResource(resource, partition, state),
+              expected.getInstancesForResource(resource, partition, state));
+        }
+      }
+    }
+    for (String state : new String[] { "MASTER", "SLAVE" }) {
+      Assert.assertEquals(current.getInstancesForResourceGroup("GroupDB", state),
+          expected.getInstancesForResourceGroup("GroupDB", state));
+      Assert.assertEquals(
+          current.getInstancesForResourceGroup("GroupDB", "Group_0", state,
+              Collections.singletonList("GroupDB_0")),
+          expected.getInstancesForResourceGroup("GroupDB", "Group_0", state,
+              Collections.singletonList("GroupDB_0")));
+    }
+    Assert.assertEquals(current.getInstancesForResourceGroup("GroupDB", "MASTER").size(), 2);
+  }
+
+  @Test
+  public void testSortedAndOrdinalLookup() {
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs();
+    // add the instances in reverse order of their ids
+    ExternalView externalView = new ExternalView("DB_0");
+    for (int i = NUM_INSTANCES - 1; i >= 0; i--) {
+      externalView.setState("DB_0_0", "localhost_" + (12918 + i), "SLAVE");
+    }
+    RoutingTable routingTable = new RoutingTable(Collections.singletonList(externalView),
+        instanceConfigs, Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+    RoutingTableSnapshot snapshot = new RoutingTableSnapshot(routingTable);
+
+    List<InstanceConfig> sorted = snapshot.getSortedInstancesForResource("DB_0", "DB_0_0", "SLAVE");
+    Assert.assertSame(sorted,
+        snapshot.getSortedInstancesForResource("DB_0", "DB_0_0", "SLAVE"));
+    InstanceOrdinals ordinals =
+        snapshot.getInstanceOrdinalsForResource("DB_0", "DB_0_0", "SLAVE");
+    Assert.assertEquals(ordinals.size(), NUM_INSTANCES);
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      Assert.assertEquals(sorted.get(i).getInstanceName(), "localhost_" + (12918 + i));
+      Assert.assertSame(snapshot.getInstanceConfig(ordinals.get(i)), sorted.get(i));
+    }
+    try {
+      sorted.remove(0);
+      Assert.fail("The sorted instances should be immutable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      snapshot.getInstancesForResource("DB_0", "DB_0_0", "SLAVE").clear();
+      Assert.fail("The instances should be immutable");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    Assert.assertTrue(snapshot.getSortedInstancesForResource("DB_0", "DB_0_0", "MASTER").isEmpty());
+    Assert.assertTrue(snapshot.getInstanceOrdinalsForResource("DB_1", "DB_1_0", "SLAVE").isEmpty());
+  }
+
+  @Test
+  public void testDelta() {
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs();
+    List<ExternalView> externalViews = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      externalViews.add(createExternalView("DB_" + i, null, "localhost_12918"));
+    }
+    RoutingTable previous = new RoutingTable(externalViews, instanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+
+    // move the master of DB_0_1, drop a replica of DB_1_2 and add a replica on a new instance
+    List<ExternalView> newExternalViews = new ArrayList<>(externalViews);
+    ExternalView changed = createExternalView("DB_0", null, "localhost_12918");
+    changed.setState("DB_0_1", "localhost_12918", "SLAVE");
+    changed.setState("DB_0_1", "localhost_12919", "MASTER");
+    newExternalViews.set(0, changed);
+    changed = createExternalView("DB_1", null, "localhost_12918");
+    changed.getRecord().getMapField("DB_1_2").remove("localhost_12920");
+    changed.setState("DB_1_2", "localhost_12921", "SLAVE");
+    newExternalViews.set(1, changed);
+    List<InstanceConfig> newInstanceConfigs = new ArrayList<>(instanceConfigs);
+    InstanceConfig newInstance = new InstanceConfig("localhost_12921");
+    newInstanceConfigs.add(newInstance);
+    RoutingTable current = new RoutingTable(newExternalViews, newInstanceConfigs,
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, previous);
+
+    RoutingTableDelta delta = RoutingTableDelta.compute(previous, current);
+    Assert.assertEquals(delta.getAddedInstances(), Collections.singleton("localhost_12921"));
+    Assert.assertTrue(delta.getRemovedInstances().isEmpty());
+    Assert.assertEquals(delta.getReplicaChanges().size(), 4, delta.getReplicaChanges().toString());
+    for (RoutingTableDelta.ReplicaChange change : delta.getReplicaChanges()) {
+      switch (change.getChangeType()) {
+      case STATE_CHANGED:
+        Assert.assertEquals(change.getPartitionName(), "DB_0_1");
+        Assert.assertEquals(change.getCurrentState(),
+            change.getInstanceName().equals("localhost_12919") ? "MASTER" : "SLAVE");
+        break;
+      case ADDED:
+        Assert.assertEquals(change.getPartitionName(), "DB_1_2");
+        Assert.assertEquals(change.getInstanceName(), "localhost_12921");
+        Assert.assertEquals(change.getCurrentState(), "SLAVE");
+        break;
+      default:
+        Assert.assertEquals(change.getPartitionName(), "DB_1_2");
+        Assert.assertEquals(change.getInstanceName(), "localhost_12920");
+        Assert.assertEquals(change.getPreviousState(), "SLAVE");
+      }
+    }
+
+    Assert.assertTrue(RoutingTableDelta.compute(current, current).isEmpty());
+  }
+
+  @Test
+  public void testUnchangedCurrentStatesAreShared() {
+    List<InstanceConfig> instanceConfigs = createInstanceConfigs();
+    List<LiveInstance> liveInstances = new ArrayList<>();
+    Map<String, Map<String, Map<String, CurrentState>>> currentStateMap = new HashMap<>();
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      String instanceName = "localhost_" + (12918 + i);
+      LiveInstance liveInstance = new LiveInstance(instanceName);
+      liveInstance.setSessionId("session_" + i);
+      liveInstances.add(liveInstance);
+      Map<String, CurrentState> currentStates = new HashMap<>();
+      for (int r = 0; r < 3; r++) {
+        CurrentState currentState = new CurrentState("DB_" + r);
+        currentState.setSessionId("session_" + i);
+        currentState.setState("DB_" + r + "_0", i == 0 ? "MASTER" : "SLAVE");
+        currentStates.put("DB_" + r, currentState);
+      }
+      currentStateMap.put(instanceName,
+          Collections.singletonMap("session_" + i, currentStates));
+    }
+    RoutingTable previous = new RoutingTable(currentStateMap, instanceConfigs, liveInstances);
+
+    // a transition of DB_1 on localhost_12919
+    Map<String, Map<String, Map<String, CurrentState>>> newCurrentStateMap =
+        new HashMap<>(currentStateMap);
+    Map<String, CurrentState> currentStates =
+        new HashMap<>(currentStateMap.get("localhost_12919").get("session_1"));
+    CurrentState changed = new CurrentState("DB_1");
+    changed.setSessionId("session_1");
+    changed.setState("DB_1_0", "OFFLINE");
+    currentStates.put("DB_1", changed);
+    newCurrentStateMap.put("localhost_12919", Collections.singletonMap("session_1", currentStates));
+    RoutingTable current =
+        new RoutingTable(newCurrentStateMap, instanceConfigs, liveInstances, previous);
+
+    Assert.assertSame(current.get("DB_0"), previous.get("DB_0"));
+    Assert.assertSame(current.get("DB_2"), previous.get("DB_2"));
+    Assert.assertNotSame(current.get("DB_1"), previous.get("DB_1"));
+    Assert.assertEquals(current.getInstancesForResource("DB_1", "DB_1_0", "SLAVE").size(), 1);
+    Assert.assertEquals(current.getInstancesForResource("DB_1", "DB_1_0", "OFFLINE").size(), 1);
+    Assert.assertEquals(current.getInstancesForResource("DB_0", "DB_0_0", "SLAVE").size(), 2);
+
+    RoutingTableDelta delta = RoutingTableDelta.compute(previous, current);
+    Assert.assertEquals(delta.getReplicaChanges().size(), 1);
+    Assert.assertEquals(delta.getReplicaChanges().get(0).getCurrentState(), "OFFLINE");
+  }
+
+  @Test
+  public void testFullRebuildOnInstanceConfigChange() {
+    List<ExternalView> externalViews =
+        Collections.singletonList(createExternalView("DB_0", null, "localhost_12918"));
+    RoutingTable previous = new RoutingTable(externalViews, createInstanceConfigs(),
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null);
+    RoutingTable current = new RoutingTable(externalViews, createInstanceConfigs(),
+        Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, previous);
+    Assert.assertNotSame(current.get("DB_0"), previous.get("DB_0"));
+    Assert.assertEquals(current.getInstancesForResource("DB_0", "DB_0_0", "MASTER").size(), 1);
+  }
+}
@@ -0,0 +1,194 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.helix.HelixException;
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.CurrentState;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.apache.helix.tools.DefaultIdealStateCalculator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestMappedRoutingTable {
+  private final List<String> _instances = new ArrayList<>();
+  private final List<InstanceConfig> _instanceConfigs = new ArrayList<>();
+
+  public TestMappedRoutingTable() {
+    for (int i = 0; i < 5; i++) {
+      String instance = "localhost_" + (12918 + i);
+      _instances.add(instance);
+      InstanceConfig config = new InstanceConfig(instance);
+      config.setHostName("localhost");
+      config.setPort(Integer.toString(12918 + i));
+      _instanceConfigs.add(config);
+    }
+  }
+
+  private RoutingTableSnapshot createSnapshot(int numResources, int numPartitions) {
+    List<ExternalView> externalViews = new ArrayList<>();
+    for (int r = 0; r < numResources; r++) {
+      externalViews.add(new ExternalView(DefaultIdealStateCalculator
+          .calculateIdealState(_instances, numPartitions, 2, "DB_" + r, "MASTER", "SLAVE")));
+    }
+    return new RoutingTableSnapshot(new RoutingTable(externalViews, _instanceConfigs,
+        Collections.<LiveInstance> emptyList()));
+  }
+
+  private void assertSameRouting(RoutingTableSnapshot actual, RoutingTableSnapshot expected) {
+    Assert.assertEquals(new HashSet<>(actual.getResources()),
+        new HashSet<>(expected.getResources()));
+    Assert.assertEquals(actual.getPropertyType(), expected.getPropertyType());
+    Assert.assertEquals(actual.getExternalViews().size(), expected.getExternalViews().size());
+    for (ExternalView externalView : expected.getExternalViews()) {
+      String resource = externalView.getResourceName();
+      for (String state : new String[] { "MASTER", "SLAVE", "OFFLINE" }) {
+        Assert.assertEquals(actual.getInstancesForResource(resource, state),
+            expected.getInstancesForResource(resource, state));
+        for (String partition : externalView.getPartitionSet()) {
+          Assert.assertEquals(actual.getSortedInstancesForResource(resource, partition, state),
+              expected.getSortedInstancesForResource(resource, partition, state));
+          InstanceOrdinals ordinals =
+              actual.getInstanceOrdinalsForResource(resource, partition, state);
+          InstanceOrdinals expectedOrdinals =
+              expected.getInstanceOrdinalsForResource(resource, partition, state);
+          Assert.assertEquals(ordinals.size(), expectedOrdinals.size());
+          for (int i = 0; i < ordinals.size(); i++) {
+            Assert.assertEquals(actual.getInstanceConfig(ordinals.get(i)),
+                expected.getInstanceConfig(expectedOrdinals.get(i)));
+          }
+        }
+      }
+    }
+    Assert.assertTrue(actual.getSortedInstancesForResource("NoSuchDB", "DB_0_0", "MASTER")
+        .isEmpty());
+  }
+
+  @Test
+  public void testPublishAndRead() throws Exception {
+    File file = File.createTempFile("routingTable", ".bin");
+    file.deleteOnExit();
+    // the reader may be created before anything is published
+    MappedRoutingTableReader reader = new MappedRoutingTableReader(file);
+    MappedRoutingTablePublisher publisher = new MappedRoutingTablePublisher(file);
+    try {
+      Assert.assertTrue(reader.getRoutingTableSnapshot().getResources().isEmpty());
+
+      RoutingTableSnapshot snapshot = createSnapshot(2, 16);
+      publisher.publish(snapshot);
+      RoutingTableSnapshot read = reader.getRoutingTableSnapshot();
+      assertSameRouting(read, snapshot);
+      // not read again until the next publication
+      Assert.assertSame(reader.getRoutingTableSnapshot(), read);
+
+      RoutingTableSnapshot previousSnapshot = snapshot;
+      RoutingTableSnapshot previousRead = read;
+      snapshot = createSnapshot(8, 2000);
+      publisher.onRoutingTableChange(snapshot, null);
+      read = reader.getRoutingTableSnapshot();
+      Assert.assertNotSame(read, previousRead);
+      assertSameRouting(read, snapshot);
+      // the previous snapshot is looked up in the previous file, which is not modified
+      assertSameRouting(previousRead, previousSnapshot);
+    } finally {
+      publisher.close();
+      reader.close();
+    }
+
+    // a restarted publisher continues the sequence of the file
+    reader = new MappedRoutingTableReader(file);
+    publisher = new MappedRoutingTablePublisher(file);
+    try {
+      RoutingTableSnapshot snapshot = createSnapshot(1, 4);
+      Assert.assertEquals(reader.getRoutingTableSnapshot().getResources().size(), 8);
+      publisher.publish(snapshot);
+      assertSameRouting(reader.getRoutingTableSnapshot(), snapshot);
+    } finally {
+      publisher.close();
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testResourceGroups() throws Exception {
+    List<ExternalView> externalViews = new ArrayList<>();
+    for (int r = 0; r < 3; r++) {
+      ExternalView externalView = new ExternalView(DefaultIdealStateCalculator
+          .calculateIdealState(_instances, 8, 2, "GroupDB_" + r, "MASTER", "SLAVE"));
+      externalView.getRecord().setBooleanField(
+          ExternalView.ExternalViewProperty.GROUP_ROUTING_ENABLED.name(), true);
+      externalView.getRecord().setSimpleField(
+          ExternalView.ExternalViewProperty.RESOURCE_GROUP_NAME.name(), "GroupDB");
+      externalView.getRecord().setSimpleField(
+          ExternalView.ExternalViewProperty.INSTANCE_GROUP_TAG.name(), "tag_" + r);
+      externalViews.add(externalView);
+    }
+    RoutingTableSnapshot snapshot = new RoutingTableSnapshot(new RoutingTable(externalViews,
+        _instanceConfigs, Collections.<LiveInstance> emptyList()));
+
+    File file = File.createTempFile("routingTable", ".bin");
+    file.deleteOnExit();
+    MappedRoutingTablePublisher publisher = new MappedRoutingTablePublisher(file);
+    MappedRoutingTableReader reader = new MappedRoutingTableReader(file);
+    try {
+      publisher.publish(snapshot);
+      RoutingTableSnapshot read = reader.getRoutingTableSnapshot();
+      assertSameRouting(read, snapshot);
+      List<String> tags = Arrays.asList("tag_2", "tag_0");
+      for (String state : new String[] { "MASTER", "SLAVE" }) {
+        Assert.assertEquals(read.getInstancesForResourceGroup("GroupDB", state),
+            snapshot.getInstancesForResourceGroup("GroupDB", state));
+        Assert.assertEquals(read.getInstancesForResourceGroup("GroupDB", state, tags),
+            snapshot.getInstancesForResourceGroup("GroupDB", state, tags));
+      }
+      for (ExternalView externalView : read.getExternalViews()) {
+        Assert.assertTrue(externalView.isGroupRoutingEnabled());
+        Assert.assertEquals(externalView.getResourceGroupName(), "GroupDB");
+      }
+    } finally {
+      publisher.close();
+      reader.close();
+    }
+  }
+
+  @Test(expectedExceptions = HelixException.class)
+  public void testPublishCurrentStatesNotSupported() throws Exception {
+    File file = File.createTempFile("routingTable", ".bin");
+    file.deleteOnExit();
+    MappedRoutingTablePublisher publisher = new MappedRoutingTablePublisher(file);
+    try {
+      publisher.publish(new RoutingTableSnapshot(new RoutingTable(
+          Collections.<String, Map<String, Map<String, CurrentState>>> emptyMap(),
+          _instanceConfigs, Collections.<LiveInstance> emptyList())));
+    } finally {
+      publisher.close();
+    }
+  }
+}
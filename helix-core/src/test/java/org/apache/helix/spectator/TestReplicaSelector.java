@@ -0,0 +1,134 @@
+package org.apache.helix.spectator;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.helix.PropertyType;
+import org.apache.helix.model.ExternalView;
+import org.apache.helix.model.InstanceConfig;
+import org.apache.helix.model.LiveInstance;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestReplicaSelector {
+  private static final int NUM_INSTANCES = 4;
+  private static final int NUM_SELECTIONS = 1000;
+
+  /**
+   * DB_0 is hosted by all instances, DB_1 only by the instances in zone_1. Instances with an even
+   * index are in zone_0.
+   */
+  private RoutingTableSnapshot createSnapshot() {
+    List<InstanceConfig> instanceConfigs = new ArrayList<>();
+    ExternalView externalView = new ExternalView("DB");
+    for (int i = 0; i < NUM_INSTANCES; i++) {
+      String instanceName = "localhost_" + (12918 + i);
+      InstanceConfig config = new InstanceConfig(instanceName);
+      config.setHostName("localhost");
+      config.setPort(Integer.toString(12918 + i));
+      config.setDomain("zone=zone_" + (i % 2) + ",instance=" + instanceName);
+      instanceConfigs.add(config);
+      externalView.setState("DB_0", instanceName, "SLAVE");
+      if (i % 2 == 1) {
+        externalView.setState("DB_1", instanceName, "SLAVE");
+      }
+    }
+    return new RoutingTableSnapshot(new RoutingTable(Collections.singletonList(externalView),
+        instanceConfigs, Collections.<LiveInstance> emptyList(), PropertyType.EXTERNALVIEW, null));
+  }
+
+  private Set<String> select(RoutingTableSnapshot snapshot, ReplicaSelector selector,
+      String partition) {
+    Set<String> selected = new HashSet<>();
+    for (int i = 0; i < NUM_SELECTIONS; i++) {
+      selected.add(snapshot.selectInstance("DB", partition, "SLAVE", selector).getInstanceName());
+    }
+    return selected;
+  }
+
+  @Test
+  public void testRandom() {
+    RoutingTableSnapshot snapshot = createSnapshot();
+    ReplicaSelector selector = new ReplicaSelector.Builder().build();
+    Assert.assertEquals(select(snapshot, selector, "DB_0").size(), NUM_INSTANCES);
+    Assert.assertNull(snapshot.selectInstance("DB", "DB_0", "MASTER", selector));
+    Assert.assertNull(snapshot.selectInstance("DB", "DB_2", "SLAVE", selector));
+  }
+
+  @Test
+  public void testZoneLocalPreference() {
+    RoutingTableSnapshot snapshot = createSnapshot();
+    ReplicaSelector selector = new ReplicaSelector.Builder().setLocalZone("zone", "zone_0").build();
+    Set<String> selected = select(snapshot, selector, "DB_0");
+    Assert.assertEquals(selected, new HashSet<>(Arrays.asList("localhost_12918",
+        "localhost_12920")));
+    // no replica in the local zone
+    selected = select(snapshot, selector, "DB_1");
+    Assert.assertEquals(selected, new HashSet<>(Arrays.asList("localhost_12919",
+        "localhost_12921")));
+  }
+
+  @Test
+  public void testPowerOfTwoChoices() {
+    RoutingTableSnapshot snapshot = createSnapshot();
+    // the load is the instance index, so localhost_12921 is never selected
+    ReplicaSelector selector = new ReplicaSelector.Builder()
+        .setStrategy(ReplicaSelector.Strategy.POWER_OF_TWO_CHOICES)
+        .setLoadProvider(new InstanceLoadProvider() {
+          @Override
+          public double getLoad(InstanceConfig instanceConfig) {
+            return Integer.parseInt(instanceConfig.getPort()) - 12918;
+          }
+        }).build();
+    Set<String> selected = select(snapshot, selector, "DB_0");
+    Assert.assertFalse(selected.contains("localhost_12921"));
+    Assert.assertTrue(selected.contains("localhost_12918"));
+    // with two replicas the less loaded one is always selected
+    Assert.assertEquals(select(snapshot, selector, "DB_1"),
+        Collections.singleton("localhost_12919"));
+  }
+
+  @Test
+  public void testWeighted() {
+    RoutingTableSnapshot snapshot = createSnapshot();
+    final Set<String> overloaded = new HashSet<>();
+    ReplicaSelector selector = new ReplicaSelector.Builder()
+        .setStrategy(ReplicaSelector.Strategy.WEIGHTED)
+        .setLoadProvider(new InstanceLoadProvider() {
+          @Override
+          public double getLoad(InstanceConfig instanceConfig) {
+            return overloaded.contains(instanceConfig.getInstanceName()) ? 1e9 : 0;
+          }
+        }).build();
+    Assert.assertEquals(select(snapshot, selector, "DB_0").size(), NUM_INSTANCES);
+
+    overloaded.add("localhost_12918");
+    overloaded.add("localhost_12919");
+    Set<String> selected = select(snapshot, selector, "DB_0");
+    Assert.assertFalse(selected.contains("localhost_12918"));
+    Assert.assertFalse(selected.contains("localhost_12919"));
+  }
+}
@@ -19,7 +19,14 @@ package org.apache.helix.spectator;
  * under the License.
  */
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.google.common.collect.ImmutableMap;
 
 import org.apache.helix.HelixConstants;
 import org.apache.helix.PropertyType;
@@ -167,4 +174,51 @@ public class TestRoutingDataCache extends ZkStandAloneCMTestBase {
     // No change.
     Assert.assertEquals(cache.getCurrentStatesMap(), currentStatesV2);
   }
+
+  @Test
+  public void testParallelRefresh() {
+    MockZkHelixDataAccessor accessor =
+        new MockZkHelixDataAccessor(CLUSTER_NAME, new ZkBaseDataAccessor<>(_gZkClient));
+    Map<PropertyType, List<String>> sourceDataTypeMap =
+        ImmutableMap.of(PropertyType.EXTERNALVIEW, Collections.<String> emptyList(),
+            PropertyType.TARGETEXTERNALVIEW, Collections.<String> emptyList(),
+            PropertyType.CURRENTSTATES, Collections.<String> emptyList());
+    String clusterName = "CLUSTER_" + TestHelper.getTestClassName();
+    RoutingDataCache sequentialCache = new RoutingDataCache(clusterName, sourceDataTypeMap);
+    RoutingDataCache parallelCache = new RoutingDataCache(clusterName, sourceDataTypeMap);
+
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      List<PropertyType> refreshedSources = Collections.synchronizedList(new ArrayList<>());
+      sequentialCache.refresh(accessor);
+      parallelCache.refresh(accessor, executor, (propertyType, customizedStateType) -> {
+        Assert.assertNull(customizedStateType);
+        // the shared data is refreshed before any source is published
+        Assert.assertFalse(parallelCache.getLiveInstances().isEmpty());
+        refreshedSources.add(propertyType);
+      });
+      Assert.assertEquals(refreshedSources.size(), 3);
+      Assert.assertTrue(refreshedSources.containsAll(sourceDataTypeMap.keySet()));
+
+      Assert.assertEquals(parallelCache.getExternalViews().keySet(),
+          sequentialCache.getExternalViews().keySet());
+      Assert.assertEquals(parallelCache.getTargetExternalViews().keySet(),
+          sequentialCache.getTargetExternalViews().keySet());
+      Assert.assertEquals(parallelCache.getCurrentStatesMap().keySet(),
+          sequentialCache.getCurrentStatesMap().keySet());
+      Assert.assertEquals(parallelCache.getLiveInstances().keySet(),
+          sequentialCache.getLiveInstances().keySet());
+
+      // Nothing changed, every source is still published but nothing is read
+      accessor.clearReadCounters();
+      refreshedSources.clear();
+      parallelCache.refresh(accessor, executor,
+          (propertyType, customizedStateType) -> refreshedSources.add(propertyType));
+      Assert.assertEquals(refreshedSources.size(), 3);
+      Assert.assertEquals(accessor.getReadCount(PropertyType.EXTERNALVIEW), 0);
+      Assert.assertEquals(accessor.getReadCount(PropertyType.CURRENTSTATES), 0);
+    } finally {
+      executor.shutdown();
+    }
+  }
 }
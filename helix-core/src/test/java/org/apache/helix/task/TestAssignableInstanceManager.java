@@ -20,12 +20,18 @@ package org.apache.helix.task;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.helix.zookeeper.datamodel.ZNRecord;
 import org.apache.helix.common.caches.TaskDataCache;
@@ -151,6 +157,77 @@ public class TestAssignableInstanceManager {
     }
   }
 
+  @Test
+  public void testConcurrentReserve() throws Exception {
+    ClusterConfig clusterConfig = new ClusterConfig(CLUSTER_NAME);
+    clusterConfig.setTaskQuotaRatio("A", 1);
+    clusterConfig.setTaskQuotaRatio("B", 1);
+    Map<String, LiveInstance> liveInstances = new HashMap<>();
+    Map<String, InstanceConfig> instanceConfigs = new HashMap<>();
+    for (int i = 0; i < NUM_PARTICIPANTS; i++) {
+      String instanceName = INSTANCE_PREFIX + i;
+      liveInstances.put(instanceName, new LiveInstance(instanceName));
+      instanceConfigs.put(instanceName, new InstanceConfig(instanceName));
+    }
+    AssignableInstanceManager assignableInstanceManager = new AssignableInstanceManager();
+    assignableInstanceManager.buildAssignableInstances(clusterConfig,
+        new MockTaskDataCache(CLUSTER_NAME), liveInstances, instanceConfigs);
+    String resourceType = LiveInstance.InstanceResourceType.TASK_EXEC_THREAD.name();
+    Map<String, Integer> capacity = new HashMap<>();
+    for (AssignableInstance assignableInstance : assignableInstanceManager
+        .getAssignableInstanceMap().values()) {
+      for (Map.Entry<String, Integer> quota : assignableInstance.getTotalCapacity()
+          .get(resourceType).entrySet()) {
+        capacity.merge(quota.getKey(), quota.getValue(), Integer::sum);
+      }
+    }
+
+    // Two threads per quota type reserve more tasks than the instances can take, like the
+    // scheduling of the workflows of different quota types in parallel
+    List<String> instances = new ArrayList<>(liveInstances.keySet());
+    Map<String, AtomicInteger> reserved = new HashMap<>();
+    List<Callable<Void>> reservations = new ArrayList<>();
+    for (String quotaType : Arrays.asList("A", "B")) {
+      AtomicInteger count = new AtomicInteger();
+      reserved.put(quotaType, count);
+      for (int t = 0; t < 2; t++) {
+        String taskPrefix = quotaType + "_" + t + "_";
+        reservations.add(() -> {
+          for (int i = 0; i < capacity.get(quotaType); i++) {
+            TaskConfig task = new TaskConfig.Builder().setTaskId(taskPrefix + i).build();
+            TaskAssignResult result = assignableInstanceManager
+                .reserve(instances.get(i % instances.size()), task, quotaType);
+            if (result.isSuccessful()) {
+              count.incrementAndGet();
+            }
+          }
+          return null;
+        });
+      }
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(reservations.size());
+    try {
+      for (Future<Void> future : executor.invokeAll(reservations)) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Every slot is taken exactly once
+    for (String quotaType : reserved.keySet()) {
+      Assert.assertEquals(reserved.get(quotaType).get(), (int) capacity.get(quotaType));
+      Assert.assertFalse(assignableInstanceManager.hasGlobalCapacity(quotaType));
+    }
+    Assert.assertEquals(assignableInstanceManager.getTaskAssignResultMap().size(),
+        capacity.get("A") + capacity.get("B"));
+    for (AssignableInstance assignableInstance : assignableInstanceManager
+        .getAssignableInstanceMap().values()) {
+      Assert.assertEquals(assignableInstance.getUsedCapacity(),
+          assignableInstance.getTotalCapacity());
+    }
+  }
+
   public class MockTaskDataCache extends TaskDataCache {
     private Map<String, JobConfig> _jobConfigMap;
     private Map<String, WorkflowConfig> _workflowConfigMap;
@@ -0,0 +1,170 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.HelixManager;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.helix.zookeeper.zkclient.DataUpdater;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TestAsyncTaskRunner {
+  private static final String JOB = "job";
+
+  @Test
+  public void testCancelAsyncTask() {
+    HelixManager manager = mock(HelixManager.class);
+    CompletableFuture<TaskResult> result = new CompletableFuture<>();
+    AsyncTask task = (cancellationToken, progressReporter) -> {
+      cancellationToken.onCancel(
+          () -> result.complete(new TaskResult(TaskResult.Status.CANCELED, "cancelled")));
+      return result;
+    };
+    TaskRunner runner =
+        new TaskRunner(task, JOB, JOB + "_0", "instance", manager, "session");
+
+    // The thread is released while the task is running
+    runner.run();
+    Assert.assertFalse(result.isDone());
+
+    runner.cancel();
+    Assert.assertEquals(runner.waitTillDone().getStatus(), TaskResult.Status.CANCELED);
+  }
+
+  @Test
+  public void testFailedAsyncTask() {
+    HelixManager manager = mock(HelixManager.class);
+    CompletableFuture<TaskResult> result = new CompletableFuture<>();
+    TaskRunner runner = new TaskRunner(
+        (AsyncTask) (cancellationToken, progressReporter) -> result, JOB, JOB + "_0", "instance",
+        manager, "session");
+    runner.run();
+    result.completeExceptionally(new IllegalStateException("failed"));
+    Assert.assertEquals(runner.waitTillDone().getStatus(), TaskResult.Status.FAILED);
+  }
+
+  @Test
+  public void testProgressWrittenInBatches() {
+    List<DataUpdater<ZNRecord>> updaters = new ArrayList<>();
+    HelixManager manager = mockManager(updaters);
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    System.setProperty(SystemPropertyKeys.TASK_PROGRESS_FLUSH_INTERVAL, "3600000");
+    TaskProgressBatcher batcher;
+    try {
+      batcher = new TaskProgressBatcher(manager, scheduler);
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_PROGRESS_FLUSH_INTERVAL);
+    }
+
+    try {
+      CompletableFuture<TaskResult> result = new CompletableFuture<>();
+      AsyncTask task = (cancellationToken, progressReporter) -> {
+        for (int i = 0; i <= 100; i++) {
+          progressReporter.report("progress", String.valueOf(i));
+        }
+        return result;
+      };
+      TaskRunner runner =
+          new TaskRunner(task, JOB, JOB + "_0", "instance", manager, "session", batcher,
+              new RequestedStateBatcher());
+      runner.run();
+      new TaskProgressReporter(batcher, JOB, JOB + "_1").report("chunk_0", "data");
+      // Nothing is written before the flush interval
+      Assert.assertTrue(updaters.isEmpty());
+
+      // The progress of all the tasks of the job is written with one update
+      batcher.flush();
+      Assert.assertEquals(updaters.size(), 1);
+      ZNRecord record = updaters.get(0).update(null);
+      Assert.assertEquals(record.getMapField(JOB + "_0"),
+          Collections.singletonMap("progress", "100"));
+      Assert.assertEquals(record.getMapField(JOB + "_1"),
+          Collections.singletonMap("chunk_0", "data"));
+
+      // The last progress of a task is written with the next periodic write after the task
+      // completes, and the result is reported after that write
+      new TaskProgressReporter(batcher, JOB, JOB + "_0").report("result", "done");
+      result.complete(new TaskResult(TaskResult.Status.COMPLETED, ""));
+      Assert.assertEquals(updaters.size(), 1);
+      batcher.flush();
+      Assert.assertEquals(runner.waitTillDone().getStatus(), TaskResult.Status.COMPLETED);
+      Assert.assertEquals(updaters.size(), 2);
+      Map<String, String> content = updaters.get(1).update(record).getMapField(JOB + "_0");
+      Assert.assertEquals(content.get("progress"), "100");
+      Assert.assertEquals(content.get("result"), "done");
+    } finally {
+      scheduler.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRunAsyncTaskSynchronously() {
+    AsyncTask task = (cancellationToken, progressReporter) -> {
+      progressReporter.report("progress", "100");
+      return CompletableFuture.completedFuture(new TaskResult(TaskResult.Status.COMPLETED, "done"));
+    };
+    TaskResult result = task.run();
+    Assert.assertEquals(result.getStatus(), TaskResult.Status.COMPLETED);
+    Assert.assertEquals(result.getInfo(), "done");
+  }
+
+  @Test
+  public void testParticipantBatcherShared() {
+    HelixManager manager = mock(HelixManager.class);
+    TaskProgressBatcher batcher = new TaskProgressBatcher(manager, null);
+    TaskProgressBatcher.register(manager, batcher);
+    try {
+      Assert.assertSame(TaskProgressBatcher.getParticipantBatcher(manager, null), batcher);
+    } finally {
+      TaskProgressBatcher.unregister(manager, batcher);
+    }
+    Assert.assertNotSame(TaskProgressBatcher.getParticipantBatcher(manager, null), batcher);
+  }
+
+  @SuppressWarnings("unchecked")
+  private HelixManager mockManager(List<DataUpdater<ZNRecord>> updaters) {
+    HelixManager manager = mock(HelixManager.class);
+    ZkHelixPropertyStore<ZNRecord> propertyStore = mock(ZkHelixPropertyStore.class);
+    when(manager.getHelixPropertyStore()).thenReturn(propertyStore);
+    doAnswer(invocation -> {
+      updaters.add((DataUpdater<ZNRecord>) invocation.getArguments()[1]);
+      return true;
+    }).when(propertyStore).update(anyString(), any(DataUpdater.class), eq(AccessOption.PERSISTENT));
+    return manager;
+  }
+}
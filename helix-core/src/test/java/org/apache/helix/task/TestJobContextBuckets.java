@@ -0,0 +1,162 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.PropertyPathBuilder;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.common.ZkTestBase;
+import org.apache.helix.common.caches.TaskDataCache;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.store.zk.ZkHelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.apache.zookeeper.data.Stat;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestJobContextBuckets extends ZkTestBase {
+  private static final int NUM_PARTITIONS = 500;
+  private static final int BUCKET_SIZE = 50;
+
+  @Test
+  public void testEncodeDecode() {
+    JobContext jobContext = createJobContext("job");
+    ZNRecord record = jobContext.getRecord();
+    // a partition without any property
+    record.setMapField(String.valueOf(NUM_PARTITIONS), new TreeMap<>());
+
+    ZNRecord root = JobContextBuckets.encodeRoot(record, BUCKET_SIZE);
+    Assert.assertTrue(JobContextBuckets.isBucketed(root));
+    Assert.assertTrue(root.getMapFields().isEmpty());
+    Assert.assertEquals(JobContextBuckets.getBucketPaths("/job/Context", root).size(),
+        NUM_PARTITIONS / BUCKET_SIZE + 1);
+    Assert.assertEquals(JobContextBuckets.getBucketPath("/job/Context", 3),
+        "/job/" + TaskConstants.CONTEXT_BUCKETS_NODE + "/3");
+
+    ZNRecord decoded = JobContextBuckets.decode(root,
+        JobContextBuckets.encodeBuckets(record, BUCKET_SIZE, null).values());
+    Assert.assertFalse(JobContextBuckets.isBucketed(decoded));
+    Assert.assertEquals(decoded.getSimpleFields(), record.getSimpleFields());
+    Assert.assertEquals(decoded.getMapFields(), record.getMapFields());
+
+    // only the requested buckets are built
+    Assert.assertEquals(JobContextBuckets
+        .encodeBuckets(record, BUCKET_SIZE, Collections.singleton(2)).keySet(),
+        Collections.singleton(2));
+  }
+
+  @Test
+  public void testPersistChangedBuckets() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName();
+    String jobName = "job";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    ZkHelixPropertyStore<ZNRecord> propertyStore =
+        new ZkHelixPropertyStore<>(new ZkBaseDataAccessor<>(_gZkClient),
+            PropertyPathBuilder.propertyStore(clusterName), null);
+    String contextPath = String.format("/%s/PROPERTYSTORE%s/%s/%s", clusterName,
+        TaskConstants.REBALANCER_CONTEXT_ROOT, jobName, TaskConstants.CONTEXT_NODE);
+
+    System.setProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_THRESHOLD,
+        String.valueOf(NUM_PARTITIONS - 1));
+    System.setProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_SIZE,
+        String.valueOf(BUCKET_SIZE));
+    TaskDataCache cache;
+    try {
+      cache = new TaskDataCache(clusterName);
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_THRESHOLD);
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_SIZE);
+    }
+
+    try {
+      // The context is larger than the threshold, it is converted to buckets
+      JobContext jobContext = createJobContext(jobName);
+      cache.updateJobContext(jobName, jobContext);
+      cache.persistDataChanges(accessor);
+      ZNRecord root = _baseAccessor.get(contextPath, null, AccessOption.PERSISTENT);
+      Assert.assertTrue(JobContextBuckets.isBucketed(root));
+      Assert.assertTrue(root.getMapFields().isEmpty());
+      Assert.assertEquals(TaskUtil.getJobContext(propertyStore, jobName).getRecord().getMapFields(),
+          jobContext.getRecord().getMapFields());
+
+      List<String> bucketPaths = JobContextBuckets.getBucketPaths(contextPath, root);
+      Assert.assertEquals(bucketPaths.size(), NUM_PARTITIONS / BUCKET_SIZE);
+      List<Stat> stats = getStats(bucketPaths);
+
+      // Only the bucket of the changed partition is written
+      cache.refresh(accessor, Collections.emptyMap());
+      jobContext = cache.getJobContext(jobName);
+      Assert.assertEquals(jobContext.getPartitionState(123), TaskPartitionState.RUNNING);
+      jobContext.setPartitionState(123, TaskPartitionState.COMPLETED);
+      cache.updateJobContext(jobName, jobContext);
+      cache.persistDataChanges(accessor);
+
+      List<Stat> newStats = getStats(bucketPaths);
+      for (int i = 0; i < bucketPaths.size(); i++) {
+        Assert.assertEquals(newStats.get(i).getVersion(),
+            stats.get(i).getVersion() + (i == 123 / BUCKET_SIZE ? 1 : 0));
+      }
+      Assert.assertEquals(TaskUtil.getJobContext(propertyStore, jobName).getPartitionState(123),
+          TaskPartitionState.COMPLETED);
+      cache.refresh(accessor, Collections.emptyMap());
+      Assert.assertEquals(cache.getJobContext(jobName).getPartitionState(123),
+          TaskPartitionState.COMPLETED);
+
+      // The buckets are removed with the context
+      cache.removeContext(jobName);
+      cache.persistDataChanges(accessor);
+      Assert.assertFalse(_baseAccessor.exists(contextPath, AccessOption.PERSISTENT));
+      Assert.assertFalse(_baseAccessor.exists(JobContextBuckets.getBucketsPath(contextPath),
+          AccessOption.PERSISTENT));
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  private List<Stat> getStats(List<String> paths) {
+    List<Stat> stats = new ArrayList<>();
+    for (String path : paths) {
+      stats.add(_baseAccessor.getStat(path, AccessOption.PERSISTENT));
+    }
+    return stats;
+  }
+
+  private JobContext createJobContext(String jobName) {
+    JobContext jobContext = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
+    jobContext.setName(jobName);
+    jobContext.setStartTime(System.currentTimeMillis());
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      jobContext.setPartitionState(i, TaskPartitionState.RUNNING);
+      jobContext.setAssignedParticipant(i, "localhost_" + (12918 + i % 5));
+      jobContext.setPartitionNumAttempts(i, 1);
+    }
+    return jobContext;
+  }
+}
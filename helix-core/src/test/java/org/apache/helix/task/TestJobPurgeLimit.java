@@ -0,0 +1,163 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.controller.dataproviders.WorkflowControllerDataProvider;
+import org.apache.helix.controller.stages.AttributeName;
+import org.apache.helix.controller.stages.ClusterEvent;
+import org.apache.helix.controller.stages.ClusterEventType;
+import org.apache.helix.controller.stages.TaskGarbageCollectionStage;
+import org.apache.helix.integration.task.MockTask;
+import org.apache.helix.integration.task.TaskTestUtil;
+import org.apache.helix.integration.task.WorkflowGenerator;
+import org.apache.helix.store.HelixPropertyStore;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class TestJobPurgeLimit extends TaskSynchronizedTestBase {
+  private static final int NUM_JOBS = 5;
+  private static final int JOB_PURGE_LIMIT = 2;
+  private static final long JOB_PURGE_BACKLOG_DELAY = 2000L;
+
+  @BeforeClass
+  public void beforeClass() throws Exception {
+    setSingleTestEnvironment();
+    super.beforeClass();
+  }
+
+  @Test
+  public void testRemoveJobs() {
+    HelixDataAccessor accessor = _manager.getHelixDataAccessor();
+    HelixPropertyStore<ZNRecord> propertyStore = _manager.getHelixPropertyStore();
+    PropertyKey.Builder keyBuilder = accessor.keyBuilder();
+    String job = TestHelper.getTestMethodName() + "_job";
+    String jobWithConfigOnly = TestHelper.getTestMethodName() + "_configOnly";
+
+    String[] paths = new String[] {
+        keyBuilder.resourceConfig(job).getPath(),
+        keyBuilder.idealStates(job).getPath(),
+        keyBuilder.externalView(job).getPath(),
+        keyBuilder.resourceConfig(jobWithConfigOnly).getPath()
+    };
+    for (String path : paths) {
+      _baseAccessor.create(path, new ZNRecord(job), AccessOption.PERSISTENT);
+    }
+    // A context with children can only be removed recursively
+    String contextRoot = TaskConstants.REBALANCER_CONTEXT_ROOT + "/" + job;
+    String contextPath = contextRoot + "/" + TaskUtil.CONTEXT_NODE;
+    propertyStore.create(contextPath, new ZNRecord(job), AccessOption.PERSISTENT);
+    propertyStore.create(contextPath + "/bucket_0", new ZNRecord(job), AccessOption.PERSISTENT);
+    propertyStore.create(contextRoot + "/" + TaskConstants.PREV_RA_NODE, new ZNRecord(job),
+        AccessOption.PERSISTENT);
+
+    Set<String> jobs = new HashSet<>(Arrays.asList(job, jobWithConfigOnly));
+    Assert.assertEquals(TaskUtil.removeJobs(accessor, propertyStore, jobs), jobs);
+    for (String path : paths) {
+      Assert.assertFalse(_baseAccessor.exists(path, AccessOption.PERSISTENT));
+    }
+    Assert.assertFalse(propertyStore.exists(contextRoot, AccessOption.PERSISTENT));
+  }
+
+  @Test
+  public void testPurgeLimit() throws Exception {
+    String queue = TestHelper.getTestMethodName();
+    JobQueue.Builder builder = TaskTestUtil.buildJobQueue(queue);
+    JobConfig.Builder jobBuilder =
+        new JobConfig.Builder().setTargetResource(WorkflowGenerator.DEFAULT_TGT_DB)
+            .setCommand(MockTask.TASK_COMMAND)
+            .setJobCommandConfigMap(WorkflowGenerator.DEFAULT_COMMAND_CONFIG).setExpiry(1L);
+    TaskState[] jobStates = new TaskState[NUM_JOBS];
+    for (int i = 0; i < NUM_JOBS; i++) {
+      builder.enqueueJob(TaskTestUtil.JOB_KW + i, jobBuilder);
+      jobStates[i] = TaskState.COMPLETED;
+    }
+    _driver.start(builder.build());
+
+    long startTime = System.currentTimeMillis() - 10000L;
+    for (int i = 0; i < NUM_JOBS; i++) {
+      String job = TaskUtil.getNamespacedJobName(queue, TaskTestUtil.JOB_KW + i);
+      TaskUtil.setJobContext(_manager, job,
+          TaskTestUtil.buildJobContext(startTime, startTime, TaskPartitionState.COMPLETED));
+    }
+    WorkflowContext workflowContext =
+        TaskTestUtil.buildWorkflowContext(queue, TaskState.IN_PROGRESS, startTime, jobStates);
+    TaskUtil.setWorkflowContext(_manager, queue, workflowContext);
+
+    TaskGarbageCollectionStage stage;
+    System.setProperty(SystemPropertyKeys.TASK_JOB_PURGE_LIMIT, String.valueOf(JOB_PURGE_LIMIT));
+    System.setProperty(SystemPropertyKeys.TASK_JOB_PURGE_BACKLOG_DELAY,
+        String.valueOf(JOB_PURGE_BACKLOG_DELAY));
+    try {
+      stage = new TaskGarbageCollectionStage();
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_PURGE_LIMIT);
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_PURGE_BACKLOG_DELAY);
+    }
+
+    // The first run purges the jobs up to the limit
+    long firstRunTime = System.currentTimeMillis();
+    runStage(stage);
+    Assert.assertEquals(getNumJobs(queue), NUM_JOBS - JOB_PURGE_LIMIT);
+
+    // The purge time is updated by the main pipeline, so the rest of the expired jobs are only
+    // purged once the backlog delay has passed
+    workflowContext = _driver.getWorkflowContext(queue);
+    workflowContext.setLastJobPurgeTime(System.currentTimeMillis());
+    TaskUtil.setWorkflowContext(_manager, queue, workflowContext);
+    runStage(stage);
+    if (System.currentTimeMillis() < firstRunTime + JOB_PURGE_BACKLOG_DELAY) {
+      Assert.assertEquals(getNumJobs(queue), NUM_JOBS - JOB_PURGE_LIMIT);
+    }
+
+    Thread.sleep(JOB_PURGE_BACKLOG_DELAY);
+    runStage(stage);
+    Assert.assertEquals(getNumJobs(queue), NUM_JOBS - 2 * JOB_PURGE_LIMIT);
+
+    // The last expired job is below the limit, so nothing is left for another run
+    Thread.sleep(JOB_PURGE_BACKLOG_DELAY);
+    runStage(stage);
+    Assert.assertEquals(getNumJobs(queue), 0);
+  }
+
+  private void runStage(TaskGarbageCollectionStage stage) {
+    WorkflowControllerDataProvider dataProvider =
+        TaskTestUtil.buildDataProvider(_manager.getHelixDataAccessor(), CLUSTER_NAME);
+    ClusterEvent event = new ClusterEvent(CLUSTER_NAME, ClusterEventType.Unknown);
+    event.addAttribute(AttributeName.ControllerDataProvider.name(), dataProvider);
+    event.addAttribute(AttributeName.helixmanager.name(), _manager);
+    stage.execute(event);
+  }
+
+  private int getNumJobs(String queue) {
+    return _driver.getWorkflowConfig(queue).getJobDag().getAllNodes().size();
+  }
+}
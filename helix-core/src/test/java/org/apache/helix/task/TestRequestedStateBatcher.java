@@ -0,0 +1,170 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.helix.HelixDataAccessor;
+import org.apache.helix.HelixProperty;
+import org.apache.helix.PropertyKey;
+import org.apache.helix.TestHelper;
+import org.apache.helix.model.CurrentState;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+public class TestRequestedStateBatcher {
+  private static final String JOB = "job";
+
+  @Test
+  public void testRequestsMergedWhileWriting() throws Exception {
+    HelixDataAccessor accessor = mock(HelixDataAccessor.class);
+    PropertyKey key = new PropertyKey.Builder("cluster").currentState("instance", "session", JOB);
+    List<Map<String, String>> updates = new ArrayList<>();
+    CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    CountDownLatch firstWriteReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      CurrentState delta = (CurrentState) invocation.getArguments()[1];
+      Map<String, String> requestedStates = new HashMap<>();
+      for (String partition : delta.getRecord().getMapFields().keySet()) {
+        requestedStates.put(partition, delta.getRequestedState(partition));
+      }
+      boolean first;
+      synchronized (updates) {
+        updates.add(requestedStates);
+        first = updates.size() == 1;
+      }
+      if (first) {
+        firstWriteStarted.countDown();
+        firstWriteReleased.await();
+      }
+      return true;
+    }).when(accessor).updateProperty(eq(key), any(HelixProperty.class));
+
+    RequestedStateBatcher batcher = new RequestedStateBatcher();
+    ExecutorService executor = Executors.newFixedThreadPool(5);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      results.add(executor.submit(() -> batcher.request(accessor, key, JOB, JOB + "_0",
+          TaskPartitionState.COMPLETED)));
+      Assert.assertTrue(firstWriteStarted.await(10, TimeUnit.SECONDS));
+
+      // The requests made during the first write are queued
+      for (int i = 1; i < 5; i++) {
+        String partition = JOB + "_" + i;
+        results.add(executor.submit(() -> batcher.request(accessor, key, JOB, partition,
+            TaskPartitionState.TASK_ERROR)));
+      }
+      Assert.assertTrue(TestHelper.verify(() -> batcher.getPendingRequests(key) == 4,
+          TestHelper.WAIT_DURATION));
+      firstWriteReleased.countDown();
+
+      for (Future<Boolean> result : results) {
+        Assert.assertTrue(result.get(10, TimeUnit.SECONDS));
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // and written with one update
+    Assert.assertEquals(updates.size(), 2);
+    Assert.assertEquals(updates.get(0).get(JOB + "_0"), TaskPartitionState.COMPLETED.name());
+    Assert.assertEquals(updates.get(1).size(), 4);
+    for (int i = 1; i < 5; i++) {
+      Assert.assertEquals(updates.get(1).get(JOB + "_" + i), TaskPartitionState.TASK_ERROR.name());
+    }
+  }
+
+  @Test
+  public void testInterruptedRequest() throws Exception {
+    HelixDataAccessor accessor = mock(HelixDataAccessor.class);
+    PropertyKey key = new PropertyKey.Builder("cluster").currentState("instance", "session", JOB);
+    List<Map<String, String>> updates = new ArrayList<>();
+    CountDownLatch firstWriteStarted = new CountDownLatch(1);
+    CountDownLatch firstWriteReleased = new CountDownLatch(1);
+    doAnswer(invocation -> {
+      CurrentState delta = (CurrentState) invocation.getArguments()[1];
+      Map<String, String> requestedStates = new HashMap<>();
+      for (String partition : delta.getRecord().getMapFields().keySet()) {
+        requestedStates.put(partition, delta.getRequestedState(partition));
+      }
+      synchronized (updates) {
+        updates.add(requestedStates);
+      }
+      firstWriteStarted.countDown();
+      firstWriteReleased.await();
+      return true;
+    }).when(accessor).updateProperty(eq(key), any(HelixProperty.class));
+
+    RequestedStateBatcher batcher = new RequestedStateBatcher();
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Boolean> first = executor.submit(() -> batcher.request(accessor, key, JOB,
+          JOB + "_0", TaskPartitionState.COMPLETED));
+      Assert.assertTrue(firstWriteStarted.await(10, TimeUnit.SECONDS));
+
+      // A request interrupted while waiting for the first write is withdrawn
+      Future<Boolean> interrupted = executor.submit(() -> batcher.request(accessor, key, JOB,
+          JOB + "_1", TaskPartitionState.TASK_ERROR));
+      Assert.assertTrue(TestHelper.verify(() -> batcher.getPendingRequests(key) == 1,
+          TestHelper.WAIT_DURATION));
+      interrupted.cancel(true);
+      Assert.assertTrue(TestHelper.verify(() -> batcher.getPendingRequests(key) == 0,
+          TestHelper.WAIT_DURATION));
+
+      firstWriteReleased.countDown();
+      Assert.assertTrue(first.get(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    Assert.assertEquals(updates.size(), 1);
+    Assert.assertEquals(updates.get(0).keySet(), Collections.singleton(JOB + "_0"));
+  }
+
+  @Test
+  public void testFailedRequest() {
+    HelixDataAccessor accessor = mock(HelixDataAccessor.class);
+    PropertyKey key = new PropertyKey.Builder("cluster").currentState("instance", "session", JOB);
+    doAnswer(invocation -> {
+      throw new IllegalStateException("ZK is not available");
+    }).when(accessor).updateProperty(eq(key), any(HelixProperty.class));
+
+    RequestedStateBatcher batcher = new RequestedStateBatcher();
+    Assert.assertFalse(
+        batcher.request(accessor, key, JOB, JOB + "_0", TaskPartitionState.COMPLETED));
+    // The next request is not blocked by the failed one
+    Assert.assertFalse(
+        batcher.request(accessor, key, JOB, JOB + "_1", TaskPartitionState.COMPLETED));
+  }
+}
@@ -0,0 +1,263 @@
+package org.apache.helix.task;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.helix.AccessOption;
+import org.apache.helix.SystemPropertyKeys;
+import org.apache.helix.TestHelper;
+import org.apache.helix.common.ZkTestBase;
+import org.apache.helix.common.caches.TaskDataCache;
+import org.apache.helix.manager.zk.ZKHelixDataAccessor;
+import org.apache.helix.manager.zk.ZkBaseDataAccessor;
+import org.apache.helix.zookeeper.datamodel.ZNRecord;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestTaskContextWriteSkip extends ZkTestBase {
+  private static final int NUM_PARTITIONS = 100;
+
+  @Test
+  public void testSkipUnchangedContext() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName() + "_unchanged";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    String jobName = "job";
+    String contextPath = getContextPath(clusterName, jobName);
+
+    TaskDataCache cache = new TaskDataCache(clusterName);
+    try {
+      cache.updateJobContext(jobName, createJobContext(jobName));
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getPersistedRecords(), 1);
+      int version = getVersion(contextPath);
+
+      // A context updated without any change is not written
+      cache.refresh(accessor, Collections.emptyMap());
+      cache.updateJobContext(jobName, cache.getJobContext(jobName));
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getSkippedRecords(), 1);
+      Assert.assertEquals(cache.getPersistedRecords(), 0);
+      Assert.assertEquals(getVersion(contextPath), version);
+
+      // A changed context is written
+      JobContext jobContext = cache.getJobContext(jobName);
+      jobContext.setPartitionState(1, TaskPartitionState.COMPLETED);
+      cache.updateJobContext(jobName, jobContext);
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getPersistedRecords(), 1);
+      Assert.assertEquals(getVersion(contextPath), version + 1);
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  @Test
+  public void testSkipUnchangedBucketedContext() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName() + "_bucketed";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    String jobName = "job";
+    String contextPath = getContextPath(clusterName, jobName);
+
+    System.setProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_THRESHOLD,
+        String.valueOf(NUM_PARTITIONS - 1));
+    System.setProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_SIZE, "10");
+    TaskDataCache cache;
+    try {
+      cache = new TaskDataCache(clusterName);
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_THRESHOLD);
+      System.clearProperty(SystemPropertyKeys.TASK_JOB_CONTEXT_BUCKET_SIZE);
+    }
+
+    try {
+      cache.updateJobContext(jobName, createJobContext(jobName));
+      cache.persistDataChanges(accessor);
+      ZNRecord root = _baseAccessor.get(contextPath, null, AccessOption.PERSISTENT);
+      Assert.assertTrue(JobContextBuckets.isBucketed(root));
+      List<String> paths = new ArrayList<>(JobContextBuckets.getBucketPaths(contextPath, root));
+      paths.add(contextPath);
+      List<Integer> versions = getVersions(paths);
+
+      cache.refresh(accessor, Collections.emptyMap());
+      cache.updateJobContext(jobName, cache.getJobContext(jobName));
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getSkippedRecords(), 1);
+      Assert.assertEquals(cache.getPersistedRecords(), 0);
+      Assert.assertEquals(getVersions(paths), versions);
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  @Test
+  public void testDelayTimestampOnlyChange() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName() + "_timestamp";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    String workflowName = "workflow";
+    String contextPath = getContextPath(clusterName, workflowName);
+
+    TaskDataCache cache = new TaskDataCache(clusterName);
+    try {
+      cache.updateWorkflowContext(workflowName, createWorkflowContext());
+      cache.persistDataChanges(accessor);
+      int version = getVersion(contextPath);
+
+      // A change of the last purge time only is not written right away
+      cache.refresh(accessor, Collections.emptyMap());
+      WorkflowContext workflowContext = cache.getWorkflowContext(workflowName);
+      long purgeTime = System.currentTimeMillis();
+      workflowContext.setLastJobPurgeTime(purgeTime);
+      cache.updateWorkflowContext(workflowName, workflowContext);
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getSkippedRecords(), 1);
+      Assert.assertEquals(cache.getPersistedRecords(), 0);
+      Assert.assertEquals(getVersion(contextPath), version);
+
+      // It is kept over a refresh, and written with the next other change
+      cache.refresh(accessor, Collections.emptyMap());
+      workflowContext = cache.getWorkflowContext(workflowName);
+      Assert.assertEquals(workflowContext.getLastJobPurgeTime(), purgeTime);
+      workflowContext.setJobState("job", TaskState.COMPLETED);
+      cache.updateWorkflowContext(workflowName, workflowContext);
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getPersistedRecords(), 1);
+      Assert.assertEquals(getVersion(contextPath), version + 1);
+      WorkflowContext persisted = new WorkflowContext(
+          _baseAccessor.get(contextPath, null, AccessOption.PERSISTENT));
+      Assert.assertEquals(persisted.getLastJobPurgeTime(), purgeTime);
+      Assert.assertEquals(persisted.getJobState("job"), TaskState.COMPLETED);
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  @Test
+  public void testWriteFinishTimeRightAway() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName() + "_finishTime";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    String jobName = "job";
+    String contextPath = getContextPath(clusterName, jobName);
+
+    TaskDataCache cache = new TaskDataCache(clusterName);
+    try {
+      cache.updateJobContext(jobName, createJobContext(jobName));
+      cache.persistDataChanges(accessor);
+      int version = getVersion(contextPath);
+
+      // The finish time of a completed job is the only change of its context, it is not delayed
+      cache.refresh(accessor, Collections.emptyMap());
+      JobContext jobContext = cache.getJobContext(jobName);
+      long finishTime = System.currentTimeMillis();
+      jobContext.setFinishTime(finishTime);
+      cache.updateJobContext(jobName, jobContext);
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getPersistedRecords(), 1);
+      Assert.assertEquals(getVersion(contextPath), version + 1);
+      JobContext persisted = new JobContext(
+          _baseAccessor.get(contextPath, null, AccessOption.PERSISTENT));
+      Assert.assertEquals(persisted.getFinishTime(), finishTime);
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  @Test
+  public void testWriteTimestampOnlyChangeWithoutDelay() {
+    String clusterName = CLUSTER_PREFIX + "_" + TestHelper.getTestClassName() + "_noDelay";
+    _gSetupTool.addCluster(clusterName, true);
+    ZKHelixDataAccessor accessor =
+        new ZKHelixDataAccessor(clusterName, new ZkBaseDataAccessor<>(_gZkClient));
+    String workflowName = "workflow";
+    String contextPath = getContextPath(clusterName, workflowName);
+
+    System.setProperty(SystemPropertyKeys.TASK_CONTEXT_TIMESTAMP_WRITE_DELAY, "0");
+    TaskDataCache cache;
+    try {
+      cache = new TaskDataCache(clusterName);
+    } finally {
+      System.clearProperty(SystemPropertyKeys.TASK_CONTEXT_TIMESTAMP_WRITE_DELAY);
+    }
+
+    try {
+      cache.updateWorkflowContext(workflowName, createWorkflowContext());
+      cache.persistDataChanges(accessor);
+      int version = getVersion(contextPath);
+
+      cache.refresh(accessor, Collections.emptyMap());
+      WorkflowContext workflowContext = cache.getWorkflowContext(workflowName);
+      workflowContext.setLastJobPurgeTime(System.currentTimeMillis());
+      cache.updateWorkflowContext(workflowName, workflowContext);
+      cache.persistDataChanges(accessor);
+      Assert.assertEquals(cache.getPersistedRecords(), 1);
+      Assert.assertEquals(getVersion(contextPath), version + 1);
+    } finally {
+      deleteCluster(clusterName);
+    }
+  }
+
+  private String getContextPath(String clusterName, String jobName) {
+    return String.format("/%s/PROPERTYSTORE%s/%s/%s", clusterName,
+        TaskConstants.REBALANCER_CONTEXT_ROOT, jobName, TaskConstants.CONTEXT_NODE);
+  }
+
+  private int getVersion(String path) {
+    return _baseAccessor.getStat(path, AccessOption.PERSISTENT).getVersion();
+  }
+
+  private List<Integer> getVersions(List<String> paths) {
+    List<Integer> versions = new ArrayList<>();
+    for (String path : paths) {
+      versions.add(getVersion(path));
+    }
+    return versions;
+  }
+
+  private WorkflowContext createWorkflowContext() {
+    WorkflowContext workflowContext =
+        new WorkflowContext(new ZNRecord(TaskUtil.WORKFLOW_CONTEXT_KW));
+    workflowContext.setWorkflowState(TaskState.IN_PROGRESS);
+    workflowContext.setStartTime(System.currentTimeMillis());
+    workflowContext.setJobState("job", TaskState.IN_PROGRESS);
+    return workflowContext;
+  }
+
+  private JobContext createJobContext(String jobName) {
+    JobContext jobContext = new JobContext(new ZNRecord(TaskUtil.TASK_CONTEXT_KW));
+    jobContext.setName(jobName);
+    jobContext.setStartTime(System.currentTimeMillis());
+    for (int i = 0; i < NUM_PARTITIONS; i++) {
+      jobContext.setPartitionState(i, TaskPartitionState.RUNNING);
+      jobContext.setAssignedParticipant(i, "localhost_" + (12918 + i % 5));
+    }
+    return jobContext;
+  }
+}
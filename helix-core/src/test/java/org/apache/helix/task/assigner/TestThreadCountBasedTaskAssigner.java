@@ -185,6 +185,48 @@ public class TestThreadCountBasedTaskAssigner extends AssignerTestBase {
     }
   }
 
+  @Test
+  public void testAssignmentFollowsRelease() {
+    TaskAssigner assigner = new ThreadCountBasedTaskAssigner();
+    AssignableInstanceManager assignableInstanceManager = createAssignableInstanceManager(4, 20);
+    String quotaType = testQuotaTypes[0];
+    // 2 tasks per instance
+    List<TaskConfig> tasks = createTaskConfigs(8, false);
+    Map<String, TaskAssignResult> results = assigner.assignTasks(assignableInstanceManager,
+        assignableInstanceManager.getAssignableInstanceNames(), tasks, quotaType);
+    assertAssignmentResults(results.values(), true);
+
+    // Release the tasks of one instance, it must be the next to be assigned
+    String releasedInstance = "instance-2";
+    for (TaskAssignResult result : results.values()) {
+      if (result.getInstanceName().equals(releasedInstance)) {
+        assignableInstanceManager.release(releasedInstance, result.getTaskConfig(), quotaType);
+      }
+    }
+    Assert.assertEquals(assignableInstanceManager.getQuotaCapacityIndex().peek(quotaType)
+        .getInstanceName(), releasedInstance);
+    results = assigner.assignTasks(assignableInstanceManager,
+        assignableInstanceManager.getAssignableInstanceNames(), createTaskConfigs(2), quotaType);
+    for (TaskAssignResult result : results.values()) {
+      Assert.assertTrue(result.isSuccessful());
+      Assert.assertEquals(result.getInstanceName(), releasedInstance);
+    }
+
+    // Exhaust the quota, the index must not report capacity that is already used
+    results = assigner.assignTasks(assignableInstanceManager,
+        assignableInstanceManager.getAssignableInstanceNames(), createTaskConfigs(100), quotaType);
+    int successCnt = 0;
+    for (TaskAssignResult result : results.values()) {
+      if (result.isSuccessful()) {
+        successCnt++;
+      }
+    }
+    int quota = assignableInstanceManager.getAssignableInstance(releasedInstance)
+        .getTotalCapacity().get(LiveInstance.InstanceResourceType.TASK_EXEC_THREAD.name())
+        .get(quotaType);
+    Assert.assertEquals(successCnt, 4 * quota - 8);
+  }
+
   private void profileAssigner(int assignBatchSize, int instanceCount, int taskCount) {
     int trail = 100;
     long totalTime = 0;
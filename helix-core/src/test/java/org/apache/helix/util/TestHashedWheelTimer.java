@@ -0,0 +1,124 @@
+package org.apache.helix.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.helix.TestHelper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class TestHashedWheelTimer {
+
+  @Test
+  public void testTimeoutFires() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 8);
+    try {
+      final CountDownLatch latch = new CountDownLatch(1);
+      long start = System.currentTimeMillis();
+      // delay longer than one wheel round
+      HashedWheelTimer.Timeout timeout = timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      }, 200, TimeUnit.MILLISECONDS);
+
+      Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(System.currentTimeMillis() - start >= 200);
+      Assert.assertTrue(timeout.isExpired());
+      Assert.assertFalse(timeout.cancel());
+      Assert.assertTrue(TestHelper.verify(() -> timer.getPendingTimeouts() == 0, 1000));
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void testCancelledTimeoutsDoNotFire() throws Exception {
+    HashedWheelTimer timer = new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 16);
+    try {
+      final AtomicInteger fired = new AtomicInteger();
+      Runnable task = new Runnable() {
+        @Override
+        public void run() {
+          fired.incrementAndGet();
+        }
+      };
+
+      List<HashedWheelTimer.Timeout> timeouts = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        timeouts.add(timer.newTimeout(task, 50 + i % 100, TimeUnit.MILLISECONDS));
+      }
+      for (int i = 0; i < timeouts.size(); i += 2) {
+        Assert.assertTrue(timeouts.get(i).cancel());
+        Assert.assertTrue(timeouts.get(i).isCancelled());
+      }
+
+      Assert.assertTrue(TestHelper.verify(() -> fired.get() == 500, 5000));
+      Assert.assertTrue(TestHelper.verify(() -> timer.getPendingTimeouts() == 0, 1000));
+      for (int i = 0; i < timeouts.size(); i++) {
+        Assert.assertEquals(timeouts.get(i).isExpired(), i % 2 == 1);
+      }
+    } finally {
+      timer.stop();
+    }
+  }
+
+  @Test
+  public void testSlowTaskDoesNotDelayOtherTimeouts() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    HashedWheelTimer timer =
+        new HashedWheelTimer("test", 10, TimeUnit.MILLISECONDS, 8, executor);
+    final CountDownLatch slowTaskReleased = new CountDownLatch(1);
+    try {
+      final CountDownLatch fastTaskFired = new CountDownLatch(1);
+      timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            slowTaskReleased.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }, 10, TimeUnit.MILLISECONDS);
+      timer.newTimeout(new Runnable() {
+        @Override
+        public void run() {
+          fastTaskFired.countDown();
+        }
+      }, 50, TimeUnit.MILLISECONDS);
+
+      Assert.assertTrue(fastTaskFired.await(5, TimeUnit.SECONDS));
+      Assert.assertTrue(TestHelper.verify(() -> timer.getPendingTimeouts() == 0, 1000));
+    } finally {
+      slowTaskReleased.countDown();
+      timer.stop();
+      executor.shutdownNow();
+    }
+  }
+}